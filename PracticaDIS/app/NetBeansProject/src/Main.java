@@ -1,9 +1,32 @@
 
 import es.uva.eii.ds.empresaX.interfaz.GestorUI;
+import es.uva.eii.ds.empresaX.negocio.controladoresCasoUso.ControladorCUIdentificarse;
+import es.uva.eii.ds.empresaX.negocio.controladoresCasoUso.ControladorCURegistrarVenta;
+import es.uva.eii.ds.empresaX.persistencia.MigracionesBD;
+import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 public class Main {
     public static void main(String[] args){
+        // Pone el esquema de la BD al día antes de cualquier consulta
+        try {
+            MigracionesBD.aplicarPendientes();
+        } catch(MessageException e) {
+            Logger.getLogger(Main.class.getName()).log(Level.SEVERE, "No se pudo actualizar el esquema de la BD", e);
+        }
+        
+        // Precarga los tipos y el catálogo de productos mientras se muestra el login
+        // y lleva a la BD las ventas que quedaron pendientes sin conexión
+        Thread precarga = new Thread(() -> {
+            ControladorCUIdentificarse.precargarDatosReferencia();
+            ControladorCURegistrarVenta.precargarCatalogo();
+            ControladorCURegistrarVenta.reanudarVentasPendientes();
+        }, "precarga-datos");
+        precarga.setDaemon(true);
+        precarga.start();
+        
         GestorUI gestorIU = GestorUI.getInstanciaSingleton();
     }
 }
@@ -0,0 +1,251 @@
+package es.uva.eii.ds.empresaX.interfaz;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * Ejecuta los casos de uso que acceden a la BD fuera del hilo de eventos de
+ * Swing, para que la ventana no se congele mientras tanto. El resultado (o
+ * el error) se entrega en el hilo de eventos.
+ *
+ * Las tareas se agrupan en colas con nombre: las de una misma cola se
+ * ejecutan de una en una y en el orden en que se pidieron (por ejemplo, la
+ * primera página de una consulta y las siguientes), mientras que las de
+ * colas distintas se ejecutan a la vez en un número acotado de hilos.
+ * Una tarea cancelada no llega a empezar si aún estaba pendiente y, si ya
+ * había empezado, termina pero su resultado se descarta (no se interrumpe a
+ * mitad de una transacción).
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class EjecutorCasosDeUso {
+
+    // Hilos para casos de uso (el pool de conexiones también está acotado)
+    private static final int NUM_HILOS = 4;
+    // Colas con una tarea lista a la vez como máximo
+    private static final int MAX_COLAS_LISTAS = 64;
+    // Segundos que un hilo sin trabajo tarda en terminar
+    private static final long INACTIVIDAD_HILOS = 30;
+
+    private static final ThreadPoolExecutor hilos;
+    private static final HashMap<String, Cola> colas = new HashMap<>();
+
+    static {
+        AtomicInteger numero = new AtomicInteger();
+        hilos = new ThreadPoolExecutor(NUM_HILOS, NUM_HILOS, INACTIVIDAD_HILOS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_COLAS_LISTAS), r -> {
+                    Thread t = new Thread(r, "CasosDeUso-" + numero.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        hilos.allowCoreThreadTimeOut(true);
+    }
+
+    private EjecutorCasosDeUso() {
+    }
+
+    /**
+     * Operación de un caso de uso, que puede acceder a la BD.
+     * @param <T> Tipo del resultado
+     */
+    @FunctionalInterface
+    public interface Operacion<T> {
+        T ejecuta() throws Exception;
+    }
+
+    /**
+     * Pide ejecutar una operación detrás de las que ya haya en su cola.
+     * @param <T> Tipo del resultado
+     * @param cola Nombre de la cola
+     * @param operacion Operación a ejecutar
+     * @param alTerminar Recibe el resultado en el hilo de eventos (puede ser null)
+     * @param alFallar Recibe el error en el hilo de eventos (puede ser null)
+     * @return Tarea, para poder cancelarla
+     */
+    public static <T> Tarea ejecutar(String cola, Operacion<T> operacion,
+                                     Consumer<T> alTerminar, Consumer<Exception> alFallar) {
+        return encola(cola, new Tarea(), operacion, alTerminar, alFallar, false);
+    }
+
+    /**
+     * Pide ejecutar una operación que deja obsoletas las anteriores de su cola
+     * (por ejemplo, una consulta nueva): las cancela antes de encolarla.
+     * @param <T> Tipo del resultado
+     * @param cola Nombre de la cola
+     * @param operacion Operación a ejecutar
+     * @param alTerminar Recibe el resultado en el hilo de eventos (puede ser null)
+     * @param alFallar Recibe el error en el hilo de eventos (puede ser null)
+     * @return Tarea, para poder cancelarla
+     */
+    public static <T> Tarea sustituir(String cola, Operacion<T> operacion,
+                                      Consumer<T> alTerminar, Consumer<Exception> alFallar) {
+        return encola(cola, new Tarea(), operacion, alTerminar, alFallar, true);
+    }
+
+    /**
+     * Cancela todas las tareas de una cola que no han entregado su resultado.
+     * @param cola Nombre de la cola
+     */
+    public static void cancelar(String cola) {
+        synchronized(colas) {
+            Cola c = colas.get(cola);
+            if(c != null) {
+                c.cancelaVivas();
+            }
+        }
+    }
+
+    private static <T> Tarea encola(String nombre, Tarea tarea, Operacion<T> operacion, Consumer<T> alTerminar,
+                                    Consumer<Exception> alFallar, boolean sustituye) {
+        tarea.ejecucion = () -> {
+            T resultado;
+            try {
+                resultado = operacion.ejecuta();
+            } catch(Exception e) {
+                entrega(nombre, tarea, () -> {
+                    if(alFallar != null) {
+                        alFallar.accept(e);
+                    }
+                });
+                return;
+            }
+            entrega(nombre, tarea, () -> {
+                if(alTerminar != null) {
+                    alTerminar.accept(resultado);
+                }
+            });
+        };
+        tarea.alRechazar = alFallar;
+
+        synchronized(colas) {
+            Cola cola = colas.computeIfAbsent(nombre, k -> new Cola());
+            if(sustituye) {
+                cola.cancelaVivas();
+            }
+            cola.pendientes.add(tarea);
+            cola.vivas.add(tarea);
+            if(!cola.enCurso) {
+                lanzaSiguiente(nombre, cola);
+            }
+        }
+
+        return tarea;
+    }
+
+    /**
+     * Lanza la siguiente tarea no cancelada de la cola. Se llama con el
+     * cerrojo de colas cogido.
+     */
+    private static void lanzaSiguiente(String nombre, Cola cola) {
+        Tarea siguiente = cola.pendientes.poll();
+        while(siguiente != null && siguiente.cancelada) {
+            cola.vivas.remove(siguiente);
+            siguiente = cola.pendientes.poll();
+        }
+        if(siguiente == null) {
+            cola.enCurso = false;
+            if(cola.vivas.isEmpty()) {
+                colas.remove(nombre);
+            }
+            return;
+        }
+
+        cola.enCurso = true;
+        Tarea tarea = siguiente;
+        try {
+            hilos.execute(() -> {
+                try {
+                    if(!tarea.cancelada) {
+                        tarea.ejecucion.run();
+                    }
+                } finally {
+                    synchronized(colas) {
+                        lanzaSiguiente(nombre, cola);
+                    }
+                }
+            });
+        } catch(RejectedExecutionException e) {
+            // Demasiadas colas a la vez: esta tarea falla y se sigue con la cola
+            entrega(nombre, tarea, () -> {
+                if(tarea.alRechazar != null) {
+                    tarea.alRechazar.accept(e);
+                }
+            });
+            lanzaSiguiente(nombre, cola);
+        }
+    }
+
+    /**
+     * Entrega el resultado de una tarea en el hilo de eventos, salvo que se
+     * haya cancelado antes.
+     */
+    private static void entrega(String nombre, Tarea tarea, Runnable entrega) {
+        SwingUtilities.invokeLater(() -> {
+            synchronized(colas) {
+                Cola cola = colas.get(nombre);
+                if(cola != null) {
+                    cola.vivas.remove(tarea);
+                    if(!cola.enCurso && cola.vivas.isEmpty()) {
+                        colas.remove(nombre);
+                    }
+                }
+            }
+            if(!tarea.cancelada) {
+                entrega.run();
+            }
+        });
+    }
+
+
+    /**
+     * Tarea pedida al ejecutor.
+     */
+    public static final class Tarea {
+        private volatile boolean cancelada;
+        private Runnable ejecucion;
+        private Consumer<Exception> alRechazar;
+
+        private Tarea() {
+            cancelada = false;
+        }
+
+        /**
+         * Cancela la tarea: si no ha empezado no se ejecuta y, si ya ha
+         * empezado, no se entrega su resultado.
+         */
+        public void cancelar() {
+            cancelada = true;
+        }
+
+        public boolean isCancelada() {
+            return cancelada;
+        }
+    }
+
+    /**
+     * Tareas de una cola: las que faltan por ejecutar y las que aún no han
+     * entregado su resultado.
+     */
+    private static final class Cola {
+        private final ArrayDeque<Tarea> pendientes = new ArrayDeque<>();
+        private final ArrayList<Tarea> vivas = new ArrayList<>();
+        private boolean enCurso;
+
+        private void cancelaVivas() {
+            for(Tarea tarea : vivas) {
+                tarea.cancelar();
+            }
+        }
+    }
+
+}
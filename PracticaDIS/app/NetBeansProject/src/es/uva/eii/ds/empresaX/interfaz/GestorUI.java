@@ -4,6 +4,7 @@ import es.uva.eii.ds.empresaX.interfaz.pares_vista_control.dependiente.VistaRegi
 import es.uva.eii.ds.empresaX.interfaz.pares_vista_control.empleado.VistaIdentificarse;
 import es.uva.eii.ds.empresaX.interfaz.pares_vista_control.empleado.VistaListaOpciones;
 import es.uva.eii.ds.empresaX.interfaz.pares_vista_control.empleadohorno.CtrlVistaPrepararPedidoHorno;
+import es.uva.eii.ds.empresaX.interfaz.pares_vista_control.empleadohorno.VistaPlanificarHorneado;
 import es.uva.eii.ds.empresaX.interfaz.pares_vista_control.empleadohorno.VistaPrepararPedidoHorno;
 import es.uva.eii.ds.empresaX.interfaz.pares_vista_control.encargado.VistaConsultarFacturas;
 import es.uva.eii.ds.empresaX.negocio.modelos.Sesion;
@@ -33,6 +34,7 @@ public class GestorUI {
         // EMPLEADO DE HORNO
         PREPARAR_PEDIDO_HORNO,
         INFORMAR_PREVISION_MATERIA,
+        PLANIFICAR_HORNEADO,
         // DEPENDIENTE
         ENTREGAR_PEDIDO_CLIENTE, 
         REGISTRAR_VENTA_DIRECTA
@@ -64,6 +66,8 @@ public class GestorUI {
                     "<html><center>PREPARAR PEDIDO<br>DE HORNO</center></html>");
         stringsCasos.put(CasosDeUso.INFORMAR_PREVISION_MATERIA, 
                     "<html><center>INFORMAR DE PREVISIÓN DE<br>MATERIA PRIMA NECESARIA</center></html>");
+        stringsCasos.put(CasosDeUso.PLANIFICAR_HORNEADO, 
+                    "<html><center>PLANIFICAR<br>HORNEADO DEL DÍA</center></html>");
         // DEPENDIENTE
         stringsCasos.put(CasosDeUso.ENTREGAR_PEDIDO_CLIENTE, 
                     "<html><center>ENTREGAR PEDIDO<br>A CLIENTE</center></html>");
@@ -103,6 +107,9 @@ public class GestorUI {
             case INFORMAR_PREVISION_MATERIA:
                 vistaInformarPrevision();
                 break;
+            case PLANIFICAR_HORNEADO:
+                vistaPlanificarHorneado();
+                break;
             // DEPENDIENTE
             case ENTREGAR_PEDIDO_CLIENTE:
                 vistaEntregarPedido();
@@ -188,6 +195,17 @@ public class GestorUI {
         });
     }
     
+    /**
+     * Muestra la ventana con el plan de horneado de los pedidos pendientes.
+     */
+    private void vistaPlanificarHorneado() {
+        guardaActual();
+        java.awt.EventQueue.invokeLater(() -> {
+            actual = new VistaPlanificarHorneado();
+            actual.setVisible(true);
+        });
+    }
+    
     
     
     ///////////////////// ENCARGADO /////////////////////
@@ -1,5 +1,6 @@
 package es.uva.eii.ds.empresaX.interfaz.pares_vista_control.dependiente;
 
+import es.uva.eii.ds.empresaX.interfaz.EjecutorCasosDeUso;
 import es.uva.eii.ds.empresaX.interfaz.GestorUI;
 import es.uva.eii.ds.empresaX.negocio.controladoresCasoUso.ControladorCURegistrarVenta;
 import es.uva.eii.ds.empresaX.negocio.modelos.Empleado;
@@ -7,8 +8,9 @@ import es.uva.eii.ds.empresaX.negocio.modelos.Venta;
 import javax.swing.JFrame;
 import es.uva.eii.ds.empresaX.negocio.modelos.LineaDeVenta;
 import es.uva.eii.ds.empresaX.negocio.modelos.Sesion;
-import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
 import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Controlador de la vista de registro de venta directa.
@@ -22,11 +24,17 @@ public class CtrlVistaRegistrarVentaDirecta {
     private final VistaRegistrarVentaDirecta vista;
     private static Venta venta;
     private static Empleado empleado;
+    private boolean cerrada; // La ventana ya se ha cerrado
+
+    // Colas del ejecutor: los productos leídos y las ventas, cada una en orden
+    private static final String COLA_PRODUCTOS = "productos";
+    private static final String COLA_VENTAS = "ventas";
 
     private final static String errorCantidadIncorrecta = "La cantidad introducida es menos que uno. Vuelva a introducir una cantidad correcta";
     private final static String errorProductoInexistente = "El código introducido no pertenece a ningún producto en la lista de productos existente";
     private final static String errorCantidadNoRelaizable = "No existen unidades suficientes para ese producto";
     private final static String errorListaVacia = "No hay productos introducidos en la lista";
+    private final static String errorVentaNoRegistrada = "No se ha podido registrar la venta anterior";
 
     /**
      * Inicializa el controlador.
@@ -50,10 +58,11 @@ public class CtrlVistaRegistrarVentaDirecta {
      * Cuando se cierra la ventana, se vuelve a la anterior.
      */
     public void procesaCierre() {
+        cerrada = true;
         GestorUI.getInstanciaSingleton().atras();
     }
 
-    public void introducirProducto(String codigo, String cant) throws MessageException {
+    public void introducirProducto(String codigo, String cant) {
 
 
         if (cant.isEmpty()) {
@@ -71,42 +80,74 @@ public class CtrlVistaRegistrarVentaDirecta {
 
                 } else {
 
-                    LineaDeVenta linea = ControladorCURegistrarVenta.crearLineaDeVenta(codigo, cantidad);
-
-                    if (linea == null) {
+                    // El producto se busca en segundo plano (puede no estar
+                    // en el catálogo precargado); los códigos se procesan en
+                    // el orden en que se leen
+                    EjecutorCasosDeUso.ejecutar(COLA_PRODUCTOS, 
+                            () -> ControladorCURegistrarVenta.crearLineaDeVenta(codigo, cantidad), 
+                            linea -> anadeProducto(linea, cantidad), 
+                            e -> vista.mostrarMensajeError(e.getMessage()));
+                }
+            }
+        }
 
-                        vista.mostrarMensajeError(errorProductoInexistente);
+    }
+    private void anadeProducto(LineaDeVenta linea, int cantidad) {
+        if (linea == null) {
 
-                    } else {
+            vista.mostrarMensajeError(errorProductoInexistente);
 
-                        int cantDisp = ControladorCURegistrarVenta.getCantidadDisponible(venta,linea);
+        } else {
 
-                        if (cantDisp < cantidad) {
+            if (!ControladorCURegistrarVenta.reservarLinea(venta,linea)) {
 
-                            vista.mostrarMensajeError(errorCantidadNoRelaizable);
+                vista.mostrarMensajeError(errorCantidadNoRelaizable);
 
-                        } else {
+            } else {
 
-                            addLinea(linea);
-                            vista.mostrarDatosVenta(venta);
+                addLinea(linea);
+                vista.mostrarDatosVenta(venta);
 
-                        }
-                    }
-                }
             }
         }
-
     }
-    public void finalizarVenta() throws MessageException {
-
-        if (venta.getLineas() != null || venta.getLineas().size() > 0) {
 
-            ControladorCURegistrarVenta.registrarVenta(venta,empleado);
+    /**
+     * Registra la venta en segundo plano. Mientras tanto la caja queda libre
+     * para empezar la siguiente venta: la ventana sigue abierta (se cierra
+     * solo cuando lo pide el dependiente, nunca al terminar el registro).
+     */
+    public void finalizarVenta() {
 
-            ControladorCURegistrarVenta.actualizarExistencias(venta);
+        if (venta.getLineas() != null && !venta.getLineas().isEmpty()) {
 
+            Venta registrando = venta;
+            venta = new Venta(empleado.getDni());
             vista.borrarLista();
-            GestorUI.getInstanciaSingleton().atras();
+            vista.mostrarMensajeError("");
+
+            EjecutorCasosDeUso.ejecutar(COLA_VENTAS, () -> {
+                ControladorCURegistrarVenta.registrarVenta(registrando, empleado);
+                return null;
+            }, null, e -> {
+                // Sin conexión la venta ya ha quedado en el diario: lo que llega
+                // aquí (falta de existencias, resultado desconocido...) no se
+                // aplaza, lo tiene que ver el dependiente
+                Logger.getLogger(CtrlVistaRegistrarVentaDirecta.class.getName()).log(Level.WARNING, 
+                        "No se ha registrado la venta de " + registrando.getLineas().size() + " líneas", e);
+                if (cerrada) {
+                    ControladorCURegistrarVenta.abandonarVenta(registrando);
+                } else if (!hayVentaEmpezada()) {
+                    // Se recupera para poder reintentarla
+                    ControladorCURegistrarVenta.abandonarVenta(venta);
+                    venta = registrando;
+                    vista.mostrarDatosVenta(venta);
+                    vista.mostrarMensajeError(errorVentaNoRegistrada + ": " + e.getMessage());
+                } else {
+                    ControladorCURegistrarVenta.abandonarVenta(registrando);
+                    vista.mostrarMensajeError(errorVentaNoRegistrada + ": " + e.getMessage());
+                }
+            });
 
         } else {
             vista.mostrarMensajeError(errorListaVacia);
@@ -114,6 +155,10 @@ public class CtrlVistaRegistrarVentaDirecta {
 
     }
 
+    private boolean hayVentaEmpezada() {
+        return venta.getLineas() != null && !venta.getLineas().isEmpty();
+    }
+
     private double getTotalVenta() {
         double res = 0;
         for (LineaDeVenta lv : venta.getLineas()) {
@@ -123,6 +168,7 @@ public class CtrlVistaRegistrarVentaDirecta {
     }
 
     void vaciaLista() {
+        ControladorCURegistrarVenta.abandonarVenta(venta);
         venta.setLineas(null);
     }
 
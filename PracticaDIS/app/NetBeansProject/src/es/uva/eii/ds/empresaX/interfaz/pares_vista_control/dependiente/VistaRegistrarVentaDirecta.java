@@ -3,9 +3,6 @@ package es.uva.eii.ds.empresaX.interfaz.pares_vista_control.dependiente;
 import es.uva.eii.ds.empresaX.negocio.modelos.LineaDeVenta;
 
 import es.uva.eii.ds.empresaX.negocio.modelos.Venta;
-import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import javax.swing.table.DefaultTableModel;
 
 /**
@@ -179,19 +176,11 @@ public class VistaRegistrarVentaDirecta extends javax.swing.JFrame {
     }//GEN-LAST:event_formWindowClosing
 
     private void sumaElementoActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_sumaElementoActionPerformed
-        try {
-            controlador.introducirProducto(codigo.getText(),cantidad.getText());
-        } catch (MessageException ex) {
-            Logger.getLogger(VistaRegistrarVentaDirecta.class.getName()).log(Level.SEVERE, null, ex);
-        }
+        controlador.introducirProducto(codigo.getText(),cantidad.getText());
     }//GEN-LAST:event_sumaElementoActionPerformed
 
     private void terminaVentaActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_terminaVentaActionPerformed
-        try {
-            controlador.finalizarVenta();
-        } catch (MessageException ex) {
-            Logger.getLogger(VistaRegistrarVentaDirecta.class.getName()).log(Level.SEVERE, null, ex);
-        }
+        controlador.finalizarVenta();
     }//GEN-LAST:event_terminaVentaActionPerformed
  
     
@@ -1,9 +1,9 @@
 package es.uva.eii.ds.empresaX.interfaz.pares_vista_control.empleado;
 
+import es.uva.eii.ds.empresaX.interfaz.EjecutorCasosDeUso;
 import es.uva.eii.ds.empresaX.interfaz.GestorUI;
 import es.uva.eii.ds.empresaX.negocio.controladoresCasoUso.ControladorCUIdentificarse;
 import es.uva.eii.ds.empresaX.negocio.modelos.Sesion;
-import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
 
 /**
  * Controlador de la vista de identificación.
@@ -19,6 +19,9 @@ public class CtrlVistaIdentificarse {
     // MENSAJES DE ERROR
     private static final String ERROR_CAMPOS_VACIOS = "No puede haber campos vacíos";
     
+    // Cola del ejecutor para los intentos de identificación
+    private static final String COLA_IDENTIFICACION = "identificacion";
+    
     /**
      * Inicializa el controlador.
      * @param v Vista que controla
@@ -57,18 +60,20 @@ public class CtrlVistaIdentificarse {
             return;
         }
         
-        try {
-            // Realiza el caso de uso
+        // Realiza el caso de uso (un intento nuevo deja obsoleto el anterior)
+        EjecutorCasosDeUso.sustituir(COLA_IDENTIFICACION, () -> {
             ControladorCUIdentificarse.getInstanciaSingleton().
                     identificarEmpleado(dni, pass);
+            return null;
+        }, r -> {
             // Empleado conectado con éxito, le muestra ventana con las opciones
             GestorUI.getInstanciaSingleton().
                     empleadoIdentificado(Sesion.getInstancia().
                             getEmpleado().obtenerRolActual().getTipo());
-        } catch (MessageException ex) {
+        }, ex -> {
             // Ha ocurrido un error
             vista.mostrarMensajeError(ex.getMessage());
-        }
+        });
         
     }
     
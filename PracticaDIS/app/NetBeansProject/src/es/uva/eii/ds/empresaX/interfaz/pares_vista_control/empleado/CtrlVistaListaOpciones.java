@@ -29,6 +29,7 @@ public class CtrlVistaListaOpciones {
             case EmpleadoDeHorno:
                 anadeOpcion(GestorUI.CasosDeUso.PREPARAR_PEDIDO_HORNO);
                 anadeOpcion(GestorUI.CasosDeUso.INFORMAR_PREVISION_MATERIA);
+                anadeOpcion(GestorUI.CasosDeUso.PLANIFICAR_HORNEADO);
                 break;
             case Encargado:
                 anadeOpcion(GestorUI.CasosDeUso.CONSULTAR_FACTURAS_PENDIENTES);
@@ -0,0 +1,87 @@
+package es.uva.eii.ds.empresaX.interfaz.pares_vista_control.empleadohorno;
+
+import es.uva.eii.ds.empresaX.interfaz.EjecutorCasosDeUso;
+import es.uva.eii.ds.empresaX.interfaz.GestorUI;
+import es.uva.eii.ds.empresaX.negocio.controladoresCasoUso.ControladorCUPrepararPedido;
+import es.uva.eii.ds.empresaX.negocio.modelos.PlanHorneado;
+
+
+/**
+ * Controlador de la vista de planificación del horneado del día.
+ * 
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class CtrlVistaPlanificarHorneado {
+    
+    private final VistaPlanificarHorneado vista;
+    
+    private PlanHorneado plan; // Plan mostrado actualmente
+    
+    // Cola del ejecutor para los accesos a la BD de esta vista
+    private static final String COLA_PLAN = "planHorneado";
+    
+    /**
+     * Inicializa el controlador.
+     * @param v Vista que controla
+     */
+    public CtrlVistaPlanificarHorneado(VistaPlanificarHorneado v) {
+        vista = v;
+        // Centra en la pantalla
+        vista.setLocationRelativeTo(null);
+        cargaPlan(true);
+    }
+    
+    
+    /**
+     * El empleado ha confirmado el plan: prepara todos sus pedidos a la vez.
+     */
+    public void procesaPlanConfirmado() {
+        if(plan == null || plan.estaVacio()) {
+            return;
+        }
+        
+        if(!plan.getFaltantes().isEmpty()) {
+            // Falta materia -> no se puede hornear todo
+            vista.mostrarMensajeFaltanMaterias(plan.getFaltantes());
+            return;
+        }
+        
+        PlanHorneado confirmado = plan;
+        EjecutorCasosDeUso.ejecutar(COLA_PLAN, () -> {
+            ControladorCUPrepararPedido.prepararPedidos(confirmado.getPedidos());
+            return null;
+        }, r -> vista.mostrarMensajeExito(confirmado.getPedidos().size()),
+           // Otro empleado ha cogido alguno -> se vuelve a planificar
+           e -> vista.mostrarMensajeError(e.getMessage()));
+        cargaPlan(false);
+    }
+    
+    /**
+     * Cuando se cierra la ventana, se vuelve a la anterior.
+     */
+    public void procesaClickAtras() {
+        GestorUI.getInstanciaSingleton().atras();
+    }
+    
+    
+    /**
+     * Calcula el plan con los pedidos pendientes y lo muestra. Se encola
+     * detrás de la confirmación, si la hay.
+     * @param avisaSiVacio true para avisar si no hay pedidos
+     */
+    private void cargaPlan(boolean avisaSiVacio) {
+        EjecutorCasosDeUso.ejecutar(COLA_PLAN, ControladorCUPrepararPedido::getPlanHorneado, nuevo -> {
+            plan = nuevo;
+            if(plan == null) {
+                vista.mostrarMensajeError("Error al consultar los pedidos");
+            }
+            vista.mostrarPlan(plan);
+            if(avisaSiVacio && plan != null && plan.estaVacio()) {
+                vista.mostrarMensajeSinPedidos();
+            }
+        }, null);
+    }
+    
+}
@@ -1,10 +1,10 @@
 package es.uva.eii.ds.empresaX.interfaz.pares_vista_control.empleadohorno;
 
+import es.uva.eii.ds.empresaX.interfaz.EjecutorCasosDeUso;
 import es.uva.eii.ds.empresaX.interfaz.GestorUI;
 import es.uva.eii.ds.empresaX.negocio.controladoresCasoUso.ControladorCUPrepararPedido;
 import es.uva.eii.ds.empresaX.negocio.modelos.LineaDePedidoDeHorno;
 import es.uva.eii.ds.empresaX.negocio.modelos.PedidoDeHorno;
-import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
 import java.util.ArrayList;
 
 
@@ -21,6 +21,9 @@ public class CtrlVistaPrepararPedidoHorno {
     
     private PedidoDeHorno pedidoActual; // Pedido seleccionado actual
     
+    // Cola del ejecutor para los accesos a la BD de esta vista
+    private static final String COLA_PEDIDOS = "pedidosHorno";
+    
     /**
      * Inicializa el controlador.
      * @param v Vista que controla
@@ -29,22 +32,23 @@ public class CtrlVistaPrepararPedidoHorno {
         vista = v;
         // Centra en la pantalla
         vista.setLocationRelativeTo(null);
-        // Carga los pedidos para hoy o mañana
-        ArrayList<PedidoDeHorno> pedidos = ControladorCUPrepararPedido.getListaPedidosPendientesHorno();
-        if(pedidos.isEmpty()) {
-            vista.mostrarMensajeSinPedidos();
-        } else {
-            vista.cargaListaPedidos(pedidos);
-        }
-        
         pedidoActual = null;
+        // Carga los pedidos para hoy o mañana
+        EjecutorCasosDeUso.sustituir(COLA_PEDIDOS, ControladorCUPrepararPedido::getListaPedidosPendientesHorno,
+                pedidos -> {
+                    if(pedidos == null || pedidos.isEmpty()) {
+                        vista.mostrarMensajeSinPedidos();
+                    } else {
+                        vista.cargaListaPedidos(pedidos);
+                    }
+                }, null);
     }
     
     
     /**
      * El empleado ha confirmado el pedido a preparar.
      */
-    public void procesaPedidoConfirmado() throws MessageException {
+    public void procesaPedidoConfirmado() {
         if(pedidoActual == null) {
             return;
         }
@@ -53,19 +57,30 @@ public class CtrlVistaPrepararPedidoHorno {
         ArrayList<LineaDePedidoDeHorno> faltantes = ControladorCUPrepararPedido.
                                                 getMateriasQueFaltan(pedidoActual);
         
+        if(faltantes == null) {
+            // No se han podido cargar las recetas
+            vista.mostrarMensajeError();
+            return;
+        }
+        
         if(!faltantes.isEmpty()) {
             // Falta materia -> muestra mensaje al usuario
             vista.mostrarMensajeFaltanMaterias(faltantes);
             return;
         }
         
-        if(ControladorCUPrepararPedido.prepararPedido(pedidoActual)) {
-            // Cambiado a actual -> muestra mensaje
-            vista.mostrarMensajeExito();
-        } else {
-            // Ocurrió un error y no se pudo cambiar -> muestra mensaje
-            vista.mostrarMensajeError();
-        }
+        PedidoDeHorno pedido = pedidoActual;
+        EjecutorCasosDeUso.ejecutar(COLA_PEDIDOS, () -> ControladorCUPrepararPedido.prepararPedido(pedido),
+                preparado -> {
+                    if(preparado) {
+                        // Cambiado a actual -> muestra mensaje
+                        vista.mostrarMensajeExito();
+                    } else {
+                        // Ocurrió un error y no se pudo cambiar -> muestra mensaje
+                        vista.mostrarMensajeError();
+                    }
+                },
+                e -> vista.mostrarMensajeError());
         
     }
     
@@ -0,0 +1,172 @@
+package es.uva.eii.ds.empresaX.interfaz.pares_vista_control.empleadohorno;
+
+import es.uva.eii.ds.empresaX.negocio.modelos.LineaDePedidoDeHorno;
+import es.uva.eii.ds.empresaX.negocio.modelos.PlanHorneado;
+import es.uva.eii.ds.empresaX.negocio.modelos.PlanHorneado.LoteDeHorneado;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GridLayout;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingConstants;
+import javax.swing.WindowConstants;
+import javax.swing.table.DefaultTableModel;
+
+
+/**
+ * Vista con el plan de horneado de los pedidos pendientes: qué hornear, para
+ * qué pedidos y cuánta materia se consume.
+ * 
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class VistaPlanificarHorneado extends javax.swing.JFrame {
+
+    private final CtrlVistaPlanificarHorneado controlador;
+    
+    private JLabel lTitulo;
+    private JTable tablaLotes;
+    private JTable tablaMaterias;
+    private JButton btnAtras;
+    private JButton btnConfirmar;
+    private JLabel labelErrores;
+    
+    public VistaPlanificarHorneado() {
+        initComponents();
+        controlador = new CtrlVistaPlanificarHorneado(this);
+    }
+
+    private void initComponents() {
+        setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        setBackground(new Color(255, 255, 255));
+        setResizable(false);
+        
+        lTitulo = new JLabel("Planificar Horneado", SwingConstants.CENTER);
+        lTitulo.setFont(new Font("Ebrima", 1, 36));
+        
+        tablaLotes = new JTable(new DefaultTableModel(
+                new Object[] {"Producto", "Cantidad", "Pedidos"}, 0) {
+            @Override
+            public boolean isCellEditable(int fila, int columna) {
+                return false;
+            }
+        });
+        tablaMaterias = new JTable(new DefaultTableModel(
+                new Object[] {"Materia", "Necesaria", "Existencias"}, 0) {
+            @Override
+            public boolean isCellEditable(int fila, int columna) {
+                return false;
+            }
+        });
+        
+        JPanel tablas = new JPanel(new GridLayout(1, 2, 6, 0));
+        tablas.add(new JScrollPane(tablaLotes));
+        tablas.add(new JScrollPane(tablaMaterias));
+        
+        labelErrores = new JLabel(" ", SwingConstants.CENTER);
+        labelErrores.setForeground(Color.red);
+        labelErrores.setVisible(false);
+        
+        btnAtras = new JButton("Atrás");
+        btnAtras.addActionListener(evt -> controlador.procesaClickAtras());
+        btnConfirmar = new JButton("Preparar todos");
+        btnConfirmar.setEnabled(false);
+        btnConfirmar.addActionListener(evt -> controlador.procesaPlanConfirmado());
+        
+        JPanel botones = new JPanel(new GridLayout(1, 2, 6, 0));
+        botones.add(btnAtras);
+        botones.add(btnConfirmar);
+        
+        JPanel sur = new JPanel(new BorderLayout(0, 6));
+        sur.add(labelErrores, BorderLayout.NORTH);
+        sur.add(botones, BorderLayout.SOUTH);
+        
+        JPanel contenido = new JPanel(new BorderLayout(0, 10));
+        contenido.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        contenido.add(lTitulo, BorderLayout.NORTH);
+        contenido.add(tablas, BorderLayout.CENTER);
+        contenido.add(sur, BorderLayout.SOUTH);
+        setContentPane(contenido);
+        
+        setSize(820, 480);
+    }
+    
+    /**
+     * Muestra los lotes del plan y la materia que consumen.
+     * @param plan Plan de horneado (null si no se pudo calcular)
+     */
+    public void mostrarPlan(PlanHorneado plan) {
+        DefaultTableModel lotes = (DefaultTableModel) tablaLotes.getModel();
+        DefaultTableModel materias = (DefaultTableModel) tablaMaterias.getModel();
+        lotes.setRowCount(0);
+        materias.setRowCount(0);
+        btnConfirmar.setEnabled(plan != null && !plan.estaVacio());
+        if(plan == null) {
+            return;
+        }
+        
+        for(LoteDeHorneado lote : plan.getLotes()) {
+            String pedidos = lote.getNumerosPedido().stream()
+                                 .map(String::valueOf)
+                                 .collect(Collectors.joining(", "));
+            Object[] data = {lote.getProducto().getNombre(), lote.getCantidad(), pedidos};
+            lotes.addRow(data);
+        }
+        for(LineaDePedidoDeHorno linea : plan.getDemanda()) {
+            Object[] data = {linea.getProductoPedido().getNombre(), linea.getCantidad(), 
+                             linea.getProductoPedido().getExistencias()};
+            materias.addRow(data);
+        }
+    }
+
+    /**
+     * Muestra el mensaje de que no hay pedidos que planificar.
+     */
+    public void mostrarMensajeSinPedidos() {
+        labelErrores.setText("No hay pedidos pendientes");
+        labelErrores.setForeground(Color.red);
+        labelErrores.setVisible(true);
+    }
+    
+    /**
+     * Muestra las materias que faltan para hornear todo el plan.
+     * @param faltantes Materias que faltan con la cantidad que falta
+     */
+    public void mostrarMensajeFaltanMaterias(List<LineaDePedidoDeHorno> faltantes) {
+        String materias = faltantes.stream()
+                                   .map(l -> l.getProductoPedido().getNombre() + " (" + l.getCantidad() + ")")
+                                   .collect(Collectors.joining(", "));
+        labelErrores.setText("Faltan materias: " + materias);
+        labelErrores.setForeground(Color.red);
+        labelErrores.setVisible(true);
+    }
+
+    /**
+     * Muestra un mensaje de error.
+     * @param mensaje Mensaje
+     */
+    public void mostrarMensajeError(String mensaje) {
+        labelErrores.setText(mensaje);
+        labelErrores.setForeground(Color.red);
+        labelErrores.setVisible(true);
+    }
+    
+    /**
+     * Muestra mensaje de éxito tras preparar los pedidos.
+     * @param numPedidos Número de pedidos preparados
+     */
+    public void mostrarMensajeExito(int numPedidos) {
+        labelErrores.setText(numPedidos + " pedidos pasados a preparando");
+        labelErrores.setForeground(Color.green);
+        labelErrores.setVisible(true);
+    }
+    
+}
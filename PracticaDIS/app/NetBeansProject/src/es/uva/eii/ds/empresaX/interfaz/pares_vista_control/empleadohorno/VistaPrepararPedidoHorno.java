@@ -3,12 +3,9 @@ package es.uva.eii.ds.empresaX.interfaz.pares_vista_control.empleadohorno;
 
 import es.uva.eii.ds.empresaX.negocio.modelos.LineaDePedidoDeHorno;
 import es.uva.eii.ds.empresaX.negocio.modelos.PedidoDeHorno;
-import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
 import java.awt.Color;
 import java.util.ArrayList;
 import java.util.Vector;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import javax.swing.ListSelectionModel;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
@@ -200,11 +197,7 @@ public class VistaPrepararPedidoHorno extends javax.swing.JFrame {
     }//GEN-LAST:event_btnAtrasActionPerformed
 
     private void jbuttonConfirmarActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jbuttonConfirmarActionPerformed
-        try {
-            controlador.procesaPedidoConfirmado();
-        } catch (MessageException ex) {
-            Logger.getLogger(VistaPrepararPedidoHorno.class.getName()).log(Level.SEVERE, null, ex);
-        }
+        controlador.procesaPedidoConfirmado();
     }//GEN-LAST:event_jbuttonConfirmarActionPerformed
 
     private void btnAtras1ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnAtras1ActionPerformed
@@ -1,12 +1,16 @@
 package es.uva.eii.ds.empresaX.interfaz.pares_vista_control.encargado;
 
+import es.uva.eii.ds.empresaX.interfaz.EjecutorCasosDeUso;
 import es.uva.eii.ds.empresaX.interfaz.GestorUI;
 import es.uva.eii.ds.empresaX.negocio.controladoresCasoUso.ControladorCUConsultarFacturas;
-import es.uva.eii.ds.empresaX.negocio.modelos.Factura;
-import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import es.uva.eii.ds.empresaX.negocio.modelos.ColumnaFacturas;
+import es.uva.eii.ds.empresaX.negocio.modelos.ConsultaFacturas;
+import es.uva.eii.ds.empresaX.negocio.modelos.Proveedor;
 import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 /**
@@ -20,6 +24,11 @@ public class CtrlVistaConsultarFacturas {
     
     private final VistaConsultarFacturas vista;
     
+    // Colas del ejecutor: la consulta y sus páginas van en orden
+    private static final String COLA_FACTURAS = "facturas";
+    private static final String COLA_PROVEEDORES = "proveedores";
+    private static final String COLA_ANIOS = "anios";
+    
     /**
      * Inicializa el controlador.
      * @param v Vista que controla
@@ -30,6 +39,11 @@ public class CtrlVistaConsultarFacturas {
         vista.deshabilitaBotonConsultar();
         // Centra en la pantalla
         vista.setLocationRelativeTo(null);
+        // Carga los proveedores para sugerirlos al escribir
+        EjecutorCasosDeUso.ejecutar(COLA_PROVEEDORES, () -> {
+            ControladorCUConsultarFacturas.recargarProveedores();
+            return null;
+        }, null, null);
     }
     
     /**
@@ -37,18 +51,18 @@ public class CtrlVistaConsultarFacturas {
      * y el más alto.
      */
     public void cargaAnios() {
-        // Consulta en la BD el año más bajo y el más alto
-        int minAnio = ControladorCUConsultarFacturas.getMinAnioFacturas();
-        int maxAnio = ControladorCUConsultarFacturas.getMaxAnioFacturas();
-        
-        // Obtiene los años entre medias y los mete en un array
-        String[] anios = new String[maxAnio-minAnio+1];
-        for(int i = minAnio; i <= maxAnio; i++) {
-            anios[i-minAnio] = Integer.toString(i);
-        }
-        
-        // Se los manda a la vista
-        vista.cambiaAnios(anios);
+        EjecutorCasosDeUso.ejecutar(COLA_ANIOS, () -> {
+            // Consulta en la BD el año más bajo y el más alto
+            int minAnio = ControladorCUConsultarFacturas.getMinAnioFacturas();
+            int maxAnio = ControladorCUConsultarFacturas.getMaxAnioFacturas();
+
+            // Obtiene los años entre medias y los mete en un array
+            String[] anios = new String[maxAnio-minAnio+1];
+            for(int i = minAnio; i <= maxAnio; i++) {
+                anios[i-minAnio] = Integer.toString(i);
+            }
+            return anios;
+        }, vista::cambiaAnios, null); // Se los manda a la vista
     }
     
     /**
@@ -91,6 +105,7 @@ public class CtrlVistaConsultarFacturas {
         if(vista.estaMarcadaCualquier()) {
             // Marcada -> inhabilita la entrada de un proveedor
             vista.inhabilitaProveedor();
+            vista.ocultaSugerenciasProveedor();
             vista.clearProveedor(); // Borra cualquier contenido
             vista.habilitaBotonConsultar();
         } else {
@@ -105,6 +120,7 @@ public class CtrlVistaConsultarFacturas {
      * Procesa el evento de click en el botón de generación de la consulta.
      */
     public void procesaClickConsultar() {
+        vista.ocultaSugerenciasProveedor();
         vista.ocultaErrorFechas();
         vista.ocultaErrorProveedor();
         vista.limpiaLista();
@@ -122,11 +138,9 @@ public class CtrlVistaConsultarFacturas {
             fechaI = LocalDate.of(currentYear, 1, 1);    // Primer día del año
             fechaF = LocalDate.of(currentYear, 12, 31);  // Último día del año
         } else if(todas) {
-            // Opción de todas las facturas
-            int anioMin = ControladorCUConsultarFacturas.getMinAnioFacturas();
-            int anioMax = ControladorCUConsultarFacturas.getMaxAnioFacturas();
-            fechaI = LocalDate.of(anioMin, 1, 1);
-            fechaF = LocalDate.of(anioMax, 12, 31);
+            // Opción de todas las facturas: sin filtro de fechas
+            fechaI = null;
+            fechaF = null;
         } else {
             // Obtiene las fechas de la vista y comprueba que son válidas
             try {
@@ -163,28 +177,70 @@ public class CtrlVistaConsultarFacturas {
                 vista.muestraErrorProveedor("Introduce un proveedor");
                 return;
             }
-            
-            // Comprueba que existe el proveedor
-            try {
-                if(!ControladorCUConsultarFacturas.existeProveedor(proveedor)) {
-                    vista.muestraErrorProveedor("Proveedor no existente");
-                    return;
-                }
-            } catch (MessageException e) {
-                vista.muestraErrorProveedor("Error inesperado");
-                System.err.println(e.getMessage());
-                return;
-            }
         }
         
-        // Finalmente le pasa los datos al controlador del CU y obtiene las facturas
-        ArrayList<Factura> facturasPendientes = 
-                ControladorCUConsultarFacturas.getInstanciaSingleton().
-                        obtenerFacturasPendientes(fechaI, fechaF, proveedor);
-        
+        // Finalmente le pasa los datos al controlador del CU, que comprueba el
+        // proveedor y obtiene las facturas a la vez. Deja obsoleta cualquier
+        // consulta anterior que no haya terminado.
+        final LocalDate inicio = fechaI;
+        final LocalDate fin = fechaF;
+        final String buscado = proveedor;
+        EjecutorCasosDeUso.sustituir(COLA_FACTURAS, () -> ControladorCUConsultarFacturas.getInstanciaSingleton().
+                            consultarFacturasPendientes(inicio, fin, buscado),
+                this::muestraConsulta,
+                e -> {
+                    vista.muestraErrorProveedor("Error inesperado");
+                    Logger.getLogger(CtrlVistaConsultarFacturas.class.getName()).log(Level.SEVERE, "Error al consultar las facturas", e);
+                });
+    }
+    
+    /**
+     * Muestra el resultado de una consulta de facturas.
+     * @param consulta Resultado
+     */
+    private void muestraConsulta(ConsultaFacturas consulta) {
+        if(!consulta.isProveedorEncontrado()) {
+            vista.muestraErrorProveedor("Proveedor no existente");
+            return;
+        }
         
-        // Le manda a la vista mostrar las facturas
-        vista.muestraFacturasPendientes(facturasPendientes);
+        // Le manda a la vista mostrar las facturas (la primera página)
+        vista.muestraFacturasPendientes(consulta.getFacturas(), consulta.hayMas());
+    }
+    
+    /**
+     * Procesa la llegada al final de las facturas cargadas: añade la
+     * siguiente página, si la hay.
+     */
+    public void procesaFinLista() {
+        ControladorCUConsultarFacturas cu = ControladorCUConsultarFacturas.getInstanciaSingleton();
+        // Las tareas de la cola van de una en una, así que hayMasFacturas se
+        // refiere a esta página
+        EjecutorCasosDeUso.ejecutar(COLA_FACTURAS, cu::siguientePaginaFacturas,
+                pagina -> vista.anadeFacturasPendientes(pagina, cu.hayMasFacturas()),
+                e -> {
+                    Logger.getLogger(CtrlVistaConsultarFacturas.class.getName()).log(Level.WARNING, "No se pudo cargar la siguiente página de facturas", e);
+                    vista.anadeFacturasPendientes(new ArrayList<>(), false);
+                });
+    }
+    
+    /**
+     * Procesa el click en la cabecera de una columna: ordena las facturas por
+     * ella (o invierte el orden si ya se ordenaban por ella). La BD devuelve
+     * la primera página en ese orden y las siguientes se cargan igual que
+     * antes; si no se puede consultar se dejan como están.
+     * @param columna Columna pulsada (en el orden de las cabeceras)
+     */
+    public void procesaClickColumna(int columna) {
+        ControladorCUConsultarFacturas cu = ControladorCUConsultarFacturas.getInstanciaSingleton();
+        boolean ascendente = columna != vista.getColumnaOrden() || !vista.isOrdenAscendente();
+        // Las columnas de ColumnaFacturas siguen el orden de las cabeceras.
+        // Deja obsoletas las páginas pedidas en el orden anterior.
+        ColumnaFacturas orden = ColumnaFacturas.values()[columna];
+        EjecutorCasosDeUso.sustituir(COLA_FACTURAS, () -> cu.ordenarFacturas(orden, ascendente),
+                pagina -> vista.muestraFacturasOrdenadas(pagina, cu.hayMasFacturas(), columna, ascendente),
+                e -> Logger.getLogger(CtrlVistaConsultarFacturas.class.getName())
+                        .log(Level.WARNING, "No se pudieron ordenar las facturas", e));
     }
     
     
@@ -218,6 +274,30 @@ public class CtrlVistaConsultarFacturas {
         } else {
             vista.habilitaBotonConsultar();
         }
+        
+        // Sugiere proveedores para lo que lleva escrito
+        String escrito = vista.getProveedor().trim();
+        ArrayList<String> nombres = new ArrayList<>();
+        for(Proveedor p : ControladorCUConsultarFacturas.getSugerenciasProveedor(escrito)) {
+            nombres.add(p.getNombre());
+        }
+        if(nombres.size() == 1 && nombres.get(0).equalsIgnoreCase(escrito)) {
+            // Ya está escrito entero
+            nombres.clear();
+        }
+        vista.muestraSugerenciasProveedor(nombres);
+    }
+    
+    /**
+     * Procesa la elección de uno de los proveedores sugeridos.
+     * @param nombre Nombre del proveedor elegido
+     */
+    public void procesaSugerenciaElegida(String nombre) {
+        vista.setProveedor(nombre);
+        vista.ocultaSugerenciasProveedor();
+        vista.ocultaErrorProveedor();
+        vista.habilitaBotonConsultar();
+        vista.focusProveedor(false);
     }
     
     /**
@@ -0,0 +1,143 @@
+package es.uva.eii.ds.empresaX.interfaz.pares_vista_control.encargado;
+
+import es.uva.eii.ds.empresaX.negocio.modelos.Factura;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Modelo de la tabla de facturas pendientes.
+ *
+ * Solo guarda las facturas (la tabla crea los componentes de las filas
+ * visibles al pintarlas) y se va llenando por páginas: cuando la tabla pide
+ * una fila cercana al final de las cargadas y quedan más, avisa para que se
+ * cargue la siguiente. La ordenación por columna la hace la BD: al cambiarla
+ * se vuelve a cargar la primera página en ese orden y las siguientes lo
+ * siguen, así que aquí solo se recuerda para marcar la cabecera.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+class ModeloTablaFacturas extends AbstractTableModel {
+
+    static final int COL_PROVEEDOR = 0;
+    static final int COL_PEDIDO = 1;
+    static final int COL_IMPORTE = 2;
+    static final int COL_REALIZACION = 3;
+    static final int COL_EMISION = 4;
+    private static final int NUM_COLUMNAS = 5;
+
+    // Filas antes del final en las que se pide la página siguiente
+    private static final int MARGEN_CARGA = 20;
+
+    private final ArrayList<Factura> facturas;
+    private final Runnable pideMas;
+    private boolean hayMas;
+    private boolean pidiendo;
+    // Columna por la que se ordena (-1 si es el de una consulta nueva)
+    private int columnaOrden;
+    private boolean ascendente;
+
+    /**
+     * @param pideMas Se ejecuta cuando hace falta la página siguiente
+     */
+    ModeloTablaFacturas(Runnable pideMas) {
+        this.facturas = new ArrayList<>();
+        this.pideMas = pideMas;
+        this.columnaOrden = -1;
+        this.ascendente = true;
+    }
+
+    /**
+     * Sustituye las facturas por la primera página de una consulta nueva,
+     * en el orden de la BD.
+     * @param primeraPagina Facturas
+     * @param hayMas true si quedan páginas por cargar
+     */
+    void cambia(List<Factura> primeraPagina, boolean hayMas) {
+        cambia(primeraPagina, hayMas, -1, true);
+    }
+
+    /**
+     * Sustituye las facturas por la primera página en el orden de una
+     * columna.
+     * @param primeraPagina Facturas
+     * @param hayMas true si quedan páginas por cargar
+     * @param columnaOrden Columna por la que vienen ordenadas
+     * @param ascendente Sentido del orden
+     */
+    void cambia(List<Factura> primeraPagina, boolean hayMas, int columnaOrden, boolean ascendente) {
+        facturas.clear();
+        facturas.addAll(primeraPagina);
+        this.hayMas = hayMas;
+        pidiendo = false;
+        this.columnaOrden = columnaOrden;
+        this.ascendente = ascendente;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Añade la página siguiente al final (ya viene en el mismo orden).
+     * @param pagina Facturas
+     * @param hayMas true si quedan páginas por cargar
+     */
+    void anade(List<Factura> pagina, boolean hayMas) {
+        this.hayMas = hayMas;
+        pidiendo = false;
+        if(pagina.isEmpty()) {
+            return;
+        }
+
+        int primera = facturas.size();
+        facturas.addAll(pagina);
+        fireTableRowsInserted(primera, facturas.size() - 1);
+    }
+
+    int getColumnaOrden() {
+        return columnaOrden;
+    }
+
+    boolean isAscendente() {
+        return ascendente;
+    }
+
+    boolean hayMas() {
+        return hayMas;
+    }
+
+    @Override
+    public int getRowCount() {
+        return facturas.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return NUM_COLUMNAS;
+    }
+
+    @Override
+    public Object getValueAt(int fila, int columna) {
+        if(hayMas && !pidiendo && fila >= facturas.size() - MARGEN_CARGA) {
+            // Se pide fuera del pintado, que no puede cambiar las filas
+            pidiendo = true;
+            SwingUtilities.invokeLater(pideMas);
+        }
+
+        Factura factura = facturas.get(fila);
+        switch(columna) {
+            case COL_PROVEEDOR:
+                return factura.getPedido().getProveedor().getNombre();
+            case COL_PEDIDO:
+                return Long.toString(factura.getPedido().getNumeroDePedido());
+            case COL_IMPORTE:
+                return String.format("%.02f", factura.getImporte());
+            case COL_REALIZACION:
+                return factura.getPedido().getFechaDeRealizacion().toString();
+            default:
+                return factura.getFechaEmision().toString();
+        }
+    }
+
+}
@@ -2,14 +2,19 @@ package es.uva.eii.ds.empresaX.interfaz.pares_vista_control.encargado;
 
 import es.uva.eii.ds.empresaX.negocio.modelos.Factura;
 import java.awt.Color;
+import java.awt.Cursor;
 import java.awt.Font;
-import java.awt.GridBagConstraints;
 import java.awt.event.ItemEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.ArrayList;
-import javax.swing.BoxLayout;
+import java.util.List;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JLabel;
-import javax.swing.JPanel;
+import javax.swing.JMenuItem;
+import javax.swing.JPopupMenu;
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableCellRenderer;
 
 /**
  * @author Abel Herrero Gómez         (abeherr)
@@ -20,8 +25,12 @@ public class VistaConsultarFacturas extends javax.swing.JFrame {
 
     private final CtrlVistaConsultarFacturas controlador;
 
-    private JPanel fillerLista; // Panel para rellenar el final de la lista
-    private int y = 0; // Coordenada y actual del ultimo elemento de la lista
+    private ModeloTablaFacturas modeloFacturas; // Facturas mostradas
+    private JTable tablaFacturas; // Tabla de resultados (sustituye a la lista)
+    private JLabel lNoHay; // Se muestra en lugar de la tabla si no hay facturas
+    private JLabel[] cabecerasFacturas; // Cabeceras de las columnas, por orden
+    private String[] textosCabeceras; // Textos de las cabeceras sin el indicador de orden
+    private JPopupMenu sugerenciasProveedor; // Proveedores sugeridos al escribir
     
     public VistaConsultarFacturas() {
         initComponents();
@@ -484,8 +493,11 @@ public class VistaConsultarFacturas extends javax.swing.JFrame {
         ocultaErrorProveedor();
         // Pide al controlador que le cargue los años
         controlador.cargaAnios();
-        // Lista de resultados
-        configuraFillerLista();
+        // Tabla de resultados
+        configuraTablaFacturas();
+        // Sugerencias de proveedor (sin quitar el foco al input)
+        sugerenciasProveedor = new JPopupMenu();
+        sugerenciasProveedor.setFocusable(false);
     }
     
         /****************************************
@@ -690,6 +702,42 @@ public class VistaConsultarFacturas extends javax.swing.JFrame {
     }
     
     
+    /**
+     * Cambia el contenido del input de proveedor.
+     * @param proveedor Proveedor
+     */
+    public void setProveedor(String proveedor) {
+        inputProveedor.setText(proveedor);
+    }
+    
+    /**
+     * Muestra bajo el input de proveedor los nombres sugeridos.
+     * @param nombres Nombres de proveedor (vacía para no mostrar nada)
+     */
+    public void muestraSugerenciasProveedor(List<String> nombres) {
+        sugerenciasProveedor.setVisible(false);
+        sugerenciasProveedor.removeAll();
+        if(nombres.isEmpty() || !inputProveedor.isShowing()) {
+            return;
+        }
+        
+        for(String nombre : nombres) {
+            JMenuItem item = new JMenuItem(nombre);
+            item.setFont(inputProveedor.getFont());
+            item.addActionListener(evt -> controlador.procesaSugerenciaElegida(nombre));
+            sugerenciasProveedor.add(item);
+        }
+        sugerenciasProveedor.show(inputProveedor, 0, inputProveedor.getHeight());
+        inputProveedor.requestFocusInWindow();
+    }
+    
+    /**
+     * Oculta los proveedores sugeridos.
+     */
+    public void ocultaSugerenciasProveedor() {
+        sugerenciasProveedor.setVisible(false);
+    }
+    
     /**
      * Inhabilita la entrada de un proveedor.
      */
@@ -763,99 +811,117 @@ public class VistaConsultarFacturas extends javax.swing.JFrame {
          *          LISTA DE FACTURAS           *
          ****************************************/
     /**
-     * Configura el relleno de la lista de resultados, para que aparezcan alineados
-     * arriba del contenedor.
+     * Configura la tabla de resultados. Ocupa el sitio de la lista y usa como
+     * cabecera las etiquetas de encima, que ordenan al pulsarlas.
+     */
+    private void configuraTablaFacturas() {
+        modeloFacturas = new ModeloTablaFacturas(controlador::procesaFinLista);
+        tablaFacturas = new JTable(modeloFacturas);
+        tablaFacturas.setTableHeader(null);
+        tablaFacturas.setFont(new Font("Ebrima", Font.BOLD, 16)); // NOI18N
+        tablaFacturas.setRowHeight(25);
+        tablaFacturas.setShowGrid(false);
+        tablaFacturas.setFillsViewportHeight(true);
+        tablaFacturas.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        DefaultTableCellRenderer centrado = new DefaultTableCellRenderer();
+        centrado.setHorizontalAlignment(javax.swing.SwingConstants.CENTER);
+        for(int i = 0; i < modeloFacturas.getColumnCount(); i++) {
+            tablaFacturas.getColumnModel().getColumn(i).setPreferredWidth(180);
+            tablaFacturas.getColumnModel().getColumn(i).setCellRenderer(centrado);
+        }
+        spResultados.setViewportView(tablaFacturas);
+        
+        lNoHay = new JLabel();
+        lNoHay.setFont(new Font("Ebrima", Font.BOLD, 16)); // NOI18N
+        lNoHay.setHorizontalAlignment(javax.swing.SwingConstants.CENTER);
+        lNoHay.setText("No hay facturas para ese filtro");
+        
+        cabecerasFacturas = new JLabel[] {lNombre, lNumero, lImporte, lRealizacion, lEmision};
+        textosCabeceras = new String[cabecerasFacturas.length];
+        for(int i = 0; i < cabecerasFacturas.length; i++) {
+            final int columna = i;
+            textosCabeceras[i] = cabecerasFacturas[i].getText();
+            cabecerasFacturas[i].setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+            cabecerasFacturas[i].addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    controlador.procesaClickColumna(columna);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Muestra la primera página de facturas pendientes de una consulta.
+     * @param pendientes Facturas a mostrar
+     * @param hayMas true si quedan más facturas por cargar
+     */
+    public void muestraFacturasPendientes(List<Factura> pendientes, boolean hayMas) {
+        modeloFacturas.cambia(pendientes, hayMas);
+        actualizaCabeceras();
+        spResultados.setViewportView(pendientes.isEmpty() ? lNoHay : tablaFacturas);
+        spResultados.getVerticalScrollBar().setValue(0);
+    }
+    
+    /**
+     * Añade facturas pendientes a la tabla (la siguiente página).
+     * @param pendientes Facturas a añadir
+     * @param hayMas true si quedan más facturas por cargar
      */
-    private void configuraFillerLista() {
-        fillerLista = new JPanel();
-        fillerLista.setOpaque(false);
-        GridBagConstraints gbc = new GridBagConstraints();
-        gbc.weighty = 1;
-        gbc.gridy = y;
-        listaResultados.add(fillerLista, gbc);
+    public void anadeFacturasPendientes(List<Factura> pendientes, boolean hayMas) {
+        modeloFacturas.anade(pendientes, hayMas);
+        actualizaCabeceras();
     }
     
     /**
-     * Actualiza la lista de facturas pendientes con las especificadas.
+     * Sustituye las facturas por la primera página en el orden de una
+     * columna y lo indica en su cabecera.
      * @param pendientes Facturas a mostrar
+     * @param hayMas true si quedan más facturas por cargar
+     * @param columna Columna (en el orden de las cabeceras)
+     * @param ascendente Sentido del orden
      */
-    public void muestraFacturasPendientes(ArrayList<Factura> pendientes) {
-        limpiaLista();
-        
-        if(pendientes.size() > 0) {
-            GridBagConstraints gbc;
-            for(Factura factura : pendientes) {
-                // Crea y configura la fila
-                JPanel nFila = new JPanel();
-                nFila.setLayout(new BoxLayout(nFila, BoxLayout.LINE_AXIS));
-                // Nombre de proveedor
-                JLabel lNombreProveedor = new JLabel();
-                configuraCasillaLista(lNombreProveedor, factura.getPedido().getProveedor().getNombre());
-                nFila.add(lNombreProveedor);
-                // Número de pedido
-                JLabel lNumeroPedido = new JLabel();
-                configuraCasillaLista(lNumeroPedido, Long.toString(factura.getPedido().getNumeroDePedido()));
-                nFila.add(lNumeroPedido);
-                // Importe de factura
-                JLabel lImporteFactura = new JLabel();
-                configuraCasillaLista(lImporteFactura, String.format("%.02f", factura.getImporte()));
-                nFila.add(lImporteFactura);
-                // Fecha de pedido
-                JLabel lFechaPedido = new JLabel();
-                configuraCasillaLista(lFechaPedido, factura.getPedido().getFechaDeRealizacion().toString());
-                nFila.add(lFechaPedido);
-                // Fecha de emisión
-                JLabel lFechaEmision = new JLabel();
-                configuraCasillaLista(lFechaEmision, factura.getFechaEmision().toString());
-                nFila.add(lFechaEmision);
-
-                // Añade la fila
-                gbc = new GridBagConstraints();
-                gbc.gridy = y++;
-                gbc.weightx = 1;
-                gbc.fill = GridBagConstraints.HORIZONTAL;
-                gbc.gridwidth = GridBagConstraints.REMAINDER;
-                listaResultados.add(nFila, gbc);
-            }
-            
-            configuraFillerLista();
-        } else {
-            // No hay facturas
-            GridBagConstraints gbc = new GridBagConstraints();
-            gbc.gridy = 0;
-            gbc.weightx = 1;
-            gbc.weighty = 1;
-            gbc.fill = GridBagConstraints.BOTH;
-            JLabel lNoHay = new JLabel();
-            lNoHay.setFont(new Font("Ebrima", Font.BOLD, 16)); // NOI18N
-            lNoHay.setHorizontalAlignment(javax.swing.SwingConstants.CENTER);
-            lNoHay.setText("No hay facturas para ese filtro");
-            listaResultados.add(lNoHay, gbc);
-        }
-
-        // Actualiza la vista
-        revalidate();
-        repaint();
+    public void muestraFacturasOrdenadas(List<Factura> pendientes, boolean hayMas, int columna, boolean ascendente) {
+        modeloFacturas.cambia(pendientes, hayMas, columna, ascendente);
+        actualizaCabeceras();
+        spResultados.getVerticalScrollBar().setValue(0);
     }
     
     /**
-     * Configura una casilla para la lista de facturas pendientes.
-     * @param casilla Casilla a configurar
+     * @return Columna por la que se ordenan las facturas (-1 si es el orden
+     *         de la consulta)
      */
-    private void configuraCasillaLista(JLabel casilla, String texto) {
-        casilla.setFont(new Font("Ebrima", Font.BOLD, 16)); // NOI18N
-        casilla.setHorizontalAlignment(javax.swing.SwingConstants.CENTER);
-        casilla.setText(texto);
-        casilla.setMaximumSize(new java.awt.Dimension(180, 25));
-        casilla.setMinimumSize(new java.awt.Dimension(180, 25));
-        casilla.setPreferredSize(new java.awt.Dimension(180, 25));
+    public int getColumnaOrden() {
+        return modeloFacturas.getColumnaOrden();
+    }
+    
+    /**
+     * @return true si las facturas se ordenan en sentido ascendente
+     */
+    public boolean isOrdenAscendente() {
+        return modeloFacturas.isAscendente();
+    }
+    
+    /**
+     * Marca en las cabeceras la columna por la que se ordena y el sentido.
+     */
+    private void actualizaCabeceras() {
+        for(int i = 0; i < cabecerasFacturas.length; i++) {
+            String texto = textosCabeceras[i];
+            if(i == modeloFacturas.getColumnaOrden()) {
+                texto += modeloFacturas.isAscendente() ? " \u25B2" : " \u25BC";
+            }
+            cabecerasFacturas[i].setText(texto);
+        }
     }
     
     /**
      * Borra todos los elementos de la lista.
      */
     public void limpiaLista() {
-        listaResultados.removeAll();
+        modeloFacturas.cambia(new ArrayList<>(), false);
+        actualizaCabeceras();
+        spResultados.setViewportView(tablaFacturas);
     }
     
     
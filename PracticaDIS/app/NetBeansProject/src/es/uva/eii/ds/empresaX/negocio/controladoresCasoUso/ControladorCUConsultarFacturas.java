@@ -1,18 +1,40 @@
 package es.uva.eii.ds.empresaX.negocio.controladoresCasoUso;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.negocio.modelos.ColumnaFacturas;
+import es.uva.eii.ds.empresaX.negocio.modelos.ConsultaFacturas;
 import es.uva.eii.ds.empresaX.negocio.modelos.Factura;
+import es.uva.eii.ds.empresaX.negocio.modelos.Proveedor;
 import es.uva.eii.ds.empresaX.persistencia.FachadaPersistenciaEncargado;
-import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
 import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.CursorFacturas;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosConsultaFacturas;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosFactura;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosPaginaFacturas;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosProveedor;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ControladorCUConsultarFacturas {
     
+    // Máximo de proveedores sugeridos mientras se escribe
+    private static final int MAX_SUGERENCIAS = 8;
+    // Proveedores para sugerir y comprobar sin acceder a la BD
+    private static final DirectorioProveedores directorio = new DirectorioProveedores();
+    // Facturas que se leen de la BD cada vez
+    private static final int TAM_PAGINA_FACTURAS = 50;
+    
+    // Consulta en curso, para pedir las páginas siguientes
+    private LocalDate fechaInicio;
+    private LocalDate fechaFin;
+    private String proveedor;
+    private boolean hayConsulta;
+    // Orden de las páginas (la primera de una consulta, por fecha de emisión)
+    private ColumnaFacturas columnaOrden = ColumnaFacturas.Emision;
+    private boolean ascendente = true;
+    private CursorFacturas siguiente;
+    
     /**
      * Devuelve la lista de facturas pendientes para los datos introducidos.
      * @param fechaInicio Fecha de inicio
@@ -25,30 +47,102 @@ public class ControladorCUConsultarFacturas {
                                                                  String proveedor) {
         ArrayList<Factura> pendientes = new ArrayList<>();
         
-        // Obtiene el JSON de la BD
+        // Obtiene las facturas de la BD
         try {
-            // Genera el JSON de los parámetros
-            JsonObject filtros = new JsonObject();
-            filtros.addProperty(JSONHelper.JSON_FECHA_INICIO, fechaInicio.toString());
-            filtros.addProperty(JSONHelper.JSON_FECHA_FIN, fechaFin.toString());
-            filtros.addProperty(JSONHelper.JSON_PROVEEDOR, proveedor);
-            String jsonFacturas = FachadaPersistenciaEncargado.
-                                getFacturasPendientesDePago(filtros.toString());
-        
-            // Genera los objetos
-            JsonObject jo = new Gson().fromJson(jsonFacturas, JsonObject.class);
-            JsonArray facturasPendientes = jo.getAsJsonArray(JSONHelper.JSON_FACTURAS_PENDIENTES);
-            for(JsonElement factura : facturasPendientes) {
-                pendientes.add(new Factura(factura.toString()));
+            for(DatosFactura factura : FachadaPersistenciaEncargado.
+                                getFacturasPendientesDePago(fechaInicio, fechaFin, proveedor)) {
+                pendientes.add(new Factura(factura));
             }
         } catch (MessageException e) {
-            System.err.println("[!] Error al obtener facturas pendientes:\n\t" + e.getMessage());
+            Logger.getLogger(ControladorCUConsultarFacturas.class.getName()).log(Level.WARNING, "Error al obtener facturas pendientes", e);
             // Devuelve la lista de pendientes vacía
         }
         
         return pendientes;
     }
     
+    /**
+     * Consulta la primera página de facturas pendientes para los datos
+     * introducidos, comprobando a la vez que existe el proveedor, con un solo
+     * acceso a la BD. Las siguientes se piden con siguientePaginaFacturas.
+     * @param fechaInicio Fecha de inicio (null junto con fechaFin para cualquier fecha)
+     * @param fechaFin Fecha de fin
+     * @param proveedor Proveedor (vacío para cualquiera)
+     * @return Primera página, si existe el proveedor y años de las facturas
+     * @throws MessageException Si no se pudo consultar
+     */
+    public synchronized ConsultaFacturas consultarFacturasPendientes(LocalDate fechaInicio, LocalDate fechaFin, 
+                                                                     String proveedor) throws MessageException {
+        DatosConsultaFacturas datos = FachadaPersistenciaEncargado.
+                        consultarFacturasPendientes(fechaInicio, fechaFin, proveedor, TAM_PAGINA_FACTURAS);
+        this.fechaInicio = fechaInicio;
+        this.fechaFin = fechaFin;
+        this.proveedor = proveedor;
+        hayConsulta = datos.isProveedorEncontrado();
+        columnaOrden = ColumnaFacturas.Emision;
+        ascendente = true;
+        siguiente = datos.getSiguiente();
+        
+        return new ConsultaFacturas(datos);
+    }
+    
+    /**
+     * Devuelve la siguiente página de la última consulta de facturas.
+     * @return Facturas (vacía si ya no quedan)
+     * @throws MessageException Si no se pudo consultar
+     */
+    public synchronized ArrayList<Factura> siguientePaginaFacturas() throws MessageException {
+        ArrayList<Factura> facturas = new ArrayList<>();
+        if(siguiente == null) {
+            return facturas;
+        }
+        
+        DatosPaginaFacturas pagina = FachadaPersistenciaEncargado.
+                        getPaginaFacturasPendientes(fechaInicio, fechaFin, proveedor, columnaOrden, ascendente,
+                                                    siguiente, TAM_PAGINA_FACTURAS);
+        for(DatosFactura factura : pagina.getFacturas()) {
+            facturas.add(new Factura(factura));
+        }
+        siguiente = pagina.getSiguiente();
+        
+        return facturas;
+    }
+    
+    /**
+     * Vuelve a consultar la primera página de la última consulta de facturas
+     * en otro orden. La BD ordena y pagina, así que las páginas siguientes
+     * siguen el mismo orden.
+     * @param columna Columna por la que se ordena
+     * @param ascendente Sentido del orden
+     * @return Primera página en ese orden (vacía si no hay consulta)
+     * @throws MessageException Si no se pudo consultar
+     */
+    public synchronized ArrayList<Factura> ordenarFacturas(ColumnaFacturas columna, boolean ascendente) throws MessageException {
+        ArrayList<Factura> facturas = new ArrayList<>();
+        if(!hayConsulta) {
+            return facturas;
+        }
+        
+        DatosPaginaFacturas pagina = FachadaPersistenciaEncargado.
+                        getPaginaFacturasPendientes(fechaInicio, fechaFin, proveedor, columna, ascendente,
+                                                    null, TAM_PAGINA_FACTURAS);
+        for(DatosFactura factura : pagina.getFacturas()) {
+            facturas.add(new Factura(factura));
+        }
+        this.columnaOrden = columna;
+        this.ascendente = ascendente;
+        siguiente = pagina.getSiguiente();
+        
+        return facturas;
+    }
+    
+    /**
+     * @return true si la última consulta de facturas tiene más páginas
+     */
+    public synchronized boolean hayMasFacturas() {
+        return siguiente != null;
+    }
+    
     /**
      * Comprueba si existe un proveedor a partir de su nombre.
      * @param proveedor Nombre del proveedor
@@ -56,9 +150,45 @@ public class ControladorCUConsultarFacturas {
      * @throws es.uva.eii.ds.empresaX.servicioscomunes.MessageException
      */
     public static boolean existeProveedor(String proveedor) throws MessageException {
+        if(directorio.contiene(proveedor)) {
+            return true;
+        }
+        // Puede ser nuevo desde la última carga del directorio
         return FachadaPersistenciaEncargado.existeProveedor(proveedor);
     }
     
+    /**
+     * Devuelve los proveedores cuyo nombre (alguna de sus palabras) o CIF
+     * empieza por el texto introducido. No accede a la BD (se llama al
+     * escribir): mientras no se haya cargado el directorio con
+     * recargarProveedores no sugiere ninguno.
+     * @param prefijo Texto introducido
+     * @return Proveedores sugeridos, ordenados por nombre
+     */
+    public static ArrayList<Proveedor> getSugerenciasProveedor(String prefijo) {
+        if(!directorio.estaCargado()) {
+            return new ArrayList<>();
+        }
+        
+        return directorio.buscarPorPrefijo(prefijo, MAX_SUGERENCIAS);
+    }
+    
+    /**
+     * Vuelve a cargar el directorio de proveedores desde la BD.
+     */
+    public static void recargarProveedores() {
+        try {
+            ArrayList<Proveedor> proveedores = new ArrayList<>();
+            for(DatosProveedor datos : FachadaPersistenciaEncargado.getProveedores()) {
+                proveedores.add(new Proveedor(datos));
+            }
+            directorio.cargar(proveedores);
+        } catch(MessageException e) {
+            // Sin sugerencias hasta el siguiente intento
+            Logger.getLogger(ControladorCUConsultarFacturas.class.getName()).log(Level.WARNING, "No se pudo cargar el directorio de proveedores", e);
+        }
+    }
+    
     /**
      * Devuelve el año de la primera factura.
      *
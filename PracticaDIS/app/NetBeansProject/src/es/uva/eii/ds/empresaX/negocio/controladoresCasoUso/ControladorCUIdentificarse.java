@@ -1,14 +1,15 @@
 package es.uva.eii.ds.empresaX.negocio.controladoresCasoUso;
 
-import com.google.gson.JsonObject;
 import es.uva.eii.ds.empresaX.negocio.modelos.Empleado;
 import es.uva.eii.ds.empresaX.negocio.modelos.Sesion;
 import es.uva.eii.ds.empresaX.persistencia.FachadaPersistenciaEmpleado;
-import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
 import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosEmpleado;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ControladorCUIdentificarse {
     
@@ -21,25 +22,33 @@ public class ControladorCUIdentificarse {
      * @throws es.uva.eii.ds.empresaX.servicioscomunes.MessageException Si ha ocurrido un error
      */
     public void identificarEmpleado(String dni, String password) throws MessageException {
-        JsonObject jCreds = new JsonObject();
-        
         try {
-            jCreds.addProperty(JSONHelper.JSON_DNI, dni);
-            jCreds.addProperty(JSONHelper.JSON_PASSWORD, obtenerSHA256(password));
-            String resultado = FachadaPersistenciaEmpleado.consultaEmpleadoPorLoginYPassword(jCreds.toString());
+            DatosEmpleado datos = FachadaPersistenciaEmpleado.consultaEmpleadoPorLoginYPassword(dni, obtenerSHA256(password));
             
             // Si no ha saltado excepción, login correcto
-            Empleado e = new Empleado(resultado);
+            Empleado e = new Empleado(datos);
             if(!e.estaActivo()) {
                 throw new MessageException("Empleado inactivo");
             }
             
-            Sesion.getInstancia().setEmpleado(new Empleado(resultado));
+            Sesion.getInstancia().setEmpleado(e);
         } catch (NoSuchAlgorithmException ex) {
             throw new MessageException("Error al generar el SHA-2 de la contraseña.");
         }
     }
     
+    /**
+     * Carga los datos de referencia (tablas de tipos) antes del primer login.
+     */
+    public static void precargarDatosReferencia() {
+        try {
+            FachadaPersistenciaEmpleado.precargarTiposBD();
+        } catch(MessageException e) {
+            // Se cargarán en el primer login
+            Logger.getLogger(ControladorCUIdentificarse.class.getName()).log(Level.WARNING, "No se pudieron precargar las tablas de tipos", e);
+        }
+    }
+    
     /**
      * Devuelve el hash SHA-256 para una cadena de entrada.
      * @param str Entrada
@@ -1,19 +1,20 @@
 package es.uva.eii.ds.empresaX.negocio.controladoresCasoUso;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import es.uva.eii.ds.empresaX.negocio.modelos.Empleado;
 import es.uva.eii.ds.empresaX.negocio.modelos.LineaDePedidoDeHorno;
 import es.uva.eii.ds.empresaX.negocio.modelos.PedidoDeHorno;
+import es.uva.eii.ds.empresaX.negocio.modelos.PlanHorneado;
 import es.uva.eii.ds.empresaX.negocio.modelos.Sesion;
 import es.uva.eii.ds.empresaX.persistencia.FachadaPersistenciaEmpleadoHorno;
-import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
 import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosPedidoHorno;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * @author Abel Herrero Gómez         (abeherr)
@@ -22,37 +23,41 @@ import java.util.ArrayList;
  */
 public class ControladorCUPrepararPedido {
 
-    private static ArrayList<PedidoDeHorno> listaPedidos; 
+    // Pedidos pendientes por número y por fecha deseada
+    private static final IndicePedidos pendientes = new IndicePedidos();
+    // Recetas de los productos de horno y existencias de sus materias
+    private static final MotorRecetas recetas = new MotorRecetas();
     
     /**
      * Devuelve una lista de pedidos en estado 'Registrado' con fechas de
-     * entrega deseada del día actual y el siguiente.
+     * entrega deseada del día actual y el siguiente, ordenados por fecha.
+     * El índice de pendientes se actualiza con el resultado.
      * @return Lista o null si ha ocurrido algún error
      */
     public static ArrayList<PedidoDeHorno> getListaPedidosPendientesHorno() {
-        listaPedidos = new ArrayList<>();
-        
         // Lista de pedidos de hoy y mañana
         LocalDate today = LocalDate.now();
         LocalDate tomorrow = today.plusDays(1);
         
         // Consulta la BD
-        String resultadoListaPedidos;
+        ArrayList<DatosPedidoHorno> pedidos;
         try {
-            resultadoListaPedidos = FachadaPersistenciaEmpleadoHorno.getListaPedidosPendientes(today, tomorrow);
+            pedidos = FachadaPersistenciaEmpleadoHorno.getPedidosPendientes(today, tomorrow);
         } catch(MessageException e) {
             // Error controlado
             return null;
         }
         
-        // Genera la lista de pedidos
-        JsonObject jsonResultado = new Gson().fromJson(resultadoListaPedidos, JsonObject.class);
-        JsonArray jArrayPedidos = jsonResultado.getAsJsonArray(JSONHelper.JSON_PEDIDOS_PENDIENTES);
-        for(JsonElement jPedido : jArrayPedidos) {
-            listaPedidos.add(new PedidoDeHorno(jPedido.toString()));
+        // Genera la lista de pedidos (cada empleado se construye una vez)
+        ArrayList<PedidoDeHorno> listaPedidos = new ArrayList<>(pedidos.size());
+        HashMap<String, Empleado> empleados = new HashMap<>();
+        for(DatosPedidoHorno pedido : pedidos) {
+            listaPedidos.add(new PedidoDeHorno(pedido, empleados));
         }
+        pendientes.sincroniza(listaPedidos);
+        refrescaRecetas();
         
-        return listaPedidos;
+        return pendientes.getOrdenados();
     }
     
     
@@ -62,16 +67,7 @@ public class ControladorCUPrepararPedido {
      * @return Pedido (null si no existe)
      */
     public static PedidoDeHorno getPedido(int numeroPedido) {
-        PedidoDeHorno res = null;
-        
-        // Busca el pedido y se lo devuelve
-        for(int i = 0; res == null && i < listaPedidos.size(); i++) {
-            if(listaPedidos.get(i).getNumeroDePedido() == numeroPedido) {
-                res = listaPedidos.get(i);
-            }
-        }
-        
-        return res;
+        return pendientes.get(numeroPedido);
     }
     
     
@@ -82,23 +78,85 @@ public class ControladorCUPrepararPedido {
      */
     public static boolean prepararPedido(PedidoDeHorno pedido) throws MessageException {
         Empleado empleado = Sesion.getInstancia().getEmpleado();
-        // new Operacion
-        // get JSON
-        return FachadaPersistenciaEmpleadoHorno.cambiarEstadoPedidoAPreparando(
+        boolean preparado = FachadaPersistenciaEmpleadoHorno.cambiarEstadoPedidoAPreparando(
                         LocalDateTime.now(), empleado.getDni(), pedido.getNumeroDePedido());
+        if(preparado) {
+            // Ya no está pendiente
+            pendientes.quita(pedido.getNumeroDePedido());
+        }
+        
+        return preparado;
+    }
+    
+    /**
+     * Marca varios pedidos como preparando en una sola transacción. Si alguno
+     * ya no estaba registrado no se prepara ninguno.
+     * @param pedidos Pedidos a preparar
+     * @throws MessageException Si no se pudieron preparar
+     */
+    public static void prepararPedidos(Collection<PedidoDeHorno> pedidos) throws MessageException {
+        Empleado empleado = Sesion.getInstancia().getEmpleado();
+        ArrayList<Integer> numeros = new ArrayList<>(pedidos.size());
+        for(PedidoDeHorno pedido : pedidos) {
+            numeros.add(pedido.getNumeroDePedido());
+        }
+        
+        FachadaPersistenciaEmpleadoHorno.cambiarEstadoPedidosAPreparando(LocalDateTime.now(), empleado.getDni(), numeros);
+        for(int numero : numeros) {
+            pendientes.quita(numero);
+        }
+    }
+    
+    /**
+     * Planifica el horneado de todos los pedidos pendientes de hoy y mañana:
+     * agrupa sus líneas por producto y suma la materia que consumen.
+     * @return Plan (null si ha ocurrido algún error al consultar los pedidos
+     *         o no se han podido cargar las recetas)
+     */
+    public static PlanHorneado getPlanHorneado() {
+        ArrayList<PedidoDeHorno> pedidos = getListaPedidosPendientesHorno();
+        if(pedidos == null || !recetas.estaCargado()) {
+            return null;
+        }
+        
+        ArrayList<LineaDePedidoDeHorno> lineas = new ArrayList<>();
+        for(PedidoDeHorno pedido : pedidos) {
+            lineas.addAll(pedido.getLineas());
+        }
+        
+        return new PlanHorneado(pedidos, recetas.getDemanda(lineas), recetas.getFaltantes(lineas));
     }
     
     /**
      * Devuelve las materias que faltan para poder generar un pedido con sus cantidades.
      * @param pedido Pedido
-     * @return Lista de materias que faltan (vacía si se puede generar)
+     * @return Lista de materias que faltan (vacía si se puede generar) o null
+     *         si no se han podido cargar las recetas
      */
     public static ArrayList<LineaDePedidoDeHorno> getMateriasQueFaltan(PedidoDeHorno pedido) {
-        ArrayList<LineaDePedidoDeHorno> faltantes = new ArrayList<>();
-        
-        
+        if(!recetas.estaCargado()) {
+            // Sin recetas no se sabe qué falta: no es lo mismo que no falte nada
+            return null;
+        }
         
-        return faltantes;
+        return recetas.getFaltantes(pedido.getLineas());
+    }
+    
+    /**
+     * Carga las recetas si aún no lo están y refresca las existencias de sus
+     * materias, con una consulta por lote de materias.
+     */
+    private static void refrescaRecetas() {
+        try {
+            if(!recetas.estaCargado()) {
+                recetas.cargar(FachadaPersistenciaEmpleadoHorno.getRecetasBD());
+            } else {
+                recetas.actualizarExistencias(FachadaPersistenciaEmpleadoHorno.getExistenciasBD(recetas.getCodigosMaterias()));
+            }
+        } catch(MessageException e) {
+            // Se usan las últimas conocidas
+            Logger.getLogger(ControladorCUPrepararPedido.class.getName()).log(Level.WARNING, "No se pudieron refrescar las recetas", e);
+        }
     }
     
 }
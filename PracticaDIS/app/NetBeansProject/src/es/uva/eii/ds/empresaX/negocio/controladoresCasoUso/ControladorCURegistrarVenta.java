@@ -8,6 +8,8 @@ import es.uva.eii.ds.empresaX.negocio.modelos.Venta;
 import es.uva.eii.ds.empresaX.persistencia.FachadaPersistenciaDependiente;
 import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
 import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * @author Abel Herrero Gómez (abeherr)
@@ -16,6 +18,10 @@ import java.util.ArrayList;
  */
 public class ControladorCURegistrarVenta {
 
+    // Existencias reservadas por las ventas en curso de este terminal (solo
+    // para avisar antes de cobrar: la BD es la que impide vender de más)
+    private static final ReservasCestasTerminal reservas = new ReservasCestasTerminal();
+
     public static ProductoVendible crearProducto(JsonObject prod) {
         ProductoVendible pv = new ProductoVendible(prod.get("codigo").getAsString(),prod.get("nombre").getAsString(),prod.get("descripcion").getAsString(),prod.get("existencias").getAsInt(),prod.get("cantMin").getAsInt(),prod.get("precio").getAsDouble());
         return pv;
@@ -23,27 +29,97 @@ public class ControladorCURegistrarVenta {
 
     public static LineaDeVenta crearLineaDeVenta(String codigo,int cantidad) throws MessageException {
         JsonObject prod = FachadaPersistenciaDependiente.getProductoBD(codigo);
+        if(prod == null) {
+            // No existe el producto
+            return null;
+        }
         ProductoVendible pv = new ProductoVendible(prod.get("codigo").getAsString(),prod.get("nombre").getAsString(),prod.get("descripcion").getAsString(),prod.get("existencias").getAsInt(),prod.get("cantMin").getAsInt(),prod.get("precio").getAsDouble());
         LineaDeVenta lv = new LineaDeVenta(cantidad,pv);
         return lv;
     }
     
-    public static void registrarVenta(Venta venta,Empleado empleado) throws MessageException{
-        FachadaPersistenciaDependiente.setVentaBD(venta,empleado);
+    /**
+     * Carga el catálogo de productos en memoria para que las lecturas de 
+     * códigos en caja no accedan a la BD.
+     */
+    public static void precargarCatalogo() {
+        try {
+            FachadaPersistenciaDependiente.precargarCatalogoBD();
+        } catch(MessageException e) {
+            // Se cargarán bajo demanda
+            Logger.getLogger(ControladorCURegistrarVenta.class.getName()).log(Level.WARNING, "No se pudo precargar el catálogo", e);
+        }
     }
     
-    public static void actualizarExistencias(Venta venta) throws MessageException{
-        FachadaPersistenciaDependiente.actualizarExistenciasBD(venta);
+    /**
+     * Empieza a llevar a la BD, en segundo plano, las ventas que quedaron
+     * anotadas en el diario local por falta de conexión.
+     */
+    public static void reanudarVentasPendientes() {
+        try {
+            FachadaPersistenciaDependiente.iniciarReproduccionDiario();
+        } catch(MessageException e) {
+            Logger.getLogger(ControladorCURegistrarVenta.class.getName()).log(Level.SEVERE, "No se pudieron reanudar las ventas pendientes", e);
+        }
+    }
+    
+    /**
+     * Registra la venta y descuenta las existencias vendidas en una sola
+     * transacción, que falla si no quedan existencias suficientes. Después se
+     * liberan sus reservas.
+     * Sin conexión con la BD, o en modo diferido, la venta se anota en el
+     * diario local y se registrará después; mientras tanto sus unidades
+     * cuentan como no disponibles.
+     * Si falla por otro motivo (por ejemplo, faltan existencias) no se anota:
+     * las reservas se mantienen para poder reintentarla o abandonarla.
+     * @param venta Venta a registrar
+     * @param empleado Dependiente que la realiza
+     * @throws MessageException Si no se pudo registrar la venta
+     */
+    public static void registrarVenta(Venta venta,Empleado empleado) throws MessageException{
+        FachadaPersistenciaDependiente.confirmarVentaBD(venta,empleado);
+        reservas.liberar(venta);
     }
 
+    /**
+     * Reserva para la venta las unidades de la línea, si quedan sin reservar
+     * por las ventas en curso de este terminal. No se consulta la BD ni las
+     * cestas de otros terminales: al registrar la venta aún pueden faltar.
+     * @param venta Venta en curso
+     * @param linea Línea a añadir
+     * @return true si se han reservado, false si no hay unidades suficientes
+     */
+    public static boolean reservarLinea(Venta venta,LineaDeVenta linea) {
+        ProductoVendible pv = linea.getProducto();
+        return reservas.reservar(venta, pv.getCodigo(), linea.getCantidad(), getExistencias(pv));
+    }
+
+    /**
+     * Libera las reservas de una venta que no se va a registrar.
+     * @param venta Venta abandonada
+     */
+    public static void abandonarVenta(Venta venta) {
+        reservas.liberar(venta);
+    }
+
+    /**
+     * Devuelve las unidades del producto de la línea que no están reservadas
+     * por ninguna venta en curso de este terminal.
+     * @param venta Venta en curso
+     * @param linea Línea
+     * @return Unidades disponibles
+     */
     public static int getCantidadDisponible(Venta venta,LineaDeVenta linea) {
         ProductoVendible pv = linea.getProducto();
-        int res = pv.getExistencias();
-        for(LineaDeVenta lv : venta.getLineas()){
-            if(lv.getProducto().getCodigo().equals(pv.getCodigo()))
-                res -= lv.getCantidad();
-        }
-        return res;
+        return reservas.getDisponibles(pv.getCodigo(), getExistencias(pv));
+    }
+
+    /**
+     * Existencias del producto descontando lo vendido que aún no se ha
+     * registrado en la BD.
+     */
+    private static int getExistencias(ProductoVendible pv) {
+        return pv.getExistencias() - FachadaPersistenciaDependiente.getUnidadesSinRegistrar(pv.getCodigo());
     }
         
 }
@@ -0,0 +1,133 @@
+package es.uva.eii.ds.empresaX.negocio.controladoresCasoUso;
+
+import es.uva.eii.ds.empresaX.negocio.modelos.Proveedor;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Directorio de proveedores en memoria para sugerir proveedores mientras se
+ * escribe (búsqueda por prefijo).
+ *
+ * Las claves se normalizan (sin tildes, en mayúsculas y con los espacios
+ * simplificados) y se indexa el comienzo de cada palabra del nombre además
+ * del CIF, de modo que "berri" no encuentra nada pero "Ogi", "ogiberri" o el
+ * principio del CIF sí. Cada carga construye un índice nuevo y lo publica de
+ * una vez, así que las búsquedas no se bloquean.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+class DirectorioProveedores {
+
+    private static final Comparator<Proveedor> POR_NOMBRE =
+            Comparator.comparing((Proveedor p) -> normaliza(p.getNombre()))
+                      .thenComparing(Proveedor::getNombre);
+
+    // Clave normalizada -> proveedores que la tienen
+    private volatile TreeMap<String, ArrayList<Proveedor>> indice;
+
+    DirectorioProveedores() {
+        indice = null;
+    }
+
+    boolean estaCargado() {
+        return indice != null;
+    }
+
+    /**
+     * Sustituye el contenido del directorio.
+     * @param proveedores Todos los proveedores
+     */
+    void cargar(Collection<Proveedor> proveedores) {
+        TreeMap<String, ArrayList<Proveedor>> nuevo = new TreeMap<>();
+        for(Proveedor proveedor : proveedores) {
+            String nombre = normaliza(proveedor.getNombre());
+            for(int i = 0; i < nombre.length(); i++) {
+                if(i == 0 || nombre.charAt(i - 1) == ' ') {
+                    nuevo.computeIfAbsent(nombre.substring(i), k -> new ArrayList<>()).add(proveedor);
+                }
+            }
+            if(proveedor.getCif() != null) {
+                nuevo.computeIfAbsent(normaliza(proveedor.getCif()), k -> new ArrayList<>()).add(proveedor);
+            }
+        }
+
+        indice = nuevo;
+    }
+
+    /**
+     * Devuelve los proveedores con alguna palabra del nombre (o el CIF) que
+     * empieza por el prefijo, ordenados por nombre.
+     * @param prefijo Texto introducido
+     * @param max Número máximo de resultados
+     * @return Proveedores encontrados (vacía si no hay o no está cargado)
+     */
+    ArrayList<Proveedor> buscarPorPrefijo(String prefijo, int max) {
+        TreeMap<String, ArrayList<Proveedor>> actual = indice;
+        String clave = normaliza(prefijo);
+        if(actual == null || clave.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        NavigableMap<String, ArrayList<Proveedor>> rango =
+                actual.subMap(clave, true, clave + Character.MAX_VALUE, false);
+        LinkedHashSet<Proveedor> encontrados = new LinkedHashSet<>();
+        for(ArrayList<Proveedor> proveedores : rango.values()) {
+            encontrados.addAll(proveedores);
+        }
+
+        ArrayList<Proveedor> res = new ArrayList<>(encontrados);
+        res.sort(POR_NOMBRE);
+        if(res.size() > max) {
+            return new ArrayList<>(res.subList(0, max));
+        }
+        return res;
+    }
+
+    /**
+     * Indica si hay algún proveedor con ese nombre o CIF, sin distinguir
+     * mayúsculas. Las tildes sí cuentan, igual que en la búsqueda de facturas
+     * en la BD.
+     * @param proveedor Nombre o CIF
+     * @return true si existe
+     */
+    boolean contiene(String proveedor) {
+        TreeMap<String, ArrayList<Proveedor>> actual = indice;
+        if(actual == null) {
+            return false;
+        }
+
+        ArrayList<Proveedor> candidatos = actual.get(normaliza(proveedor));
+        if(candidatos == null) {
+            return false;
+        }
+        String buscado = proveedor.trim().toUpperCase(Locale.ROOT);
+        for(Proveedor p : candidatos) {
+            // La clave también puede ser el final del nombre o venir de otra grafía
+            if(p.getNombre().toUpperCase(Locale.ROOT).equals(buscado)
+                    || (p.getCif() != null && p.getCif().toUpperCase(Locale.ROOT).equals(buscado))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Normaliza un texto para compararlo: sin tildes, en mayúsculas y con los
+     * espacios simplificados.
+     * @param texto Texto
+     * @return Texto normalizado
+     */
+    static String normaliza(String texto) {
+        String sinTildes = Normalizer.normalize(texto, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return sinTildes.trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+    }
+
+}
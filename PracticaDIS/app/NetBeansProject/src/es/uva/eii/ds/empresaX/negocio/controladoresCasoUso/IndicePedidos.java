@@ -0,0 +1,103 @@
+package es.uva.eii.ds.empresaX.negocio.controladoresCasoUso;
+
+import es.uva.eii.ds.empresaX.negocio.modelos.PedidoDeHorno;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Índice de los pedidos de horno pendientes: acceso directo por número de
+ * pedido y recorrido ordenado por fecha deseada (y número, para desempatar).
+ *
+ * Las lecturas no se bloquean; las modificaciones (recarga, quitar un pedido)
+ * se serializan para que las dos estructuras no se desalineen.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+class IndicePedidos {
+
+    private static final Comparator<PedidoDeHorno> POR_FECHA =
+            Comparator.comparing(PedidoDeHorno::getFechaEnLaQueSeQuiere)
+                      .thenComparingInt(PedidoDeHorno::getNumeroDePedido);
+
+    private final ConcurrentHashMap<Integer, PedidoDeHorno> porNumero;
+    private final ConcurrentSkipListSet<PedidoDeHorno> porFecha;
+
+    IndicePedidos() {
+        porNumero = new ConcurrentHashMap<>();
+        porFecha = new ConcurrentSkipListSet<>(POR_FECHA);
+    }
+
+    /**
+     * Devuelve el pedido con ese número.
+     * @param numeroPedido Número del pedido
+     * @return Pedido (null si no está pendiente)
+     */
+    PedidoDeHorno get(int numeroPedido) {
+        return porNumero.get(numeroPedido);
+    }
+
+    /**
+     * Devuelve los pedidos ordenados por fecha deseada.
+     * @return Lista de pedidos
+     */
+    ArrayList<PedidoDeHorno> getOrdenados() {
+        return new ArrayList<>(porFecha);
+    }
+
+    int getTamanio() {
+        return porNumero.size();
+    }
+
+    /**
+     * Actualiza el índice con el resultado de una consulta: añade o sustituye
+     * los pedidos recibidos y quita los que ya no están pendientes.
+     * @param pedidos Pedidos pendientes según la BD
+     */
+    synchronized void sincroniza(Collection<PedidoDeHorno> pedidos) {
+        HashSet<Integer> vigentes = new HashSet<>();
+        for(PedidoDeHorno pedido : pedidos) {
+            vigentes.add(pedido.getNumeroDePedido());
+            pon(pedido);
+        }
+
+        for(Integer numero : new ArrayList<>(porNumero.keySet())) {
+            if(!vigentes.contains(numero)) {
+                quita(numero);
+            }
+        }
+    }
+
+    /**
+     * Añade o sustituye un pedido.
+     * @param pedido Pedido
+     */
+    synchronized void pon(PedidoDeHorno pedido) {
+        PedidoDeHorno anterior = porNumero.put(pedido.getNumeroDePedido(), pedido);
+        if(anterior != null) {
+            porFecha.remove(anterior);
+        }
+        porFecha.add(pedido);
+    }
+
+    /**
+     * Quita un pedido (ha dejado de estar pendiente).
+     * @param numeroPedido Número del pedido
+     * @return true si estaba en el índice
+     */
+    synchronized boolean quita(int numeroPedido) {
+        PedidoDeHorno pedido = porNumero.remove(numeroPedido);
+        if(pedido == null) {
+            return false;
+        }
+
+        porFecha.remove(pedido);
+        return true;
+    }
+
+}
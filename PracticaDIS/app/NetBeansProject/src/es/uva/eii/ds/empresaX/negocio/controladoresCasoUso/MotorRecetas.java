@@ -0,0 +1,267 @@
+package es.uva.eii.ds.empresaX.negocio.controladoresCasoUso;
+
+import es.uva.eii.ds.empresaX.negocio.modelos.LineaDePedidoDeHorno;
+import es.uva.eii.ds.empresaX.negocio.modelos.Producto;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosProducto;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosUsoReceta;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Explosión de recetas: calcula cuánta materia hace falta para las líneas de un
+ * pedido de horno y cuánta falta respecto a las existencias.
+ *
+ * Las materias se numeran y cada receta se guarda como dos arrays paralelos
+ * (materia, cantidad). Si una materia es a su vez un producto con receta, se
+ * sustituye por sus materias; el resultado de esa explosión se guarda por
+ * producto hasta que se vuelven a cargar las recetas.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+class MotorRecetas {
+
+    // Materias conocidas, por índice y por código
+    private final ArrayList<Materia> materias;
+    private final HashMap<String, Integer> indiceMaterias;
+    // Receta directa y explotada de cada producto
+    private final HashMap<String, Receta> directas;
+    private final HashMap<String, Receta> explotadas;
+    // Si se han cargado las recetas (puede que no haya ninguna)
+    private boolean cargado;
+
+    MotorRecetas() {
+        materias = new ArrayList<>();
+        indiceMaterias = new HashMap<>();
+        directas = new HashMap<>();
+        explotadas = new HashMap<>();
+        cargado = false;
+    }
+
+    /**
+     * Sustituye todas las recetas.
+     * @param usos Usos de materias de todas las recetas
+     */
+    synchronized void cargar(List<DatosUsoReceta> usos) {
+        directas.clear();
+        explotadas.clear();
+        directas.putAll(agrupa(usos));
+        cargado = true;
+    }
+
+    /**
+     * Actualiza las existencias de las materias.
+     * @param existencias Código -> existencias
+     */
+    synchronized void actualizarExistencias(Map<String, Integer> existencias) {
+        for(Map.Entry<String, Integer> e : existencias.entrySet()) {
+            Integer i = indiceMaterias.get(e.getKey());
+            if(i != null) {
+                materias.get(i).existencias = e.getValue();
+            }
+        }
+    }
+
+    /**
+     * Devuelve los códigos de todas las materias, para refrescar sus existencias.
+     * @return Códigos de las materias
+     */
+    synchronized ArrayList<String> getCodigosMaterias() {
+        return new ArrayList<>(indiceMaterias.keySet());
+    }
+
+    synchronized boolean estaCargado() {
+        return cargado;
+    }
+
+    /**
+     * Devuelve las materias que faltan para las líneas indicadas, con la
+     * cantidad que falta de cada una. Los productos sin receta no consumen
+     * materias.
+     * @param lineas Líneas del pedido
+     * @return Materias que faltan (vacía si hay de todo)
+     */
+    synchronized ArrayList<LineaDePedidoDeHorno> getFaltantes(List<LineaDePedidoDeHorno> lineas) {
+        int[] necesidad = new int[materias.size()];
+        ArrayList<LineaDePedidoDeHorno> faltantes = new ArrayList<>();
+        for(int m : acumulaNecesidad(lineas, necesidad)) {
+            Materia materia = materias.get(m);
+            int falta = necesidad[m] - materia.existencias;
+            if(falta > 0) {
+                faltantes.add(new LineaDePedidoDeHorno(falta, materia.aProducto()));
+            }
+        }
+
+        return faltantes;
+    }
+
+    /**
+     * Devuelve la cantidad total de cada materia que consumen las líneas
+     * indicadas (de uno o varios pedidos).
+     * @param lineas Líneas de los pedidos
+     * @return Materias necesarias, con su cantidad
+     */
+    synchronized ArrayList<LineaDePedidoDeHorno> getDemanda(List<LineaDePedidoDeHorno> lineas) {
+        int[] necesidad = new int[materias.size()];
+        ArrayList<LineaDePedidoDeHorno> demanda = new ArrayList<>();
+        for(int m : acumulaNecesidad(lineas, necesidad)) {
+            demanda.add(new LineaDePedidoDeHorno(necesidad[m], materias.get(m).aProducto()));
+        }
+
+        return demanda;
+    }
+
+
+    /**
+     * Suma en necesidad lo que consume de cada materia el conjunto de líneas.
+     * @return Índices de las materias usadas, en orden de aparición
+     */
+    private ArrayList<Integer> acumulaNecesidad(List<LineaDePedidoDeHorno> lineas, int[] necesidad) {
+        boolean[] usada = new boolean[materias.size()];
+        ArrayList<Integer> usadas = new ArrayList<>();
+
+        for(LineaDePedidoDeHorno linea : lineas) {
+            Receta receta = explota(linea.getProductoPedido().getCodigo(), new HashSet<>());
+            if(receta == null) {
+                continue;
+            }
+            for(int k = 0; k < receta.materias.length; k++) {
+                int m = receta.materias[k];
+                if(!usada[m]) {
+                    usada[m] = true;
+                    usadas.add(m);
+                }
+                necesidad[m] += receta.cantidades[k] * linea.getCantidad();
+            }
+        }
+
+        return usadas;
+    }
+
+    /**
+     * Agrupa los usos por producto y registra las materias nuevas.
+     */
+    private HashMap<String, Receta> agrupa(List<DatosUsoReceta> usos) {
+        HashMap<String, ArrayList<DatosUsoReceta>> porProducto = new HashMap<>();
+        for(DatosUsoReceta uso : usos) {
+            porProducto.computeIfAbsent(uso.getProductoDeHorno(), k -> new ArrayList<>()).add(uso);
+        }
+
+        HashMap<String, Receta> recetas = new HashMap<>();
+        for(Map.Entry<String, ArrayList<DatosUsoReceta>> e : porProducto.entrySet()) {
+            ArrayList<DatosUsoReceta> lista = e.getValue();
+            int[] ms = new int[lista.size()];
+            int[] cs = new int[lista.size()];
+            for(int k = 0; k < lista.size(); k++) {
+                ms[k] = registraMateria(lista.get(k).getMateria());
+                cs[k] = lista.get(k).getCantidad();
+            }
+            recetas.put(e.getKey(), new Receta(ms, cs));
+        }
+
+        return recetas;
+    }
+
+    /**
+     * Devuelve el índice de una materia, registrándola (o actualizando sus
+     * datos) si hace falta.
+     */
+    private int registraMateria(DatosProducto datos) {
+        Integer i = indiceMaterias.get(datos.getCodigo());
+        if(i == null) {
+            i = materias.size();
+            materias.add(new Materia(datos));
+            indiceMaterias.put(datos.getCodigo(), i);
+        } else {
+            materias.set(i, new Materia(datos));
+        }
+
+        return i;
+    }
+
+    /**
+     * Devuelve la receta de un producto expresada solo en materias sin receta.
+     * @param producto Código del producto
+     * @param enCurso Productos que se están explotando (para cortar ciclos)
+     * @return Receta explotada o null si el producto no tiene receta
+     */
+    private Receta explota(String producto, HashSet<String> enCurso) {
+        Receta res = explotadas.get(producto);
+        if(res != null) {
+            return res;
+        }
+
+        Receta directa = directas.get(producto);
+        if(directa == null || !enCurso.add(producto)) {
+            return null;
+        }
+
+        HashMap<Integer, Integer> acumulado = new HashMap<>();
+        for(int k = 0; k < directa.materias.length; k++) {
+            int m = directa.materias[k];
+            Receta sub = explota(materias.get(m).codigo, enCurso);
+            if(sub == null) {
+                acumulado.merge(m, directa.cantidades[k], Integer::sum);
+            } else {
+                for(int j = 0; j < sub.materias.length; j++) {
+                    acumulado.merge(sub.materias[j], sub.cantidades[j] * directa.cantidades[k], Integer::sum);
+                }
+            }
+        }
+        enCurso.remove(producto);
+
+        int[] ms = new int[acumulado.size()];
+        int[] cs = new int[acumulado.size()];
+        int k = 0;
+        for(Map.Entry<Integer, Integer> e : acumulado.entrySet()) {
+            ms[k] = e.getKey();
+            cs[k++] = e.getValue();
+        }
+        res = new Receta(ms, cs);
+        explotadas.put(producto, res);
+
+        return res;
+    }
+
+
+    /**
+     * Receta como arrays paralelos de índices de materia y cantidades.
+     */
+    private static final class Receta {
+        private final int[] materias;
+        private final int[] cantidades;
+
+        Receta(int[] materias, int[] cantidades) {
+            this.materias = materias;
+            this.cantidades = cantidades;
+        }
+    }
+
+    /**
+     * Materia conocida por el motor.
+     */
+    private static final class Materia {
+        private final String codigo;
+        private final String nombre;
+        private final String descripcion;
+        private final int cantidadMinima;
+        private int existencias;
+
+        Materia(DatosProducto datos) {
+            codigo = datos.getCodigo();
+            nombre = datos.getNombre();
+            descripcion = datos.getDescripcion();
+            cantidadMinima = datos.getCantidadMinimaStock();
+            existencias = datos.getExistencias();
+        }
+
+        Producto aProducto() {
+            return new Producto(codigo, nombre, descripcion, existencias, cantidadMinima) {};
+        }
+    }
+
+}
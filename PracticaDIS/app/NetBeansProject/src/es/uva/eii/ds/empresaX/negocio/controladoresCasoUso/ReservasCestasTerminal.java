@@ -0,0 +1,128 @@
+package es.uva.eii.ds.empresaX.negocio.controladoresCasoUso;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reservas de existencias de las cestas abiertas (ventas sin registrar) en
+ * este terminal.
+ *
+ * Cada producto que se añade a una cesta reserva sus unidades, y solo se
+ * puede reservar lo que queda sin reservar de las existencias conocidas. Al
+ * registrar la venta o abandonar la cesta las reservas se liberan.
+ *
+ * Es solo una ayuda para la interfaz: avisa al dependiente en cuanto una
+ * cesta pide más de lo que hay, sin esperar a cobrar. Las reservas viven en
+ * la memoria de este programa, así que no ven las cestas de otros terminales
+ * y no evitan que se venda más de lo que hay. Eso lo garantiza la BD al
+ * registrar la venta, que solo descuenta si quedan existencias suficientes
+ * (las ventas anotadas sin conexión se fuerzan y dejan un descuadre).
+ *
+ * Los productos se reparten en franjas según su código y cada franja tiene
+ * su propio cerrojo, que solo se mantiene mientras se suma o se resta, así
+ * que dos ventas en curso solo se esperan si tienen productos de la misma
+ * franja.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+class ReservasCestasTerminal {
+
+    private static final int NUM_FRANJAS = 16;
+
+    private final Franja[] franjas;
+    // Cesta -> código -> unidades que reserva
+    private final ConcurrentHashMap<Object, ConcurrentHashMap<String, Integer>> porCesta;
+
+    ReservasCestasTerminal() {
+        franjas = new Franja[NUM_FRANJAS];
+        for(int i = 0; i < NUM_FRANJAS; i++) {
+            franjas[i] = new Franja();
+        }
+        porCesta = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Reserva unidades de un producto para una cesta, si quedan sin reservar.
+     * @param cesta Cesta (se compara por identidad)
+     * @param codigo Código del producto
+     * @param cantidad Unidades a reservar
+     * @param existencias Existencias conocidas del producto
+     * @return true si se han reservado, false si no quedan suficientes
+     */
+    boolean reservar(Object cesta, String codigo, int cantidad, int existencias) {
+        Franja franja = franja(codigo);
+        synchronized(franja) {
+            int reservadas = franja.reservadas.getOrDefault(codigo, 0);
+            if(reservadas + cantidad > existencias) {
+                return false;
+            }
+            franja.reservadas.put(codigo, reservadas + cantidad);
+            porCesta.computeIfAbsent(cesta, k -> new ConcurrentHashMap<>()).merge(codigo, cantidad, Integer::sum);
+        }
+
+        return true;
+    }
+
+    /**
+     * Devuelve las unidades de un producto que quedan sin reservar.
+     * @param codigo Código del producto
+     * @param existencias Existencias conocidas del producto
+     * @return Unidades disponibles
+     */
+    int getDisponibles(String codigo, int existencias) {
+        Franja franja = franja(codigo);
+        synchronized(franja) {
+            return existencias - franja.reservadas.getOrDefault(codigo, 0);
+        }
+    }
+
+    /**
+     * Devuelve lo que reserva una cesta.
+     * @param cesta Cesta
+     * @return Código -> unidades reservadas
+     */
+    Map<String, Integer> getReservas(Object cesta) {
+        ConcurrentHashMap<String, Integer> reservas = porCesta.get(cesta);
+        return reservas == null ? new HashMap<>() : new HashMap<>(reservas);
+    }
+
+    /**
+     * Libera todas las reservas de una cesta (registrada o abandonada).
+     * @param cesta Cesta
+     */
+    void liberar(Object cesta) {
+        ConcurrentHashMap<String, Integer> reservas = porCesta.remove(cesta);
+        if(reservas == null) {
+            return;
+        }
+
+        for(Map.Entry<String, Integer> e : reservas.entrySet()) {
+            Franja franja = franja(e.getKey());
+            synchronized(franja) {
+                int quedan = franja.reservadas.getOrDefault(e.getKey(), 0) - e.getValue();
+                if(quedan > 0) {
+                    franja.reservadas.put(e.getKey(), quedan);
+                } else {
+                    franja.reservadas.remove(e.getKey());
+                }
+            }
+        }
+    }
+
+    private Franja franja(String codigo) {
+        return franjas[(codigo.hashCode() & 0x7fffffff) % NUM_FRANJAS];
+    }
+
+
+    /**
+     * Unidades reservadas de los productos de una franja. Se accede con su
+     * cerrojo (el propio objeto).
+     */
+    private static final class Franja {
+        private final HashMap<String, Integer> reservadas = new HashMap<>();
+    }
+
+}
@@ -1,9 +1,7 @@
 package es.uva.eii.ds.empresaX.negocio.modelos;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonSyntaxException;
-import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
+import es.uva.eii.ds.empresaX.servicioscomunes.CodecJSON;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosCliente;
 
 /**
  * @author Abel Herrero Gómez         (abeherr)
@@ -19,21 +17,19 @@ public class Cliente {
 
     
     public Cliente(String jsonString) {
-        try {
-            JsonObject jo = new Gson().fromJson(jsonString, JsonObject.class);
-            
-            // Configura los atributos
-            dni = jo.get(JSONHelper.JSON_DNI).getAsString();
-            nombre = jo.get(JSONHelper.JSON_NOMBRE).getAsString();
-            apellidos = jo.get(JSONHelper.JSON_APELLIDOS).getAsString();
-            telefono = jo.get(JSONHelper.JSON_TELEFONO).getAsInt();
-            email = jo.get(JSONHelper.JSON_EMAIL).getAsString();
-        } catch(JsonSyntaxException | NumberFormatException e) {
-            // Especificar excepciones
-            System.out.println("[!] Excepción al crear Empleado:");
-            e.printStackTrace();
-            throw new IllegalArgumentException();
-        }
+        this(CodecJSON.getInstancia().leerCliente(jsonString));
+    }
+
+    /**
+     * Construye un cliente a partir de los datos leídos de la BD.
+     * @param datos Datos del cliente
+     */
+    public Cliente(DatosCliente datos) {
+        dni = datos.getDni();
+        nombre = datos.getNombre();
+        apellidos = datos.getApellidos();
+        telefono = datos.getTelefono();
+        email = datos.getEmail();
     }
 
     public String getDni() {
@@ -0,0 +1,13 @@
+package es.uva.eii.ds.empresaX.negocio.modelos;
+
+/**
+ * Columnas por las que se puede ordenar la lista de facturas pendientes, en
+ * el orden en que se muestran.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public enum ColumnaFacturas {
+    Proveedor,Pedido,Importe,Realizacion,Emision;
+}
@@ -0,0 +1,60 @@
+package es.uva.eii.ds.empresaX.negocio.modelos;
+
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosConsultaFacturas;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosFactura;
+import java.util.ArrayList;
+
+/**
+ * Resultado de consultar las facturas pendientes de pago: la primera página
+ * de facturas, si hay más y si existe el proveedor.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class ConsultaFacturas {
+    private final boolean proveedorEncontrado;
+    private final ArrayList<Factura> facturas;
+    private final boolean hayMas;
+    private final int minAnio;
+    private final int maxAnio;
+
+    /**
+     * Construye el resultado a partir de los datos leídos de la BD.
+     * @param datos Datos de la consulta
+     */
+    public ConsultaFacturas(DatosConsultaFacturas datos) {
+        proveedorEncontrado = datos.isProveedorEncontrado();
+        facturas = new ArrayList<>(datos.getFacturas().size());
+        for(DatosFactura factura : datos.getFacturas()) {
+            facturas.add(new Factura(factura));
+        }
+        hayMas = datos.getSiguiente() != null;
+        minAnio = datos.getMinAnio();
+        maxAnio = datos.getMaxAnio();
+    }
+
+    public boolean isProveedorEncontrado() {
+        return proveedorEncontrado;
+    }
+
+    public ArrayList<Factura> getFacturas() {
+        return facturas;
+    }
+
+    /**
+     * @return true si quedan facturas por encima de esta página
+     */
+    public boolean hayMas() {
+        return hayMas;
+    }
+
+    public int getMinAnio() {
+        return minAnio;
+    }
+
+    public int getMaxAnio() {
+        return maxAnio;
+    }
+    
+}
@@ -1,11 +1,8 @@
 package es.uva.eii.ds.empresaX.negocio.modelos;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonSyntaxException;
-import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
+import es.uva.eii.ds.empresaX.servicioscomunes.CodecJSON;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosEmpleado;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosHistorico;
 import java.time.LocalDate;
 import java.util.TreeMap;
 
@@ -29,92 +26,34 @@ public class Empleado {
      * @param jsonEmpleado Cadena JSON
      */
     public Empleado(String jsonEmpleado) {
-        try {
-            JsonObject jo = new Gson().fromJson(jsonEmpleado, JsonObject.class);
-            // NOMBRE, APELLIDOS Y DNI
-            nombre = jo.get(JSONHelper.JSON_NOMBRE).getAsString();
-            apellidos = jo.get(JSONHelper.JSON_APELLIDOS).getAsString();
-            dni = jo.get(JSONHelper.JSON_DNI).getAsString();
-            // FECHA DE INICIO
-            String[] fechaI = jo.get(JSONHelper.JSON_FECHA_INICIO).getAsString().split("-");
-            fechaInicioEnEmpresa = LocalDate.of(
-                    Integer.valueOf(fechaI[0]), // YYYY
-                    Integer.valueOf(fechaI[1]), // MM
-                    Integer.valueOf(fechaI[2])  // DD
-            );
-            
-            configuraRoles(jo);
-            configuraVinculaciones(jo);
-            configuraDisponibilidades(jo);
-        } catch(JsonSyntaxException | NumberFormatException e) {
-            // Especificar excepciones
-            System.out.println("[!] Excepción al crear Empleado:");
-            e.printStackTrace();
-            throw new IllegalArgumentException();
-        }
+        this(CodecJSON.getInstancia().leerEmpleado(jsonEmpleado));
     }
     
     /**
-     * Obtiene los roles y los añade a la lista.
-     * @param jo Objeto JSON
+     * Construye un objeto Empleado a partir de los datos leídos de la BD.
+     * 
+     * @param datos Datos del empleado con sus históricos
      */
-    private void configuraRoles(JsonObject jo) {
+    public Empleado(DatosEmpleado datos) {
+        nombre = datos.getNombre();
+        apellidos = datos.getApellidos();
+        dni = datos.getDni();
+        fechaInicioEnEmpresa = datos.getFechaInicio();
+        
         rolesEnLaEmpresa = new TreeMap<>();
-        JsonArray jRoles = jo.getAsJsonArray(JSONHelper.JSON_ROLES);
-        for(JsonElement jr : jRoles) {
-            JsonObject jRol = new Gson().fromJson(jr.toString(), JsonObject.class);
-            String[] fechaComienzo = jRol.get(JSONHelper.JSON_COMIENZO).getAsString().split("-");
-            LocalDate comienzo = LocalDate.of(
-                Integer.valueOf(fechaComienzo[0]), // YYYY
-                Integer.valueOf(fechaComienzo[1]), // MM
-                Integer.valueOf(fechaComienzo[2])  // DD
-            );
-            Rol rol = new Rol(TipoRol.valueOf(jRol.get(JSONHelper.JSON_ROL).getAsString()));
-            rolesEnLaEmpresa.put(comienzo, rol);
+        for(DatosHistorico h : datos.getRoles()) {
+            rolesEnLaEmpresa.put(h.getComienzo(), new Rol(TipoRol.valueOf(h.getTipo())));
         }
-    }
-    
-    /**
-     * Obtiene las vinculaciones y las añade a la lista.
-     * @param jo Objeto JSON
-     */
-    private void configuraVinculaciones(JsonObject jo) {
         estadoDeVinculacion = new TreeMap<>();
-        JsonArray jVinculaciones = jo.getAsJsonArray(JSONHelper.JSON_VINCULACIONES);
-        for(JsonElement jv : jVinculaciones) {
-            JsonObject jVinculacion = new Gson().fromJson(jv.toString(), JsonObject.class);
-            String[] fechaComienzo = jVinculacion.get(JSONHelper.JSON_COMIENZO).getAsString().split("-");
-            LocalDate comienzo = LocalDate.of(
-                Integer.valueOf(fechaComienzo[0]), // YYYY
-                Integer.valueOf(fechaComienzo[1]), // MM
-                Integer.valueOf(fechaComienzo[2])  // DD
-            );
-            VinculacionConLaEmpresa vinculacion = new VinculacionConLaEmpresa(TipoVinculacion.valueOf(jVinculacion.get(JSONHelper.JSON_VINCULACION).getAsString()));
-            estadoDeVinculacion.put(comienzo, vinculacion);
+        for(DatosHistorico h : datos.getVinculaciones()) {
+            estadoDeVinculacion.put(h.getComienzo(), new VinculacionConLaEmpresa(TipoVinculacion.valueOf(h.getTipo())));
         }
-    }
-    
-    /**
-     * Obtiene las disponibilidades y las añade a la lista.
-     * @param jo Objeto JSON
-     */
-    private void configuraDisponibilidades(JsonObject jo) {
         estadoDeDisponibilidad = new TreeMap<>();
-        JsonArray jDisponibilidades = jo.getAsJsonArray(JSONHelper.JSON_DISPONIBILIDADES);
-        for(JsonElement jd : jDisponibilidades) {
-            JsonObject jDisponibilidad = new Gson().fromJson(jd.toString(), JsonObject.class);
-            String[] fechaComienzo = jDisponibilidad.get(JSONHelper.JSON_COMIENZO).getAsString().split("-");
-            LocalDate comienzo = LocalDate.of(
-                Integer.valueOf(fechaComienzo[0]), // YYYY
-                Integer.valueOf(fechaComienzo[1]), // MM
-                Integer.valueOf(fechaComienzo[2])  // DD
-            );
-            Disponibilidad disponibilidad = new Disponibilidad(TipoDisponibilidad.valueOf(jDisponibilidad.get(JSONHelper.JSON_DISPONIBILIDAD).getAsString()));
-            estadoDeDisponibilidad.put(comienzo, disponibilidad);
+        for(DatosHistorico h : datos.getDisponibilidades()) {
+            estadoDeDisponibilidad.put(h.getComienzo(), new Disponibilidad(TipoDisponibilidad.valueOf(h.getTipo())));
         }
     }
     
-
     /**
      * Devuelve el DNI del empleado, que actúa como identificador único.
      * @return DNI del empleado
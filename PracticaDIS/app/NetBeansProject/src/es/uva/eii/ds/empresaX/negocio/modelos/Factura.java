@@ -1,10 +1,7 @@
 package es.uva.eii.ds.empresaX.negocio.modelos;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
-import java.sql.Date;
+import es.uva.eii.ds.empresaX.servicioscomunes.CodecJSON;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosFactura;
 import java.time.LocalDate;
 
 public final class Factura {
@@ -18,12 +15,18 @@ public final class Factura {
      * @param jsonFactura 
      */
     public Factura(String jsonFactura) {
-        JsonObject jo = new Gson().fromJson(jsonFactura, JsonObject.class);
-        fechaEmision = Date.valueOf(jo.get(JSONHelper.JSON_FECHA_EMISION).getAsString()).toLocalDate();
-        importe = jo.get(JSONHelper.JSON_IMPORTE).getAsDouble();
-        cuentaBancaria = jo.get(JSONHelper.JSON_CUENTA_BANCARIA).getAsString();
-        JsonElement get = jo.get(JSONHelper.JSON_PEDIDO);
-        pedido = new PedidoAProveedor(jo.get(JSONHelper.JSON_PEDIDO).toString());
+        this(CodecJSON.getInstancia().leerFactura(jsonFactura));
+    }
+
+    /**
+     * Construye una factura a partir de los datos leídos de la BD.
+     * @param datos Datos de la factura
+     */
+    public Factura(DatosFactura datos) {
+        fechaEmision = datos.getFechaEmision();
+        importe = datos.getImporte();
+        cuentaBancaria = datos.getCuentaBancaria();
+        pedido = new PedidoAProveedor(datos.getPedido());
     }
 
     public LocalDate getFechaEmision() {
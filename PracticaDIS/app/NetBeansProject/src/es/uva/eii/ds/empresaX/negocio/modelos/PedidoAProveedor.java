@@ -1,9 +1,7 @@
 package es.uva.eii.ds.empresaX.negocio.modelos;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
-import java.sql.Date;
+import es.uva.eii.ds.empresaX.servicioscomunes.CodecJSON;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosPedidoProveedor;
 import java.time.LocalDate;
 
 public class PedidoAProveedor {
@@ -18,11 +16,18 @@ public class PedidoAProveedor {
      * @param jsonPedido JSON de pedido proveedor
      */
     public PedidoAProveedor(String jsonPedido) {
-        JsonObject jo = new Gson().fromJson(jsonPedido, JsonObject.class);
-        numeroDePedido = jo.get(JSONHelper.JSON_NUM_PEDIDO).getAsLong();
-        fechaDeRealizacion = Date.valueOf(jo.get(JSONHelper.JSON_FECHA_REALIZACION).getAsString()).toLocalDate();
-        estaPendiente = jo.get(JSONHelper.JSON_PENDIENTE).getAsBoolean();
-        proveedor = new Proveedor(jo.get(JSONHelper.JSON_PROVEEDOR).toString());
+        this(CodecJSON.getInstancia().leerPedidoProveedor(jsonPedido));
+    }
+
+    /**
+     * Construye un pedido a proveedor a partir de los datos leídos de la BD.
+     * @param datos Datos del pedido
+     */
+    public PedidoAProveedor(DatosPedidoProveedor datos) {
+        numeroDePedido = datos.getNumeroDePedido();
+        fechaDeRealizacion = datos.getFechaDeRealizacion();
+        estaPendiente = datos.isEstaPendiente();
+        proveedor = new Proveedor(datos.getProveedor());
     }
 
     public long getNumeroDePedido() {
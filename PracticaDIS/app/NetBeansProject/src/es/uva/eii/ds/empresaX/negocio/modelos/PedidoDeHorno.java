@@ -1,15 +1,16 @@
 package es.uva.eii.ds.empresaX.negocio.modelos;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonSyntaxException;
-import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
-import java.sql.Timestamp;
+import es.uva.eii.ds.empresaX.servicioscomunes.CodecJSON;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosEmpleado;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosLineaPedido;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosOperacion;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosPedidoHorno;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosProducto;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.TreeMap;
 
 /**
@@ -30,74 +31,47 @@ public class PedidoDeHorno {
      * @param jsonString String JSON
      */
     public PedidoDeHorno(String jsonString) {
-        try {
-            JsonObject jo = new Gson().fromJson(jsonString, JsonObject.class);
-            
-            numeroDePedido = jo.get(JSONHelper.JSON_NUM_PEDIDO).getAsInt();
-            // FECHA DESEADA
-            String[] fechaD = jo.get(JSONHelper.JSON_FECHA_DESEADA).getAsString().split("-");
-            fechaEnLaQueSeQuiere = LocalDate.of(
-                    Integer.valueOf(fechaD[0]), // YYYY
-                    Integer.valueOf(fechaD[1]), // MM
-                    Integer.valueOf(fechaD[2])  // DD
-            );
-            
-            cliente = new Cliente(jo.get(JSONHelper.JSON_CLIENTE).toString());
-            dependiente = new Empleado(jo.get(JSONHelper.JSON_DEPENDIENTE).toString());
-            configuraLineasPedido(jo);
-            configuraOperacionesPedido(jo);
-        } catch(JsonSyntaxException | NumberFormatException e) {
-            // Especificar excepciones
-            throw new IllegalArgumentException("[!] Excepción al crear Empleado: " + e.getMessage());
-        }
+        this(CodecJSON.getInstancia().leerPedidoHorno(jsonString), new HashMap<>());
     }
     
     /**
-     * Obtiene las líneas del pedido y las añade a la lista.
-     * @param jo Objeto JSON
+     * Construye un Pedido de Horno a partir de los datos leídos de la BD.
+     * Los empleados que aparecen varias veces (dependiente y operaciones) se
+     * construyen una sola vez.
+     * @param datos Datos del pedido
+     * @param empleados Empleados ya construidos, por DNI (se completa con los nuevos)
      */
-    private void configuraLineasPedido(JsonObject jo) {
-        //LineaDePedidoDeHorno linea = new LineaDePedidoDeHorno();
-        lineas = new ArrayList<>();
-        JsonArray jLineas = jo.getAsJsonArray(JSONHelper.JSON_LINEAS);
-        for(JsonElement jlin : jLineas) {
-            JsonObject jLinea = new Gson().fromJson(jlin.toString(), JsonObject.class);
-            int cantidad =  jLinea.get(JSONHelper.JSON_CANTIDAD).getAsInt();
-
-            //Creando Producto a través de Json
-            JsonObject pro = new Gson().fromJson(jLinea.get(JSONHelper.JSON_PRODUCTO).toString(), JsonObject.class);
-            String codigo  = pro.get(JSONHelper.JSON_CODIGO).getAsString();
-            String nombre  = pro.get(JSONHelper.JSON_NOMBRE).getAsString();
-            String descripcion = pro.get(JSONHelper.JSON_DESCRIPCION).getAsString();
-            int existencias = pro.get(JSONHelper.JSON_EXISTENCIAS).getAsInt();
-            int cantidadMinimaEnStock = pro.get(JSONHelper.JSON_CANTIDAD_MIN_STOCK).getAsInt();
-            Producto producto = new Producto(codigo, nombre, descripcion, existencias, cantidadMinimaEnStock) {};
-            
-            LineaDePedidoDeHorno lineaPedidoHorno = new LineaDePedidoDeHorno(cantidad, producto);
-            lineas.add(lineaPedidoHorno);
+    public PedidoDeHorno(DatosPedidoHorno datos, Map<String, Empleado> empleados) {
+        numeroDePedido = datos.getNumeroDePedido();
+        fechaEnLaQueSeQuiere = datos.getFechaDeseada();
+        cliente = new Cliente(datos.getCliente());
+        dependiente = getEmpleado(datos.getDependiente(), empleados);
+        
+        lineas = new ArrayList<>(datos.getLineas().size());
+        for(DatosLineaPedido linea : datos.getLineas()) {
+            DatosProducto pro = linea.getProducto();
+            Producto producto = new Producto(pro.getCodigo(), pro.getNombre(), pro.getDescripcion(), 
+                                             pro.getExistencias(), pro.getCantidadMinimaStock()) {};
+            lineas.add(new LineaDePedidoDeHorno(linea.getCantidad(), producto));
         }
         
+        operaciones = new TreeMap<>();
+        for(DatosOperacion op : datos.getOperaciones()) {
+            operaciones.put(op.getMomento(), new OperacionPedido(TipoEstadoPedido.valueOf(op.getEstado()), 
+                                                                 getEmpleado(op.getEmpleado(), empleados)));
+        }
     }
     
     /**
-     * Obtiene las operaciones y las añade al árbol.
-     * @param jo Objeto JSON
+     * Devuelve el empleado ya construido con ese DNI o lo construye.
+     * @param datos Datos del empleado
+     * @param empleados Empleados ya construidos
+     * @return Empleado
      */
-    private void configuraOperacionesPedido(JsonObject jo) {
-        operaciones = new TreeMap<>();
-        JsonArray jOperaciones = jo.getAsJsonArray(JSONHelper.JSON_OPERACIONES);
-        for(JsonElement jop : jOperaciones) {
-            JsonObject jOperacion = new Gson().fromJson(jop.toString(), JsonObject.class);
-            // Momento de generación de la operación
-            LocalDateTime momento = Timestamp.valueOf(jOperacion.get(JSONHelper.JSON_MOMENTO).getAsString()).toLocalDateTime();
-            // Estado de la operación
-            String estado = jOperacion.get(JSONHelper.JSON_ESTADO).getAsString();
-            // Empleado que realizó la operación
-            Empleado empleado = new Empleado(jOperacion.get(JSONHelper.JSON_EMPLEADO).toString());
-            operaciones.put(momento, new OperacionPedido(TipoEstadoPedido.valueOf(estado), empleado));
-        }
+    private static Empleado getEmpleado(DatosEmpleado datos, Map<String, Empleado> empleados) {
+        return empleados.computeIfAbsent(datos.getDni(), dni -> new Empleado(datos));
     }
-
+    
     public int getNumeroDePedido() {
         return numeroDePedido;
     }
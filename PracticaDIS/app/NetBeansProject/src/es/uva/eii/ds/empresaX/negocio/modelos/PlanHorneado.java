@@ -0,0 +1,104 @@
+package es.uva.eii.ds.empresaX.negocio.modelos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Plan de horneado: las líneas de varios pedidos agrupadas por producto
+ * ("hornear 48 croissants para los pedidos 12, 15, 19") junto con la materia
+ * que consumen entre todos y la que falta.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class PlanHorneado {
+
+    private final ArrayList<PedidoDeHorno> pedidos;
+    private final ArrayList<LoteDeHorneado> lotes;
+    private final ArrayList<LineaDePedidoDeHorno> demanda;
+    private final ArrayList<LineaDePedidoDeHorno> faltantes;
+
+    /**
+     * Construye el plan agrupando las líneas de los pedidos por producto, en
+     * el orden en que aparecen.
+     * @param pedidos Pedidos incluidos
+     * @param demanda Materias que consumen todos los pedidos
+     * @param faltantes Materias que faltan para hornearlos todos
+     */
+    public PlanHorneado(List<PedidoDeHorno> pedidos, List<LineaDePedidoDeHorno> demanda,
+                        List<LineaDePedidoDeHorno> faltantes) {
+        this.pedidos = new ArrayList<>(pedidos);
+        this.demanda = new ArrayList<>(demanda);
+        this.faltantes = new ArrayList<>(faltantes);
+
+        LinkedHashMap<String, LoteDeHorneado> porProducto = new LinkedHashMap<>();
+        for(PedidoDeHorno pedido : pedidos) {
+            for(LineaDePedidoDeHorno linea : pedido.getLineas()) {
+                Producto producto = linea.getProductoPedido();
+                porProducto.computeIfAbsent(producto.getCodigo(), k -> new LoteDeHorneado(producto))
+                           .anade(linea.getCantidad(), pedido.getNumeroDePedido());
+            }
+        }
+        lotes = new ArrayList<>(porProducto.values());
+    }
+
+    public List<PedidoDeHorno> getPedidos() {
+        return Collections.unmodifiableList(pedidos);
+    }
+
+    public List<LoteDeHorneado> getLotes() {
+        return Collections.unmodifiableList(lotes);
+    }
+
+    public List<LineaDePedidoDeHorno> getDemanda() {
+        return Collections.unmodifiableList(demanda);
+    }
+
+    public List<LineaDePedidoDeHorno> getFaltantes() {
+        return Collections.unmodifiableList(faltantes);
+    }
+
+    public boolean estaVacio() {
+        return pedidos.isEmpty();
+    }
+
+    /**
+     * Un producto del plan: cuántas unidades hornear y para qué pedidos.
+     */
+    public static class LoteDeHorneado {
+
+        private final Producto producto;
+        private int cantidad;
+        private final ArrayList<Integer> numerosPedido;
+
+        LoteDeHorneado(Producto producto) {
+            this.producto = producto;
+            this.cantidad = 0;
+            this.numerosPedido = new ArrayList<>();
+        }
+
+        private void anade(int cantidad, int numeroPedido) {
+            this.cantidad += cantidad;
+            if(!numerosPedido.contains(numeroPedido)) {
+                numerosPedido.add(numeroPedido);
+            }
+        }
+
+        public Producto getProducto() {
+            return producto;
+        }
+
+        public int getCantidad() {
+            return cantidad;
+        }
+
+        public List<Integer> getNumerosPedido() {
+            return Collections.unmodifiableList(numerosPedido);
+        }
+
+    }
+
+}
@@ -1,11 +1,11 @@
 package es.uva.eii.ds.empresaX.negocio.modelos;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
+import es.uva.eii.ds.empresaX.servicioscomunes.CodecJSON;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosProveedor;
 
 public class Proveedor {
     // ATRIBUTOS
+    private final String cif;
     private final String nombre;
     private final String telefono;
     private final String email;
@@ -15,10 +15,22 @@ public class Proveedor {
      * @param jsonProveedor JSON de proveedor
      */
     public Proveedor(String jsonProveedor) {
-        JsonObject jo = new Gson().fromJson(jsonProveedor, JsonObject.class);
-        nombre = jo.get(JSONHelper.JSON_NOMBRE).getAsString();
-        telefono = jo.get(JSONHelper.JSON_TELEFONO).getAsString();
-        email = jo.get(JSONHelper.JSON_EMAIL).getAsString();
+        this(CodecJSON.getInstancia().leerProveedor(jsonProveedor));
+    }
+
+    /**
+     * Construye un proveedor a partir de los datos leídos de la BD.
+     * @param datos Datos del proveedor
+     */
+    public Proveedor(DatosProveedor datos) {
+        cif = datos.getCif();
+        nombre = datos.getNombre();
+        telefono = datos.getTelefono();
+        email = datos.getEmail();
+    }
+
+    public String getCif() {
+        return cif;
     }
 
     public String getNombre() {
@@ -0,0 +1,116 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché LRU de sentencias preparadas de una conexión física, indexada por el
+ * SQL. Evita que Derby vuelva a compilar la misma consulta en cada llamada.
+ *
+ * Solo la usa el hilo que tiene prestada la conexión, por lo que no está
+ * sincronizada. Las sentencias desalojadas no se cierran al momento (el hilo
+ * podría estar recorriendo su ResultSet) sino al devolver la conexión.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+class CacheSentencias {
+
+    private final Connection conexion;
+    private final LinkedHashMap<String, PreparedStatement> sentencias;
+    private final ArrayList<PreparedStatement> desalojadas;
+
+    // Solo escribe el hilo que tiene la conexión; volatile para leerlos desde las estadísticas
+    private volatile long aciertos;
+    private volatile long fallos;
+    private volatile long desalojos;
+
+    /**
+     * Crea la caché de una conexión.
+     * @param conexion Conexión física
+     * @param capacidad Máximo de sentencias abiertas
+     */
+    CacheSentencias(Connection conexion, int capacidad) {
+        this.conexion = conexion;
+        this.desalojadas = new ArrayList<>();
+        // Orden de acceso: la primera es la usada hace más tiempo
+        this.sentencias = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if(size() > capacidad) {
+                    desalojadas.add(eldest.getValue());
+                    desalojos++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Devuelve la sentencia preparada para el SQL, preparándola si no estaba.
+     * @param sql Sentencia SQL
+     * @return Sentencia preparada
+     * @throws SQLException
+     */
+    PreparedStatement preparar(String sql) throws SQLException {
+        PreparedStatement pst = sentencias.get(sql);
+        if(pst != null && !pst.isClosed()) {
+            aciertos++;
+            return pst;
+        }
+
+        fallos++;
+        pst = conexion.prepareStatement(sql);
+        sentencias.put(sql, pst);
+
+        return pst;
+    }
+
+    /**
+     * Cierra las sentencias desalojadas desde la última vez.
+     */
+    void cierraDesalojadas() {
+        for(PreparedStatement pst : desalojadas) {
+            cierra(pst);
+        }
+        desalojadas.clear();
+    }
+
+    /**
+     * Cierra todas las sentencias de la caché.
+     */
+    void cerrar() {
+        cierraDesalojadas();
+        for(PreparedStatement pst : sentencias.values()) {
+            cierra(pst);
+        }
+        sentencias.clear();
+    }
+
+    long getAciertos() {
+        return aciertos;
+    }
+
+    long getFallos() {
+        return fallos;
+    }
+
+    long getDesalojos() {
+        return desalojos;
+    }
+
+    private static void cierra(PreparedStatement pst) {
+        try {
+            pst.close();
+        } catch(SQLException ex) {
+            // La conexión ya no es válida
+        }
+    }
+
+}
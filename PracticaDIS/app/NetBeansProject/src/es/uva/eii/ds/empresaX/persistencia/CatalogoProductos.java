@@ -0,0 +1,205 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import com.google.gson.JsonObject;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Catálogo de productos en memoria, indexado por código. Lo usa la fachada del
+ * dependiente como caché de lectura: si el producto está y no ha caducado se
+ * devuelve sin acceder a la BD; si no, la fachada lo carga y lo guarda.
+ *
+ * Las entradas caducan tras un tiempo para acotar lo desactualizadas que pueden
+ * estar respecto a cambios hechos desde otros terminales, y se invalidan en
+ * cuanto este terminal modifica las existencias o el precio de un producto.
+ *
+ * Una carga que empezó antes de invalidar un producto no vuelve a dejar en el
+ * catálogo el valor anterior: cada carga anota la generación del catálogo al
+ * empezar y no guarda los productos invalidados después.
+ *
+ * Los JSON devueltos son compartidos: no se deben modificar.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class CatalogoProductos {
+
+    private final long caducidadMs;
+    private final ConcurrentHashMap<String, Entrada> entradas;
+    private final LongAdder aciertos;
+    private final LongAdder fallos;
+    private final LongAdder invalidaciones;
+    private volatile long ultimaPrecarga;
+    // Generación actual y generación en la que se invalidó cada producto
+    private final AtomicLong generacion;
+    private final ConcurrentHashMap<String, Long> invalidados;
+
+    /**
+     * Crea un catálogo vacío.
+     * @param caducidadMs Tiempo que se considera válida una entrada
+     */
+    CatalogoProductos(long caducidadMs) {
+        this.caducidadMs = caducidadMs;
+        this.entradas = new ConcurrentHashMap<>();
+        this.aciertos = new LongAdder();
+        this.fallos = new LongAdder();
+        this.invalidaciones = new LongAdder();
+        this.ultimaPrecarga = 0;
+        this.generacion = new AtomicLong();
+        this.invalidados = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Devuelve la generación actual. Se pide antes de consultar la BD y se
+     * pasa al guardar lo consultado.
+     * @return Generación del catálogo
+     */
+    long getGeneracion() {
+        return generacion.get();
+    }
+
+    /**
+     * Devuelve el producto si está en el catálogo y no ha caducado.
+     * @param codigo Código del producto
+     * @return JSON del producto o null si hay que cargarlo
+     */
+    JsonObject obtener(String codigo) {
+        Entrada e = entradas.get(codigo);
+        if(e != null && System.currentTimeMillis() - e.cargada <= caducidadMs) {
+            aciertos.increment();
+            return e.producto;
+        }
+
+        fallos.increment();
+        return null;
+    }
+
+    /**
+     * Guarda (o reemplaza) un producto en el catálogo, salvo que se haya
+     * invalidado mientras se cargaba.
+     * @param codigo Código del producto
+     * @param producto JSON del producto
+     * @param generacionCarga Generación al empezar la carga
+     */
+    void guardar(String codigo, JsonObject producto, long generacionCarga) {
+        guarda(codigo, new Entrada(producto, System.currentTimeMillis()), generacionCarga);
+    }
+
+    /**
+     * Sustituye el contenido del catálogo por el de una carga completa (sin
+     * los productos invalidados mientras se cargaba).
+     * @param productos Productos por código
+     * @param generacionCarga Generación al empezar la carga
+     */
+    void precargar(Map<String, JsonObject> productos, long generacionCarga) {
+        long ahora = System.currentTimeMillis();
+        for(Map.Entry<String, JsonObject> p : productos.entrySet()) {
+            guarda(p.getKey(), new Entrada(p.getValue(), ahora), generacionCarga);
+        }
+        entradas.keySet().retainAll(productos.keySet());
+        ultimaPrecarga = ahora;
+    }
+
+    private void guarda(String codigo, Entrada entrada, long generacionCarga) {
+        if(invalidadoDesde(codigo, generacionCarga)) {
+            return;
+        }
+        entradas.put(codigo, entrada);
+        // invalidar anota antes de quitar: si se ha colado entre la comprobación
+        // y el put, se ve aquí
+        if(invalidadoDesde(codigo, generacionCarga)) {
+            entradas.remove(codigo, entrada);
+        }
+    }
+
+    private boolean invalidadoDesde(String codigo, long generacionCarga) {
+        Long invalidado = invalidados.get(codigo);
+        return invalidado != null && invalidado > generacionCarga;
+    }
+
+    /**
+     * Invalida los productos indicados (han cambiado sus existencias o su precio).
+     * @param codigos Códigos de los productos
+     */
+    void invalidar(Collection<String> codigos) {
+        long g = generacion.incrementAndGet();
+        for(String codigo : codigos) {
+            invalidados.put(codigo, g);
+            if(entradas.remove(codigo) != null) {
+                invalidaciones.increment();
+            }
+        }
+    }
+
+    /**
+     * Devuelve el número de productos en el catálogo.
+     * @return Número de productos
+     */
+    public int getTamanio() {
+        return entradas.size();
+    }
+
+    /**
+     * Devuelve la proporción de consultas servidas sin acceder a la BD.
+     * @return Ratio de aciertos (0-1)
+     */
+    public double getRatioAciertos() {
+        long a = aciertos.sum();
+        long total = a + fallos.sum();
+        return total == 0 ? 0 : (double) a / total;
+    }
+
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    public long getInvalidaciones() {
+        return invalidaciones.sum();
+    }
+
+    /**
+     * Devuelve la antigüedad de la entrada más antigua, es decir, lo máximo
+     * que puede estar desactualizado un producto servido desde el catálogo.
+     * @return Antigüedad en ms (0 si está vacío)
+     */
+    public long getAntiguedadMaximaMs() {
+        long ahora = System.currentTimeMillis();
+        long max = 0;
+        for(Entrada e : entradas.values()) {
+            max = Math.max(max, ahora - e.cargada);
+        }
+
+        return Math.min(max, caducidadMs);
+    }
+
+    /**
+     * Devuelve el instante (ms) de la última precarga completa, o 0 si no la hubo.
+     * @return Instante de la última precarga
+     */
+    public long getUltimaPrecarga() {
+        return ultimaPrecarga;
+    }
+
+
+    /**
+     * Producto junto con el instante en que se cargó.
+     */
+    private static final class Entrada {
+        private final JsonObject producto;
+        private final long cargada;
+
+        Entrada(JsonObject producto, long cargada) {
+            this.producto = producto;
+            this.cargada = cargada;
+        }
+    }
+
+}
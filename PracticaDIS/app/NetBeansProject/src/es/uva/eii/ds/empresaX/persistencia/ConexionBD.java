@@ -2,57 +2,168 @@ package es.uva.eii.ds.empresaX.persistencia;
 
 import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLNonTransientConnectionException;
+import java.util.ArrayList;
 
 /**
+ * Conexión con la BD prestada por el pool. Se debe cerrar (try-with-resources)
+ * para devolverla al pool. Las sentencias preparadas se guardan en la caché de
+ * la conexión física, así que no hay que cerrarlas: al devolver la conexión se
+ * cierra el último ResultSet de cada una y se borran sus parámetros y lotes.
+ *
  * @author Abel Herrero Gómez         (abeherr)
  * @author Daniel De Vicente Garrote  (dandevi)
  * @author Roberto García Antoranz    (robegar)
  */
-public class ConexionBD {
-    
-    private final String url;
-    private final String usuario;
-    private final String password;
-    private Connection connection;
-    
-    private ConexionBD() throws ClassNotFoundException, SQLException, MessageException {
-        url = "jdbc:derby://localhost:1527/bd_pasteleria";
-        usuario = "temp";
-        password = "temp";
-        
-        Class.forName("org.apache.derby.jdbc.ClientDriver");
-        try {
-            openConnection();
-        } catch(SQLNonTransientConnectionException ex) {
-            throw new MessageException("No hay conexión con la BD");
-        }
+public class ConexionBD implements AutoCloseable {
+
+    // La URL se puede cambiar con -DempresaX.urlBD (p. ej. una BD de pruebas)
+    private static final String URL = "jdbc:derby://localhost:1527/bd_pasteleria";
+    private static final String USUARIO = "temp";
+    private static final String PASSWORD = "temp";
+
+    // Configuración del pool
+    private static final int MAX_CONEXIONES = 8;
+    private static final int MIN_INACTIVAS = 1;
+    private static final long MAX_ESPERA_MS = 5000;
+    private static final long MAX_INACTIVIDAD_MS = 5 * 60 * 1000;
+    private static final int TAM_CACHE_SENTENCIAS = 64;
+
+    // Máximo de parámetros por lote en las consultas con IN (...)
+    public static final int MAX_PARAMETROS_IN = 100;
+
+    private final Connection connection;
+    private final CacheSentencias cache;
+    private final ArrayList<PreparedStatement> sentencias;
+    private boolean cerrada;
+    private int numeroSentencias;
+
+    private ConexionBD(Connection connection, CacheSentencias cache) {
+        this.connection = connection;
+        this.cache = cache;
+        this.sentencias = new ArrayList<>();
+        this.cerrada = false;
+        this.numeroSentencias = 0;
     }
-    
-    
-    public void openConnection() throws SQLException {
-        connection = DriverManager.getConnection(url, usuario, password);
+
+    /**
+     * Devuelve la sentencia preparada para el SQL, reutilizándola si la 
+     * conexión ya la había preparado antes. Se entrega con el lote vacío:
+     * si un lote anterior con esta misma conexión falló, las filas que se
+     * le añadieron y no llegaron a ejecutarse no se cuelan en el siguiente.
+     * @param sql Sentencia SQL
+     * @return Sentencia preparada
+     * @throws SQLException 
+     */
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        PreparedStatement pst = cache.preparar(sql);
+        pst.clearBatch();
+        sentencias.add(pst);
+        numeroSentencias++;
+        return pst;
     }
-    
-    public void closeConnection() throws SQLException {
-        connection.close();
+
+    /**
+     * Devuelve el número de sentencias preparadas con esta conexión desde que
+     * se obtuvo del pool.
+     * @return Número de sentencias
+     */
+    public int getNumeroSentencias() {
+        return numeroSentencias;
     }
-    
-    public PreparedStatement prepareStatement(String sql) throws SQLException {
-        return connection.prepareStatement(sql);
+
+    /**
+     * Devuelve la conexión JDBC subyacente.
+     * @return Conexión JDBC
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Limpia las sentencias usadas (ResultSet abierto, parámetros y lote) y
+     * devuelve la conexión al pool.
+     */
+    @Override
+    public void close() {
+        if(cerrada) {
+            return;
+        }
+        cerrada = true;
+
+        for(PreparedStatement pst : sentencias) {
+            try {
+                // Por si no se cerró su ResultSet o quedó un lote a medias
+                ResultSet rs = pst.getResultSet();
+                if(rs != null) {
+                    rs.close();
+                }
+                pst.clearParameters();
+                pst.clearBatch();
+            } catch(SQLException ex) {
+                // La conexión se valida al volver a prestarse
+            }
+        }
+        sentencias.clear();
+        cache.cierraDesalojadas();
+
+        pool.devolver(connection);
+    }
+
+    /**
+     * Devuelve la lista de parámetros para una cláusula IN: "(?, ?, ?)".
+     * @param n Número de parámetros (mayor que 0)
+     * @return Lista de parámetros
+     */
+    public static String parametrosIn(int n) {
+        StringBuilder sb = new StringBuilder(n * 3 + 2);
+        sb.append('(');
+        for(int i = 0; i < n; i++) {
+            if(i > 0) sb.append(", ");
+            sb.append('?');
+        }
+        sb.append(')');
+
+        return sb.toString();
     }
 
     /** Alcance de clase **/
-    private static ConexionBD theInstance;
-    public static ConexionBD getInstancia() throws ClassNotFoundException, SQLException, MessageException {
-        if(theInstance == null){
-            theInstance = new ConexionBD();
+    private static PoolConexiones pool;
+
+    /**
+     * Devuelve el pool de conexiones, creándolo la primera vez.
+     * @return Pool de conexiones
+     * @throws ClassNotFoundException Si no está disponible el driver de Derby
+     */
+    public static synchronized PoolConexiones getPool() throws ClassNotFoundException {
+        if(pool == null){
+            Class.forName("org.apache.derby.jdbc.ClientDriver");
+            String url = System.getProperty("empresaX.urlBD", URL);
+            pool = new PoolConexiones(url, USUARIO, PASSWORD, MAX_CONEXIONES, MIN_INACTIVAS, 
+                                      MAX_ESPERA_MS, MAX_INACTIVIDAD_MS, TAM_CACHE_SENTENCIAS);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Presta una conexión del pool.
+     * @return Conexión prestada
+     * @throws ClassNotFoundException Si no está disponible el driver de Derby
+     * @throws SQLException Si ha ocurrido un error al obtener la conexión
+     * @throws MessageException Si no hay conexión con la BD
+     */
+    public static ConexionBD obtenerConexion() throws ClassNotFoundException, SQLException, MessageException {
+        try {
+            PoolConexiones p = getPool();
+            Connection c = p.prestar();
+            return new ConexionBD(c, p.getCache(c));
+        } catch(SQLNonTransientConnectionException ex) {
+            throw new MessageException("No hay conexión con la BD");
         }
-        
-        return theInstance;
     }
-    
-}
\ No newline at end of file
+
+}
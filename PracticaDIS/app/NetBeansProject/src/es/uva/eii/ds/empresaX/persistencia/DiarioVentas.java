@@ -0,0 +1,385 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+/**
+ * Diario local de ventas pendientes de llevar a la BD (las hechas sin
+ * conexión o, en modo diferido, todas). Es un fichero en el que solo se añade al final, con
+ * un registro JSON por línea, y cada escritura se fuerza a disco antes de
+ * volver, así que una venta anotada sobrevive a un cierre o caída del
+ * programa.
+ *
+ * Registros: "V" (venta anotada, con su ID de diario), "C" (ya está en la BD)
+ * y "R" (rechazada por la BD; se copia, con la venta completa, al fichero de
+ * rechazadas para poder rehacerla o devolverla). Al arrancar se releen y quedan pendientes las V sin C ni R.
+ * Cuando no queda ninguna pendiente el fichero se vacía.
+ *
+ * El ID de diario se guarda en la BD con la venta (VENTADIARIO), de modo que
+ * si se cae el programa tras registrarla pero antes de anotar la C, al
+ * reproducirla se ve que ya estaba y no se duplica. Las ventas de caja
+ * también lo llevan, así que una que se pierde con la conexión sin saber si
+ * se confirmó se puede anotar aquí sin riesgo.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DiarioVentas {
+
+    private static final String TIPO_VENTA = "V";
+    private static final String TIPO_CONFIRMADA = "C";
+    private static final String TIPO_RECHAZADA = "R";
+
+    private final Path fichero;
+    private final Path ficheroRechazadas;
+    private FileChannel canal;
+    // Pendientes por ID de diario, en el orden en que se anotaron
+    private final LinkedHashMap<String, Entrada> pendientes;
+    // Unidades de cada producto en las ventas pendientes
+    private final HashMap<String, Integer> unidadesPendientes;
+
+    // Estadísticas
+    private long anotadas;
+    private long reproducidas;
+    private long rechazadas;
+    private long tiempoReproduccionNs;
+
+    /**
+     * Abre (o crea) el diario y carga las ventas pendientes.
+     * @param fichero Fichero del diario
+     * @throws MessageException Si no se pudo leer o abrir
+     */
+    DiarioVentas(Path fichero) throws MessageException {
+        this.fichero = fichero;
+        this.ficheroRechazadas = fichero.resolveSibling(fichero.getFileName() + ".rechazadas");
+        this.pendientes = new LinkedHashMap<>();
+        this.unidadesPendientes = new HashMap<>();
+
+        try {
+            if(fichero.getParent() != null) {
+                Files.createDirectories(fichero.getParent());
+            }
+            byte[] contenido = Files.exists(fichero) ? Files.readAllBytes(fichero) : new byte[0];
+            // Una última línea sin '\n' quedó a medias por una caída: se descarta
+            // para no pegarle detrás el siguiente registro
+            int completas = contenido.length;
+            while(completas > 0 && contenido[completas - 1] != '\n') {
+                completas--;
+            }
+            for(String linea : new String(contenido, 0, completas, StandardCharsets.UTF_8).split("\n")) {
+                carga(linea);
+            }
+
+            canal = FileChannel.open(fichero, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                     StandardOpenOption.APPEND);
+            if(completas < contenido.length) {
+                canal.truncate(completas);
+                canal.force(true);
+            }
+        } catch(IOException ex) {
+            throw new MessageException("[!] No se pudo abrir el diario de ventas.");
+        }
+    }
+
+    /**
+     * Anota una venta y no vuelve hasta que está en disco.
+     * @param fecha Fecha de la venta
+     * @param dniEmpleado Dependiente que la realizó
+     * @param codigos Códigos de los productos de cada línea
+     * @param cantidades Cantidades de cada línea
+     * @return Entrada anotada
+     * @throws MessageException Si no se pudo escribir
+     */
+    synchronized Entrada anotar(LocalDate fecha, String dniEmpleado, List<String> codigos,
+                                List<Integer> cantidades) throws MessageException {
+        return anotar(new Entrada(UUID.randomUUID().toString(), fecha, dniEmpleado, codigos, cantidades));
+    }
+
+    /**
+     * Anota una venta que ya tiene su ID de diario (por ejemplo, una que se
+     * intentó registrar al momento con él) y no vuelve hasta que está en disco.
+     * @param entrada Venta
+     * @return Entrada anotada
+     * @throws MessageException Si no se pudo escribir
+     */
+    synchronized Entrada anotar(Entrada entrada) throws MessageException {
+        escribe(canal, getJson(TIPO_VENTA, entrada).toString());
+        anadePendiente(entrada);
+        anotadas++;
+
+        return entrada;
+    }
+
+    /**
+     * Devuelve las ventas pendientes, en el orden en que se anotaron.
+     * @param max Número máximo de ventas
+     * @return Ventas pendientes
+     */
+    synchronized ArrayList<Entrada> getPendientes(int max) {
+        ArrayList<Entrada> res = new ArrayList<>(Math.min(max, pendientes.size()));
+        for(Entrada entrada : pendientes.values()) {
+            if(res.size() == max) {
+                break;
+            }
+            res.add(entrada);
+        }
+        return res;
+    }
+
+    /**
+     * Marca ventas como registradas en la BD.
+     * @param ids IDs de diario
+     * @param tiempoNs Tiempo que se ha tardado en registrarlas
+     * @throws MessageException Si no se pudo escribir
+     */
+    synchronized void confirmar(Collection<String> ids, long tiempoNs) throws MessageException {
+        StringJoiner registros = new StringJoiner("\n");
+        for(String id : ids) {
+            JsonObject json = new JsonObject();
+            json.addProperty("tipo", TIPO_CONFIRMADA);
+            json.addProperty("id", id);
+            registros.add(json.toString());
+        }
+        escribe(canal, registros.toString());
+
+        for(String id : ids) {
+            if(quitaPendiente(id)) {
+                reproducidas++;
+            }
+        }
+        tiempoReproduccionNs += tiempoNs;
+        compactaSiVacio();
+    }
+
+    /**
+     * Marca una venta como rechazada por la BD y la copia al fichero de
+     * rechazadas.
+     * @param id ID de diario
+     * @param motivo Motivo del rechazo
+     * @throws MessageException Si no se pudo escribir
+     */
+    synchronized void rechazar(String id, String motivo) throws MessageException {
+        Entrada entrada = pendientes.get(id);
+        if(entrada == null) {
+            return;
+        }
+
+        // Con la venta completa: al vaciarse el diario solo queda esta copia
+        JsonObject json = getJson(TIPO_RECHAZADA, entrada);
+        json.addProperty("rechazada", LocalDateTime.now().toString());
+        json.addProperty("motivo", motivo);
+        try (FileChannel rechazos = FileChannel.open(ficheroRechazadas, StandardOpenOption.CREATE,
+                                         StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            escribe(rechazos, json.toString());
+        } catch(IOException ex) {
+            throw new MessageException("[!] No se pudo escribir en el diario de ventas.");
+        }
+        escribe(canal, json.toString());
+
+        quitaPendiente(id);
+        rechazadas++;
+        compactaSiVacio();
+    }
+
+    /**
+     * Devuelve el número de ventas pendientes de llevar a la BD.
+     * @return Ventas pendientes
+     */
+    public synchronized int getProfundidad() {
+        return pendientes.size();
+    }
+
+    /**
+     * Devuelve las unidades de un producto vendidas en ventas que aún no
+     * están en la BD (y que, por tanto, no se han descontado de sus existencias).
+     * @param codigo Código del producto
+     * @return Unidades pendientes
+     */
+    public synchronized int getUnidadesPendientes(String codigo) {
+        return unidadesPendientes.getOrDefault(codigo, 0);
+    }
+
+    public synchronized long getAnotadas() {
+        return anotadas;
+    }
+
+    public synchronized long getReproducidas() {
+        return reproducidas;
+    }
+
+    public synchronized long getRechazadas() {
+        return rechazadas;
+    }
+
+    /**
+     * Devuelve el ritmo medio al que se han llevado las ventas a la BD.
+     * @return Ventas por segundo (0 si aún no se ha reproducido ninguna)
+     */
+    public synchronized double getVentasPorSegundo() {
+        if(tiempoReproduccionNs == 0) {
+            return 0;
+        }
+        return reproducidas * 1e9 / tiempoReproduccionNs;
+    }
+
+    /**
+     * Devuelve el registro JSON de una venta: ID, fecha, empleado y todas sus
+     * líneas (código y cantidad).
+     */
+    private static JsonObject getJson(String tipo, Entrada entrada) {
+        JsonObject json = new JsonObject();
+        json.addProperty("tipo", tipo);
+        json.addProperty("id", entrada.id);
+        json.addProperty("fecha", entrada.fecha.toString());
+        json.addProperty("empleado", entrada.dniEmpleado);
+        JsonArray lineas = new JsonArray();
+        for(int i = 0; i < entrada.codigos.size(); i++) {
+            JsonObject linea = new JsonObject();
+            linea.addProperty("codigo", entrada.codigos.get(i));
+            linea.addProperty("cantidad", entrada.cantidades.get(i));
+            lineas.add(linea);
+        }
+        json.add("lineas", lineas);
+
+        return json;
+    }
+
+    /**
+     * Escribe una línea al final del fichero y la fuerza a disco.
+     */
+    private void escribe(FileChannel destino, String linea) throws MessageException {
+        if(linea.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap((linea + "\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            while(buffer.hasRemaining()) {
+                destino.write(buffer);
+            }
+            destino.force(true);
+        } catch(IOException ex) {
+            throw new MessageException("[!] No se pudo escribir en el diario de ventas.");
+        }
+    }
+
+    private void anadePendiente(Entrada entrada) {
+        pendientes.put(entrada.id, entrada);
+        for(int i = 0; i < entrada.codigos.size(); i++) {
+            unidadesPendientes.merge(entrada.codigos.get(i), entrada.cantidades.get(i), Integer::sum);
+        }
+    }
+
+    private boolean quitaPendiente(String id) {
+        Entrada entrada = pendientes.remove(id);
+        if(entrada == null) {
+            return false;
+        }
+        for(int i = 0; i < entrada.codigos.size(); i++) {
+            int quedan = unidadesPendientes.getOrDefault(entrada.codigos.get(i), 0) - entrada.cantidades.get(i);
+            if(quedan > 0) {
+                unidadesPendientes.put(entrada.codigos.get(i), quedan);
+            } else {
+                unidadesPendientes.remove(entrada.codigos.get(i));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Vacía el fichero si ya no queda nada pendiente, para que no crezca.
+     */
+    private void compactaSiVacio() throws MessageException {
+        if(!pendientes.isEmpty()) {
+            return;
+        }
+
+        try {
+            canal.truncate(0);
+            canal.force(true);
+        } catch(IOException ex) {
+            throw new MessageException("[!] No se pudo compactar el diario de ventas.");
+        }
+    }
+
+    /**
+     * Aplica un registro leído del fichero. Una línea incompleta (cortada por
+     * una caída mientras se escribía) se ignora: esa venta no se llegó a
+     * confirmar al dependiente.
+     */
+    private void carga(String linea) {
+        if(linea.trim().isEmpty()) {
+            return;
+        }
+
+        JsonObject json;
+        try {
+            JsonElement elemento = new JsonParser().parse(linea);
+            if(!elemento.isJsonObject()) {
+                return;
+            }
+            json = elemento.getAsJsonObject();
+        } catch(JsonParseException ex) {
+            return;
+        }
+
+        String id = json.get("id").getAsString();
+        switch(json.get("tipo").getAsString()) {
+            case TIPO_VENTA:
+                ArrayList<String> codigos = new ArrayList<>();
+                ArrayList<Integer> cantidades = new ArrayList<>();
+                for(JsonElement e : json.getAsJsonArray("lineas")) {
+                    codigos.add(e.getAsJsonObject().get("codigo").getAsString());
+                    cantidades.add(e.getAsJsonObject().get("cantidad").getAsInt());
+                }
+                anadePendiente(new Entrada(id, LocalDate.parse(json.get("fecha").getAsString()),
+                                           json.get("empleado").getAsString(), codigos, cantidades));
+                break;
+            default:
+                quitaPendiente(id);
+                break;
+        }
+    }
+
+
+    /**
+     * Venta anotada en el diario.
+     */
+    static final class Entrada {
+        final String id;
+        final LocalDate fecha;
+        final String dniEmpleado;
+        final List<String> codigos;
+        final List<Integer> cantidades;
+
+        Entrada(String id, LocalDate fecha, String dniEmpleado, List<String> codigos, List<Integer> cantidades) {
+            this.id = id;
+            this.fecha = fecha;
+            this.dniEmpleado = dniEmpleado;
+            this.codigos = codigos;
+            this.cantidades = cantidades;
+        }
+    }
+
+}
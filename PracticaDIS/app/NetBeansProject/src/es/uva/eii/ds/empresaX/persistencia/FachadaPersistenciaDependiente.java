@@ -5,11 +5,25 @@ import es.uva.eii.ds.empresaX.negocio.modelos.Empleado;
 import es.uva.eii.ds.empresaX.negocio.modelos.LineaDeVenta;
 import es.uva.eii.ds.empresaX.negocio.modelos.Venta;
 import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import java.sql.CallableStatement;
+import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,102 +35,602 @@ import java.util.logging.Logger;
 public class FachadaPersistenciaDependiente {
 
     private static final String QUERY_ID_PRODUCTO = "SELECT * FROM PRODUCTO WHERE CODIGO = ?";
+    private static final String QUERY_PRODUCTOS = "SELECT * FROM PRODUCTO";
 
     private static final String QUERY_ID_VENTA_VENTA = "INSERT INTO VENTA VALUES(?,?,?)";
     private static final String QUERY_ID_VENTA_LINEA = "INSERT INTO LINEADEVENTA VALUES(?,?,?)";
 
-    private static final String QUERY_EXISTENCIAS = "UPDATE PRODUCTO SET EXISTENCIAS = ? WHERE CODIGO = ?";
+    // Decremento relativo: no lee las existencias antes ni permite dejarlas en negativo
+    private static final String QUERY_DECREMENTA_EXISTENCIAS = 
+            "UPDATE PRODUCTO SET EXISTENCIAS = EXISTENCIAS - ? WHERE CODIGO = ? AND EXISTENCIAS >= ?";
+    // Para ventas ya dadas por hechas cuando no quedan suficientes: se descuentan
+    // igualmente (la fila queda bloqueada hasta el final de la transacción),
+    // se anota lo que falta en DESCUADREEXISTENCIAS y se dejan a 0
+    private static final String QUERY_FUERZA_EXISTENCIAS = 
+            "UPDATE PRODUCTO SET EXISTENCIAS = EXISTENCIAS - ? WHERE CODIGO = ?";
+    private static final String QUERY_ANOTA_DESCUADRE = 
+            "INSERT INTO DESCUADREEXISTENCIAS (PRODUCTO, UNIDADES, MOMENTO) "
+            + "SELECT CODIGO, -EXISTENCIAS, CURRENT_TIMESTAMP FROM PRODUCTO WHERE CODIGO = ? AND EXISTENCIAS < 0";
+    private static final String QUERY_AGOTA_EXISTENCIAS = 
+            "UPDATE PRODUCTO SET EXISTENCIAS = 0 WHERE CODIGO = ? AND EXISTENCIAS < 0";
+
+    // Venta completa en una sola llamada (migración 007; su clase se instala
+    // en el servidor con db/instalarProcedimientos.sql)
+    private static final String QUERY_REGISTRAR_VENTA = "CALL REGISTRAR_VENTA(?,?,?,?)";
+    // Registrar cada venta con REGISTRAR_VENTA en lugar de con sentencias sueltas
+    // (-DempresaX.registroVentas=procedimiento)
+    private static volatile boolean registroConProcedimiento = 
+            "procedimiento".equals(System.getProperty("empresaX.registroVentas"));
+
+    // ID de diario de cada venta (las del diario y las registradas al momento)
+    private static final String QUERY_VENTA_DIARIO = "INSERT INTO VENTADIARIO VALUES(?,?)";
+    private static final String QUERY_YA_EN_DIARIO = "SELECT IdDiario FROM VENTADIARIO WHERE IdDiario IN ";
+
+    // Diario de ventas hechas sin conexión (configurable con -DempresaX.diarioVentas=...)
+    private static final String FICHERO_DIARIO = System.getProperty("empresaX.diarioVentas", "diarioVentas.jsonl");
+    // Ventas del diario por transacción al llevarlas a la BD
+    private static final int TAM_LOTE_DIARIO = 25;
+    private static final long INTERVALO_REPRODUCCION_MS = 10 * 1000;
+
+    // Modo diferido (-DempresaX.ventasDiferidas=true): toda venta se da por hecha
+    // al quedar en el diario y se lleva a la BD poco después junto con las que
+    // lleguen mientras tanto, varias por transacción
+    private static final boolean VENTAS_DIFERIDAS = Boolean.getBoolean("empresaX.ventasDiferidas");
+    // Espera tras una venta diferida para juntarla con las siguientes
+    private static final long ESPERA_GRUPO_MS = 200;
+    // Ventas diferidas pendientes a partir de las cuales se vuelve a registrar
+    // cada venta al momento (acota lo que queda sin llevar a la BD)
+    private static final int MAX_VENTAS_DIFERIDAS = 200;
+    private static final AtomicBoolean grupoProgramado = new AtomicBoolean(false);
+    private static DiarioVentas diario;
+    private static ScheduledExecutorService reproductor;
+    private static final Object REPRODUCCION = new Object();
+
+    // Las entradas del catálogo caducan para ver los cambios hechos desde otros terminales
+    private static final long CADUCIDAD_CATALOGO_MS = 30 * 1000;
+    private static final CatalogoProductos CATALOGO = new CatalogoProductos(CADUCIDAD_CATALOGO_MS);
 
     private static ConexionBD conectarse() throws ClassNotFoundException, SQLException, MessageException {
-        return ConexionBD.getInstancia();
+        return ConexionBD.obtenerConexion();
     }
 
+    /**
+     * Devuelve el JSON de un producto. Se sirve desde el catálogo en memoria y
+     * solo se consulta la BD si no está o ha caducado.
+     * @param codigo Código del producto
+     * @return JSON del producto (compartido, no modificar) o null si no existe
+     * @throws MessageException Si no se pudo consultar la BD
+     */
     public static JsonObject getProductoBD(String codigo) throws MessageException {
+        JsonObject json = CATALOGO.obtener(codigo);
+        if (json != null) {
+            return json;
+        }
 
-        String cif = null;
-        try {
-            ConexionBD conn = conectarse();
+        long generacion = CATALOGO.getGeneracion();
+        try (ConexionBD conn = conectarse()) {
             PreparedStatement pst = conn.prepareStatement(QUERY_ID_PRODUCTO);
-            System.out.println();
             pst.setString(1, codigo);
             ResultSet rs = pst.executeQuery();
             if (rs.next()) {
-                String cod = rs.getString("codigo");
-                String nombre = rs.getString("nombre");
-                String descripcion = rs.getString("descripcion");
-                int existencias = rs.getInt("existencias");
-                int cantMin = rs.getInt("cantidadminimaenstock");
-                String subtipo = rs.getString("subtipo");
-                double precio = rs.getDouble("precio");
-                int diasEntrega = rs.getInt("diasparaentregadelproveedor");
-                String tipoMateria = rs.getString("tipodemateriaprima");
-                JsonObject json = new JsonObject();
-                json.addProperty("codigo", cod);
-                json.addProperty("nombre", nombre);
-                json.addProperty("descripcion", descripcion);
-                json.addProperty("existencias", existencias);
-                json.addProperty("cantMin", cantMin);
-                json.addProperty("subtipo", subtipo);
-                json.addProperty("precio", precio);
-                json.addProperty("diasEntrega", diasEntrega);
-                json.addProperty("tipoMateria", tipoMateria);
+                json = getProducto(rs);
+                CATALOGO.guardar(codigo, json, generacion);
                 return json;
             }
         } catch (ClassNotFoundException | SQLException ex) {
-            Logger.getLogger(FachadaPersistenciaEncargado.class.getName()).log(Level.SEVERE, null, ex);
+            Logger.getLogger(FachadaPersistenciaDependiente.class.getName()).log(Level.SEVERE, null, ex);
+            throw new MessageException("[!] Error al obtener el producto " + codigo + ".");
         }
         return null;
     }
 
-    public static void setVentaBD(Venta venta,Empleado empleado) throws MessageException {
+    /**
+     * Carga todos los productos en el catálogo en memoria con una sola consulta.
+     * @throws MessageException Si no se pudo consultar la BD
+     */
+    public static void precargarCatalogoBD() throws MessageException {
+        HashMap<String, JsonObject> productos = new HashMap<>();
+        long generacion = CATALOGO.getGeneracion();
+        try (ConexionBD conn = conectarse()) {
+            PreparedStatement pst = conn.prepareStatement(QUERY_PRODUCTOS);
+            ResultSet rs = pst.executeQuery();
+            while (rs.next()) {
+                JsonObject json = getProducto(rs);
+                productos.put(json.get("codigo").getAsString(), json);
+            }
+        } catch (ClassNotFoundException | SQLException ex) {
+            throw new MessageException("[!] Error al precargar el catálogo de productos.");
+        }
+
+        CATALOGO.precargar(productos, generacion);
+    }
+
+    /**
+     * Devuelve el catálogo de productos (para consultar sus estadísticas).
+     * @return Catálogo de productos
+     */
+    public static CatalogoProductos getCatalogo() {
+        return CATALOGO;
+    }
+
+    /**
+     * Devuelve el JSON del producto de la fila actual.
+     * @param rs Resultado de la consulta sobre PRODUCTO
+     * @return JSON del producto
+     * @throws SQLException 
+     */
+    private static JsonObject getProducto(ResultSet rs) throws SQLException {
+        JsonObject json = new JsonObject();
+        json.addProperty("codigo", rs.getString("codigo"));
+        json.addProperty("nombre", rs.getString("nombre"));
+        json.addProperty("descripcion", rs.getString("descripcion"));
+        json.addProperty("existencias", rs.getInt("existencias"));
+        json.addProperty("cantMin", rs.getInt("cantidadminimaenstock"));
+        json.addProperty("subtipo", rs.getString("subtipo"));
+        json.addProperty("precio", rs.getDouble("precio"));
+        json.addProperty("diasEntrega", rs.getInt("diasparaentregadelproveedor"));
+        json.addProperty("tipoMateria", rs.getString("tipodemateriaprima"));
+
+        return json;
+    }
+
+    /**
+     * Registra una venta completa en una única transacción: la cabecera, todas
+     * sus líneas (en lote) y el decremento de existencias de cada producto (en lote).
+     * Si algo falla, no se guarda nada.
+     *
+     * Si no hay conexión con la BD, o en modo diferido, la venta se anota en el
+     * diario local y se llevará a la BD después (la venta queda sin ID hasta
+     * entonces). En modo diferido, si ya hay demasiadas pendientes se
+     * registra al momento.
+     *
+     * La venta lleva desde el principio su ID de diario, que se guarda con
+     * ella en VENTADIARIO. Si se pierde la conexión a mitad (SQLState 08) no
+     * se sabe si llegó a confirmarse: se anota en el diario con ese mismo ID
+     * y, si ya estaba, al reproducirla se salta. Con REGISTRAR_VENTA, que no
+     * guarda el ID de diario, no se anota y se avisa de que no se sabe.
+     * Cualquier otro error (entre ellos la falta de existencias) se devuelve
+     * sin anotarla.
+     * @param venta Venta a registrar (se le asigna el ID generado)
+     * @param empleado Dependiente que realiza la venta
+     * @throws MessageException Si no hay existencias suficientes o falla la BD
+     */
+    public static void confirmarVentaBD(Venta venta, Empleado empleado) throws MessageException {
+        ArrayList<String> codigos = new ArrayList<>();
+        ArrayList<Integer> cantidades = new ArrayList<>();
+        for (LineaDeVenta lv : venta.getLineas()) {
+            codigos.add(lv.getProducto().getCodigo());
+            cantidades.add(lv.getCantidad());
+        }
+        DiarioVentas.Entrada entrada = new DiarioVentas.Entrada(UUID.randomUUID().toString(), 
+                venta.getFechaDeVenta(), empleado.getDni(), codigos, cantidades);
 
+        if (VENTAS_DIFERIDAS && getDiario().getProfundidad() < MAX_VENTAS_DIFERIDAS) {
+            anotaEnDiario(entrada);
+            return;
+        }
+
+        ConexionBD conn;
         try {
-            ConexionBD conn = conectarse();
-            
-            PreparedStatement count = conn.prepareStatement("SELECT COUNT(*) AS rowcount FROM VENTA");
-            ResultSet rsCount = count.executeQuery();
-            rsCount.next();
-            
-            Date hoy = java.sql.Date.valueOf(venta.getFechaDeVenta());
-            PreparedStatement pst = conn.prepareStatement(QUERY_ID_VENTA_VENTA);
-            pst.setInt(1, rsCount.getInt("rowcount")+1);
-            pst.setDate(2, hoy);
-            pst.setString(3, empleado.getDni());
-            int rs = pst.executeUpdate();
-
-            
-            for (LineaDeVenta lp : venta.getLineas()) {
-                PreparedStatement pst1 = conn.prepareStatement(QUERY_ID_VENTA_LINEA);
-                pst1.setInt(1, lp.getCantidad());
-                pst1.setInt(2, rsCount.getInt("rowcount")+1);
-                pst1.setString(3, lp.getProducto().getCodigo());
-                int rs1 = pst1.executeUpdate();
-            }   
-            
+            conn = conectarse();
+        } catch (MessageException sinConexion) {
+            anotaEnDiario(entrada);
+            return;
         } catch (ClassNotFoundException | SQLException ex) {
-            Logger.getLogger(FachadaPersistenciaEncargado.class.getName()).log(Level.SEVERE, null, ex);
+            if (ex instanceof SQLException && esErrorDeConexion((SQLException) ex)) {
+                anotaEnDiario(entrada);
+                return;
+            }
+            Logger.getLogger(FachadaPersistenciaDependiente.class.getName()).log(Level.SEVERE, null, ex);
+            throw new MessageException("[!] Error al registrar la venta.");
         }
 
+        String lineas = registroConProcedimiento ? ProcedimientosBD.empaquetaLineas(codigos, cantidades) : null;
+        try (ConexionBD c = conn) {
+            int[] ids = new int[1];
+            String sinExistencias = lineas != null 
+                    ? registraConProcedimiento(c, entrada, lineas, ids) 
+                    : registraVentas(c, Collections.singletonList(entrada), ids, false);
+            if (sinExistencias != null) {
+                throw new MessageException("No existen unidades suficientes del producto " + sinExistencias);
+            }
+            venta.setIdDeVenta(ids[0]);
+        } catch (SQLException ex) {
+            Logger.getLogger(FachadaPersistenciaDependiente.class.getName()).log(Level.SEVERE, null, ex);
+            if (!esErrorDeConexion(ex)) {
+                throw new MessageException("[!] Error al registrar la venta.");
+            }
+            if (lineas != null) {
+                throw new MessageException("[!] Se ha perdido la conexión y no se sabe si la venta se ha registrado.");
+            }
+            anotaEnDiario(entrada);
+        }
+    }
+
+    private static void anotaEnDiario(DiarioVentas.Entrada entrada) throws MessageException {
+        getDiario().anotar(entrada);
+        iniciarReproduccionDiario();
+        programaGrupo();
     }
 
-    public static void actualizarExistenciasBD(Venta venta) throws MessageException {
+    /**
+     * Elige cómo se registra cada venta al momento: con el procedimiento
+     * REGISTRAR_VENTA (una sola llamada a la BD por venta) o con sentencias
+     * en lote. Las ventas del diario se registran siempre en lote.
+     * @param procedimiento true para usar el procedimiento
+     */
+    public static void setRegistroConProcedimiento(boolean procedimiento) {
+        registroConProcedimiento = procedimiento;
+    }
+
+    public static boolean isRegistroConProcedimiento() {
+        return registroConProcedimiento;
+    }
 
+    /**
+     * Indica si las ventas se registran en modo diferido.
+     * @return true si se dan por hechas al quedar en el diario local
+     */
+    public static boolean isVentasDiferidas() {
+        return VENTAS_DIFERIDAS;
+    }
+
+    /**
+     * Devuelve las unidades de un producto vendidas que aún no se han
+     * descontado en la BD (ventas pendientes del diario).
+     * @param codigo Código del producto
+     * @return Unidades pendientes (0 si no se ha usado el diario)
+     */
+    public static int getUnidadesSinRegistrar(String codigo) {
+        DiarioVentas d;
+        synchronized (FachadaPersistenciaDependiente.class) {
+            d = diario;
+        }
+        return d == null ? 0 : d.getUnidadesPendientes(codigo);
+    }
+
+    /**
+     * Devuelve el diario de ventas hechas sin conexión (lo abre la primera
+     * vez), por ejemplo para consultar cuántas quedan pendientes.
+     * @return Diario de ventas
+     * @throws MessageException Si no se pudo abrir
+     */
+    public static synchronized DiarioVentas getDiario() throws MessageException {
+        if (diario == null) {
+            diario = new DiarioVentas(Paths.get(FICHERO_DIARIO));
+        }
+        return diario;
+    }
+
+    /**
+     * Empieza a llevar a la BD, en segundo plano, las ventas pendientes del
+     * diario. Se llama al arrancar y cada vez que se anota una venta; si ya
+     * se estaba haciendo no hace nada.
+     * @throws MessageException Si no se pudo abrir el diario
+     */
+    public static synchronized void iniciarReproduccionDiario() throws MessageException {
+        getDiario();
+        if (reproductor != null) {
+            return;
+        }
+
+        reproductor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "DiarioVentas-reproduccion");
+            t.setDaemon(true);
+            return t;
+        });
+        reproductor.scheduleWithFixedDelay(FachadaPersistenciaDependiente::reproduceEnSegundoPlano, 
+                0, INTERVALO_REPRODUCCION_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Programa llevar a la BD las ventas diferidas dentro de un momento, salvo
+     * que ya esté programado: las que lleguen entretanto van en el mismo grupo.
+     */
+    private static void programaGrupo() {
+        if (grupoProgramado.compareAndSet(false, true)) {
+            reproductor.schedule(() -> {
+                grupoProgramado.set(false);
+                reproduceEnSegundoPlano();
+            }, ESPERA_GRUPO_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void reproduceEnSegundoPlano() {
         try {
-            ConexionBD conn = conectarse();
-            for (LineaDeVenta lp : venta.getLineas()) {
-                PreparedStatement pst1 = conn.prepareStatement(QUERY_ID_PRODUCTO);
-                pst1.setString(1, lp.getProducto().getCodigo());
-                ResultSet rs1 = pst1.executeQuery();
-                rs1.next();
-                PreparedStatement pst2 = conn.prepareStatement(QUERY_EXISTENCIAS);
-                pst2.setInt(1, rs1.getInt("existencias")-lp.getCantidad());
-                pst2.setString(2, lp.getProducto().getCodigo());
-                int rs2 = pst2.executeUpdate();
+            reproducirDiario();
+        } catch (MessageException ex) {
+            // Sigue sin conexión: se reintenta en la siguiente vuelta
+        } catch (RuntimeException ex) {
+            Logger.getLogger(FachadaPersistenciaDependiente.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Lleva a la BD las ventas pendientes del diario, en lotes de varias
+     * ventas por transacción. Las ventas del diario ya se dieron por hechas,
+     * así que se registran aunque no queden existencias suficientes (ver
+     * registraVentas). Si la BD no admite alguna (por ejemplo, su producto o
+     * su dependiente ya no existen) se pasa al fichero de rechazadas y se
+     * sigue con las demás; cualquier otro error detiene la reproducción hasta
+     * el siguiente intento.
+     * @return Número de ventas registradas
+     * @throws MessageException Si no hay conexión o falla la BD (se reintentará)
+     */
+    public static int reproducirDiario() throws MessageException {
+        DiarioVentas d = getDiario();
+        int registradas = 0;
+
+        // Una sola reproducción a la vez, para no llevar dos veces el mismo lote
+        synchronized (REPRODUCCION) {
+            ArrayList<DiarioVentas.Entrada> lote = d.getPendientes(TAM_LOTE_DIARIO);
+            while (!lote.isEmpty()) {
+                try (ConexionBD conn = conectarse()) {
+                    long inicio = System.nanoTime();
+                    try {
+                        registraVentas(conn, lote, new int[lote.size()], true);
+                        d.confirmar(idsDe(lote), System.nanoTime() - inicio);
+                        registradas += lote.size();
+                    } catch (SQLException ex) {
+                        if (!esErrorDeDatos(ex)) {
+                            throw ex;
+                        }
+                        // Alguna venta del lote no cabe en la BD: se repite de una en una
+                        for (DiarioVentas.Entrada entrada : lote) {
+                            inicio = System.nanoTime();
+                            List<DiarioVentas.Entrada> una = Collections.singletonList(entrada);
+                            try {
+                                registraVentas(conn, una, new int[1], true);
+                                d.confirmar(idsDe(una), System.nanoTime() - inicio);
+                                registradas++;
+                            } catch (SQLException exVenta) {
+                                if (!esErrorDeDatos(exVenta)) {
+                                    throw exVenta;
+                                }
+                                Logger.getLogger(FachadaPersistenciaDependiente.class.getName()).log(Level.SEVERE,
+                                        "Venta del diario " + entrada.id + " rechazada por la BD", exVenta);
+                                d.rechazar(entrada.id, exVenta.getMessage());
+                            }
+                        }
+                    }
+                } catch (ClassNotFoundException | SQLException ex) {
+                    Logger.getLogger(FachadaPersistenciaDependiente.class.getName()).log(Level.SEVERE, null, ex);
+                    throw new MessageException("[!] Error al llevar a la BD las ventas del diario.");
+                }
+                lote = d.getPendientes(TAM_LOTE_DIARIO);
+            }
+        }
+
+        return registradas;
+    }
+
+    /**
+     * Indica si el error se debe a los datos de la venta (restricciones,
+     * clase 23, o datos no válidos, clase 22) y no a la conexión o a un
+     * problema pasajero, de modo que repetirla volvería a fallar.
+     */
+    private static boolean esErrorDeDatos(SQLException ex) {
+        for (SQLException e = ex; e != null; e = e.getNextException()) {
+            String estado = e.getSQLState();
+            if (estado != null && (estado.startsWith("23") || estado.startsWith("22"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indica si el error se debe a la conexión (clase 08): la sentencia pudo
+     * llegar o no a la BD.
+     */
+    private static boolean esErrorDeConexion(SQLException ex) {
+        for (SQLException e = ex; e != null; e = e.getNextException()) {
+            String estado = e.getSQLState();
+            if (estado != null && estado.startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ArrayList<String> idsDe(List<DiarioVentas.Entrada> entradas) {
+        ArrayList<String> ids = new ArrayList<>(entradas.size());
+        for (DiarioVentas.Entrada entrada : entradas) {
+            ids.add(entrada.id);
+        }
+        return ids;
+    }
+
+    /**
+     * Registra varias ventas en una única transacción: cabeceras y líneas en
+     * lote y un único decremento por producto para todas ellas. Cada venta
+     * guarda además su ID de diario y, al reproducir el diario, las que ya
+     * estaban en la BD (registradas antes de una caída) se saltan.
+     *
+     * Con forzarExistencias (ventas que ya se dieron por hechas al cliente)
+     * la falta de existencias no impide registrarlas: las del producto se
+     * dejan a 0 y las unidades que faltaban quedan en DESCUADREEXISTENCIAS
+     * para cuadrar el inventario.
+     * @param conn Conexión
+     * @param ventas Ventas
+     * @param ids Recibe el ID de venta asignado a cada una (0 si ya estaba)
+     * @param forzarExistencias true para registrarlas aunque falten existencias
+     * @return null si se han registrado, o el código del primer producto sin
+     *         existencias suficientes (y entonces no se guarda nada)
+     * @throws SQLException Si falla la BD (no se guarda nada)
+     * @throws MessageException Si no se pudieron generar los IDs de venta
+     */
+    private static String registraVentas(ConexionBD conn, List<DiarioVentas.Entrada> ventas, int[] ids,
+            boolean forzarExistencias) throws SQLException, MessageException {
+        // Una venta de caja lleva un ID de diario recién creado: solo las del
+        // diario pueden estar ya
+        HashSet<String> yaRegistradas = forzarExistencias ? getYaRegistradas(conn, ventas) : new HashSet<>();
+
+        // Con la misma conexión, antes de empezar la transacción
+        for (int i = 0; i < ventas.size(); i++) {
+            ids[i] = yaRegistradas.contains(ventas.get(i).id) ? 0 : GeneradorIds.VENTAS.siguiente(conn);
+        }
+
+        // Cantidad total por producto, para un único UPDATE por producto
+        LinkedHashMap<String, Integer> cantidades = new LinkedHashMap<>();
+        for (int i = 0; i < ventas.size(); i++) {
+            if (ids[i] != 0) {
+                DiarioVentas.Entrada venta = ventas.get(i);
+                for (int j = 0; j < venta.codigos.size(); j++) {
+                    cantidades.merge(venta.codigos.get(j), venta.cantidades.get(j), Integer::sum);
+                }
+            }
+        }
+        if (cantidades.isEmpty()) {
+            return null;
+        }
+
+        // Productos sin existencias suficientes en ventas que se fuerzan
+        ArrayList<String> agotadas = new ArrayList<>();
+
+        Connection c = conn.getConnection();
+        c.setAutoCommit(false);
+        try {
+            // Cabeceras, líneas e IDs de diario
+            PreparedStatement pst = conn.prepareStatement(QUERY_ID_VENTA_VENTA);
+            PreparedStatement pstLineas = conn.prepareStatement(QUERY_ID_VENTA_LINEA);
+            PreparedStatement pstDiario = conn.prepareStatement(QUERY_VENTA_DIARIO);
+            for (int i = 0; i < ventas.size(); i++) {
+                if (ids[i] == 0) {
+                    continue;
+                }
+                DiarioVentas.Entrada venta = ventas.get(i);
+                pst.setInt(1, ids[i]);
+                pst.setDate(2, Date.valueOf(venta.fecha));
+                pst.setString(3, venta.dniEmpleado);
+                pst.addBatch();
+                for (int j = 0; j < venta.codigos.size(); j++) {
+                    pstLineas.setInt(1, venta.cantidades.get(j));
+                    pstLineas.setInt(2, ids[i]);
+                    pstLineas.setString(3, venta.codigos.get(j));
+                    pstLineas.addBatch();
+                }
+                pstDiario.setString(1, venta.id);
+                pstDiario.setInt(2, ids[i]);
+                pstDiario.addBatch();
+            }
+            pst.executeBatch();
+            pstLineas.executeBatch();
+            pstDiario.executeBatch();
+
+            // Existencias
+            PreparedStatement pstExistencias = conn.prepareStatement(QUERY_DECREMENTA_EXISTENCIAS);
+            for (Map.Entry<String, Integer> e : cantidades.entrySet()) {
+                pstExistencias.setInt(1, e.getValue());
+                pstExistencias.setString(2, e.getKey());
+                pstExistencias.setInt(3, e.getValue());
+                pstExistencias.addBatch();
+            }
+            int[] actualizadas = pstExistencias.executeBatch();
+            int i = 0;
+            for (String codigo : cantidades.keySet()) {
+                if (actualizadas[i++] == 0) {
+                    if (!forzarExistencias) {
+                        c.rollback();
+                        return codigo;
+                    }
+                    agotadas.add(codigo);
+                }
+            }
+            if (!agotadas.isEmpty()) {
+                PreparedStatement pstFuerza = conn.prepareStatement(QUERY_FUERZA_EXISTENCIAS);
+                PreparedStatement pstDescuadre = conn.prepareStatement(QUERY_ANOTA_DESCUADRE);
+                PreparedStatement pstAgota = conn.prepareStatement(QUERY_AGOTA_EXISTENCIAS);
+                for (String codigo : agotadas) {
+                    pstFuerza.setInt(1, cantidades.get(codigo));
+                    pstFuerza.setString(2, codigo);
+                    pstFuerza.addBatch();
+                    pstDescuadre.setString(1, codigo);
+                    pstDescuadre.addBatch();
+                    pstAgota.setString(1, codigo);
+                    pstAgota.addBatch();
+                }
+                pstFuerza.executeBatch();
+                pstDescuadre.executeBatch();
+                pstAgota.executeBatch();
+            }
+
+            c.commit();
+        } catch (SQLException | RuntimeException ex) {
+            c.rollback();
+            throw ex;
+        }
+
+        for (String codigo : agotadas) {
+            Logger.getLogger(FachadaPersistenciaDependiente.class.getName()).log(Level.WARNING, 
+                    "Se han registrado ventas del producto {0} sin existencias suficientes; "
+                    + "se han dejado a 0 y lo que faltaba está en DESCUADREEXISTENCIAS.", codigo);
+        }
+        CATALOGO.invalidar(cantidades.keySet());
+        return null;
+    }
+
+    /**
+     * Registra una venta con una sola llamada a REGISTRAR_VENTA, que se
+     * confirma por sí sola (la conexión está en autocommit). Si falla, Derby
+     * deshace la llamada entera.
+     * @param conn Conexión
+     * @param venta Venta
+     * @param lineas Líneas empaquetadas
+     * @param ids Recibe el ID de venta asignado
+     * @return null si se ha registrado, o el código del primer producto sin
+     *         existencias suficientes (y entonces no se guarda nada)
+     * @throws SQLException Si falla la BD (no se guarda nada)
+     * @throws MessageException Si no se pudo generar el ID de venta o el
+     *         procedimiento no está instalado en el servidor
+     */
+    private static String registraConProcedimiento(ConexionBD conn, DiarioVentas.Entrada venta, String lineas, 
+            int[] ids) throws SQLException, MessageException {
+        ids[0] = GeneradorIds.VENTAS.siguiente(conn);
+
+        try (CallableStatement cst = conn.getConnection().prepareCall(QUERY_REGISTRAR_VENTA)) {
+            cst.setInt(1, ids[0]);
+            cst.setDate(2, Date.valueOf(venta.fecha));
+            cst.setString(3, venta.dniEmpleado);
+            cst.setString(4, lineas);
+            cst.execute();
+        } catch (SQLException ex) {
+            if (ProcedimientosBD.esNoInstalado(ex)) {
+                Logger.getLogger(FachadaPersistenciaDependiente.class.getName()).log(Level.SEVERE, 
+                        "REGISTRAR_VENTA no está instalado en el servidor de la BD: hay que instalar "
+                        + "dist/procedimientosBD.jar con db/instalarProcedimientos.sql", ex);
+                throw new MessageException("[!] El procedimiento REGISTRAR_VENTA no está instalado en la BD.");
+            }
+            String sinExistencias = ProcedimientosBD.getCodigoSinExistencias(ex);
+            if (sinExistencias == null) {
+                throw ex;
+            }
+            return sinExistencias;
+        }
+
+        CATALOGO.invalidar(venta.codigos);
+        return null;
+    }
+
+    /**
+     * Devuelve los IDs de diario de las ventas que ya están en la BD.
+     */
+    private static HashSet<String> getYaRegistradas(ConexionBD conn, List<DiarioVentas.Entrada> ventas) 
+            throws SQLException {
+        ArrayList<String> ids = idsDe(ventas);
+        HashSet<String> res = new HashSet<>();
+
+        PreparedStatement pst = conn.prepareStatement(QUERY_YA_EN_DIARIO + ConexionBD.parametrosIn(ids.size()));
+        for (int i = 0; i < ids.size(); i++) {
+            pst.setString(i + 1, ids.get(i));
+        }
+        try (ResultSet rs = pst.executeQuery()) {
+            while (rs.next()) {
+                res.add(rs.getString(1));
             }
-        } catch (ClassNotFoundException | SQLException ex) {
-            Logger.getLogger(FachadaPersistenciaEncargado.class.getName()).log(Level.SEVERE, null, ex);
         }
 
+        return res;
     }
 
 }
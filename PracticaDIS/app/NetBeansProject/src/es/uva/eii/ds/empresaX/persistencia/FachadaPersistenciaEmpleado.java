@@ -3,11 +3,25 @@ package es.uva.eii.ds.empresaX.persistencia;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.negocio.modelos.TipoDisponibilidad;
+import es.uva.eii.ds.empresaX.negocio.modelos.TipoRol;
+import es.uva.eii.ds.empresaX.negocio.modelos.TipoVinculacion;
 import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
 import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosEmpleado;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosHistorico;
+import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * @author Abel Herrero Gómez         (abeherr)
@@ -16,20 +30,32 @@ import java.sql.SQLException;
  */
 public class FachadaPersistenciaEmpleado {
     
-    private static final String QUERY_NIF_PASS = "SELECT * FROM Empleado WHERE nif = (?) AND password = (?)";
+    // Perfil completo del login en una sola consulta: la fila del empleado (fuente 0)
+    // seguida de sus roles (1), vinculaciones (2) y disponibilidades (3). Los históricos
+    // se cruzan con Empleado para que solo aparezcan si las credenciales son válidas.
+    private static final String QUERY_PERFIL_LOGIN =
+            "SELECT 0 AS Fuente, E.nif, E.nombre, E.apellidos, E.fechaInicioEnEmpresa AS Fecha, "
+            + "CAST(NULL AS DATE) AS FechaFin, CAST(NULL AS SMALLINT) AS Tipo "
+            + "FROM Empleado E WHERE E.nif = (?) AND E.password = (?) "
+            + "UNION ALL "
+            + "SELECT 1, R.empleado, CAST(NULL AS VARCHAR(20)), CAST(NULL AS VARCHAR(30)), R.comienzoEnRol, CAST(NULL AS DATE), R.rol "
+            + "FROM RolesEnEmpresa R INNER JOIN Empleado E ON R.empleado = E.nif WHERE E.nif = (?) AND E.password = (?) "
+            + "UNION ALL "
+            + "SELECT 2, V.empleado, CAST(NULL AS VARCHAR(20)), CAST(NULL AS VARCHAR(30)), V.inicio, CAST(NULL AS DATE), V.vinculo "
+            + "FROM VinculacionConLaEmpresa V INNER JOIN Empleado E ON V.empleado = E.nif WHERE E.nif = (?) AND E.password = (?) "
+            + "UNION ALL "
+            + "SELECT 3, D.empleado, CAST(NULL AS VARCHAR(20)), CAST(NULL AS VARCHAR(30)), D.comienzo, D.finalPrevisto, D.disponibilidad "
+            + "FROM DisponibilidadEmpleado D INNER JOIN Empleado E ON D.empleado = E.nif WHERE E.nif = (?) AND E.password = (?) "
+            + "ORDER BY 1";
     private static final String QUERY_ROLES = "SELECT * FROM RolesEnEmpresa WHERE empleado = (?)";
-    private static final String QUERY_NOMBRE_TIPO_1 = "SELECT nombreTipo FROM ";
-    private static final String QUERY_NOMBRE_TIPO_2 = " WHERE idTipo = (?)";
     private static final String QUERY_VINCULACIONES = "SELECT * FROM VinculacionConLaEmpresa WHERE empleado = (?)";
     private static final String QUERY_DISPONIBILIDADES = "SELECT * FROM DisponibilidadEmpleado WHERE empleado = (?)";
     
-    
-        // NOMBRES BD
-    private static final String TIPOS_ROL = "TipoDeRol";
-    private static final String TIPOS_VINCULACION = "TipoDeVinculacion";
-    private static final String TIPOS_DISPONIBILIDAD = "TipoDeDisponibilidad";
-    
-    private static final String NOMBRE_TIPO = "NombreTipo";
+    // Carga por lotes (IN) de varios empleados y sus históricos
+    private static final String QUERY_EMPLEADOS_IN = "SELECT * FROM Empleado WHERE nif IN ";
+    private static final String QUERY_ROLES_IN = "SELECT * FROM RolesEnEmpresa WHERE empleado IN ";
+    private static final String QUERY_VINCULACIONES_IN = "SELECT * FROM VinculacionConLaEmpresa WHERE empleado IN ";
+    private static final String QUERY_DISPONIBILIDADES_IN = "SELECT * FROM DisponibilidadEmpleado WHERE empleado IN ";
     
     // EMPLEADO
     private static final String EMPL_NIF = "nif";
@@ -50,29 +76,39 @@ public class FachadaPersistenciaEmpleado {
     private static final String DISP_FINAL = "FinalPrevisto";
     private static final String DISP_DISPONIBILIDAD = "Disponibilidad";
     
+    private static final String EMPLEADO = "Empleado";
+    
+    // PERFIL DE LOGIN
+    private static final String PERFIL_FUENTE = "Fuente";
+    private static final String PERFIL_FECHA = "Fecha";
+    private static final String PERFIL_FECHA_FIN = "FechaFin";
+    private static final String PERFIL_TIPO = "Tipo";
+    private static final int FUENTE_EMPLEADO = 0;
+    private static final int FUENTE_ROL = 1;
+    private static final int FUENTE_VINCULACION = 2;
+    private static final int FUENTE_DISPONIBILIDAD = 3;
+    
+    
+    private static final Logger LOGGER = Logger.getLogger(FachadaPersistenciaEmpleado.class.getName());
+    
+    // Sentencias emitidas por el último login
+    private static volatile int sentenciasUltimoLogin;
+    
     private static ConexionBD conectarse() throws ClassNotFoundException, SQLException, MessageException {
-        return ConexionBD.getInstancia();
+        return ConexionBD.obtenerConexion();
     }
     
     /**
-     * Devuelve el nombre de un tipo de rol/vinculacion/disponibilidad según su ID.
-     * @param conn Conexión a la BD
-     * @param nombreTabla Nombre de la tabla en la que consultar (roles, vinculaciones...)
-     * @param idTipo ID del tipo
-     * @return Cadena asociada al ID
-     * @throws SQLException 
+     * Carga las tablas de tipos (roles, vinculaciones, disponibilidades y estados
+     * de pedido) para que el login y la carga de pedidos no las consulten.
+     * @throws MessageException Si ha ocurrido un error con la BD
      */
-    private static String obtenerNombreTipo(ConexionBD conn, String nombreTabla, int idTipo) throws SQLException {
-        String res = "DESCONOCIDO";
-        
-        PreparedStatement pst = conn.prepareStatement(QUERY_NOMBRE_TIPO_1 + nombreTabla + QUERY_NOMBRE_TIPO_2);
-        pst.setInt(1, idTipo);
-        ResultSet rs = pst.executeQuery();
-        if(rs.next()){
-            res = rs.getString(NOMBRE_TIPO);
+    public static void precargarTiposBD() throws MessageException {
+        try (ConexionBD conn = conectarse()) {
+            RegistroTipos.precargar(conn);
+        } catch(SQLException | ClassNotFoundException ex) {
+            throw new MessageException("[!] Error al cargar las tablas de tipos.");
         }
-        
-        return res;
     }
     
     /**
@@ -91,7 +127,7 @@ public class FachadaPersistenciaEmpleado {
         while(rs.next()){
             JsonObject rol = new JsonObject();
             rol.addProperty(JSONHelper.JSON_COMIENZO, rs.getDate(ROL_COMIENZO).toString());
-            rol.addProperty(JSONHelper.JSON_ROL, obtenerNombreTipo(conn, TIPOS_ROL, rs.getInt(ROL_ROL)));
+            rol.addProperty(JSONHelper.JSON_ROL, RegistroTipos.getRoles(conn).nombre(rs.getInt(ROL_ROL)));
             roles.add(rol);
         }
         
@@ -114,7 +150,7 @@ public class FachadaPersistenciaEmpleado {
         while(rs.next()){
             JsonObject vinculacion = new JsonObject();
             vinculacion.addProperty(JSONHelper.JSON_COMIENZO, rs.getDate(VINC_INICIO).toString());
-            vinculacion.addProperty(JSONHelper.JSON_VINCULACION, obtenerNombreTipo(conn, TIPOS_VINCULACION, rs.getInt(VINC_VINCULO)));
+            vinculacion.addProperty(JSONHelper.JSON_VINCULACION, RegistroTipos.getVinculaciones(conn).nombre(rs.getInt(VINC_VINCULO)));
             vinculaciones.add(vinculacion);
         }
         
@@ -141,13 +177,90 @@ public class FachadaPersistenciaEmpleado {
                 // Puede ser null
                 disponibilidad.addProperty(JSONHelper.JSON_FINAL_PREVISTO, rs.getDate(DISP_FINAL).toString());
             }
-            disponibilidad.addProperty(JSONHelper.JSON_DISPONIBILIDAD, obtenerNombreTipo(conn, TIPOS_DISPONIBILIDAD, rs.getInt(DISP_DISPONIBILIDAD)));
+            disponibilidad.addProperty(JSONHelper.JSON_DISPONIBILIDAD, RegistroTipos.getDisponibilidades(conn).nombre(rs.getInt(DISP_DISPONIBILIDAD)));
             disponibilidades.add(disponibilidad);
         }
         
         return disponibilidades;
     }
     
+    /**
+     * Devuelve los datos de varios empleados (con roles, vinculaciones y 
+     * disponibilidades) usando un número fijo de consultas por lote de NIFs, 
+     * en lugar de cuatro consultas más una por cada fila de histórico.
+     * @param conn Conexión a la BD
+     * @param nifs NIFs de los empleados
+     * @return Mapa NIF -> datos del empleado (los inexistentes no aparecen)
+     * @throws SQLException 
+     */
+    public static HashMap<String, DatosEmpleado> obtenerEmpleados(ConexionBD conn, Collection<String> nifs) throws SQLException {
+        HashMap<String, DatosEmpleado> empleados = new HashMap<>();
+        RegistroTipos<TipoRol> tiposRol = RegistroTipos.getRoles(conn);
+        RegistroTipos<TipoVinculacion> tiposVinculacion = RegistroTipos.getVinculaciones(conn);
+        RegistroTipos<TipoDisponibilidad> tiposDisponibilidad = RegistroTipos.getDisponibilidades(conn);
+        ArrayList<String> pendientes = new ArrayList<>(new LinkedHashSet<>(nifs));
+        
+        for(int i = 0; i < pendientes.size(); i += ConexionBD.MAX_PARAMETROS_IN) {
+            List<String> lote = pendientes.subList(i, Math.min(i + ConexionBD.MAX_PARAMETROS_IN, pendientes.size()));
+            String in = ConexionBD.parametrosIn(lote.size());
+            
+            // Datos básicos
+            ResultSet rs = ejecutaConLote(conn, QUERY_EMPLEADOS_IN + in, lote);
+            while(rs.next()){
+                String nif = rs.getString(EMPL_NIF);
+                empleados.put(nif, new DatosEmpleado(nif, rs.getString(EMPL_NOMBRE), rs.getString(EMPL_APELLIDOS),
+                                                     rs.getDate(EMPL_FECHA_INICIO).toLocalDate()));
+            }
+            
+            // Roles
+            rs = ejecutaConLote(conn, QUERY_ROLES_IN + in, lote);
+            while(rs.next()){
+                DatosEmpleado empleado = empleados.get(rs.getString(EMPLEADO));
+                if(empleado == null) continue;
+                empleado.addRol(new DatosHistorico(rs.getDate(ROL_COMIENZO).toLocalDate(), null, 
+                                                   tiposRol.nombre(rs.getInt(ROL_ROL))));
+            }
+            
+            // Vinculaciones
+            rs = ejecutaConLote(conn, QUERY_VINCULACIONES_IN + in, lote);
+            while(rs.next()){
+                DatosEmpleado empleado = empleados.get(rs.getString(EMPLEADO));
+                if(empleado == null) continue;
+                empleado.addVinculacion(new DatosHistorico(rs.getDate(VINC_INICIO).toLocalDate(), null, 
+                                                           tiposVinculacion.nombre(rs.getInt(VINC_VINCULO))));
+            }
+            
+            // Disponibilidades
+            rs = ejecutaConLote(conn, QUERY_DISPONIBILIDADES_IN + in, lote);
+            while(rs.next()){
+                DatosEmpleado empleado = empleados.get(rs.getString(EMPLEADO));
+                if(empleado == null) continue;
+                empleado.addDisponibilidad(new DatosHistorico(rs.getDate(DISP_COMIENZO).toLocalDate(), 
+                                                              aLocalDate(rs.getDate(DISP_FINAL)), // Puede ser null
+                                                              tiposDisponibilidad.nombre(rs.getInt(DISP_DISPONIBILIDAD))));
+            }
+        }
+        
+        return empleados;
+    }
+    
+    /**
+     * Ejecuta una consulta cuyos únicos parámetros son los de un lote IN.
+     * @param conn Conexión a la BD
+     * @param query Consulta con los parámetros del lote
+     * @param lote Valores del lote
+     * @return Resultado de la consulta
+     * @throws SQLException 
+     */
+    private static ResultSet ejecutaConLote(ConexionBD conn, String query, List<String> lote) throws SQLException {
+        PreparedStatement pst = conn.prepareStatement(query);
+        for(int i = 0; i < lote.size(); i++) {
+            pst.setString(i + 1, lote.get(i));
+        }
+        
+        return pst.executeQuery();
+    }
+    
     /**
      * Devuelve una String JSON con los atributos de un empleado, o bien un mensaje de error.
      * 
@@ -162,25 +275,59 @@ public class FachadaPersistenciaEmpleado {
         String dni = jCreds.get(JSONHelper.JSON_DNI).getAsString();
         String password = jCreds.get(JSONHelper.JSON_PASSWORD).getAsString();
         
-        // Comprueba si son válidas las credenciales
-        JsonObject jo = new JsonObject();
-        try {
-            ConexionBD conn = conectarse();
-            // Ejecuta la selección
-            PreparedStatement pst = conn.prepareStatement(QUERY_NIF_PASS);
-            pst.setString(1, dni);
-            pst.setString(2, password);
+        return consultaEmpleadoPorLoginYPassword(dni, password).aJson().toString();
+    }
+    
+    /**
+     * Devuelve los datos de un empleado con sus históricos si las credenciales
+     * son válidas. Todo el perfil se carga con una sola consulta.
+     * 
+     * @param dni DNI del empleado
+     * @param password Hash SHA-2 de la password
+     * @return Datos del empleado
+     * @throws es.uva.eii.ds.empresaX.servicioscomunes.MessageException Si ha ocurrido un error inesperado 
+     * al hacer la consulta o el login es inválido
+     */
+    public static DatosEmpleado consultaEmpleadoPorLoginYPassword(String dni, String password) throws MessageException {
+        // Comprueba si son válidas las credenciales y carga el perfil en una pasada
+        DatosEmpleado empleado = null;
+        try (ConexionBD conn = conectarse()) {
+            RegistroTipos<TipoRol> tiposRol = RegistroTipos.getRoles(conn);
+            RegistroTipos<TipoVinculacion> tiposVinculacion = RegistroTipos.getVinculaciones(conn);
+            RegistroTipos<TipoDisponibilidad> tiposDisponibilidad = RegistroTipos.getDisponibilidades(conn);
+            
+            PreparedStatement pst = conn.prepareStatement(QUERY_PERFIL_LOGIN);
+            for(int i = 1; i <= 8; i += 2) {
+                pst.setString(i, dni);
+                pst.setString(i + 1, password);
+            }
             ResultSet rs = pst.executeQuery();
-            if(rs.next()){
-                // Credenciales válidas
-                jo.addProperty(JSONHelper.JSON_DNI, rs.getString(EMPL_NIF));
-                jo.addProperty(JSONHelper.JSON_NOMBRE, rs.getString(EMPL_NOMBRE));
-                jo.addProperty(JSONHelper.JSON_APELLIDOS, rs.getString(EMPL_APELLIDOS));
-                jo.addProperty(JSONHelper.JSON_FECHA_INICIO, rs.getDate(EMPL_FECHA_INICIO).toString());
-                jo.add(JSONHelper.JSON_ROLES, obtenerRolesEmpleado(conn, dni));
-                jo.add(JSONHelper.JSON_VINCULACIONES, obtenerVinculacionesEmpleado(conn, dni));
-                jo.add(JSONHelper.JSON_DISPONIBILIDADES, obtenerDisponibilidadesEmpleado(conn, dni));
-            } else {
+            while(rs.next()){
+                LocalDate fecha = rs.getDate(PERFIL_FECHA).toLocalDate();
+                switch(rs.getInt(PERFIL_FUENTE)) {
+                    case FUENTE_EMPLEADO:
+                        empleado = new DatosEmpleado(rs.getString(EMPL_NIF), rs.getString(EMPL_NOMBRE), 
+                                                     rs.getString(EMPL_APELLIDOS), fecha);
+                        break;
+                    case FUENTE_ROL:
+                        empleado.addRol(new DatosHistorico(fecha, null, tiposRol.nombre(rs.getInt(PERFIL_TIPO))));
+                        break;
+                    case FUENTE_VINCULACION:
+                        empleado.addVinculacion(new DatosHistorico(fecha, null, tiposVinculacion.nombre(rs.getInt(PERFIL_TIPO))));
+                        break;
+                    case FUENTE_DISPONIBILIDAD:
+                        empleado.addDisponibilidad(new DatosHistorico(fecha, aLocalDate(rs.getDate(PERFIL_FECHA_FIN)), // Puede ser null
+                                                                      tiposDisponibilidad.nombre(rs.getInt(PERFIL_TIPO))));
+                        break;
+                    default:
+                        break;
+                }
+            }
+            
+            sentenciasUltimoLogin = conn.getNumeroSentencias();
+            LOGGER.log(Level.FINE, "Login de {0}: {1} sentencias", new Object[]{ dni, sentenciasUltimoLogin });
+            
+            if(empleado == null) {
                 // Credenciales inválidas
                 throw new MessageException("Credenciales inválidas");
             }
@@ -188,7 +335,25 @@ public class FachadaPersistenciaEmpleado {
             throw new MessageException("Ocurrió un error al tratar de loguear al usuario con DNI: \"" + dni + "\"");
         }
         
-        return jo.toString();
+        return empleado;
+    }
+    
+    /**
+     * Convierte una fecha de la BD que puede ser null.
+     * @param fecha Fecha de la BD
+     * @return Fecha o null
+     */
+    private static LocalDate aLocalDate(Date fecha) {
+        return fecha == null ? null : fecha.toLocalDate();
+    }
+    
+    /**
+     * Devuelve el número de sentencias que emitió el último login (incluye la
+     * carga de las tablas de tipos si no estaban precargadas).
+     * @return Número de sentencias
+     */
+    public static int getSentenciasUltimoLogin() {
+        return sentenciasUltimoLogin;
     }
    
 }
@@ -1,11 +1,18 @@
 package es.uva.eii.ds.empresaX.persistencia;
 
 import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import es.uva.eii.ds.empresaX.negocio.modelos.TipoEstadoPedido;
 import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
 import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosCliente;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosEmpleado;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosLineaPedido;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosOperacion;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosPedidoHorno;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosProducto;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosUsoReceta;
+import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -13,6 +20,16 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * @author Abel Herrero Gómez         (abeherr)
@@ -21,74 +38,155 @@ import java.time.LocalDateTime;
  */
 public class FachadaPersistenciaEmpleadoHorno {
     
-    // Devuelve los pedidos cuya fecha en la quese quiere está en un rango
-    private static final String QUERY_PEDIDOS_POR_FECHA =
-            "SELECT * FROM PEDIDODEHORNO WHERE FECHAENLAQUESEQUIERE BETWEEN (?) AND (?)";
+    // Devuelve los pedidos de un rango de fechas cuyo estado actual es el indicado, con su cliente.
+    // Recorre el índice por estado actual y fecha: con el estado como parámetro
+    // Derby estima mal su selectividad y, sin indicárselo, recorre la tabla
+    // (el salto de línea tras DERBY-PROPERTIES es obligatorio)
+    private static final String QUERY_PEDIDOS_REGISTRADOS_POR_FECHA =
+            "SELECT P.NUMERODEPEDIDO, P.FECHAENLAQUESEQUIERE, P.CLIENTE, P.DEPENDIENTE, "
+            + "C.NOMBRE AS NOMBRECLIENTE, C.APELLIDOS AS APELLIDOSCLIENTE, C.TELEFONO, C.EMAIL "
+            + "FROM PEDIDODEHORNO P --DERBY-PROPERTIES index=IDX_PEDIDOHORNO_ESTADO_FECHA\n"
+            + "INNER JOIN CLIENTE C ON P.CLIENTE = C.NIF "
+            + "WHERE P.ESTADOACTUAL = (?) AND P.FECHAENLAQUESEQUIERE BETWEEN (?) AND (?)";
     
-    // Devuelve el dependiente asociado a un pedido de horno
-    private static final String QUERY_EMPLEADO = "SELECT * FROM EMPLEADO WHERE NIF = (?)";
-    // Devuelve el cliente asociado a un pedido de horno
-    private static final String QUERY_CLIENTE = "SELECT * FROM CLIENTE WHERE NIF = (?)";
-    // Devuelve todos los estados de un pedido de horno (orden desc)
-    private static final String QUERY_ESTADOS_PEDIDO = 
-            "SELECT * FROM OPERACIONSOBREPEDIDODEHORNO "
-            + "INNER JOIN ESTADODEPEDIDODEHORNO ON TIPO = IDTIPO "
-            + "WHERE PEDIDODEHORNO = (?) ORDER BY TIPO DESC";
+    // Devuelve las operaciones de un lote de pedidos (orden desc por pedido)
+    private static final String QUERY_OPERACIONES_IN = 
+            "SELECT O.MOMENTO, O.TIPO, O.EMPLEADO, O.PEDIDODEHORNO FROM OPERACIONSOBREPEDIDODEHORNO O "
+            + "WHERE O.PEDIDODEHORNO IN ";
+    private static final String ORDEN_OPERACIONES_IN = " ORDER BY O.PEDIDODEHORNO, O.TIPO DESC";
     
-    // Devuelve todas las lineas de pedidos
-    private static final String QUERY_LINEAS_PEDIDO = 
-            "SELECT * FROM LINEADEPEDIDODEHORNO  WHERE PEDIDO = (?)";
+    // Devuelve las líneas de un lote de pedidos junto con su producto
+    private static final String QUERY_LINEAS_IN = 
+            "SELECT L.CANTIDAD, L.PEDIDO, P.CODIGO, P.NOMBRE, P.DESCRIPCION, P.EXISTENCIAS, "
+            + "P.SUBTIPO, P.CANTIDADMINIMAENSTOCK FROM LINEADEPEDIDODEHORNO L "
+            + "INNER JOIN PRODUCTO P ON L.PRODUCTO = P.CODIGO WHERE L.PEDIDO IN ";
     
-        // Devuelve todas las lineas de pedidos
-    private static final String QUERY_PRODUCTO = 
-            "SELECT * FROM PRODUCTO WHERE CODIGO = (?)";
+    // Recetas: materias (con sus datos) que usa cada producto de horno
+    private static final String QUERY_RECETAS = 
+            "SELECT U.PRODUCTODEHORNO, U.CANTIDAD, P.CODIGO, P.NOMBRE, P.DESCRIPCION, P.EXISTENCIAS, "
+            + "P.SUBTIPO, P.CANTIDADMINIMAENSTOCK FROM USOENPASOSDERECETA U "
+            + "INNER JOIN PRODUCTO P ON U.MATERIAPRIMA = P.CODIGO";
     
-    // Marca un pedido como preparando
-    private static final String INSERT_PEDIDO_PREPARANDO = 
-            "INSERT INTO OPERACIONSOBREPEDIDODEHORNO VALUES ((?), 2, (?), (?))";
+    // Existencias de un lote de productos
+    private static final String QUERY_EXISTENCIAS_IN = "SELECT CODIGO, EXISTENCIAS FROM PRODUCTO WHERE CODIGO IN ";
     
+    // Pasa un pedido al estado indicado solo si su estado actual sigue siendo el
+    // esperado. El UPDATE bloquea la fila del pedido hasta el commit, así que de
+    // dos empleados que lo cogen a la vez solo a uno le actualiza la fila.
+    private static final String UPDATE_ESTADO_PEDIDO = 
+            "UPDATE PEDIDODEHORNO SET ESTADOACTUAL = ?, MOMENTOESTADOACTUAL = ? "
+            + "WHERE NUMERODEPEDIDO = ? AND ESTADOACTUAL = ?";
+    
+    // Operación del cambio de estado (la clave, IdOperacion, la genera la BD)
+    private static final String INSERT_OPERACION_PEDIDO = 
+            "INSERT INTO OPERACIONSOBREPEDIDODEHORNO (MOMENTO, TIPO, EMPLEADO, PEDIDODEHORNO) VALUES (?, ?, ?, ?)";
+    
+    
+    private static final Logger LOGGER = Logger.getLogger(FachadaPersistenciaEmpleadoHorno.class.getName());
+    
+    // Consultas emitidas por la última carga de pedidos pendientes
+    private static volatile int consultasUltimaCarga;
     
     private static ConexionBD conectarse() throws ClassNotFoundException, SQLException, MessageException {
-        return ConexionBD.getInstancia();
+        return ConexionBD.obtenerConexion();
     }
     
+    /**
+     * Devuelve un JSON con los pedidos en estado 'Registrado' cuya fecha deseada
+     * está en el rango indicado. Se mantiene como formato de exportación y 
+     * depuración; la aplicación usa {@link #getPedidosPendientes(LocalDate, LocalDate)}.
+     * @param inicio Fecha de inicio
+     * @param fin Fecha de fin
+     * @return JSON con los pedidos pendientes
+     * @throws MessageException Si ocurre un error en la consulta
+     */
     public static String getListaPedidosPendientes(LocalDate inicio, LocalDate fin) throws MessageException {
         JsonArray arrayPedidos = new JsonArray();
+        for(DatosPedidoHorno pedido : getPedidosPendientes(inicio, fin)) {
+            arrayPedidos.add(pedido.aJson());
+        }
         
-        try {
-            ConexionBD conn = conectarse();
-            PreparedStatement pst = conn.prepareStatement(QUERY_PEDIDOS_POR_FECHA);
-            pst.setDate(1, Date.valueOf(inicio));
-            pst.setDate(2, Date.valueOf(fin));
+        JsonObject pedidosPendientes = new JsonObject();
+        pedidosPendientes.add(JSONHelper.JSON_PEDIDOS_PENDIENTES, arrayPedidos);
+
+        return pedidosPendientes.toString();
+    }
+    
+    /**
+     * Devuelve los pedidos en estado 'Registrado' cuya fecha deseada está en el
+     * rango indicado, junto con sus clientes, dependientes, operaciones y líneas.
+     * Se cargan por conjuntos (JOIN e IN por lotes), de modo que el número de 
+     * consultas no depende del número de pedidos ni de líneas. Cada empleado se
+     * carga una vez y se comparte entre los pedidos en los que aparece.
+     * @param inicio Fecha de inicio
+     * @param fin Fecha de fin
+     * @return Pedidos pendientes, en el orden de la consulta
+     * @throws MessageException Si ocurre un error en la consulta
+     */
+    public static ArrayList<DatosPedidoHorno> getPedidosPendientes(LocalDate inicio, LocalDate fin) throws MessageException {
+        ArrayList<DatosPedidoHorno> res = new ArrayList<>();
+        
+        try (ConexionBD conn = conectarse()) {
+            RegistroTipos<TipoEstadoPedido> estados = RegistroTipos.getEstadosPedido(conn);
             
-            // Resultados: pedidos en un rango de fechas. Hay que obtener los que están registrados solo
+            // Pedidos registrados del rango, con su cliente
+            LinkedHashMap<Integer, DatosPedidoHorno> pedidos = new LinkedHashMap<>();
+            HashMap<Integer, String> dependientes = new HashMap<>();
+            PreparedStatement pst = conn.prepareStatement(QUERY_PEDIDOS_REGISTRADOS_POR_FECHA);
+            pst.setInt(1, estados.id(TipoEstadoPedido.Registrado));
+            pst.setDate(2, Date.valueOf(inicio));
+            pst.setDate(3, Date.valueOf(fin));
             ResultSet rs = pst.executeQuery();
             while(rs.next()){
-                JsonObject pedido = new JsonObject();
-                
                 int nPedido = rs.getInt("NUMERODEPEDIDO");
+                pedidos.put(nPedido, new DatosPedidoHorno(nPedido, rs.getDate("FECHAENLAQUESEQUIERE").toLocalDate(), 
+                                                          getCliente(rs)));
+                dependientes.put(nPedido, rs.getString("DEPENDIENTE"));
+            }
+            
+            if(!pedidos.isEmpty()) {
+                ArrayList<Integer> numeros = new ArrayList<>(pedidos.keySet());
+                HashMap<Integer, ArrayList<Object[]>> operaciones = new HashMap<>();
+                HashSet<String> nifs = new HashSet<>(dependientes.values());
                 
-                pst = conn.prepareStatement(QUERY_ESTADOS_PEDIDO);
-                pst.setInt(1, nPedido);
-                ResultSet rsEstado = pst.executeQuery();
-                if(rsEstado.next()) {
-                    // Existe, ¿está registrado?
-                    String nTipo = rsEstado.getString("NOMBRETIPO");
-                    if(TipoEstadoPedido.valueOf(nTipo) == TipoEstadoPedido.Registrado) {
-                        // Solo está registrado, se añade
-                        pedido.addProperty(JSONHelper.JSON_NUM_PEDIDO, nPedido);
-                        pedido.addProperty(JSONHelper.JSON_FECHA_DESEADA, rs.getDate("FECHAENLAQUESEQUIERE").toString());
-                        pedido.add(JSONHelper.JSON_CLIENTE, getCliente(rs.getString("CLIENTE"), conn));
-                        pedido.add(JSONHelper.JSON_DEPENDIENTE, getEmpleado(rs.getString("DEPENDIENTE"), conn));
-                        pedido.add(JSONHelper.JSON_OPERACIONES, getOperacionesPedido(nPedido, conn));
-                        pedido.add(JSONHelper.JSON_LINEAS, getLineasPedido(nPedido, conn));
-                        arrayPedidos.add(pedido);
+                for(int i = 0; i < numeros.size(); i += ConexionBD.MAX_PARAMETROS_IN) {
+                    List<Integer> lote = numeros.subList(i, Math.min(i + ConexionBD.MAX_PARAMETROS_IN, numeros.size()));
+                    String in = ConexionBD.parametrosIn(lote.size());
+                    
+                    // Operaciones (el empleado se resuelve después, por lotes)
+                    rs = ejecutaConLote(conn, QUERY_OPERACIONES_IN + in + ORDEN_OPERACIONES_IN, lote);
+                    while(rs.next()) {
+                        String nifEmpleado = rs.getString("EMPLEADO");
+                        nifs.add(nifEmpleado);
+                        operaciones.computeIfAbsent(rs.getInt("PEDIDODEHORNO"), k -> new ArrayList<>())
+                                   .add(new Object[]{ rs.getTimestamp("MOMENTO").toLocalDateTime(), 
+                                                      nifEmpleado, estados.nombre(rs.getInt("TIPO")) });
+                    }
+                    
+                    // Líneas con su producto
+                    rs = ejecutaConLote(conn, QUERY_LINEAS_IN + in, lote);
+                    while(rs.next()) {
+                        pedidos.get(rs.getInt("PEDIDO")).addLinea(new DatosLineaPedido(rs.getInt("CANTIDAD"), getProducto(rs)));
                     }
                 }
                 
-                // Para cualquier otro caso, se ignora el resultado
+                // Dependientes y empleados de las operaciones
+                HashMap<String, DatosEmpleado> empleados = FachadaPersistenciaEmpleado.obtenerEmpleados(conn, nifs);
+                for(Map.Entry<Integer, DatosPedidoHorno> e : pedidos.entrySet()) {
+                    DatosPedidoHorno pedido = e.getValue();
+                    pedido.setDependiente(getEmpleadoCargado(empleados, dependientes.get(e.getKey())));
+                    for(Object[] op : operaciones.getOrDefault(e.getKey(), new ArrayList<>())) {
+                        pedido.addOperacion(new DatosOperacion((LocalDateTime) op[0], (String) op[2],
+                                                               getEmpleadoCargado(empleados, (String) op[1])));
+                    }
+                    
+                    res.add(pedido);
+                }
             }
-           
+            
+            consultasUltimaCarga = conn.getNumeroSentencias();
+            LOGGER.log(Level.FINE, "Pedidos pendientes: {0} pedidos en {1} consultas", 
+                       new Object[]{ res.size(), consultasUltimaCarga });
         } catch (Exception ex) {
             if(ex instanceof MessageException) {
                 // La relanza
@@ -99,184 +197,218 @@ public class FachadaPersistenciaEmpleadoHorno {
             }
         }
         
-        JsonObject pedidosPendientes = new JsonObject();
-        pedidosPendientes.add(JSONHelper.JSON_PEDIDOS_PENDIENTES, arrayPedidos);
-
-        return pedidosPendientes.toString();
+        return res;
     }
     
+    /**
+     * Devuelve el número de consultas que emitió la última carga de pedidos 
+     * pendientes. Permite detectar regresiones a consultas por pedido.
+     * @return Número de consultas
+     */
+    public static int getConsultasUltimaCarga() {
+        return consultasUltimaCarga;
+    }
     
-    public static boolean cambiarEstadoPedidoAPreparando(LocalDateTime ts, String nifEmpleado, int numeroPedido) throws MessageException {
-        boolean res;
+    /**
+     * Devuelve un empleado ya cargado por lotes.
+     * @param empleados Empleados cargados
+     * @param nif NIF del empleado
+     * @return Datos del empleado
+     * @throws MessageException Si el empleado no existe
+     */
+    private static DatosEmpleado getEmpleadoCargado(HashMap<String, DatosEmpleado> empleados, String nif) throws MessageException {
+        DatosEmpleado empleado = empleados.get(nif);
+        if(empleado == null) {
+            throw new MessageException("[!] No existe el empleado con NIF: " + nif);
+        }
         
-        try {
-            ConexionBD conn = conectarse();
-            PreparedStatement pst = conn.prepareStatement(INSERT_PEDIDO_PREPARANDO);
-            pst.setTimestamp(1, Timestamp.valueOf(ts));
-            pst.setString(2, nifEmpleado);
-            pst.setInt(3, numeroPedido);
-            
-            // Resultados: pedidos en un rango de fechas. Hay que obtener los que están registrados solo
-            if(pst.executeUpdate() > 0) {
-                // Ha actualizado el estado
-                res = true;
-            } else {
-                res = false;
-            }
-           
-        } catch (ClassNotFoundException | SQLException ex) {
-            res = false;
+        return empleado;
+    }
+    
+    /**
+     * Ejecuta una consulta cuyos únicos parámetros son los de un lote IN.
+     * @param conn Conexión a la BD
+     * @param query Consulta con los parámetros del lote
+     * @param lote Números de pedido del lote
+     * @return Resultado de la consulta
+     * @throws SQLException 
+     */
+    private static ResultSet ejecutaConLote(ConexionBD conn, String query, List<Integer> lote) throws SQLException {
+        PreparedStatement pst = conn.prepareStatement(query);
+        for(int i = 0; i < lote.size(); i++) {
+            pst.setInt(i + 1, lote.get(i));
         }
         
-        return res;
+        return pst.executeQuery();
     }
     
+    /**
+     * Devuelve el cliente de la fila actual.
+     * @param rs Resultado de la consulta (con las columnas de CLIENTE)
+     * @return Datos del cliente
+     * @throws SQLException 
+     */
+    private static DatosCliente getCliente(ResultSet rs) throws SQLException {
+        return new DatosCliente(rs.getString("CLIENTE"), rs.getString("NOMBRECLIENTE"), rs.getString("APELLIDOSCLIENTE"),
+                                rs.getInt("TELEFONO"), rs.getString("EMAIL"));
+    }
     
+    /**
+     * Devuelve el producto de la fila actual.
+     * @param rs Resultado de la consulta (con las columnas de PRODUCTO)
+     * @return Datos del producto
+     * @throws SQLException 
+     */
+    private static DatosProducto getProducto(ResultSet rs) throws SQLException {
+        return new DatosProducto(rs.getString("CODIGO"), rs.getString("NOMBRE"), rs.getString("DESCRIPCION"),
+                                 rs.getInt("EXISTENCIAS"), rs.getString("SUBTIPO"), rs.getInt("CANTIDADMINIMAENSTOCK"));
+    }
     
-    public static JsonObject getCliente(String dniCliente, ConexionBD conn) throws MessageException {
-        JsonObject res = new JsonObject();
-        
-        try {
-            PreparedStatement pst = conn.prepareStatement(QUERY_CLIENTE);
-            pst.setString(1, dniCliente);
-
-            ResultSet rs = pst.executeQuery();
-            if(rs.next()) {
-                res.addProperty(JSONHelper.JSON_DNI, rs.getString("NIF"));
-                res.addProperty(JSONHelper.JSON_NOMBRE, rs.getString("NOMBRE"));
-                res.addProperty(JSONHelper.JSON_APELLIDOS, rs.getString("APELLIDOS"));
-                res.addProperty(JSONHelper.JSON_TELEFONO, rs.getInt("TELEFONO"));
-                res.addProperty(JSONHelper.JSON_EMAIL, rs.getString("EMAIL"));
-            } else {
-                throw new MessageException("[!] No existe el cliente con DNI: " + dniCliente);
-            }
-        } catch(Exception e) {
-            if(e instanceof MessageException) {
-                // La relanza
-                throw new MessageException(e.getMessage());
-            } else {
-                throw new MessageException("[!] Ocurrió un error al obtener el cliente con NIF: " + dniCliente);
-            }
+    /**
+     * Devuelve las recetas de todos los productos de horno con una sola consulta.
+     * @return Usos de materias en recetas
+     * @throws MessageException Si ocurre un error en la consulta
+     */
+    public static ArrayList<DatosUsoReceta> getRecetasBD() throws MessageException {
+        try (ConexionBD conn = conectarse()) {
+            return getRecetas(conn.prepareStatement(QUERY_RECETAS).executeQuery());
+        } catch(ClassNotFoundException | SQLException ex) {
+            throw new MessageException("[!] Ocurrió un error al obtener las recetas.");
         }
-        
-        return res;
     }
     
-    public static JsonObject getEmpleado(String nifEmpleado, ConexionBD conn) throws MessageException {
-        JsonObject res = new JsonObject();
+    /**
+     * Devuelve las existencias actuales de los productos indicados, con una
+     * consulta por lote de códigos.
+     * @param codigos Códigos de los productos
+     * @return Mapa código -> existencias
+     * @throws MessageException Si ocurre un error en la consulta
+     */
+    public static HashMap<String, Integer> getExistenciasBD(Collection<String> codigos) throws MessageException {
+        HashMap<String, Integer> res = new HashMap<>();
+        ArrayList<String> pendientes = new ArrayList<>(new HashSet<>(codigos));
         
-        try {
-            PreparedStatement pst = conn.prepareStatement(QUERY_EMPLEADO);
-            pst.setString(1, nifEmpleado);
-
-            ResultSet rs = pst.executeQuery();
-            if(rs.next()) {
-                res.addProperty(JSONHelper.JSON_DNI, nifEmpleado);
-                res.addProperty(JSONHelper.JSON_NOMBRE, rs.getString("NOMBRE"));
-                res.addProperty(JSONHelper.JSON_APELLIDOS, rs.getString("APELLIDOS"));
-                res.addProperty(JSONHelper.JSON_FECHA_INICIO, rs.getDate("FECHAINICIOENEMPRESA").toString());
-                res.add(JSONHelper.JSON_ROLES, FachadaPersistenciaEmpleado.obtenerRolesEmpleado(conn, nifEmpleado));
-                res.add(JSONHelper.JSON_VINCULACIONES, FachadaPersistenciaEmpleado.obtenerVinculacionesEmpleado(conn, nifEmpleado));
-                res.add(JSONHelper.JSON_DISPONIBILIDADES, FachadaPersistenciaEmpleado.obtenerDisponibilidadesEmpleado(conn, nifEmpleado));
-            } else {
-                throw new MessageException("[!] No existe el empleado con NIF: " + nifEmpleado);
-            }
-        } catch(Exception e) {
-            if(e instanceof MessageException) {
-                // La relanza
-                throw new MessageException(e.getMessage());
-            } else {
-                throw new MessageException("[!] Ocurrió un error al obtener el empleado con NIF: " + nifEmpleado);
+        try (ConexionBD conn = conectarse()) {
+            for(int i = 0; i < pendientes.size(); i += ConexionBD.MAX_PARAMETROS_IN) {
+                List<String> lote = pendientes.subList(i, Math.min(i + ConexionBD.MAX_PARAMETROS_IN, pendientes.size()));
+                ResultSet rs = ejecutaConCodigos(conn, QUERY_EXISTENCIAS_IN + ConexionBD.parametrosIn(lote.size()), lote);
+                while(rs.next()) {
+                    res.put(rs.getString("CODIGO"), rs.getInt("EXISTENCIAS"));
+                }
             }
+        } catch(ClassNotFoundException | SQLException ex) {
+            throw new MessageException("[!] Ocurrió un error al obtener las existencias.");
         }
         
         return res;
     }
     
-    public static JsonArray getOperacionesPedido(int numeroPedido, ConexionBD conn) throws MessageException {
-        JsonArray res = new JsonArray();
-        
-        try {
-            PreparedStatement pst = conn.prepareStatement(QUERY_ESTADOS_PEDIDO);
-            pst.setInt(1, numeroPedido);
-
-            ResultSet rs = pst.executeQuery();
-            while(rs.next()) {
-                JsonObject operacion = new JsonObject();
-                operacion.addProperty(JSONHelper.JSON_MOMENTO, rs.getTimestamp("MOMENTO").toString());
-                operacion.add(JSONHelper.JSON_EMPLEADO, getEmpleado(rs.getString("EMPLEADO"), conn));
-                operacion.addProperty(JSONHelper.JSON_ESTADO, rs.getString("NOMBRETIPO"));
-                res.add(operacion);
-            }
-        } catch(Exception e) {
-            if(e instanceof MessageException) {
-                // La relanza
-                throw new MessageException(e.getMessage());
-            } else {
-                throw new MessageException("[!] Ocurrió un error al obtener las operaciones del pedido con nº: " + numeroPedido);
-            }
+    /**
+     * Lee los usos de materias de un resultado de QUERY_RECETAS.
+     * @param rs Resultado de la consulta
+     * @return Usos leídos
+     * @throws SQLException 
+     */
+    private static ArrayList<DatosUsoReceta> getRecetas(ResultSet rs) throws SQLException {
+        ArrayList<DatosUsoReceta> res = new ArrayList<>();
+        while(rs.next()) {
+            res.add(new DatosUsoReceta(rs.getString("PRODUCTODEHORNO"), getProducto(rs), rs.getInt("CANTIDAD")));
         }
         
         return res;
     }
-
-    public static JsonElement getLineasPedido(int nPedido, ConexionBD conn) throws MessageException {
-        JsonArray res = new JsonArray();
-        
-        try {
-            PreparedStatement pst = conn.prepareStatement(QUERY_LINEAS_PEDIDO);
-            pst.setInt(1, nPedido);
-
-            ResultSet rs = pst.executeQuery();
-            while(rs.next()) {
-                JsonObject lineasPedido = new JsonObject();
-                lineasPedido.addProperty(JSONHelper.JSON_CANTIDAD, rs.getInt("CANTIDAD"));
-                //System.out.println(rs.getInt("CANTIDAD"));
-                lineasPedido.add(JSONHelper.JSON_PRODUCTO, getProducto(rs.getString("PRODUCTO"), conn));
-                res.add(lineasPedido);
-            }
-        } catch(Exception e) {
-            if(e instanceof MessageException) {
-                // La relanza
-                throw new MessageException(e.getMessage());
-            } else {
-                throw new MessageException("[!] Ocurrió un error al obtener las lineas del pedido: " + nPedido);
-            }
+    
+    /**
+     * Ejecuta una consulta cuyos únicos parámetros son los códigos de un lote IN.
+     * @param conn Conexión a la BD
+     * @param query Consulta con los parámetros del lote
+     * @param lote Códigos del lote
+     * @return Resultado de la consulta
+     * @throws SQLException 
+     */
+    private static ResultSet ejecutaConCodigos(ConexionBD conn, String query, List<String> lote) throws SQLException {
+        PreparedStatement pst = conn.prepareStatement(query);
+        for(int i = 0; i < lote.size(); i++) {
+            pst.setString(i + 1, lote.get(i));
         }
         
-        return res;
+        return pst.executeQuery();
+    }
     
     
-         }
-
-    public static JsonElement getProducto(String codigoProducto, ConexionBD conn) throws MessageException {
-         JsonObject res = new JsonObject();
-        
+    /**
+     * Pasa un pedido a 'Preparando' si sigue 'Registrado'.
+     * @param ts Momento de la operación
+     * @param nifEmpleado Empleado que lo prepara
+     * @param numeroPedido Número del pedido
+     * @return true si se ha preparado, false si otro empleado ya lo había cogido o hubo un error
+     */
+    public static boolean cambiarEstadoPedidoAPreparando(LocalDateTime ts, String nifEmpleado, int numeroPedido) throws MessageException {
         try {
-            PreparedStatement pst = conn.prepareStatement(QUERY_PRODUCTO);
-            pst.setString(1, codigoProducto);
-
-            ResultSet rs = pst.executeQuery();
-            if(rs.next()) {
-                res.addProperty(JSONHelper.JSON_CODIGO, rs.getString("CODIGO"));
-                res.addProperty(JSONHelper.JSON_NOMBRE, rs.getString("NOMBRE"));
-                res.addProperty(JSONHelper.JSON_DESCRIPCION, rs.getString("DESCRIPCION"));
-                res.addProperty(JSONHelper.JSON_EXISTENCIAS, rs.getInt("EXISTENCIAS"));
-                res.addProperty(JSONHelper.JSON_SUBTIPO, rs.getString("SUBTIPO"));
-                res.addProperty(JSONHelper.JSON_CANTIDAD_MIN_STOCK, rs.getInt("CANTIDADMINIMAENSTOCK"));
-
-            } else {
-                throw new MessageException("[!] No existe el producto con codigo: " + codigoProducto);
-            }
-        } catch(Exception e) {
-            if(e instanceof MessageException) {
-                // La relanza
-                throw new MessageException(e.getMessage());
-            } else {
-                throw new MessageException("[!] Ocurrió un error al obtener el codigo del Producto: " + codigoProducto);
+            cambiarEstadoPedidosAPreparando(ts, nifEmpleado, Collections.singletonList(numeroPedido));
+            return true;
+        } catch(MessageException ex) {
+            return false;
+        }
+    }
+    
+    
+    /**
+     * Pasa varios pedidos a 'Preparando' en una sola transacción: o se preparan
+     * todos o ninguno. Primero cambia el estado actual de cada pedido con un
+     * UPDATE condicionado a que siga 'Registrado' y, solo si se han cambiado
+     * todos, anota las operaciones. Si alguno ya no estaba registrado (otro
+     * empleado lo ha cogido) se deshace todo.
+     * @param ts Momento de la operación
+     * @param nifEmpleado Empleado que los prepara
+     * @param numerosPedido Números de los pedidos
+     * @throws MessageException Si algún pedido ya no estaba registrado o hubo un error en la BD
+     */
+    public static void cambiarEstadoPedidosAPreparando(LocalDateTime ts, String nifEmpleado, 
+                                                       Collection<Integer> numerosPedido) throws MessageException {
+        try (ConexionBD conn = conectarse()) {
+            RegistroTipos<TipoEstadoPedido> estados = RegistroTipos.getEstadosPedido(conn);
+            int preparando = estados.id(TipoEstadoPedido.Preparando);
+            Connection c = conn.getConnection();
+            c.setAutoCommit(false);
+            try {
+                PreparedStatement pst = conn.prepareStatement(UPDATE_ESTADO_PEDIDO);
+                for(int numeroPedido : numerosPedido) {
+                    pst.setInt(1, preparando);
+                    pst.setTimestamp(2, Timestamp.valueOf(ts));
+                    pst.setInt(3, numeroPedido);
+                    pst.setInt(4, estados.id(TipoEstadoPedido.Registrado));
+                    pst.addBatch();
+                }
+                
+                int[] actualizados = pst.executeBatch();
+                int i = 0;
+                for(int numeroPedido : numerosPedido) {
+                    if(actualizados[i++] == 0) {
+                        throw new MessageException("[!] El pedido " + numeroPedido + " ya no está registrado.");
+                    }
+                }
+                
+                // Todos seguían registrados y están bloqueados: se anotan las operaciones
+                pst = conn.prepareStatement(INSERT_OPERACION_PEDIDO);
+                for(int numeroPedido : numerosPedido) {
+                    pst.setTimestamp(1, Timestamp.valueOf(ts));
+                    pst.setInt(2, preparando);
+                    pst.setString(3, nifEmpleado);
+                    pst.setInt(4, numeroPedido);
+                    pst.addBatch();
+                }
+                pst.executeBatch();
+                
+                c.commit();
+            } catch(SQLException | MessageException | RuntimeException ex) {
+                c.rollback();
+                throw ex;
             }
+        } catch(ClassNotFoundException | SQLException ex) {
+            LOGGER.log(Level.SEVERE, null, ex);
+            throw new MessageException("[!] Ocurrió un error al preparar los pedidos.");
         }
-        
-        return res;
     }
+
 }
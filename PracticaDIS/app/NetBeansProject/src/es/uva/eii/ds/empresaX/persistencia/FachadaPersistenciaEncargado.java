@@ -3,13 +3,22 @@ package es.uva.eii.ds.empresaX.persistencia;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.negocio.modelos.ColumnaFacturas;
 import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
 import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.CursorFacturas;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosConsultaFacturas;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosFactura;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosPaginaFacturas;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosPedidoProveedor;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosProveedor;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Locale;
 
 /**
  * @author Abel Herrero Gómez (abeherr)
@@ -19,22 +28,82 @@ import java.time.LocalDate;
 public class FachadaPersistenciaEncargado {
 
     // FACTURAS PENDIENTES DE PAGO
-    // Devuelve el ID del proveedor especificado
-    private static final String QUERY_EXISTE_PROVEEDOR = "SELECT cif FROM Proveedor WHERE UPPER(nombre) = (?) OR UPPER(cif) = (?)";
-    // Devuelve el año de la primera fecha de emisión
-    private static final String QUERY_MIN_ANIO_FAC = "SELECT YEAR(MIN(FECHADEEMISION)) AS MINANIO FROM FACTURA";
-    // Devuelve el año de la última fecha de emisión
-    private static final String QUERY_MAX_ANIO_FAC = "SELECT YEAR(MAX(FECHADEEMISION)) AS MAXANIO FROM FACTURA";
-    // Devuelve las facturas pendientes, en el rango de fechas especificado, para el proveedor especificado
-    private static final String QUERY_FACTURAS_PEND = 
-            "SELECT * FROM "
-            + "Factura INNER JOIN PedidoAProveedor ON Factura.pedido = PedidoAProveedor.numeroDePedido "
-            + "INNER JOIN proveedor ON PedidoAProveedor.proveedor = Proveedor.cif "
-            + "WHERE fechaDeEmision >= (?) AND fechaDeEmision <= (?) AND enTransferencia IS NULL";
-    private static final String QUERY_PLUS_PROVEEDOR = " AND ( UPPER(Proveedor.nombre) = (?) OR UPPER(Proveedor.cif) = (?) )";
+    // Devuelve el ID del proveedor especificado. Con OR Derby recorre toda la
+    // tabla; cada rama de la unión busca en su índice (nombre o CIF)
+    private static final String QUERY_EXISTE_PROVEEDOR = 
+            "SELECT cif FROM Proveedor WHERE nombreMayusculas = (?) "
+            + "UNION ALL SELECT cif FROM Proveedor WHERE cifMayusculas = (?)";
+    // Devuelve el año de la primera y de la última fecha de emisión
+    private static final String QUERY_LIMITES_ANIO_FAC = 
+            "SELECT YEAR(MIN(FECHADEEMISION)) AS MINANIO, YEAR(MAX(FECHADEEMISION)) AS MAXANIO FROM FACTURA";
+    // Facturas pendientes con su pedido y proveedor, ordenadas por (columna,
+    // ID) para poder paginar por clave: cada página empieza tras la última
+    // fila de la anterior
+    private static final String FACTURAS_COLUMNAS = 
+            "F.ID, F.FECHADEEMISION, F.IMPORTE, F.CUENTABANCARIA, PP.NUMERODEPEDIDO, PP.FECHADEREALIZACION, "
+            + "PP.ESTAPENDIENTE, PV.CIF, PV.NOMBRE, PV.NOMBREMAYUSCULAS, PV.TELEFONO, PV.EMAIL ";
+    private static final String FACTURAS_JOIN = 
+            "INNER JOIN PEDIDOAPROVEEDOR PP ON F.PEDIDO = PP.NUMERODEPEDIDO "
+            + "INNER JOIN PROVEEDOR PV ON PP.PROVEEDOR = PV.CIF WHERE F.ENTRANSFERENCIA IS NULL";
+    private static final String FACTURAS_FROM = "FROM FACTURA F " + FACTURAS_JOIN;
+    // Páginas por fecha de emisión de cualquier proveedor: recorriendo IDX_FACTURA_FECHA_ID
+    // desde la posición dada Derby se detiene al llenar la página, pero por sí
+    // solo prefiere leer y ordenar todas las facturas (el salto de línea tras
+    // DERBY-PROPERTIES es obligatorio)
+    private static final String FACTURAS_FROM_POR_FECHA = 
+            "FROM --DERBY-PROPERTIES joinOrder=FIXED\n"
+            + "FACTURA F --DERBY-PROPERTIES index=IDX_FACTURA_FECHA_ID\n" + FACTURAS_JOIN;
+    private static final String FILTRO_FECHAS = " AND F.FECHADEEMISION >= (?) AND F.FECHADEEMISION <= (?)";
+    private static final String FILTRO_PROVEEDOR = " AND (PV.NOMBREMAYUSCULAS = (?) OR PV.CIFMAYUSCULAS = (?))";
+    // Tras (valor, ID) en el sentido del orden (%1$s columna, %2$s '>' o
+    // '<'): la primera comparación es la que limita el recorrido del índice;
+    // la segunda descarta las de ese valor hasta el ID
+    private static final String FILTRO_DESDE = 
+            " AND %1$s %2$s= (?) AND (%1$s %2$s (?) OR F.ID %2$s (?))";
+    private static final String ORDEN_FACTURAS = " ORDER BY F.FECHADEEMISION, F.ID";
+    // Orden de las páginas siguientes: columna y sentido (ASC o DESC), que
+    // también se aplica al ID para desempatar
+    private static final String ORDEN_PAGINA = " ORDER BY %1$s %2$s, F.ID %2$s";
+    private static final String LIMITE_FILAS = " FETCH FIRST %d ROWS ONLY";
+    // Filas que trae la BD en cada viaje al leer todas las facturas de golpe
+    private static final int TAM_LOTE_LECTURA = 500;
+    
+    // Primera página en una sola sentencia. Siempre devuelve al menos una
+    // fila: la de los límites de años (o una ficticia si ya se conocen), unida
+    // al proveedor buscado (CIFRESUELTO nulo si no existe) y a sus facturas
+    // (columnas de factura nulas si no tiene).
+    private static final String CONSULTA_CON_LIMITES = 
+            "SELECT L.MINANIO, L.MAXANIO, ";
+    private static final String CONSULTA_SIN_LIMITES = 
+            "SELECT CAST(NULL AS INTEGER) AS MINANIO, CAST(NULL AS INTEGER) AS MAXANIO, ";
+    private static final String CONSULTA_COLUMNAS = 
+            "FP.ID, FP.FECHADEEMISION, FP.IMPORTE, FP.CUENTABANCARIA, FP.NUMERODEPEDIDO, FP.FECHADEREALIZACION, "
+            + "FP.ESTAPENDIENTE, FP.NOMBRE, FP.TELEFONO, FP.EMAIL, ";
+    private static final String CONSULTA_RESUELTO_PROVEEDOR = "PR.CIF AS CIFRESUELTO FROM ";
+    private static final String CONSULTA_RESUELTO_CUALQUIERA = "'*' AS CIFRESUELTO FROM ";
+    private static final String CONSULTA_FROM_LIMITES = "(" + QUERY_LIMITES_ANIO_FAC + ") L ";
+    private static final String CONSULTA_FROM_SIN_LIMITES = "SYSIBM.SYSDUMMY1 L ";
+    private static final String CONSULTA_JOIN_PROVEEDOR = 
+            "LEFT OUTER JOIN PROVEEDOR PR ON (PR.NOMBREMAYUSCULAS = (?) OR PR.CIFMAYUSCULAS = (?)) ";
+    private static final String CONSULTA_JOIN_FACTURAS = "LEFT OUTER JOIN (SELECT " + FACTURAS_COLUMNAS + FACTURAS_FROM;
+    private static final String CONSULTA_ON_PROVEEDOR = ") FP ON FP.CIF = PR.CIF";
+    private static final String CONSULTA_ON_CUALQUIERA = ") FP ON 1 = 1";
+    private static final String CONSULTA_ORDEN = " ORDER BY FP.FECHADEEMISION, FP.ID";
+    
+    // Tiempo que se dan por buenos los límites de años sin volver a consultarlos.
+    // La aplicación no registra facturas, así que es la única invalidación: las
+    // que se inserten fuera se ven al caducar (o antes, si aparecen en una
+    // consulta fuera de los límites, ver guardaLimites)
+    private static final long CADUCIDAD_LIMITES_MS = 10 * 60 * 1000;
+    // Límites de años en caché ({min, max}) y momento en que se leyeron
+    private static int[] limitesAnios;
+    private static long limitesLeidos;
+    
+    // Devuelve todos los proveedores (para el directorio de búsqueda)
+    private static final String QUERY_PROVEEDORES = "SELECT cif, nombre, telefono, email FROM Proveedor";
 
     private static ConexionBD conectarse() throws ClassNotFoundException, SQLException, MessageException {
-        return ConexionBD.getInstancia();
+        return ConexionBD.obtenerConexion();
     }
     
     /**
@@ -44,20 +113,7 @@ public class FachadaPersistenciaEncargado {
      * @throws es.uva.eii.ds.empresaX.servicioscomunes.MessageException
      */
     public static int getMinAnioFacturas() throws MessageException {
-        int minAnio = 1970;
-
-        try {
-            ConexionBD conn = conectarse();
-            PreparedStatement pst = conn.prepareStatement(QUERY_MIN_ANIO_FAC);
-            ResultSet rs = pst.executeQuery();
-            if (rs.next()) {
-                minAnio = rs.getInt("MINANIO");
-            }
-        } catch (ClassNotFoundException | SQLException ex) {
-            throw new MessageException("[!] Error al consultar el año de la primera factura.");
-        }
-
-        return minAnio;
+        return getLimitesAnios()[0];
     }
 
     /**
@@ -67,20 +123,7 @@ public class FachadaPersistenciaEncargado {
      * @throws es.uva.eii.ds.empresaX.servicioscomunes.MessageException
      */
     public static int getMaxAnioFacturas() throws MessageException {
-        int maxAnio = LocalDate.now().getYear();
-
-        try {
-            ConexionBD conn = conectarse();
-            PreparedStatement pst = conn.prepareStatement(QUERY_MAX_ANIO_FAC);
-            ResultSet rs = pst.executeQuery();
-            if (rs.next()) {
-                maxAnio = rs.getInt("MAXANIO");
-            }
-        } catch (ClassNotFoundException | SQLException ex) {
-            throw new MessageException("[!] Error al consultar el año de la primera factura.");
-        }
-
-        return maxAnio;
+        return getLimitesAnios()[1];
     }
 
     /**
@@ -93,14 +136,12 @@ public class FachadaPersistenciaEncargado {
     public static boolean existeProveedor(String proveedor) throws MessageException {
         boolean existe = false;
 
-        try {
-            ConexionBD conn = conectarse();
+        try (ConexionBD conn = conectarse()) {
             PreparedStatement pst = conn.prepareStatement(QUERY_EXISTE_PROVEEDOR);
-            pst.setString(1, proveedor.toUpperCase());
-            pst.setString(2, proveedor.toUpperCase());
-            ResultSet rs = pst.executeQuery();
-            if (rs.next()) {
-                existe = true;
+            pst.setString(1, claveBusqueda(proveedor));
+            pst.setString(2, claveBusqueda(proveedor));
+            try (ResultSet rs = pst.executeQuery()) {
+                existe = rs.next();
             }
         } catch (ClassNotFoundException | SQLException ex) {
             throw new MessageException("[!] Error al consultar si existe el proveedor \"" + proveedor + "\".");
@@ -127,85 +168,417 @@ public class FachadaPersistenciaEncargado {
     public static String getFacturasPendientesDePago(String filtros) throws MessageException {
         // Obtiene los datos de entrada
         JsonObject jo = new Gson().fromJson(filtros, JsonObject.class);
-        Date fechaI = Date.valueOf(jo.get(JSONHelper.JSON_FECHA_INICIO).getAsString());
-        Date fechaF = Date.valueOf(jo.get(JSONHelper.JSON_FECHA_FIN).getAsString());
-        String cifProveedor = jo.get(JSONHelper.JSON_PROVEEDOR).getAsString();
-        if(cifProveedor.isEmpty()) cifProveedor = null;
+        LocalDate fechaI = Date.valueOf(jo.get(JSONHelper.JSON_FECHA_INICIO).getAsString()).toLocalDate();
+        LocalDate fechaF = Date.valueOf(jo.get(JSONHelper.JSON_FECHA_FIN).getAsString()).toLocalDate();
+        String proveedor = jo.get(JSONHelper.JSON_PROVEEDOR).getAsString();
         
-        // Obtiene la lista de facturas
         JsonArray arrayFacturas = new JsonArray();
-        try {
-            ConexionBD conn = conectarse();
-            String query = QUERY_FACTURAS_PEND;
+        for(DatosFactura factura : getFacturasPendientesDePago(fechaI, fechaF, proveedor)) {
+            arrayFacturas.add(factura.aJson());
+        }
+
+        // Construye el objeto resultado
+        JsonObject facturasPendientes = new JsonObject();
+        facturasPendientes.add(JSONHelper.JSON_FACTURAS_PENDIENTES, arrayFacturas);
+        
+        return facturasPendientes.toString();
+    }
+    
+    /**
+     * Devuelve las facturas pendientes de pago en el rango de fechas 
+     * seleccionado y para el proveedor requerido.
+     * 
+     * @param fechaInicio Fecha de inicio
+     * @param fechaFin Fecha de fin
+     * @param proveedor Nombre o CIF del proveedor (vacío o null para cualquiera)
+     * @return Facturas que cumplen los requisitos de búsqueda
+     * @throws es.uva.eii.ds.empresaX.servicioscomunes.MessageException
+     */
+    public static ArrayList<DatosFactura> getFacturasPendientesDePago(LocalDate fechaInicio, LocalDate fechaFin, 
+                                                                      String proveedor) throws MessageException {
+        String cifProveedor = (proveedor == null || proveedor.isEmpty()) ? null : proveedor;
+        
+        // Obtiene la lista de facturas
+        ArrayList<DatosFactura> facturas = new ArrayList<>();
+        try (ConexionBD conn = conectarse()) {
+            String query = "SELECT " + FACTURAS_COLUMNAS + FACTURAS_FROM + FILTRO_FECHAS;
             if(cifProveedor != null) {
                 // Proveedor especificado
-                query += QUERY_PLUS_PROVEEDOR;
+                query += FILTRO_PROVEEDOR;
             }
-            PreparedStatement pst = conn.prepareStatement(query);
-            pst.setDate(1, fechaI);
-            pst.setDate(2, fechaF);
+            PreparedStatement pst = conn.prepareStatement(query + ORDEN_FACTURAS);
+            pst.setFetchSize(TAM_LOTE_LECTURA);
+            pst.setDate(1, Date.valueOf(fechaInicio));
+            pst.setDate(2, Date.valueOf(fechaFin));
             if(cifProveedor != null) { 
-                pst.setString(3, cifProveedor.toUpperCase());
-                pst.setString(4, cifProveedor.toUpperCase());
+                pst.setString(3, claveBusqueda(cifProveedor));
+                pst.setString(4, claveBusqueda(cifProveedor));
             }
             
             // Realiza la consulta
             ResultSet rs = pst.executeQuery();
             while (rs.next()) {
-                JsonObject factura = new JsonObject();
-                // Atributos directos de la factura
-                factura.addProperty(JSONHelper.JSON_FECHA_EMISION, rs.getDate("FECHADEEMISION").toString());
-                factura.addProperty(JSONHelper.JSON_IMPORTE, rs.getDouble("IMPORTE"));
-                factura.addProperty(JSONHelper.JSON_CUENTA_BANCARIA, rs.getString("CUENTABANCARIA"));
-                factura.add(JSONHelper.JSON_PEDIDO, getPedido(rs)); // Añade el pedido
-
-                // Añade la factura a la lista
-                arrayFacturas.add(factura);
+                facturas.add(getFactura(rs));
             }
 
         } catch (ClassNotFoundException | SQLException ex) {
             throw new MessageException("[!] Error al consultar las facturas pendientes.");
         }
 
-        // Construye el objeto resultado
-        JsonObject facturasPendientes = new JsonObject();
-        facturasPendientes.add(JSONHelper.JSON_FACTURAS_PENDIENTES, arrayFacturas);
+        return facturas;
+    }
+
+    /**
+     * Consulta la primera página de facturas pendientes de pago comprobando a
+     * la vez que existe el proveedor y obteniendo los años de la primera y la
+     * última factura, con una sola sentencia. Los años se guardan en caché y
+     * solo se consultan si no se conocen. Las páginas siguientes se piden con
+     * getPaginaFacturasPendientes.
+     * 
+     * @param fechaInicio Fecha de inicio (null junto con fechaFin para cualquier fecha)
+     * @param fechaFin Fecha de fin
+     * @param proveedor Nombre o CIF del proveedor (vacío o null para cualquiera)
+     * @param tamPagina Máximo de facturas de la página
+     * @return Primera página, si existe el proveedor y límites de años
+     * @throws MessageException Si ha ocurrido un error con la BD
+     */
+    public static DatosConsultaFacturas consultarFacturasPendientes(LocalDate fechaInicio, LocalDate fechaFin, 
+                                                                    String proveedor, int tamPagina) throws MessageException {
+        boolean porProveedor = proveedor != null && !proveedor.trim().isEmpty();
+        boolean porFechas = fechaInicio != null && fechaFin != null;
+        int[] limites = getLimitesEnCache();
         
-        return facturasPendientes.toString();
+        StringBuilder query = new StringBuilder(limites == null ? CONSULTA_CON_LIMITES : CONSULTA_SIN_LIMITES);
+        query.append(CONSULTA_COLUMNAS);
+        query.append(porProveedor ? CONSULTA_RESUELTO_PROVEEDOR : CONSULTA_RESUELTO_CUALQUIERA);
+        query.append(limites == null ? CONSULTA_FROM_LIMITES : CONSULTA_FROM_SIN_LIMITES);
+        if(porProveedor) {
+            query.append(CONSULTA_JOIN_PROVEEDOR);
+        }
+        query.append(CONSULTA_JOIN_FACTURAS);
+        if(porFechas) {
+            query.append(FILTRO_FECHAS);
+        }
+        if(porProveedor) {
+            query.append(FILTRO_PROVEEDOR);
+        }
+        // Una fila de más para saber si hay otra página
+        query.append(ORDEN_FACTURAS).append(String.format(LIMITE_FILAS, tamPagina + 1));
+        query.append(porProveedor ? CONSULTA_ON_PROVEEDOR : CONSULTA_ON_CUALQUIERA);
+        query.append(CONSULTA_ORDEN);
+        
+        boolean encontrado = false;
+        ArrayList<DatosFactura> facturas = new ArrayList<>();
+        CursorFacturas siguiente = null;
+        try (ConexionBD conn = conectarse()) {
+            PreparedStatement pst = conn.prepareStatement(query.toString());
+            pst.setFetchSize(tamPagina + 1);
+            int i = 1;
+            if(porProveedor) {
+                pst.setString(i++, claveBusqueda(proveedor));
+                pst.setString(i++, claveBusqueda(proveedor));
+            }
+            if(porFechas) {
+                pst.setDate(i++, Date.valueOf(fechaInicio));
+                pst.setDate(i++, Date.valueOf(fechaFin));
+            }
+            if(porProveedor) {
+                pst.setString(i++, claveBusqueda(proveedor));
+                pst.setString(i++, claveBusqueda(proveedor));
+            }
+            
+            ResultSet rs = pst.executeQuery();
+            CursorFacturas ultimo = null;
+            while(rs.next()) {
+                if(limites == null) {
+                    limites = leeLimites(rs);
+                }
+                if(rs.getString("CIFRESUELTO") != null) {
+                    encontrado = true;
+                }
+                if(rs.getDate("FECHADEEMISION") != null) {
+                    if(facturas.size() == tamPagina) {
+                        siguiente = ultimo;
+                        break;
+                    }
+                    facturas.add(getFactura(rs));
+                    ultimo = getCursor(rs, ColumnaFacturas.Emision);
+                }
+            }
+        } catch (ClassNotFoundException | SQLException ex) {
+            throw new MessageException("[!] Error al consultar las facturas pendientes.");
+        }
+        
+        limites = guardaLimites(limites, facturas);
+        return new DatosConsultaFacturas(encontrado, new DatosPaginaFacturas(facturas, siguiente), 
+                                         limites[0], limites[1]);
+    }
+    
+    /**
+     * Devuelve la página de facturas pendientes que sigue a la posición dada,
+     * por orden de la columna indicada e ID. Todas las columnas de ordenación
+     * son obligatorias, así que no hay nulos que colocar.
+     * 
+     * @param fechaInicio Fecha de inicio (null junto con fechaFin para cualquier fecha)
+     * @param fechaFin Fecha de fin
+     * @param proveedor Nombre o CIF del proveedor (vacío o null para cualquiera)
+     * @param columna Columna por la que se ordena
+     * @param ascendente Sentido del orden
+     * @param desde Última factura de la página anterior, en ese mismo orden
+     *              (null para empezar por la primera)
+     * @param tamPagina Máximo de facturas de la página
+     * @return Página de facturas
+     * @throws MessageException Si ha ocurrido un error con la BD
+     */
+    public static DatosPaginaFacturas getPaginaFacturasPendientes(LocalDate fechaInicio, LocalDate fechaFin, String proveedor, 
+                                                                  ColumnaFacturas columna, boolean ascendente,
+                                                                  CursorFacturas desde, int tamPagina) throws MessageException {
+        boolean porProveedor = proveedor != null && !proveedor.trim().isEmpty();
+        boolean porFechas = fechaInicio != null && fechaFin != null;
+        String columnaSQL = getColumnaOrden(columna);
+        
+        StringBuilder query = new StringBuilder("SELECT ").append(FACTURAS_COLUMNAS);
+        boolean porIndiceFecha = !porProveedor && columna == ColumnaFacturas.Emision && ascendente;
+        query.append(porIndiceFecha ? FACTURAS_FROM_POR_FECHA : FACTURAS_FROM);
+        if(porFechas) {
+            query.append(FILTRO_FECHAS);
+        }
+        if(porProveedor) {
+            query.append(FILTRO_PROVEEDOR);
+        }
+        if(desde != null) {
+            query.append(String.format(FILTRO_DESDE, columnaSQL, ascendente ? ">" : "<"));
+        }
+        query.append(String.format(ORDEN_PAGINA, columnaSQL, ascendente ? "ASC" : "DESC"));
+        // Una fila de más para saber si hay otra página
+        query.append(String.format(LIMITE_FILAS, tamPagina + 1));
+        
+        ArrayList<DatosFactura> facturas = new ArrayList<>();
+        CursorFacturas siguiente = null;
+        try (ConexionBD conn = conectarse()) {
+            PreparedStatement pst = conn.prepareStatement(query.toString());
+            pst.setFetchSize(tamPagina + 1);
+            int i = 1;
+            if(porFechas) {
+                pst.setDate(i++, Date.valueOf(fechaInicio));
+                pst.setDate(i++, Date.valueOf(fechaFin));
+            }
+            if(porProveedor) {
+                pst.setString(i++, claveBusqueda(proveedor));
+                pst.setString(i++, claveBusqueda(proveedor));
+            }
+            if(desde != null) {
+                setValorOrden(pst, i++, desde.getValor());
+                setValorOrden(pst, i++, desde.getValor());
+                pst.setInt(i++, desde.getId());
+            }
+            
+            ResultSet rs = pst.executeQuery();
+            CursorFacturas ultimo = null;
+            while(rs.next()) {
+                if(facturas.size() == tamPagina) {
+                    siguiente = ultimo;
+                    break;
+                }
+                facturas.add(getFactura(rs));
+                ultimo = getCursor(rs, columna);
+            }
+        } catch (ClassNotFoundException | SQLException ex) {
+            throw new MessageException("[!] Error al consultar las facturas pendientes.");
+        }
+        
+        int[] limites = getLimitesEnCache();
+        if(limites != null) {
+            guardaLimites(limites, facturas);
+        }
+        return new DatosPaginaFacturas(facturas, siguiente);
+    }
+
+    /**
+     * Devuelve todos los proveedores, con su CIF.
+     * @return Lista de proveedores
+     * @throws MessageException Si ha ocurrido un error con la BD
+     */
+    public static ArrayList<DatosProveedor> getProveedores() throws MessageException {
+        ArrayList<DatosProveedor> proveedores = new ArrayList<>();
+
+        try (ConexionBD conn = conectarse()) {
+            ResultSet rs = conn.prepareStatement(QUERY_PROVEEDORES).executeQuery();
+            while(rs.next()) {
+                proveedores.add(new DatosProveedor(rs.getString("CIF"), rs.getString("NOMBRE"), 
+                                                   rs.getString("TELEFONO"), rs.getString("EMAIL")));
+            }
+        } catch (ClassNotFoundException | SQLException ex) {
+            throw new MessageException("[!] Error al consultar los proveedores.");
+        }
+
+        return proveedores;
     }
 
     /**
-     * Devuelve el objeto JSON correspondiente al pedido.
+     * Devuelve la factura de la fila actual.
      * @param rs Resultado de la consulta
-     * @return JSON del pedido
+     * @return Datos de la factura
      * @throws SQLException 
      */
-    private static JsonObject getPedido(ResultSet rs) throws SQLException {
-        JsonObject pedido = new JsonObject();
-        
-        pedido.addProperty(JSONHelper.JSON_NUM_PEDIDO, rs.getLong("NUMERODEPEDIDO"));
-        pedido.addProperty(JSONHelper.JSON_FECHA_REALIZACION, rs.getDate("FECHADEREALIZACION").toString());
-        pedido.addProperty(JSONHelper.JSON_PENDIENTE, rs.getString("ESTAPENDIENTE"));
-        // Proveedor
-        pedido.add(JSONHelper.JSON_PROVEEDOR, getProveedor(rs));
-        
-        return pedido;
+    private static DatosFactura getFactura(ResultSet rs) throws SQLException {
+        return new DatosFactura(rs.getDate("FECHADEEMISION").toLocalDate(), rs.getDouble("IMPORTE"),
+                                rs.getString("CUENTABANCARIA"), getPedido(rs));
+    }
+    
+    /**
+     * Devuelve la posición de la factura de la fila actual en el orden de la
+     * columna dada.
+     */
+    private static CursorFacturas getCursor(ResultSet rs, ColumnaFacturas columna) throws SQLException {
+        Object valor;
+        switch(columna) {
+            case Proveedor:
+                valor = rs.getString("NOMBREMAYUSCULAS");
+                break;
+            case Pedido:
+                valor = rs.getLong("NUMERODEPEDIDO");
+                break;
+            case Importe:
+                valor = rs.getDouble("IMPORTE");
+                break;
+            case Realizacion:
+                valor = rs.getDate("FECHADEREALIZACION").toLocalDate();
+                break;
+            default:
+                valor = rs.getDate("FECHADEEMISION").toLocalDate();
+                break;
+        }
+        return new CursorFacturas(valor, rs.getInt("ID"));
+    }
+    
+    /**
+     * Devuelve la columna SQL por la que se ordena. El proveedor se ordena
+     * por su nombre sin distinguir mayúsculas.
+     */
+    private static String getColumnaOrden(ColumnaFacturas columna) {
+        switch(columna) {
+            case Proveedor:
+                return "PV.NOMBREMAYUSCULAS";
+            case Pedido:
+                return "PP.NUMERODEPEDIDO";
+            case Importe:
+                return "F.IMPORTE";
+            case Realizacion:
+                return "PP.FECHADEREALIZACION";
+            default:
+                return "F.FECHADEEMISION";
+        }
     }
     
     /**
-     * Devuelve el objeto JSON correspondiente al proveedor.
+     * Asigna a un parámetro el valor de la columna de ordenación de un cursor.
+     */
+    private static void setValorOrden(PreparedStatement pst, int indice, Object valor) throws SQLException {
+        if(valor instanceof LocalDate) {
+            pst.setDate(indice, Date.valueOf((LocalDate) valor));
+        } else {
+            pst.setObject(indice, valor);
+        }
+    }
+    
+    /**
+     * Devuelve el pedido de la fila actual.
      * @param rs Resultado de la consulta
-     * @return JSON del proveedor
+     * @return Datos del pedido
      * @throws SQLException 
      */
-    private static JsonObject getProveedor(ResultSet rs) throws SQLException {
-        JsonObject proveedor = new JsonObject();
-        
-        proveedor.addProperty(JSONHelper.JSON_NOMBRE, rs.getString("NOMBRE"));
-        proveedor.addProperty(JSONHelper.JSON_TELEFONO, rs.getString("TELEFONO"));
-        proveedor.addProperty(JSONHelper.JSON_EMAIL, rs.getString("EMAIL"));
-        
-        return proveedor;
+    private static DatosPedidoProveedor getPedido(ResultSet rs) throws SQLException {
+        return new DatosPedidoProveedor(rs.getLong("NUMERODEPEDIDO"), rs.getDate("FECHADEREALIZACION").toLocalDate(),
+                                        Boolean.parseBoolean(rs.getString("ESTAPENDIENTE")), getProveedor(rs));
+    }
+    
+    /**
+     * Devuelve los límites de años, de la caché o de la BD.
+     * @return {año mínimo, año máximo}
+     * @throws MessageException Si ha ocurrido un error con la BD
+     */
+    private static int[] getLimitesAnios() throws MessageException {
+        int[] limites = getLimitesEnCache();
+        if(limites != null) {
+            return limites;
+        }
+
+        try (ConexionBD conn = conectarse()) {
+            try (ResultSet rs = conn.prepareStatement(QUERY_LIMITES_ANIO_FAC).executeQuery()) {
+                rs.next();
+                limites = leeLimites(rs);
+            }
+        } catch (ClassNotFoundException | SQLException ex) {
+            throw new MessageException("[!] Error al consultar los años de las facturas.");
+        }
+
+        return guardaLimites(limites, new ArrayList<>());
+    }
+
+    private static synchronized int[] getLimitesEnCache() {
+        if(limitesAnios != null && System.currentTimeMillis() - limitesLeidos > CADUCIDAD_LIMITES_MS) {
+            limitesAnios = null;
+        }
+        return limitesAnios;
+    }
+
+    /**
+     * Guarda los límites en la caché, ampliándolos si alguna factura leída
+     * queda fuera (se ha insertado después de leerlos).
+     * @return Límites guardados
+     */
+    private static synchronized int[] guardaLimites(int[] limites, ArrayList<DatosFactura> facturas) {
+        int min = limites[0];
+        int max = limites[1];
+        for(DatosFactura factura : facturas) {
+            min = Math.min(min, factura.getFechaEmision().getYear());
+            max = Math.max(max, factura.getFechaEmision().getYear());
+        }
+
+        int[] nuevos = {min, max};
+        if(limitesAnios == null || min != limites[0] || max != limites[1]) {
+            limitesAnios = nuevos;
+            limitesLeidos = System.currentTimeMillis();
+        }
+        return nuevos;
+    }
+
+    /**
+     * Lee los límites de años de la fila actual. Sin facturas, ambos son el
+     * año actual.
+     */
+    private static int[] leeLimites(ResultSet rs) throws SQLException {
+        int actual = LocalDate.now().getYear();
+        int min = rs.getInt("MINANIO");
+        if(rs.wasNull()) {
+            min = actual;
+        }
+        int max = rs.getInt("MAXANIO");
+        if(rs.wasNull()) {
+            max = actual;
+        }
+
+        return new int[] {min, max};
+    }
+
+    /**
+     * Devuelve el valor con el que se compara un nombre o CIF introducido con
+     * las columnas NombreMayusculas y CifMayusculas de PROVEEDOR, que la BD
+     * mantiene como UPPER(Nombre) y UPPER(Cif).
+     */
+    private static String claveBusqueda(String proveedor) {
+        return proveedor.trim().toUpperCase(Locale.ROOT);
+    }
+    
+    /**
+     * Devuelve el proveedor de la fila actual.
+     * @param rs Resultado de la consulta
+     * @return Datos del proveedor
+     * @throws SQLException 
+     */
+    private static DatosProveedor getProveedor(ResultSet rs) throws SQLException {
+        return new DatosProveedor(rs.getString("NOMBRE"), rs.getString("TELEFONO"), rs.getString("EMAIL"));
     }
     
 }
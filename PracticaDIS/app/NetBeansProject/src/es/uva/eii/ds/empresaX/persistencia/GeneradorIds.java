@@ -0,0 +1,96 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Generador de identificadores por bloques (hi-lo) respaldado por una secuencia
+ * de Derby. Cada terminal reserva un bloque de IDs con una sola consulta
+ * (NEXT VALUE FOR) y después los reparte en memoria, de modo que dos terminales
+ * nunca obtienen el mismo ID. Las secuencias forman parte del esquema (ver
+ * persistencia/migraciones) y su INCREMENT BY es el tamaño de bloque.
+ *
+ * El bloque se pide con la conexión del llamante: pedir otra al pool mientras
+ * se tiene una prestada puede agotarlo si todas las que hay hacen lo mismo.
+ * Derby no deshace NEXT VALUE FOR al deshacer la transacción, así que un
+ * bloque reservado en una transacción que falla no se reparte dos veces.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class GeneradorIds {
+
+    // Generadores de la aplicación
+    public static final GeneradorIds VENTAS = new GeneradorIds("SEQ_VENTA", 20);
+
+    private static final String QUERY_SIGUIENTE_BLOQUE = "VALUES NEXT VALUE FOR ";
+
+    private final String secuencia;
+    private final int tamBloque;
+
+    private int siguiente;
+    private int finBloque;
+    private long bloquesReservados;
+
+    /**
+     * Crea un generador.
+     * @param secuencia Nombre de la secuencia de Derby
+     * @param tamBloque Número de IDs reservados por cada acceso a la BD (el
+     *        INCREMENT BY de la secuencia)
+     */
+    public GeneradorIds(String secuencia, int tamBloque) {
+        if(tamBloque < 1) {
+            throw new IllegalArgumentException("[!] El tamaño de bloque debe ser positivo.");
+        }
+
+        this.secuencia = secuencia;
+        this.tamBloque = tamBloque;
+        this.siguiente = 0;
+        this.finBloque = -1;
+        this.bloquesReservados = 0;
+    }
+
+    /**
+     * Devuelve el siguiente ID. Solo accede a la BD cuando se agota el bloque.
+     * @param conn Conexión que tiene prestada el llamante
+     * @return ID nuevo y único
+     * @throws MessageException Si no se pudo reservar un bloque nuevo
+     */
+    public synchronized int siguiente(ConexionBD conn) throws MessageException {
+        if(siguiente > finBloque) {
+            reservaBloque(conn);
+        }
+
+        return siguiente++;
+    }
+
+    /**
+     * Devuelve cuántos bloques ha reservado este terminal.
+     * @return Bloques reservados
+     */
+    public synchronized long getBloquesReservados() {
+        return bloquesReservados;
+    }
+
+    /**
+     * Reserva un bloque nuevo con la conexión del llamante.
+     * @throws MessageException Si ha ocurrido un error con la BD
+     */
+    private void reservaBloque(ConexionBD conn) throws MessageException {
+        try {
+            PreparedStatement pst = conn.prepareStatement(QUERY_SIGUIENTE_BLOQUE + secuencia);
+            try (ResultSet rs = pst.executeQuery()) {
+                rs.next();
+                siguiente = rs.getInt(1);
+            }
+            finBloque = siguiente + tamBloque - 1;
+            bloquesReservados++;
+        } catch(SQLException ex) {
+            throw new MessageException("[!] Error al reservar IDs de " + secuencia + ".");
+        }
+    }
+
+}
@@ -0,0 +1,234 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Migraciones del esquema de la BD. Cada script de la carpeta 'migraciones'
+ * tiene un número de versión (su prefijo) y se aplica una sola vez, en su
+ * propia transacción junto con el registro de la versión en VERSIONESQUEMA.
+ * Una BD creada con createTables.sql ya tiene registradas todas las versiones
+ * que el script incluye.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class MigracionesBD {
+
+    // Scripts en orden de versión (la versión es el prefijo numérico)
+    private static final String[] SCRIPTS = {
+        "001_clave_operaciones_pedido_horno.sql",
+        "002_estado_actual_pedido_horno.sql",
+        "003_indices.sql",
+        "004_busqueda_proveedor.sql",
+        "005_indice_facturas_fecha_id.sql",
+        "006_ventas_diario.sql",
+        "007_procedimiento_registrar_venta.sql",
+        "008_secuencia_ventas.sql",
+        "009_indices_cubrientes_pedidos_horno.sql",
+        "010_descuadres_existencias.sql"
+    };
+    private static final String CARPETA = "migraciones/";
+
+    private static final String QUERY_EXISTE_TABLA = 
+            "SELECT 1 FROM SYS.SYSTABLES WHERE TABLENAME = 'VERSIONESQUEMA'";
+    private static final String CREATE_TABLA_VERSIONES = 
+            "CREATE TABLE VERSIONESQUEMA (Version INTEGER NOT NULL, Script VARCHAR(100) NOT NULL, "
+            + "Aplicada TIMESTAMP NOT NULL, PRIMARY KEY(Version))";
+    private static final String QUERY_VERSION = "SELECT MAX(VERSION) FROM VERSIONESQUEMA";
+    private static final String INSERT_VERSION = "INSERT INTO VERSIONESQUEMA VALUES ((?), (?), (?))";
+    // SQLState de Derby cuando el objeto ya existe / clave duplicada / la secuencia ya existe
+    private static final String ESTADO_YA_EXISTE = "X0Y32";
+    private static final String ESTADO_DUPLICADO = "23505";
+    private static final String ESTADO_SECUENCIA_YA_EXISTE = "X0Y68";
+
+    // {SIGUIENTE TABLA.Columna} en un script se sustituye por el mayor valor de la
+    // columna más uno (Derby solo admite constantes en START WITH)
+    private static final Pattern SIGUIENTE = Pattern.compile("\\{SIGUIENTE (\\w+)\\.(\\w+)\\}");
+
+    private static final Logger LOGGER = Logger.getLogger(MigracionesBD.class.getName());
+
+    /**
+     * Aplica las migraciones que falten. Se llama al arrancar la aplicación.
+     * @return Número de migraciones aplicadas
+     * @throws MessageException Si alguna migración ha fallado (las anteriores quedan aplicadas)
+     */
+    public static int aplicarPendientes() throws MessageException {
+        int aplicadas = 0;
+
+        try (ConexionBD conn = ConexionBD.obtenerConexion()) {
+            Connection c = conn.getConnection();
+            creaTablaVersionesSiNoExiste(c);
+
+            int actual = getVersion(c);
+            for(String script : SCRIPTS) {
+                int version = getVersion(script);
+                if(version > actual) {
+                    if(aplica(c, version, script)) {
+                        aplicadas++;
+                    }
+                    actual = version;
+                }
+            }
+        } catch(ClassNotFoundException | SQLException | IOException ex) {
+            LOGGER.log(Level.SEVERE, null, ex);
+            throw new MessageException("[!] Error al actualizar el esquema de la BD.");
+        }
+
+        return aplicadas;
+    }
+
+    /**
+     * Devuelve la versión más alta que ofrece la aplicación.
+     * @return Versión del esquema esperada
+     */
+    public static int getVersionEsperada() {
+        return getVersion(SCRIPTS[SCRIPTS.length - 1]);
+    }
+
+
+    /**
+     * Aplica un script y registra su versión en la misma transacción.
+     * @return false si otro terminal lo ha aplicado a la vez
+     */
+    private static boolean aplica(Connection c, int version, String script) throws SQLException, IOException {
+        ArrayList<String> sentencias = leeScript(script);
+
+        c.setAutoCommit(false);
+        try (Statement st = c.createStatement()) {
+            for(String sql : sentencias) {
+                ejecuta(c, st, sql);
+            }
+
+            try (PreparedStatement pst = c.prepareStatement(INSERT_VERSION)) {
+                pst.setInt(1, version);
+                pst.setString(2, script);
+                pst.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+                pst.executeUpdate();
+            }
+
+            c.commit();
+            LOGGER.log(Level.INFO, "Migración aplicada: {0}", script);
+            return true;
+        } catch(SQLException | RuntimeException ex) {
+            c.rollback();
+            if(ex instanceof SQLException && yaAplicada(c, version)) {
+                // Otro terminal la ha aplicado mientras tanto
+                return false;
+            }
+            throw ex;
+        } finally {
+            c.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Ejecuta una sentencia de un script, sustituyendo antes los valores
+     * {SIGUIENTE TABLA.Columna}. Una secuencia que ya existe (creada por una
+     * versión anterior de la aplicación) no es un error.
+     */
+    private static void ejecuta(Connection c, Statement st, String sql) throws SQLException {
+        Matcher m = SIGUIENTE.matcher(sql);
+        StringBuffer sb = new StringBuffer();
+        while(m.find()) {
+            try (Statement max = c.createStatement()) {
+                ResultSet rs = max.executeQuery("SELECT MAX(" + m.group(2) + ") FROM " + m.group(1));
+                int siguiente = (rs.next() ? rs.getInt(1) : 0) + 1;
+                m.appendReplacement(sb, Integer.toString(siguiente));
+            }
+        }
+        m.appendTail(sb);
+
+        try {
+            st.executeUpdate(sb.toString());
+        } catch(SQLException ex) {
+            if(!ESTADO_SECUENCIA_YA_EXISTE.equals(ex.getSQLState())) {
+                throw ex;
+            }
+            LOGGER.log(Level.INFO, "La secuencia ya existía: {0}", sql);
+        }
+    }
+
+    private static boolean yaAplicada(Connection c, int version) throws SQLException {
+        return getVersion(c) >= version;
+    }
+
+    private static void creaTablaVersionesSiNoExiste(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            if(st.executeQuery(QUERY_EXISTE_TABLA).next()) {
+                return;
+            }
+            st.executeUpdate(CREATE_TABLA_VERSIONES);
+        } catch(SQLException ex) {
+            // Otro terminal la ha creado a la vez
+            if(!ESTADO_YA_EXISTE.equals(ex.getSQLState()) && !ESTADO_DUPLICADO.equals(ex.getSQLState())) {
+                throw ex;
+            }
+        }
+    }
+
+    private static int getVersion(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            ResultSet rs = st.executeQuery(QUERY_VERSION);
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static int getVersion(String script) {
+        return Integer.parseInt(script.substring(0, script.indexOf('_')));
+    }
+
+    /**
+     * Lee un script y lo divide en sentencias (separadas por ';'), quitando
+     * las líneas de comentario.
+     */
+    private static ArrayList<String> leeScript(String script) throws IOException {
+        InputStream in = MigracionesBD.class.getResourceAsStream(CARPETA + script);
+        if(in == null) {
+            throw new IOException("No se encuentra la migración " + script);
+        }
+
+        ArrayList<String> sentencias = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String linea;
+            while((linea = br.readLine()) != null) {
+                if(linea.trim().startsWith("--")) {
+                    continue;
+                }
+                actual.append(linea).append('\n');
+                int fin;
+                while((fin = actual.indexOf(";")) >= 0) {
+                    String sql = actual.substring(0, fin).trim();
+                    if(!sql.isEmpty()) {
+                        sentencias.add(sql);
+                    }
+                    actual.delete(0, fin + 1);
+                }
+            }
+        }
+        if(!actual.toString().trim().isEmpty()) {
+            sentencias.add(actual.toString().trim());
+        }
+
+        return sentencias;
+    }
+
+}
@@ -0,0 +1,436 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool acotado de conexiones a la BD. Las conexiones se prestan y se devuelven,
+ * se validan al prestarse (reconectando si se han caído) y se cierran cuando
+ * llevan demasiado tiempo inactivas.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class PoolConexiones {
+
+    // Segundos que se espera a que la BD confirme que una conexión es válida
+    private static final int TIMEOUT_VALIDACION = 2;
+
+    private final String url;
+    private final String usuario;
+    private final String password;
+    private final int maxConexiones;
+    private final int minInactivas;
+    private final long maxEsperaMs;
+    private final long maxInactividadMs;
+    private final int tamCacheSentencias;
+
+    private final ReentrantLock lock;
+    private final Condition hayDisponible;
+    private final ArrayDeque<ConexionInactiva> inactivas;
+    private final ScheduledExecutorService desalojador;
+    private final ConcurrentHashMap<Connection, CacheSentencias> caches;
+    private int abiertas;
+
+    // Estadísticas
+    private long prestamos;
+    private long reconexiones;
+    private long desalojadas;
+    private long tiempoEsperaTotalNs;
+    private long tiempoEsperaMaxNs;
+    // De las cachés de sentencias de conexiones ya cerradas
+    private long aciertosCerradas;
+    private long fallosCerradas;
+    private long desalojosCerradas;
+
+    /**
+     * Crea un pool de conexiones.
+     * @param url URL JDBC de la BD
+     * @param usuario Usuario de la BD
+     * @param password Password de la BD
+     * @param maxConexiones Número máximo de conexiones abiertas a la vez
+     * @param minInactivas Conexiones inactivas que se mantienen aunque caduquen
+     * @param maxEsperaMs Tiempo máximo de espera por una conexión libre
+     * @param maxInactividadMs Tiempo tras el que se cierra una conexión inactiva
+     * @param tamCacheSentencias Sentencias preparadas que se guardan por conexión
+     */
+    public PoolConexiones(String url, String usuario, String password, int maxConexiones,
+                          int minInactivas, long maxEsperaMs, long maxInactividadMs, 
+                          int tamCacheSentencias) {
+        if(maxConexiones < 1 || minInactivas < 0 || minInactivas > maxConexiones) {
+            throw new IllegalArgumentException("[!] Configuración del pool de conexiones inválida.");
+        }
+
+        this.url = url;
+        this.usuario = usuario;
+        this.password = password;
+        this.maxConexiones = maxConexiones;
+        this.minInactivas = minInactivas;
+        this.maxEsperaMs = maxEsperaMs;
+        this.maxInactividadMs = maxInactividadMs;
+        this.tamCacheSentencias = tamCacheSentencias;
+
+        lock = new ReentrantLock();
+        hayDisponible = lock.newCondition();
+        inactivas = new ArrayDeque<>();
+        caches = new ConcurrentHashMap<>();
+        abiertas = 0;
+
+        desalojador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "PoolConexiones-desalojo");
+            t.setDaemon(true);
+            return t;
+        });
+        long periodo = Math.max(1000, maxInactividadMs / 2);
+        desalojador.scheduleWithFixedDelay(this::desalojaInactivas, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Presta una conexión válida del pool. Si no hay ninguna libre y se ha
+     * alcanzado el máximo, espera hasta que se devuelva alguna.
+     * @return Conexión prestada (hay que devolverla con devolver())
+     * @throws SQLException Si no se pudo abrir una conexión o se agotó la espera
+     */
+    public Connection prestar() throws SQLException {
+        long inicio = System.nanoTime();
+        long restanteNs = TimeUnit.MILLISECONDS.toNanos(maxEsperaMs);
+        ConexionInactiva candidata = null;
+
+        lock.lock();
+        try {
+            // Espera hasta que haya una inactiva o se pueda abrir otra
+            while(inactivas.isEmpty() && abiertas >= maxConexiones) {
+                if(restanteNs <= 0) {
+                    throw new SQLTimeoutException("[!] No hay conexiones libres con la BD.");
+                }
+                restanteNs = hayDisponible.awaitNanos(restanteNs);
+            }
+
+            if(!inactivas.isEmpty()) {
+                // La más reciente, para que las antiguas puedan caducar
+                candidata = inactivas.pollLast();
+            } else {
+                // Reserva el hueco antes de abrirla fuera del cerrojo
+                abiertas++;
+            }
+
+            long espera = System.nanoTime() - inicio;
+            prestamos++;
+            tiempoEsperaTotalNs += espera;
+            tiempoEsperaMaxNs = Math.max(tiempoEsperaMaxNs, espera);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("[!] Interrumpido esperando una conexión con la BD.", ex);
+        } finally {
+            lock.unlock();
+        }
+
+        if(candidata != null) {
+            if(esValida(candidata.conexion)) {
+                return candidata.conexion;
+            }
+            // Se ha caído: la descarta y abre otra en su hueco
+            cierraConexion(candidata.conexion);
+            lock.lock();
+            try {
+                reconexiones++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        try {
+            return DriverManager.getConnection(url, usuario, password);
+        } catch(SQLException | RuntimeException ex) {
+            liberaHueco();
+            throw ex;
+        }
+    }
+
+    /**
+     * Devuelve al pool una conexión prestada.
+     * @param conexion Conexión prestada
+     */
+    public void devolver(Connection conexion) {
+        if(conexion == null) {
+            return;
+        }
+
+        boolean reutilizable;
+        try {
+            reutilizable = !conexion.isClosed();
+            if(reutilizable && !conexion.getAutoCommit()) {
+                // Deshace lo que haya quedado a medias y restaura el modo por defecto
+                conexion.rollback();
+                conexion.setAutoCommit(true);
+            }
+        } catch(SQLException ex) {
+            reutilizable = false;
+        }
+
+        if(!reutilizable) {
+            cierraConexion(conexion);
+            liberaHueco();
+            return;
+        }
+
+        lock.lock();
+        try {
+            inactivas.addLast(new ConexionInactiva(conexion, System.currentTimeMillis()));
+            hayDisponible.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Devuelve la caché de sentencias preparadas de una conexión del pool.
+     * @param conexion Conexión prestada
+     * @return Caché de la conexión
+     */
+    CacheSentencias getCache(Connection conexion) {
+        return caches.computeIfAbsent(conexion, c -> new CacheSentencias(c, tamCacheSentencias));
+    }
+
+    /**
+     * Cierra las conexiones inactivas que han caducado, manteniendo el mínimo.
+     */
+    void desalojaInactivas() {
+        long limite = System.currentTimeMillis() - maxInactividadMs;
+        ArrayDeque<Connection> aCerrar = new ArrayDeque<>();
+
+        lock.lock();
+        try {
+            // Las más antiguas están al principio
+            Iterator<ConexionInactiva> it = inactivas.iterator();
+            while(it.hasNext() && inactivas.size() > minInactivas) {
+                ConexionInactiva ci = it.next();
+                if(ci.desde > limite) {
+                    break;
+                }
+                it.remove();
+                aCerrar.add(ci.conexion);
+                abiertas--;
+                desalojadas++;
+            }
+            if(!aCerrar.isEmpty()) {
+                hayDisponible.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for(Connection c : aCerrar) {
+            cierraConexion(c);
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones inactivas y detiene el desalojo periódico.
+     */
+    public void cerrar() {
+        desalojador.shutdownNow();
+
+        ArrayDeque<Connection> aCerrar = new ArrayDeque<>();
+        lock.lock();
+        try {
+            for(ConexionInactiva ci : inactivas) {
+                aCerrar.add(ci.conexion);
+            }
+            abiertas -= inactivas.size();
+            inactivas.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        for(Connection c : aCerrar) {
+            cierraConexion(c);
+        }
+    }
+
+    /**
+     * Devuelve una instantánea de las estadísticas del pool.
+     * @return Estadísticas actuales
+     */
+    public Estadisticas getEstadisticas() {
+        lock.lock();
+        try {
+            long aciertos = aciertosCerradas;
+            long fallos = fallosCerradas;
+            long desalojos = desalojosCerradas;
+            for(CacheSentencias cache : caches.values()) {
+                aciertos += cache.getAciertos();
+                fallos += cache.getFallos();
+                desalojos += cache.getDesalojos();
+            }
+            return new Estadisticas(abiertas - inactivas.size(), inactivas.size(), maxConexiones,
+                                    lock.getWaitQueueLength(hayDisponible), prestamos, reconexiones,
+                                    desalojadas, tiempoEsperaTotalNs, tiempoEsperaMaxNs,
+                                    aciertos, fallos, desalojos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void liberaHueco() {
+        lock.lock();
+        try {
+            abiertas--;
+            hayDisponible.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean esValida(Connection c) {
+        try {
+            return c.isValid(TIMEOUT_VALIDACION);
+        } catch(SQLException ex) {
+            return false;
+        }
+    }
+
+    private void cierraConexion(Connection c) {
+        CacheSentencias cache = caches.remove(c);
+        if(cache != null) {
+            cache.cerrar();
+            lock.lock();
+            try {
+                aciertosCerradas += cache.getAciertos();
+                fallosCerradas += cache.getFallos();
+                desalojosCerradas += cache.getDesalojos();
+            } finally {
+                lock.unlock();
+            }
+        }
+        try {
+            c.close();
+        } catch(SQLException ex) {
+            // Ya estaba caída, no hay nada más que hacer
+        }
+    }
+
+
+    /**
+     * Conexión libre junto con el instante en que se devolvió al pool.
+     */
+    private static final class ConexionInactiva {
+        private final Connection conexion;
+        private final long desde;
+
+        ConexionInactiva(Connection conexion, long desde) {
+            this.conexion = conexion;
+            this.desde = desde;
+        }
+    }
+
+    /**
+     * Estadísticas del pool en un momento dado.
+     */
+    public static final class Estadisticas {
+        private final int activas;
+        private final int inactivas;
+        private final int maximo;
+        private final int esperando;
+        private final long prestamos;
+        private final long reconexiones;
+        private final long desalojadas;
+        private final long tiempoEsperaTotalNs;
+        private final long tiempoEsperaMaxNs;
+        private final long aciertosCache;
+        private final long fallosCache;
+        private final long desalojosCache;
+
+        Estadisticas(int activas, int inactivas, int maximo, int esperando, long prestamos,
+                     long reconexiones, long desalojadas, long tiempoEsperaTotalNs, long tiempoEsperaMaxNs,
+                     long aciertosCache, long fallosCache, long desalojosCache) {
+            this.activas = activas;
+            this.inactivas = inactivas;
+            this.maximo = maximo;
+            this.esperando = esperando;
+            this.prestamos = prestamos;
+            this.reconexiones = reconexiones;
+            this.desalojadas = desalojadas;
+            this.tiempoEsperaTotalNs = tiempoEsperaTotalNs;
+            this.tiempoEsperaMaxNs = tiempoEsperaMaxNs;
+            this.aciertosCache = aciertosCache;
+            this.fallosCache = fallosCache;
+            this.desalojosCache = desalojosCache;
+        }
+
+        public int getActivas() {
+            return activas;
+        }
+
+        public int getInactivas() {
+            return inactivas;
+        }
+
+        public int getMaximo() {
+            return maximo;
+        }
+
+        public int getEsperando() {
+            return esperando;
+        }
+
+        public long getPrestamos() {
+            return prestamos;
+        }
+
+        public long getReconexiones() {
+            return reconexiones;
+        }
+
+        public long getDesalojadas() {
+            return desalojadas;
+        }
+
+        public double getTiempoEsperaMedioMs() {
+            return prestamos == 0 ? 0 : tiempoEsperaTotalNs / 1e6 / prestamos;
+        }
+
+        public double getTiempoEsperaMaxMs() {
+            return tiempoEsperaMaxNs / 1e6;
+        }
+
+        public long getAciertosCache() {
+            return aciertosCache;
+        }
+
+        public long getFallosCache() {
+            return fallosCache;
+        }
+
+        public long getDesalojosCache() {
+            return desalojosCache;
+        }
+
+        public double getRatioAciertosCache() {
+            long total = aciertosCache + fallosCache;
+            return total == 0 ? 0 : (double) aciertosCache / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("activas=%d inactivas=%d max=%d esperando=%d prestamos=%d "
+                               + "reconexiones=%d desalojadas=%d esperaMedia=%.3fms esperaMax=%.3fms "
+                               + "cacheSentencias[aciertos=%d fallos=%d desalojos=%d]",
+                                 activas, inactivas, maximo, esperando, prestamos, reconexiones,
+                                 desalojadas, getTiempoEsperaMedioMs(), getTiempoEsperaMaxMs(),
+                                 aciertosCache, fallosCache, desalojosCache);
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Procedimientos almacenados en Java que ejecuta Derby dentro de la BD.
+ * Se declaran con las migraciones (CREATE PROCEDURE ... EXTERNAL NAME), pero
+ * la clase la carga el servidor: el build la empaqueta sola en
+ * dist/procedimientosBD.jar y hay que instalarla en la BD desde la máquina del
+ * servidor (db/instalarProcedimientos.sql). Solo puede usar clases de java.*.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class ProcedimientosBD {
+
+    // Formato de las líneas empaquetadas: "cantidad:código;cantidad:código;..."
+    private static final char SEPARADOR_LINEAS = ';';
+    private static final char SEPARADOR_CAMPOS = ':';
+
+    private static final String QUERY_VENTA = "INSERT INTO VENTA VALUES(?,?,?)";
+    private static final String QUERY_LINEA = "INSERT INTO LINEADEVENTA VALUES(?,?,?)";
+    private static final String QUERY_DECREMENTA_EXISTENCIAS =
+            "UPDATE PRODUCTO SET EXISTENCIAS = EXISTENCIAS - ? WHERE CODIGO = ? AND EXISTENCIAS >= ?";
+
+    // Error de REGISTRAR_VENTA cuando no hay existencias suficientes. Derby deja
+    // pasar tal cual los SQLState 38XXX lanzados por un procedimiento
+    static final String ESTADO_SIN_EXISTENCIAS = "38V01";
+    private static final String PREFIJO_SIN_EXISTENCIAS = "Sin existencias suficientes: ";
+    // Errores de Derby cuando el procedimiento no está declarado o su clase
+    // (o su método) no está en el classpath del servidor
+    private static final String[] ESTADOS_NO_INSTALADO = {"42Y03", "42X50", "42X51"};
+
+    private ProcedimientosBD() {
+    }
+
+    /**
+     * Empaqueta las líneas de una venta para REGISTRAR_VENTA.
+     * @param codigos Códigos de los productos de cada línea
+     * @param cantidades Cantidades de cada línea
+     * @return Líneas empaquetadas, o null si algún código contiene el separador
+     */
+    static String empaquetaLineas(List<String> codigos, List<Integer> cantidades) {
+        StringBuilder sb = new StringBuilder(codigos.size() * 16);
+        for(int i = 0; i < codigos.size(); i++) {
+            if(codigos.get(i).indexOf(SEPARADOR_LINEAS) >= 0) {
+                return null;
+            }
+            if(i > 0) {
+                sb.append(SEPARADOR_LINEAS);
+            }
+            sb.append(cantidades.get(i)).append(SEPARADOR_CAMPOS).append(codigos.get(i));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Devuelve el producto sin existencias suficientes de un error de
+     * REGISTRAR_VENTA.
+     * @param ex Error de la llamada
+     * @return Código del producto, o null si el error es por otro motivo
+     */
+    static String getCodigoSinExistencias(SQLException ex) {
+        for(SQLException e = ex; e != null; e = e.getNextException()) {
+            if(ESTADO_SIN_EXISTENCIAS.equals(e.getSQLState()) && e.getMessage() != null) {
+                int i = e.getMessage().indexOf(PREFIJO_SIN_EXISTENCIAS);
+                if(i >= 0) {
+                    return e.getMessage().substring(i + PREFIJO_SIN_EXISTENCIAS.length()).trim();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indica si un error se debe a que los procedimientos no están instalados
+     * en el servidor.
+     * @param ex Error de la llamada
+     * @return true si falta el procedimiento o su clase
+     */
+    static boolean esNoInstalado(SQLException ex) {
+        for(SQLException e = ex; e != null; e = e.getNextException()) {
+            for(String estado : ESTADOS_NO_INSTALADO) {
+                if(estado.equals(e.getSQLState())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * REGISTRAR_VENTA: registra una venta completa en una sola llamada.
+     * Descuenta las existencias (un UPDATE por producto) e inserta la
+     * cabecera y las líneas. Si de algún producto no hay suficientes lanza un
+     * error con SQLState ESTADO_SIN_EXISTENCIAS y Derby deshace la llamada
+     * entera, así que no queda nada a medias.
+     * @param idVenta ID de la venta
+     * @param fecha Fecha de la venta
+     * @param dependiente NIF del dependiente
+     * @param lineas Líneas empaquetadas (ver empaquetaLineas)
+     * @throws SQLException Si no hay existencias suficientes o falla alguna sentencia
+     */
+    public static void registrarVenta(int idVenta, Date fecha, String dependiente, String lineas)
+            throws SQLException {
+        ArrayList<String> codigos = new ArrayList<>();
+        ArrayList<Integer> cantidadesLinea = new ArrayList<>();
+        int inicio = 0;
+        while(inicio < lineas.length()) {
+            int fin = lineas.indexOf(SEPARADOR_LINEAS, inicio);
+            if(fin < 0) {
+                fin = lineas.length();
+            }
+            int campos = lineas.indexOf(SEPARADOR_CAMPOS, inicio);
+            cantidadesLinea.add(Integer.parseInt(lineas.substring(inicio, campos)));
+            codigos.add(lineas.substring(campos + 1, fin));
+            inicio = fin + 1;
+        }
+
+        // Cantidad total por producto, en el orden de las líneas
+        LinkedHashMap<String, Integer> cantidades = new LinkedHashMap<>();
+        for(int i = 0; i < codigos.size(); i++) {
+            cantidades.merge(codigos.get(i), cantidadesLinea.get(i), Integer::sum);
+        }
+
+        Connection c = DriverManager.getConnection("jdbc:default:connection");
+
+        try (PreparedStatement decrementa = c.prepareStatement(QUERY_DECREMENTA_EXISTENCIAS)) {
+            for(Map.Entry<String, Integer> e : cantidades.entrySet()) {
+                decrementa.setInt(1, e.getValue());
+                decrementa.setString(2, e.getKey());
+                decrementa.setInt(3, e.getValue());
+                if(decrementa.executeUpdate() == 0) {
+                    throw new SQLException(PREFIJO_SIN_EXISTENCIAS + e.getKey(), ESTADO_SIN_EXISTENCIAS);
+                }
+            }
+        }
+
+        try (PreparedStatement venta = c.prepareStatement(QUERY_VENTA);
+             PreparedStatement linea = c.prepareStatement(QUERY_LINEA)) {
+            venta.setInt(1, idVenta);
+            venta.setDate(2, fecha);
+            venta.setString(3, dependiente);
+            venta.executeUpdate();
+
+            for(int i = 0; i < codigos.size(); i++) {
+                linea.setInt(1, cantidadesLinea.get(i));
+                linea.setInt(2, idVenta);
+                linea.setString(3, codigos.get(i));
+                linea.addBatch();
+            }
+            linea.executeBatch();
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import es.uva.eii.ds.empresaX.negocio.modelos.TipoDisponibilidad;
+import es.uva.eii.ds.empresaX.negocio.modelos.TipoEstadoPedido;
+import es.uva.eii.ds.empresaX.negocio.modelos.TipoRol;
+import es.uva.eii.ds.empresaX.negocio.modelos.TipoVinculacion;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registro inmutable de una tabla de tipos de la BD (TIPODEROL, TIPODEVINCULACION,
+ * TIPODEDISPONIBILIDAD, ESTADODEPEDIDODEHORNO) alineado con su enumerado.
+ * Las tablas son pequeñas y no cambian, así que se leen una sola vez y a partir
+ * de ahí los nombres e IDs se resuelven sin consultas.
+ *
+ * @param <E> Enumerado de los tipos
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class RegistroTipos<E extends Enum<E>> {
+
+    private static final String QUERY_TIPOS_1 = "SELECT idTipo, nombreTipo FROM ";
+    private static final String DESCONOCIDO = "DESCONOCIDO";
+
+    // NOMBRES BD
+    private static final String TABLA_ROLES = "TipoDeRol";
+    private static final String TABLA_VINCULACIONES = "TipoDeVinculacion";
+    private static final String TABLA_DISPONIBILIDADES = "TipoDeDisponibilidad";
+    private static final String TABLA_ESTADOS_PEDIDO = "EstadoDePedidoDeHorno";
+
+    private final String tabla;
+    private final Map<Integer, String> nombres;
+    private final Map<Integer, E> tipos;
+    private final Map<E, Integer> ids;
+
+    private RegistroTipos(String tabla, Map<Integer, String> nombres, Map<Integer, E> tipos, Map<E, Integer> ids) {
+        this.tabla = tabla;
+        this.nombres = Collections.unmodifiableMap(nombres);
+        this.tipos = Collections.unmodifiableMap(tipos);
+        this.ids = Collections.unmodifiableMap(ids);
+    }
+
+    /**
+     * Lee una tabla de tipos y la alinea con su enumerado.
+     * @param conn Conexión a la BD
+     * @param tabla Tabla de tipos
+     * @param clase Clase del enumerado
+     * @return Registro de la tabla
+     * @throws SQLException
+     */
+    private static <E extends Enum<E>> RegistroTipos<E> cargar(ConexionBD conn, String tabla, Class<E> clase) throws SQLException {
+        HashMap<Integer, String> nombres = new HashMap<>();
+        HashMap<Integer, E> tipos = new HashMap<>();
+        EnumMap<E, Integer> ids = new EnumMap<>(clase);
+
+        PreparedStatement pst = conn.prepareStatement(QUERY_TIPOS_1 + tabla);
+        ResultSet rs = pst.executeQuery();
+        while(rs.next()) {
+            int id = rs.getInt(1);
+            String nombre = rs.getString(2);
+            nombres.put(id, nombre);
+            for(E tipo : clase.getEnumConstants()) {
+                if(tipo.name().equals(nombre)) {
+                    tipos.put(id, tipo);
+                    ids.put(tipo, id);
+                }
+            }
+        }
+
+        return new RegistroTipos<>(tabla, nombres, tipos, ids);
+    }
+
+    /**
+     * Devuelve el nombre del tipo con el ID indicado.
+     * @param id ID del tipo
+     * @return Nombre del tipo ("DESCONOCIDO" si no existe)
+     */
+    public String nombre(int id) {
+        return nombres.getOrDefault(id, DESCONOCIDO);
+    }
+
+    /**
+     * Devuelve el valor del enumerado con el ID indicado.
+     * @param id ID del tipo
+     * @return Tipo (null si no existe o no tiene valor en el enumerado)
+     */
+    public E tipo(int id) {
+        return tipos.get(id);
+    }
+
+    /**
+     * Devuelve el ID en la BD de un valor del enumerado.
+     * @param tipo Tipo
+     * @return ID del tipo
+     */
+    public int id(E tipo) {
+        Integer id = ids.get(tipo);
+        if(id == null) {
+            throw new IllegalStateException("[!] No existe el tipo " + tipo + " en " + tabla);
+        }
+
+        return id;
+    }
+
+
+    /** Alcance de clase **/
+    private static volatile boolean cargados = false;
+    private static RegistroTipos<TipoRol> roles;
+    private static RegistroTipos<TipoVinculacion> vinculaciones;
+    private static RegistroTipos<TipoDisponibilidad> disponibilidades;
+    private static RegistroTipos<TipoEstadoPedido> estadosPedido;
+
+    /**
+     * Lee todas las tablas de tipos si no se han leído ya.
+     * @param conn Conexión a la BD
+     * @throws SQLException
+     */
+    public static void precargar(ConexionBD conn) throws SQLException {
+        if(cargados) {
+            return;
+        }
+
+        synchronized(RegistroTipos.class) {
+            if(!cargados) {
+                roles = cargar(conn, TABLA_ROLES, TipoRol.class);
+                vinculaciones = cargar(conn, TABLA_VINCULACIONES, TipoVinculacion.class);
+                disponibilidades = cargar(conn, TABLA_DISPONIBILIDADES, TipoDisponibilidad.class);
+                estadosPedido = cargar(conn, TABLA_ESTADOS_PEDIDO, TipoEstadoPedido.class);
+                cargados = true;
+            }
+        }
+    }
+
+    public static RegistroTipos<TipoRol> getRoles(ConexionBD conn) throws SQLException {
+        precargar(conn);
+        return roles;
+    }
+
+    public static RegistroTipos<TipoVinculacion> getVinculaciones(ConexionBD conn) throws SQLException {
+        precargar(conn);
+        return vinculaciones;
+    }
+
+    public static RegistroTipos<TipoDisponibilidad> getDisponibilidades(ConexionBD conn) throws SQLException {
+        precargar(conn);
+        return disponibilidades;
+    }
+
+    public static RegistroTipos<TipoEstadoPedido> getEstadosPedido(ConexionBD conn) throws SQLException {
+        precargar(conn);
+        return estadosPedido;
+    }
+
+}
@@ -0,0 +1,25 @@
+-- Clave sustituta para OPERACIONSOBREPEDIDODEHORNO.
+-- Momento era la clave primaria: dos operaciones en el mismo instante (dos
+-- empleados a la vez o un lote de pedidos) chocaban. Derby no permite añadir
+-- una columna identidad a una tabla con datos, así que se copia a una tabla
+-- nueva y se renombra.
+
+create table OPERACIONSOBREPEDIDODEHORNO_NUEVA 
+(
+    IdOperacion INTEGER not null GENERATED ALWAYS AS IDENTITY (START WITH 1, INCREMENT BY 1),
+    Momento TIMESTAMP not null,
+    Tipo SMALLINT not null,
+    Empleado VARCHAR(9) not null,
+    PedidoDeHorno INTEGER not null,
+        PRIMARY KEY(IdOperacion),
+        FOREIGN KEY(Tipo) REFERENCES ESTADODEPEDIDODEHORNO(IdTipo),
+        FOREIGN KEY(Empleado) REFERENCES EMPLEADO(Nif),
+        FOREIGN KEY(PedidoDeHorno) REFERENCES PEDIDODEHORNO(NumeroDePedido)
+);
+
+INSERT INTO OPERACIONSOBREPEDIDODEHORNO_NUEVA (Momento, Tipo, Empleado, PedidoDeHorno)
+    SELECT Momento, Tipo, Empleado, PedidoDeHorno FROM OPERACIONSOBREPEDIDODEHORNO ORDER BY Momento;
+
+DROP TABLE OPERACIONSOBREPEDIDODEHORNO;
+
+RENAME TABLE OPERACIONSOBREPEDIDODEHORNO_NUEVA TO OPERACIONSOBREPEDIDODEHORNO;
@@ -0,0 +1,28 @@
+-- Estado actual materializado en PEDIDODEHORNO.
+-- Para saber si un pedido sigue 'Registrado' había que buscar su operación de
+-- mayor tipo. Ahora el último estado y su momento se guardan en el propio
+-- pedido, indexados junto con la fecha deseada, y un trigger los mantiene con
+-- cada inserción en OPERACIONSOBREPEDIDODEHORNO.
+
+ALTER TABLE PEDIDODEHORNO ADD COLUMN EstadoActual SMALLINT;
+ALTER TABLE PEDIDODEHORNO ADD COLUMN MomentoEstadoActual TIMESTAMP;
+
+UPDATE PEDIDODEHORNO P
+    SET EstadoActual = (SELECT MAX(O.Tipo) FROM OPERACIONSOBREPEDIDODEHORNO O
+                            WHERE O.PedidoDeHorno = P.NumeroDePedido),
+        -- Momento de la operación que dejó el estado actual (la de mayor tipo),
+        -- no el de la última operación
+        MomentoEstadoActual = (SELECT MAX(O.Momento) FROM OPERACIONSOBREPEDIDODEHORNO O
+                                   WHERE O.PedidoDeHorno = P.NumeroDePedido
+                                     AND O.Tipo = (SELECT MAX(O2.Tipo) FROM OPERACIONSOBREPEDIDODEHORNO O2
+                                                       WHERE O2.PedidoDeHorno = P.NumeroDePedido));
+
+CREATE INDEX IDX_PEDIDOHORNO_ESTADO_FECHA ON PEDIDODEHORNO(EstadoActual, FechaEnLaQueSeQuiere);
+
+CREATE TRIGGER ACTUALIZA_ESTADO_PEDIDOHORNO
+    AFTER INSERT ON OPERACIONSOBREPEDIDODEHORNO
+    REFERENCING NEW AS OP
+    FOR EACH ROW
+    UPDATE PEDIDODEHORNO SET EstadoActual = OP.Tipo, MomentoEstadoActual = OP.Momento
+        WHERE NumeroDePedido = OP.PedidoDeHorno
+          AND (EstadoActual IS NULL OR EstadoActual <= OP.Tipo);
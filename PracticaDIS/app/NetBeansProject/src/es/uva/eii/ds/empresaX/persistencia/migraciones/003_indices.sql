@@ -0,0 +1,22 @@
+-- Índices para las consultas más frecuentes de las fachadas.
+-- Derby ya crea un índice para cada clave ajena; los de columnas que son clave
+-- ajena se amplían con las columnas que leen las consultas, para que las
+-- resuelvan sin ir a la tabla.
+
+-- Pedidos de horno por fecha deseada (sin filtrar por estado)
+CREATE INDEX IDX_PEDIDOHORNO_FECHA ON PEDIDODEHORNO(FechaEnLaQueSeQuiere);
+
+-- Facturas por fecha de emisión
+CREATE INDEX IDX_FACTURA_FECHAEMISION ON FACTURA(FechaDeEmision);
+
+-- Operaciones de un pedido, de la más avanzada a la primera
+CREATE INDEX IDX_OPERACION_PEDIDO_TIPO ON OPERACIONSOBREPEDIDODEHORNO(PedidoDeHorno, Tipo);
+
+-- Líneas de un pedido de horno
+CREATE INDEX IDX_LINEAPEDIDOHORNO_PEDIDO ON LINEADEPEDIDODEHORNO(Pedido, Producto, Cantidad);
+
+-- Líneas de una venta
+CREATE INDEX IDX_LINEAVENTA_VENTA ON LINEADEVENTA(Venta, Producto, Cantidad);
+
+-- Receta de un producto de horno
+CREATE INDEX IDX_USORECETA_PRODUCTO ON USOENPASOSDERECETA(ProductoDeHorno, MateriaPrima, Cantidad);
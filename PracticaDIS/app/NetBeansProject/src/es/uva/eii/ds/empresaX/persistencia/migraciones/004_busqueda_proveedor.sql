@@ -0,0 +1,9 @@
+-- Búsqueda de proveedores sin distinguir mayúsculas.
+-- Las consultas comparaban UPPER(Nombre) y UPPER(Cif), que no pueden usar
+-- ningún índice. Se guardan en mayúsculas en columnas generadas e indexadas.
+
+ALTER TABLE PROVEEDOR ADD COLUMN NombreMayusculas VARCHAR(50) GENERATED ALWAYS AS (UPPER(Nombre));
+ALTER TABLE PROVEEDOR ADD COLUMN CifMayusculas VARCHAR(9) GENERATED ALWAYS AS (UPPER(Cif));
+
+CREATE INDEX IDX_PROVEEDOR_NOMBRE_MAY ON PROVEEDOR(NombreMayusculas);
+CREATE INDEX IDX_PROVEEDOR_CIF_MAY ON PROVEEDOR(CifMayusculas);
@@ -0,0 +1,7 @@
+-- Paginación de facturas por clave (fecha de emisión, ID).
+-- Cada página se pide como "las siguientes a (fecha, id)" en ese orden; con
+-- el ID en el índice Derby lo recorre en orden y se detiene al llenar la
+-- página en lugar de ordenar todas las facturas.
+
+DROP INDEX IDX_FACTURA_FECHAEMISION;
+CREATE INDEX IDX_FACTURA_FECHA_ID ON FACTURA(FechaDeEmision, Id);
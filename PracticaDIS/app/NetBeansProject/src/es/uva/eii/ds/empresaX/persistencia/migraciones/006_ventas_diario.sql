@@ -0,0 +1,5 @@
+-- Ventas llevadas a la BD desde el diario local (las hechas sin conexión).
+-- Se guarda el ID de diario de cada una en la misma transacción que la venta,
+-- para no registrarla dos veces si se reproduce de nuevo tras una caída.
+
+CREATE TABLE VENTADIARIO (IdDiario CHAR(36) NOT NULL, Venta INTEGER NOT NULL, PRIMARY KEY(IdDiario), FOREIGN KEY(Venta) REFERENCES VENTA(IdDeVenta));
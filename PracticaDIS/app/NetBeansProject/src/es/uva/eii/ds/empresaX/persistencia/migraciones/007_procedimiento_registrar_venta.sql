@@ -0,0 +1,13 @@
+-- Registro de una venta completa en una sola llamada.
+-- Recibe las líneas empaquetadas ("cantidad:código;...") y descuenta las
+-- existencias e inserta la cabecera y las líneas dentro de la BD, con un
+-- único viaje de ida y vuelta por venta. Si falta alguna existencia lanza un
+-- error 38V01 y Derby deshace la llamada entera.
+-- La clase ProcedimientosBD la carga el servidor de Derby, no la aplicación:
+-- hay que instalar dist/procedimientosBD.jar en la BD desde la máquina del
+-- servidor (ver db/instalarProcedimientos.sql). Sin él, la aplicación avisa
+-- al registrar con el procedimiento.
+
+CREATE PROCEDURE REGISTRAR_VENTA(IN IdDeVenta INTEGER, IN Fecha DATE, IN Dependiente VARCHAR(9), IN Lineas VARCHAR(32672))
+    LANGUAGE JAVA PARAMETER STYLE JAVA MODIFIES SQL DATA
+    EXTERNAL NAME 'es.uva.eii.ds.empresaX.persistencia.ProcedimientosBD.registrarVenta';
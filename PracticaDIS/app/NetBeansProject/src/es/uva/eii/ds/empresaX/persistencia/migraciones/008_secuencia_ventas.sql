@@ -0,0 +1,7 @@
+-- Secuencia de IDs de venta (GeneradorIds.VENTAS).
+-- Antes la creaba la aplicación la primera vez que la usaba; ahora forma parte
+-- del esquema. Empieza tras el mayor ID ya registrado y avanza de bloque en
+-- bloque (INCREMENT BY es el tamaño de bloque del generador). Si una versión
+-- anterior de la aplicación ya la había creado, se deja como está.
+
+CREATE SEQUENCE SEQ_VENTA AS INTEGER START WITH {SIGUIENTE VENTA.IdDeVenta} INCREMENT BY 20;
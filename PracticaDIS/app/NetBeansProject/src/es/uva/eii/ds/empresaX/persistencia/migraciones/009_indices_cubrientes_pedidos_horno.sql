@@ -0,0 +1,15 @@
+-- Índices que cubren la carga de pedidos pendientes: con las columnas que leen
+-- las consultas, Derby no tiene que ir a la tabla por cada fila.
+-- IDX_PEDIDOHORNO_FECHA no lo usa ninguna consulta (siempre se filtra también
+-- por estado) y, al estimar, el optimizador lo prefería al de estado y fecha.
+-- Lo comprueba IndicesConsultasTest.
+
+DROP INDEX IDX_PEDIDOHORNO_FECHA;
+
+-- Pedidos en un estado para un rango de fechas
+DROP INDEX IDX_PEDIDOHORNO_ESTADO_FECHA;
+CREATE INDEX IDX_PEDIDOHORNO_ESTADO_FECHA ON PEDIDODEHORNO(EstadoActual, FechaEnLaQueSeQuiere, NumeroDePedido, Cliente, Dependiente);
+
+-- Operaciones de un pedido, de la más avanzada a la primera
+DROP INDEX IDX_OPERACION_PEDIDO_TIPO;
+CREATE INDEX IDX_OPERACION_PEDIDO_TIPO ON OPERACIONSOBREPEDIDODEHORNO(PedidoDeHorno, Tipo, Momento, Empleado);
@@ -0,0 +1,6 @@
+-- Unidades vendidas sin existencias suficientes.
+-- Las ventas del diario ya se dieron por hechas al cliente, así que se
+-- registran aunque no queden existencias: las del producto se dejan a 0 y
+-- aquí queda cuántas unidades faltaban, para poder cuadrar el inventario.
+
+CREATE TABLE DESCUADREEXISTENCIAS (Id INTEGER NOT NULL GENERATED ALWAYS AS IDENTITY, Producto VARCHAR(20) NOT NULL, Unidades INTEGER NOT NULL, Momento TIMESTAMP NOT NULL, PRIMARY KEY(Id), FOREIGN KEY(Producto) REFERENCES PRODUCTO(Codigo));
@@ -0,0 +1,541 @@
+package es.uva.eii.ds.empresaX.servicioscomunes;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosCliente;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosEmpleado;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosFactura;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosHistorico;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosLineaPedido;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosOperacion;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosPedidoHorno;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosPedidoProveedor;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosProducto;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosProveedor;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodificador de los JSON de los modelos (formato de {@link JSONHelper}).
+ * Lee la cadena en una sola pasada con un JsonReader y construye directamente
+ * los objetos de datos, sin crear el árbol intermedio ni volver a serializar
+ * los objetos anidados.
+ *
+ * Los campos que el modelo necesita son obligatorios: si falta alguno se
+ * lanza IllegalArgumentException. Los demás se dejan a null.
+ *
+ * No guarda estado entre llamadas, así que una misma instancia se puede usar
+ * desde varios hilos a la vez.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class CodecJSON {
+
+    private static final CodecJSON INSTANCIA = new CodecJSON();
+
+    private CodecJSON() { }
+
+    /**
+     * Devuelve la instancia compartida.
+     * @return Instancia única
+     */
+    public static CodecJSON getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Interpreta el JSON de un empleado.
+     * @param json Cadena JSON
+     * @return Datos del empleado
+     * @throws IllegalArgumentException Si el JSON no es válido
+     */
+    public DatosEmpleado leerEmpleado(String json) {
+        return decodifica(json, this::leeEmpleado);
+    }
+
+    /**
+     * Interpreta el JSON de un cliente.
+     * @param json Cadena JSON
+     * @return Datos del cliente
+     * @throws IllegalArgumentException Si el JSON no es válido
+     */
+    public DatosCliente leerCliente(String json) {
+        return decodifica(json, this::leeCliente);
+    }
+
+    /**
+     * Interpreta el JSON de un pedido de horno.
+     * @param json Cadena JSON
+     * @return Datos del pedido
+     * @throws IllegalArgumentException Si el JSON no es válido
+     */
+    public DatosPedidoHorno leerPedidoHorno(String json) {
+        return decodifica(json, this::leePedidoHorno);
+    }
+
+    /**
+     * Interpreta el JSON con la lista de pedidos pendientes.
+     * @param json Cadena JSON ({"pedidosPendientes": [...]})
+     * @return Datos de los pedidos
+     * @throws IllegalArgumentException Si el JSON no es válido
+     */
+    public List<DatosPedidoHorno> leerPedidosPendientes(String json) {
+        return decodifica(json, in -> leeListaEnObjeto(in, JSONHelper.JSON_PEDIDOS_PENDIENTES, this::leePedidoHorno));
+    }
+
+    /**
+     * Interpreta el JSON de una factura.
+     * @param json Cadena JSON
+     * @return Datos de la factura
+     * @throws IllegalArgumentException Si el JSON no es válido
+     */
+    public DatosFactura leerFactura(String json) {
+        return decodifica(json, this::leeFactura);
+    }
+
+    /**
+     * Interpreta el JSON con la lista de facturas pendientes.
+     * @param json Cadena JSON ({"facturasPendientes": [...]})
+     * @return Datos de las facturas
+     * @throws IllegalArgumentException Si el JSON no es válido
+     */
+    public List<DatosFactura> leerFacturasPendientes(String json) {
+        return decodifica(json, in -> leeListaEnObjeto(in, JSONHelper.JSON_FACTURAS_PENDIENTES, this::leeFactura));
+    }
+
+    /**
+     * Interpreta el JSON de un pedido a proveedor.
+     * @param json Cadena JSON
+     * @return Datos del pedido
+     * @throws IllegalArgumentException Si el JSON no es válido
+     */
+    public DatosPedidoProveedor leerPedidoProveedor(String json) {
+        return decodifica(json, this::leePedidoProveedor);
+    }
+
+    /**
+     * Interpreta el JSON de un proveedor.
+     * @param json Cadena JSON
+     * @return Datos del proveedor
+     * @throws IllegalArgumentException Si el JSON no es válido
+     */
+    public DatosProveedor leerProveedor(String json) {
+        return decodifica(json, this::leeProveedor);
+    }
+
+
+    /*****     LECTURA     *****/
+
+    /**
+     * Lector de un valor JSON.
+     */
+    @FunctionalInterface
+    private interface Lector<T> {
+        T lee(JsonReader in) throws IOException;
+    }
+
+    /**
+     * Lee un valor completo de la cadena y traduce los errores de formato.
+     * @param json Cadena JSON
+     * @param lector Lector del valor
+     * @return Valor leído
+     */
+    private static <T> T decodifica(String json, Lector<T> lector) {
+        if(json == null) {
+            throw new IllegalArgumentException("[!] JSON no válido: null");
+        }
+        try (JsonReader in = new JsonReader(new StringReader(json))) {
+            return lector.lee(in);
+        } catch(IOException | IllegalStateException | NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("[!] JSON no válido: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Comprueba que se ha leído un campo obligatorio.
+     * @param valor Valor leído (null si no estaba)
+     * @param clave Clave del campo
+     * @return El valor
+     * @throws IllegalArgumentException Si falta
+     */
+    private static <T> T requerido(T valor, String clave) {
+        if(valor == null) {
+            throw new IllegalArgumentException("[!] JSON no válido: falta \"" + clave + "\"");
+        }
+        return valor;
+    }
+
+    private DatosEmpleado leeEmpleado(JsonReader in) throws IOException {
+        String dni = null, nombre = null, apellidos = null;
+        LocalDate fechaInicio = null;
+        List<DatosHistorico> roles = null;
+        List<DatosHistorico> vinculaciones = null;
+        List<DatosHistorico> disponibilidades = null;
+
+        in.beginObject();
+        while(in.hasNext()) {
+            switch(in.nextName()) {
+                case JSONHelper.JSON_DNI:
+                    dni = in.nextString();
+                    break;
+                case JSONHelper.JSON_NOMBRE:
+                    nombre = in.nextString();
+                    break;
+                case JSONHelper.JSON_APELLIDOS:
+                    apellidos = in.nextString();
+                    break;
+                case JSONHelper.JSON_FECHA_INICIO:
+                    fechaInicio = LocalDate.parse(in.nextString());
+                    break;
+                case JSONHelper.JSON_ROLES:
+                    roles = leeLista(in, i -> leeHistorico(i, JSONHelper.JSON_ROL));
+                    break;
+                case JSONHelper.JSON_VINCULACIONES:
+                    vinculaciones = leeLista(in, i -> leeHistorico(i, JSONHelper.JSON_VINCULACION));
+                    break;
+                case JSONHelper.JSON_DISPONIBILIDADES:
+                    disponibilidades = leeLista(in, i -> leeHistorico(i, JSONHelper.JSON_DISPONIBILIDAD));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        DatosEmpleado empleado = new DatosEmpleado(requerido(dni, JSONHelper.JSON_DNI),
+                requerido(nombre, JSONHelper.JSON_NOMBRE), requerido(apellidos, JSONHelper.JSON_APELLIDOS),
+                requerido(fechaInicio, JSONHelper.JSON_FECHA_INICIO));
+        requerido(roles, JSONHelper.JSON_ROLES).forEach(empleado::addRol);
+        requerido(vinculaciones, JSONHelper.JSON_VINCULACIONES).forEach(empleado::addVinculacion);
+        requerido(disponibilidades, JSONHelper.JSON_DISPONIBILIDADES).forEach(empleado::addDisponibilidad);
+
+        return empleado;
+    }
+
+    private DatosHistorico leeHistorico(JsonReader in, String claveTipo) throws IOException {
+        LocalDate comienzo = null, finalPrevisto = null;
+        String tipo = null;
+
+        in.beginObject();
+        while(in.hasNext()) {
+            String clave = in.nextName();
+            if(JSONHelper.JSON_COMIENZO.equals(clave)) {
+                comienzo = LocalDate.parse(in.nextString());
+            } else if(JSONHelper.JSON_FINAL_PREVISTO.equals(clave)) {
+                finalPrevisto = LocalDate.parse(in.nextString());
+            } else if(claveTipo.equals(clave)) {
+                tipo = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new DatosHistorico(requerido(comienzo, JSONHelper.JSON_COMIENZO), finalPrevisto,
+                                  requerido(tipo, claveTipo));
+    }
+
+    private DatosCliente leeCliente(JsonReader in) throws IOException {
+        String dni = null, nombre = null, apellidos = null, email = null;
+        Integer telefono = null;
+
+        in.beginObject();
+        while(in.hasNext()) {
+            switch(in.nextName()) {
+                case JSONHelper.JSON_DNI:
+                    dni = in.nextString();
+                    break;
+                case JSONHelper.JSON_NOMBRE:
+                    nombre = in.nextString();
+                    break;
+                case JSONHelper.JSON_APELLIDOS:
+                    apellidos = in.nextString();
+                    break;
+                case JSONHelper.JSON_TELEFONO:
+                    telefono = in.nextInt();
+                    break;
+                case JSONHelper.JSON_EMAIL:
+                    email = in.nextString();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new DatosCliente(requerido(dni, JSONHelper.JSON_DNI), requerido(nombre, JSONHelper.JSON_NOMBRE),
+                requerido(apellidos, JSONHelper.JSON_APELLIDOS), requerido(telefono, JSONHelper.JSON_TELEFONO),
+                requerido(email, JSONHelper.JSON_EMAIL));
+    }
+
+    private DatosPedidoHorno leePedidoHorno(JsonReader in) throws IOException {
+        Integer numero = null;
+        LocalDate fechaDeseada = null;
+        DatosCliente cliente = null;
+        DatosEmpleado dependiente = null;
+        List<DatosLineaPedido> lineas = null;
+        List<DatosOperacion> operaciones = null;
+
+        in.beginObject();
+        while(in.hasNext()) {
+            switch(in.nextName()) {
+                case JSONHelper.JSON_NUM_PEDIDO:
+                    numero = in.nextInt();
+                    break;
+                case JSONHelper.JSON_FECHA_DESEADA:
+                    fechaDeseada = LocalDate.parse(in.nextString());
+                    break;
+                case JSONHelper.JSON_CLIENTE:
+                    cliente = leeCliente(in);
+                    break;
+                case JSONHelper.JSON_DEPENDIENTE:
+                    dependiente = leeEmpleado(in);
+                    break;
+                case JSONHelper.JSON_LINEAS:
+                    lineas = leeLista(in, this::leeLineaPedido);
+                    break;
+                case JSONHelper.JSON_OPERACIONES:
+                    operaciones = leeLista(in, this::leeOperacion);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        DatosPedidoHorno pedido = new DatosPedidoHorno(requerido(numero, JSONHelper.JSON_NUM_PEDIDO),
+                requerido(fechaDeseada, JSONHelper.JSON_FECHA_DESEADA), requerido(cliente, JSONHelper.JSON_CLIENTE));
+        pedido.setDependiente(requerido(dependiente, JSONHelper.JSON_DEPENDIENTE));
+        requerido(lineas, JSONHelper.JSON_LINEAS).forEach(pedido::addLinea);
+        requerido(operaciones, JSONHelper.JSON_OPERACIONES).forEach(pedido::addOperacion);
+
+        return pedido;
+    }
+
+    private DatosLineaPedido leeLineaPedido(JsonReader in) throws IOException {
+        Integer cantidad = null;
+        DatosProducto producto = null;
+
+        in.beginObject();
+        while(in.hasNext()) {
+            switch(in.nextName()) {
+                case JSONHelper.JSON_CANTIDAD:
+                    cantidad = in.nextInt();
+                    break;
+                case JSONHelper.JSON_PRODUCTO:
+                    producto = leeProducto(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new DatosLineaPedido(requerido(cantidad, JSONHelper.JSON_CANTIDAD),
+                                    requerido(producto, JSONHelper.JSON_PRODUCTO));
+    }
+
+    private DatosProducto leeProducto(JsonReader in) throws IOException {
+        String codigo = null, nombre = null, descripcion = null, subtipo = null;
+        Integer existencias = null, cantidadMinima = null;
+
+        in.beginObject();
+        while(in.hasNext()) {
+            switch(in.nextName()) {
+                case JSONHelper.JSON_CODIGO:
+                    codigo = in.nextString();
+                    break;
+                case JSONHelper.JSON_NOMBRE:
+                    nombre = in.nextString();
+                    break;
+                case JSONHelper.JSON_DESCRIPCION:
+                    descripcion = in.nextString();
+                    break;
+                case JSONHelper.JSON_EXISTENCIAS:
+                    existencias = in.nextInt();
+                    break;
+                case JSONHelper.JSON_SUBTIPO:
+                    subtipo = leeStringONull(in);
+                    break;
+                case JSONHelper.JSON_CANTIDAD_MIN_STOCK:
+                    cantidadMinima = in.nextInt();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new DatosProducto(requerido(codigo, JSONHelper.JSON_CODIGO), requerido(nombre, JSONHelper.JSON_NOMBRE),
+                requerido(descripcion, JSONHelper.JSON_DESCRIPCION), requerido(existencias, JSONHelper.JSON_EXISTENCIAS),
+                subtipo, requerido(cantidadMinima, JSONHelper.JSON_CANTIDAD_MIN_STOCK));
+    }
+
+    private DatosOperacion leeOperacion(JsonReader in) throws IOException {
+        LocalDateTime momento = null;
+        String estado = null;
+        DatosEmpleado empleado = null;
+
+        in.beginObject();
+        while(in.hasNext()) {
+            switch(in.nextName()) {
+                case JSONHelper.JSON_MOMENTO:
+                    momento = Timestamp.valueOf(in.nextString()).toLocalDateTime();
+                    break;
+                case JSONHelper.JSON_ESTADO:
+                    estado = in.nextString();
+                    break;
+                case JSONHelper.JSON_EMPLEADO:
+                    empleado = leeEmpleado(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new DatosOperacion(requerido(momento, JSONHelper.JSON_MOMENTO), requerido(estado, JSONHelper.JSON_ESTADO),
+                                  requerido(empleado, JSONHelper.JSON_EMPLEADO));
+    }
+
+    private DatosFactura leeFactura(JsonReader in) throws IOException {
+        LocalDate fechaEmision = null;
+        Double importe = null;
+        String cuenta = null;
+        DatosPedidoProveedor pedido = null;
+
+        in.beginObject();
+        while(in.hasNext()) {
+            switch(in.nextName()) {
+                case JSONHelper.JSON_FECHA_EMISION:
+                    fechaEmision = LocalDate.parse(in.nextString());
+                    break;
+                case JSONHelper.JSON_IMPORTE:
+                    importe = in.nextDouble();
+                    break;
+                case JSONHelper.JSON_CUENTA_BANCARIA:
+                    cuenta = in.nextString();
+                    break;
+                case JSONHelper.JSON_PEDIDO:
+                    pedido = leePedidoProveedor(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new DatosFactura(requerido(fechaEmision, JSONHelper.JSON_FECHA_EMISION),
+                requerido(importe, JSONHelper.JSON_IMPORTE), requerido(cuenta, JSONHelper.JSON_CUENTA_BANCARIA),
+                requerido(pedido, JSONHelper.JSON_PEDIDO));
+    }
+
+    private DatosPedidoProveedor leePedidoProveedor(JsonReader in) throws IOException {
+        Long numero = null;
+        LocalDate fechaRealizacion = null;
+        Boolean pendiente = null;
+        DatosProveedor proveedor = null;
+
+        in.beginObject();
+        while(in.hasNext()) {
+            switch(in.nextName()) {
+                case JSONHelper.JSON_NUM_PEDIDO:
+                    numero = in.nextLong();
+                    break;
+                case JSONHelper.JSON_FECHA_REALIZACION:
+                    fechaRealizacion = LocalDate.parse(in.nextString());
+                    break;
+                case JSONHelper.JSON_PENDIENTE:
+                    // Puede venir como booleano o como texto
+                    pendiente = in.peek() == JsonToken.BOOLEAN ? in.nextBoolean()
+                                                               : Boolean.parseBoolean(in.nextString());
+                    break;
+                case JSONHelper.JSON_PROVEEDOR:
+                    proveedor = leeProveedor(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new DatosPedidoProveedor(requerido(numero, JSONHelper.JSON_NUM_PEDIDO),
+                requerido(fechaRealizacion, JSONHelper.JSON_FECHA_REALIZACION),
+                requerido(pendiente, JSONHelper.JSON_PENDIENTE), requerido(proveedor, JSONHelper.JSON_PROVEEDOR));
+    }
+
+    private DatosProveedor leeProveedor(JsonReader in) throws IOException {
+        String nombre = null, telefono = null, email = null;
+
+        in.beginObject();
+        while(in.hasNext()) {
+            switch(in.nextName()) {
+                case JSONHelper.JSON_NOMBRE:
+                    nombre = in.nextString();
+                    break;
+                case JSONHelper.JSON_TELEFONO:
+                    telefono = in.nextString();
+                    break;
+                case JSONHelper.JSON_EMAIL:
+                    email = in.nextString();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new DatosProveedor(requerido(nombre, JSONHelper.JSON_NOMBRE), requerido(telefono, JSONHelper.JSON_TELEFONO),
+                                  requerido(email, JSONHelper.JSON_EMAIL));
+    }
+
+    /**
+     * Lee un array JSON aplicando el lector a cada elemento.
+     */
+    private static <T> List<T> leeLista(JsonReader in, Lector<T> lector) throws IOException {
+        ArrayList<T> lista = new ArrayList<>();
+        in.beginArray();
+        while(in.hasNext()) {
+            lista.add(lector.lee(in));
+        }
+        in.endArray();
+
+        return lista;
+    }
+
+    /**
+     * Lee un objeto que envuelve un único array bajo la clave indicada.
+     */
+    private static <T> List<T> leeListaEnObjeto(JsonReader in, String clave, Lector<T> lector) throws IOException {
+        List<T> lista = new ArrayList<>();
+        in.beginObject();
+        while(in.hasNext()) {
+            if(clave.equals(in.nextName())) {
+                lista = leeLista(in, lector);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return lista;
+    }
+
+    private static String leeStringONull(JsonReader in) throws IOException {
+        if(in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        return in.nextString();
+    }
+
+}
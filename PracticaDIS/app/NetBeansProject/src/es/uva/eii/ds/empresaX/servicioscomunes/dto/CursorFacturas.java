@@ -0,0 +1,33 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+/**
+ * Posición en la lista de facturas ordenada por una columna e ID: la última
+ * factura leída. La página siguiente empieza justo después.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class CursorFacturas {
+    private final Object valor;
+    private final int id;
+
+    /**
+     * @param valor Valor de la columna de ordenación en la última factura
+     *              (LocalDate, Long, Double o String, según la columna)
+     * @param id ID de la última factura
+     */
+    public CursorFacturas(Object valor, int id) {
+        this.valor = valor;
+        this.id = id;
+    }
+
+    public Object getValor() {
+        return valor;
+    }
+
+    public int getId() {
+        return id;
+    }
+    
+}
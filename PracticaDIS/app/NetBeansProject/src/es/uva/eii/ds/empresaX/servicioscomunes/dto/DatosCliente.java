@@ -0,0 +1,63 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
+
+/**
+ * Datos de un cliente, tal como se leen de la BD.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DatosCliente {
+    private final String dni;
+    private final String nombre;
+    private final String apellidos;
+    private final int telefono;
+    private final String email;
+
+    public DatosCliente(String dni, String nombre, String apellidos, int telefono, String email) {
+        this.dni = dni;
+        this.nombre = nombre;
+        this.apellidos = apellidos;
+        this.telefono = telefono;
+        this.email = email;
+    }
+
+    public String getDni() {
+        return dni;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public String getApellidos() {
+        return apellidos;
+    }
+
+    public int getTelefono() {
+        return telefono;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * Devuelve la forma JSON del cliente (formato de exportación/depuración).
+     * @return Objeto JSON
+     */
+    public JsonObject aJson() {
+        JsonObject jo = new JsonObject();
+        jo.addProperty(JSONHelper.JSON_DNI, dni);
+        jo.addProperty(JSONHelper.JSON_NOMBRE, nombre);
+        jo.addProperty(JSONHelper.JSON_APELLIDOS, apellidos);
+        jo.addProperty(JSONHelper.JSON_TELEFONO, telefono);
+        jo.addProperty(JSONHelper.JSON_EMAIL, email);
+        
+        return jo;
+    }
+    
+}
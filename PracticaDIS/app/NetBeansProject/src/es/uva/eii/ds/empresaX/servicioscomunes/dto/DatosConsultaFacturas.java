@@ -0,0 +1,54 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+import java.util.List;
+
+/**
+ * Resultado de una consulta de facturas pendientes: la primera página de
+ * facturas, si el proveedor buscado existe y los años de la primera y la
+ * última factura.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DatosConsultaFacturas {
+    private final boolean proveedorEncontrado;
+    private final DatosPaginaFacturas primeraPagina;
+    private final int minAnio;
+    private final int maxAnio;
+
+    public DatosConsultaFacturas(boolean proveedorEncontrado, DatosPaginaFacturas primeraPagina, 
+                                 int minAnio, int maxAnio) {
+        this.proveedorEncontrado = proveedorEncontrado;
+        this.primeraPagina = primeraPagina;
+        this.minAnio = minAnio;
+        this.maxAnio = maxAnio;
+    }
+
+    /**
+     * @return false si se buscó un proveedor concreto y no existe
+     */
+    public boolean isProveedorEncontrado() {
+        return proveedorEncontrado;
+    }
+
+    public List<DatosFactura> getFacturas() {
+        return primeraPagina.getFacturas();
+    }
+
+    /**
+     * @return Posición desde la que pedir la página siguiente (null si no hay más)
+     */
+    public CursorFacturas getSiguiente() {
+        return primeraPagina.getSiguiente();
+    }
+
+    public int getMinAnio() {
+        return minAnio;
+    }
+
+    public int getMaxAnio() {
+        return maxAnio;
+    }
+    
+}
@@ -0,0 +1,104 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Datos de un empleado con sus históricos, tal como se leen de la BD.
+ * Los históricos se rellenan durante la carga y después no se modifican.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DatosEmpleado {
+    private final String dni;
+    private final String nombre;
+    private final String apellidos;
+    private final LocalDate fechaInicio;
+    private final ArrayList<DatosHistorico> roles;
+    private final ArrayList<DatosHistorico> vinculaciones;
+    private final ArrayList<DatosHistorico> disponibilidades;
+
+    public DatosEmpleado(String dni, String nombre, String apellidos, LocalDate fechaInicio) {
+        this.dni = dni;
+        this.nombre = nombre;
+        this.apellidos = apellidos;
+        this.fechaInicio = fechaInicio;
+        this.roles = new ArrayList<>();
+        this.vinculaciones = new ArrayList<>();
+        this.disponibilidades = new ArrayList<>();
+    }
+
+    public String getDni() {
+        return dni;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public String getApellidos() {
+        return apellidos;
+    }
+
+    public LocalDate getFechaInicio() {
+        return fechaInicio;
+    }
+
+    public List<DatosHistorico> getRoles() {
+        return Collections.unmodifiableList(roles);
+    }
+
+    public List<DatosHistorico> getVinculaciones() {
+        return Collections.unmodifiableList(vinculaciones);
+    }
+
+    public List<DatosHistorico> getDisponibilidades() {
+        return Collections.unmodifiableList(disponibilidades);
+    }
+    
+    public void addRol(DatosHistorico rol) {
+        roles.add(rol);
+    }
+    
+    public void addVinculacion(DatosHistorico vinculacion) {
+        vinculaciones.add(vinculacion);
+    }
+    
+    public void addDisponibilidad(DatosHistorico disponibilidad) {
+        disponibilidades.add(disponibilidad);
+    }
+
+    /**
+     * Devuelve la forma JSON del empleado (formato de exportación/depuración).
+     * @return Objeto JSON
+     */
+    public JsonObject aJson() {
+        JsonObject jo = new JsonObject();
+        jo.addProperty(JSONHelper.JSON_DNI, dni);
+        jo.addProperty(JSONHelper.JSON_NOMBRE, nombre);
+        jo.addProperty(JSONHelper.JSON_APELLIDOS, apellidos);
+        jo.addProperty(JSONHelper.JSON_FECHA_INICIO, fechaInicio.toString());
+        jo.add(JSONHelper.JSON_ROLES, aJson(roles, JSONHelper.JSON_ROL));
+        jo.add(JSONHelper.JSON_VINCULACIONES, aJson(vinculaciones, JSONHelper.JSON_VINCULACION));
+        jo.add(JSONHelper.JSON_DISPONIBILIDADES, aJson(disponibilidades, JSONHelper.JSON_DISPONIBILIDAD));
+        
+        return jo;
+    }
+    
+    private static JsonArray aJson(List<DatosHistorico> historico, String claveTipo) {
+        JsonArray ja = new JsonArray();
+        for(DatosHistorico h : historico) {
+            ja.add(h.aJson(claveTipo));
+        }
+        
+        return ja;
+    }
+    
+}
@@ -0,0 +1,57 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
+import java.time.LocalDate;
+
+/**
+ * Datos de una factura con su pedido y proveedor, tal como se leen de la BD.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DatosFactura {
+    private final LocalDate fechaEmision;
+    private final double importe;
+    private final String cuentaBancaria;
+    private final DatosPedidoProveedor pedido;
+
+    public DatosFactura(LocalDate fechaEmision, double importe, String cuentaBancaria, DatosPedidoProveedor pedido) {
+        this.fechaEmision = fechaEmision;
+        this.importe = importe;
+        this.cuentaBancaria = cuentaBancaria;
+        this.pedido = pedido;
+    }
+
+    public LocalDate getFechaEmision() {
+        return fechaEmision;
+    }
+
+    public double getImporte() {
+        return importe;
+    }
+
+    public String getCuentaBancaria() {
+        return cuentaBancaria;
+    }
+
+    public DatosPedidoProveedor getPedido() {
+        return pedido;
+    }
+
+    /**
+     * Devuelve la forma JSON de la factura (formato de exportación/depuración).
+     * @return Objeto JSON
+     */
+    public JsonObject aJson() {
+        JsonObject jo = new JsonObject();
+        jo.addProperty(JSONHelper.JSON_FECHA_EMISION, fechaEmision.toString());
+        jo.addProperty(JSONHelper.JSON_IMPORTE, importe);
+        jo.addProperty(JSONHelper.JSON_CUENTA_BANCARIA, cuentaBancaria);
+        jo.add(JSONHelper.JSON_PEDIDO, pedido.aJson());
+        
+        return jo;
+    }
+    
+}
@@ -0,0 +1,58 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
+import java.time.LocalDate;
+
+/**
+ * Entrada del histórico de un empleado (rol, vinculación o disponibilidad).
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DatosHistorico {
+    private final LocalDate comienzo;
+    private final LocalDate finalPrevisto;
+    private final String tipo;
+
+    /**
+     * @param comienzo Fecha de comienzo
+     * @param finalPrevisto Fecha de final prevista (puede ser null)
+     * @param tipo Nombre del tipo
+     */
+    public DatosHistorico(LocalDate comienzo, LocalDate finalPrevisto, String tipo) {
+        this.comienzo = comienzo;
+        this.finalPrevisto = finalPrevisto;
+        this.tipo = tipo;
+    }
+
+    public LocalDate getComienzo() {
+        return comienzo;
+    }
+
+    public LocalDate getFinalPrevisto() {
+        return finalPrevisto;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Devuelve la forma JSON de la entrada.
+     * @param claveTipo Clave del tipo (rol, vinculacion o disponibilidad)
+     * @return Objeto JSON
+     */
+    public JsonObject aJson(String claveTipo) {
+        JsonObject jo = new JsonObject();
+        jo.addProperty(JSONHelper.JSON_COMIENZO, comienzo.toString());
+        if(finalPrevisto != null) {
+            jo.addProperty(JSONHelper.JSON_FINAL_PREVISTO, finalPrevisto.toString());
+        }
+        jo.addProperty(claveTipo, tipo);
+        
+        return jo;
+    }
+    
+}
@@ -0,0 +1,42 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
+
+/**
+ * Línea de un pedido de horno con su producto.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DatosLineaPedido {
+    private final int cantidad;
+    private final DatosProducto producto;
+
+    public DatosLineaPedido(int cantidad, DatosProducto producto) {
+        this.cantidad = cantidad;
+        this.producto = producto;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public DatosProducto getProducto() {
+        return producto;
+    }
+
+    /**
+     * Devuelve la forma JSON de la línea (formato de exportación/depuración).
+     * @return Objeto JSON
+     */
+    public JsonObject aJson() {
+        JsonObject jo = new JsonObject();
+        jo.addProperty(JSONHelper.JSON_CANTIDAD, cantidad);
+        jo.add(JSONHelper.JSON_PRODUCTO, producto.aJson());
+        
+        return jo;
+    }
+    
+}
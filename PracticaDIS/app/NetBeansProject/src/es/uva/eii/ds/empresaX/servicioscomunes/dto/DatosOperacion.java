@@ -0,0 +1,56 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Operación (cambio de estado) sobre un pedido de horno.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DatosOperacion {
+    private final LocalDateTime momento;
+    private final String estado;
+    private final DatosEmpleado empleado;
+
+    /**
+     * @param momento Momento de la operación
+     * @param estado Nombre del estado al que pasa el pedido
+     * @param empleado Empleado que la realizó
+     */
+    public DatosOperacion(LocalDateTime momento, String estado, DatosEmpleado empleado) {
+        this.momento = momento;
+        this.estado = estado;
+        this.empleado = empleado;
+    }
+
+    public LocalDateTime getMomento() {
+        return momento;
+    }
+
+    public String getEstado() {
+        return estado;
+    }
+
+    public DatosEmpleado getEmpleado() {
+        return empleado;
+    }
+
+    /**
+     * Devuelve la forma JSON de la operación (formato de exportación/depuración).
+     * @return Objeto JSON
+     */
+    public JsonObject aJson() {
+        JsonObject jo = new JsonObject();
+        jo.addProperty(JSONHelper.JSON_MOMENTO, Timestamp.valueOf(momento).toString());
+        jo.add(JSONHelper.JSON_EMPLEADO, empleado.aJson());
+        jo.addProperty(JSONHelper.JSON_ESTADO, estado);
+        
+        return jo;
+    }
+    
+}
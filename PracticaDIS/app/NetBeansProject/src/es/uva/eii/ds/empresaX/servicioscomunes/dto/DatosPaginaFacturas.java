@@ -0,0 +1,34 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Página de facturas pendientes, ordenadas por fecha de emisión e ID.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DatosPaginaFacturas {
+    private final ArrayList<DatosFactura> facturas;
+    private final CursorFacturas siguiente;
+
+    public DatosPaginaFacturas(ArrayList<DatosFactura> facturas, CursorFacturas siguiente) {
+        this.facturas = facturas;
+        this.siguiente = siguiente;
+    }
+
+    public List<DatosFactura> getFacturas() {
+        return Collections.unmodifiableList(facturas);
+    }
+
+    /**
+     * @return Posición desde la que pedir la página siguiente (null si es la última)
+     */
+    public CursorFacturas getSiguiente() {
+        return siguiente;
+    }
+    
+}
@@ -0,0 +1,95 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pedido de horno con su cliente, dependiente, líneas y operaciones, tal como
+ * lo carga la fachada. Las líneas y operaciones se rellenan durante la carga.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DatosPedidoHorno {
+    private final int numeroDePedido;
+    private final LocalDate fechaDeseada;
+    private final DatosCliente cliente;
+    private DatosEmpleado dependiente;
+    private final ArrayList<DatosLineaPedido> lineas;
+    private final ArrayList<DatosOperacion> operaciones;
+
+    public DatosPedidoHorno(int numeroDePedido, LocalDate fechaDeseada, DatosCliente cliente) {
+        this.numeroDePedido = numeroDePedido;
+        this.fechaDeseada = fechaDeseada;
+        this.cliente = cliente;
+        this.lineas = new ArrayList<>();
+        this.operaciones = new ArrayList<>();
+    }
+
+    public int getNumeroDePedido() {
+        return numeroDePedido;
+    }
+
+    public LocalDate getFechaDeseada() {
+        return fechaDeseada;
+    }
+
+    public DatosCliente getCliente() {
+        return cliente;
+    }
+
+    public DatosEmpleado getDependiente() {
+        return dependiente;
+    }
+
+    public List<DatosLineaPedido> getLineas() {
+        return Collections.unmodifiableList(lineas);
+    }
+
+    public List<DatosOperacion> getOperaciones() {
+        return Collections.unmodifiableList(operaciones);
+    }
+    
+    public void setDependiente(DatosEmpleado dependiente) {
+        this.dependiente = dependiente;
+    }
+    
+    public void addLinea(DatosLineaPedido linea) {
+        lineas.add(linea);
+    }
+    
+    public void addOperacion(DatosOperacion operacion) {
+        operaciones.add(operacion);
+    }
+
+    /**
+     * Devuelve la forma JSON del pedido (formato de exportación/depuración).
+     * @return Objeto JSON
+     */
+    public JsonObject aJson() {
+        JsonObject jo = new JsonObject();
+        jo.addProperty(JSONHelper.JSON_NUM_PEDIDO, numeroDePedido);
+        jo.addProperty(JSONHelper.JSON_FECHA_DESEADA, fechaDeseada.toString());
+        jo.add(JSONHelper.JSON_CLIENTE, cliente.aJson());
+        jo.add(JSONHelper.JSON_DEPENDIENTE, dependiente.aJson());
+        JsonArray jOperaciones = new JsonArray();
+        for(DatosOperacion op : operaciones) {
+            jOperaciones.add(op.aJson());
+        }
+        jo.add(JSONHelper.JSON_OPERACIONES, jOperaciones);
+        JsonArray jLineas = new JsonArray();
+        for(DatosLineaPedido linea : lineas) {
+            jLineas.add(linea.aJson());
+        }
+        jo.add(JSONHelper.JSON_LINEAS, jLineas);
+        
+        return jo;
+    }
+    
+}
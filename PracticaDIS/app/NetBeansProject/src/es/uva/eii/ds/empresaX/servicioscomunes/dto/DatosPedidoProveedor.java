@@ -0,0 +1,58 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
+import java.time.LocalDate;
+
+/**
+ * Datos de un pedido a proveedor, tal como se leen de la BD.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DatosPedidoProveedor {
+    private final long numeroDePedido;
+    private final LocalDate fechaDeRealizacion;
+    private final boolean estaPendiente;
+    private final DatosProveedor proveedor;
+
+    public DatosPedidoProveedor(long numeroDePedido, LocalDate fechaDeRealizacion, 
+                                boolean estaPendiente, DatosProveedor proveedor) {
+        this.numeroDePedido = numeroDePedido;
+        this.fechaDeRealizacion = fechaDeRealizacion;
+        this.estaPendiente = estaPendiente;
+        this.proveedor = proveedor;
+    }
+
+    public long getNumeroDePedido() {
+        return numeroDePedido;
+    }
+
+    public LocalDate getFechaDeRealizacion() {
+        return fechaDeRealizacion;
+    }
+
+    public boolean isEstaPendiente() {
+        return estaPendiente;
+    }
+
+    public DatosProveedor getProveedor() {
+        return proveedor;
+    }
+
+    /**
+     * Devuelve la forma JSON del pedido (formato de exportación/depuración).
+     * @return Objeto JSON
+     */
+    public JsonObject aJson() {
+        JsonObject jo = new JsonObject();
+        jo.addProperty(JSONHelper.JSON_NUM_PEDIDO, numeroDePedido);
+        jo.addProperty(JSONHelper.JSON_FECHA_REALIZACION, fechaDeRealizacion.toString());
+        jo.addProperty(JSONHelper.JSON_PENDIENTE, estaPendiente);
+        jo.add(JSONHelper.JSON_PROVEEDOR, proveedor.aJson());
+        
+        return jo;
+    }
+    
+}
@@ -0,0 +1,71 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
+
+/**
+ * Datos de un producto de un pedido de horno, tal como se leen de la BD.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DatosProducto {
+    private final String codigo;
+    private final String nombre;
+    private final String descripcion;
+    private final int existencias;
+    private final String subtipo;
+    private final int cantidadMinimaStock;
+
+    public DatosProducto(String codigo, String nombre, String descripcion, int existencias, 
+                         String subtipo, int cantidadMinimaStock) {
+        this.codigo = codigo;
+        this.nombre = nombre;
+        this.descripcion = descripcion;
+        this.existencias = existencias;
+        this.subtipo = subtipo;
+        this.cantidadMinimaStock = cantidadMinimaStock;
+    }
+
+    public String getCodigo() {
+        return codigo;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    public int getExistencias() {
+        return existencias;
+    }
+
+    public String getSubtipo() {
+        return subtipo;
+    }
+
+    public int getCantidadMinimaStock() {
+        return cantidadMinimaStock;
+    }
+
+    /**
+     * Devuelve la forma JSON del producto (formato de exportación/depuración).
+     * @return Objeto JSON
+     */
+    public JsonObject aJson() {
+        JsonObject jo = new JsonObject();
+        jo.addProperty(JSONHelper.JSON_CODIGO, codigo);
+        jo.addProperty(JSONHelper.JSON_NOMBRE, nombre);
+        jo.addProperty(JSONHelper.JSON_DESCRIPCION, descripcion);
+        jo.addProperty(JSONHelper.JSON_EXISTENCIAS, existencias);
+        jo.addProperty(JSONHelper.JSON_SUBTIPO, subtipo);
+        jo.addProperty(JSONHelper.JSON_CANTIDAD_MIN_STOCK, cantidadMinimaStock);
+        
+        return jo;
+    }
+    
+}
@@ -0,0 +1,62 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.servicioscomunes.JSONHelper;
+
+/**
+ * Datos de un proveedor, tal como se leen de la BD.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DatosProveedor {
+    private final String cif;
+    private final String nombre;
+    private final String telefono;
+    private final String email;
+
+    public DatosProveedor(String nombre, String telefono, String email) {
+        this(null, nombre, telefono, email);
+    }
+
+    public DatosProveedor(String cif, String nombre, String telefono, String email) {
+        this.cif = cif;
+        this.nombre = nombre;
+        this.telefono = telefono;
+        this.email = email;
+    }
+
+    /**
+     * @return CIF del proveedor (null si no se ha leído)
+     */
+    public String getCif() {
+        return cif;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public String getTelefono() {
+        return telefono;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * Devuelve la forma JSON del proveedor (formato de exportación/depuración).
+     * @return Objeto JSON
+     */
+    public JsonObject aJson() {
+        JsonObject jo = new JsonObject();
+        jo.addProperty(JSONHelper.JSON_NOMBRE, nombre);
+        jo.addProperty(JSONHelper.JSON_TELEFONO, telefono);
+        jo.addProperty(JSONHelper.JSON_EMAIL, email);
+        
+        return jo;
+    }
+    
+}
@@ -0,0 +1,39 @@
+package es.uva.eii.ds.empresaX.servicioscomunes.dto;
+
+/**
+ * Uso de una materia en la receta de un producto de horno (fila de
+ * USOENPASOSDERECETA junto con los datos de la materia).
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public final class DatosUsoReceta {
+    private final String productoDeHorno;
+    private final DatosProducto materia;
+    private final int cantidad;
+
+    /**
+     * @param productoDeHorno Código del producto que se elabora
+     * @param materia Materia que se usa
+     * @param cantidad Cantidad de materia por unidad de producto
+     */
+    public DatosUsoReceta(String productoDeHorno, DatosProducto materia, int cantidad) {
+        this.productoDeHorno = productoDeHorno;
+        this.materia = materia;
+        this.cantidad = cantidad;
+    }
+
+    public String getProductoDeHorno() {
+        return productoDeHorno;
+    }
+
+    public DatosProducto getMateria() {
+        return materia;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+    
+}
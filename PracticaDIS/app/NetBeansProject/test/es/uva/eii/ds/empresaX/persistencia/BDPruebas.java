@@ -0,0 +1,104 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+
+/**
+ * BD de pruebas: Derby embebido en memoria creado con db/createTables.sql.
+ * Las fachadas la usan a través del pool (propiedad empresaX.urlBD), así que
+ * se debe crear antes de pedir la primera conexión. Cada clase de prueba se
+ * ejecuta en su propia JVM, con su propia BD.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+final class BDPruebas {
+
+    static final String URL = "jdbc:derby:memory:bd_pasteleria;create=true";
+    private static final String USUARIO = "temp";
+    private static final String PASSWORD = "temp";
+    private static final String SCRIPT = "../db/createTables.sql";
+
+    private static boolean creada = false;
+
+    private BDPruebas() {
+    }
+
+    /**
+     * Crea la BD (si no se ha creado ya) y hace que el pool la use.
+     * @throws SQLException Si falla alguna sentencia del script
+     * @throws IOException Si no se puede leer el script
+     */
+    static synchronized void crea() throws SQLException, IOException {
+        if(creada) {
+            return;
+        }
+        System.setProperty("empresaX.urlBD", URL);
+        // El derby.log, fuera del directorio del proyecto
+        System.setProperty("derby.stream.error.file", 
+                           new File(System.getProperty("java.io.tmpdir"), "derby-pruebas.log").getPath());
+
+        try (Connection c = conecta(); Statement st = c.createStatement()) {
+            for(String sql : leeScript()) {
+                try {
+                    st.executeUpdate(sql);
+                } catch(SQLException ex) {
+                    // La BD está vacía: los DROP del principio fallan
+                    if(!sql.toUpperCase().startsWith("DROP")) {
+                        throw ex;
+                    }
+                }
+            }
+        }
+        creada = true;
+    }
+
+    /**
+     * Abre una conexión con la BD de pruebas, fuera del pool.
+     * @return Conexión (hay que cerrarla)
+     * @throws SQLException
+     */
+    static Connection conecta() throws SQLException {
+        return DriverManager.getConnection(URL, USUARIO, PASSWORD);
+    }
+
+    /**
+     * Ejecuta varias sentencias en una conexión fuera del pool.
+     * @param sentencias Sentencias SQL
+     * @throws SQLException
+     */
+    static void ejecuta(String... sentencias) throws SQLException {
+        try (Connection c = conecta(); Statement st = c.createStatement()) {
+            for(String sql : sentencias) {
+                st.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * Lee el script y lo divide en sentencias (separadas por ';'), quitando
+     * los comentarios.
+     */
+    private static ArrayList<String> leeScript() throws IOException {
+        String script = new String(Files.readAllBytes(Paths.get(SCRIPT)), StandardCharsets.UTF_8);
+        script = script.replaceAll("(?s)/\\*.*?\\*/", "").replaceAll("--[^\n]*", "");
+
+        ArrayList<String> sentencias = new ArrayList<>();
+        for(String sql : script.split(";")) {
+            if(!sql.trim().isEmpty()) {
+                sentencias.add(sql.trim());
+            }
+        }
+        return sentencias;
+    }
+
+}
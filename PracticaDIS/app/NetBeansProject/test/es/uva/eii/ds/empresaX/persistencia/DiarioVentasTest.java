@@ -0,0 +1,160 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recuperación del diario de ventas al volver a abrirlo: ventas pendientes,
+ * confirmadas y rechazadas, y la última línea cortada por una caída.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class DiarioVentasTest {
+
+    private static final LocalDate FECHA = LocalDate.of(2030, 1, 1);
+    private static final String EMPLEADO = "12345678A";
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    private Path fichero;
+
+    @Before
+    public void preparaFichero() {
+        fichero = carpeta.getRoot().toPath().resolve("diario.log");
+    }
+
+    @Test
+    public void ventaAnotadaSigueAlVolverAAbrir() throws Exception {
+        DiarioVentas diario = new DiarioVentas(fichero);
+        DiarioVentas.Entrada anotada = anota(diario, "P1", 2);
+
+        DiarioVentas reabierto = new DiarioVentas(fichero);
+        assertEquals(1, reabierto.getProfundidad());
+        DiarioVentas.Entrada leida = reabierto.getPendientes(10).get(0);
+        assertEquals(anotada.id, leida.id);
+        assertEquals(FECHA, leida.fecha);
+        assertEquals(EMPLEADO, leida.dniEmpleado);
+        assertEquals(Arrays.asList("P1"), leida.codigos);
+        assertEquals(Arrays.asList(2), leida.cantidades);
+        assertEquals(2, reabierto.getUnidadesPendientes("P1"));
+    }
+
+    @Test
+    public void lineaCortadaSeDescartaYSeTrunca() throws Exception {
+        DiarioVentas diario = new DiarioVentas(fichero);
+        DiarioVentas.Entrada anotada = anota(diario, "P1", 1);
+        long tamCompleto = Files.size(fichero);
+        // Caída a mitad de escribir el registro siguiente
+        Files.write(fichero, "{\"tipo\":\"V\",\"id\":\"cortada\",\"fec".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+
+        DiarioVentas reabierto = new DiarioVentas(fichero);
+        assertEquals(1, reabierto.getProfundidad());
+        assertEquals(anotada.id, reabierto.getPendientes(10).get(0).id);
+        assertEquals(tamCompleto, Files.size(fichero));
+
+        // El siguiente registro no queda pegado al trozo cortado
+        DiarioVentas.Entrada otra = anota(reabierto, "P2", 3);
+        List<String> ids = ids(new DiarioVentas(fichero).getPendientes(10));
+        assertEquals(Arrays.asList(anotada.id, otra.id), ids);
+    }
+
+    @Test
+    public void lineaIlegibleEnMedioSeIgnora() throws Exception {
+        DiarioVentas diario = new DiarioVentas(fichero);
+        DiarioVentas.Entrada primera = anota(diario, "P1", 1);
+        Files.write(fichero, "no es json\n[1, 2]\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        DiarioVentas.Entrada segunda = anota(diario, "P2", 1);
+
+        assertEquals(Arrays.asList(primera.id, segunda.id), ids(new DiarioVentas(fichero).getPendientes(10)));
+    }
+
+    @Test
+    public void confirmadasYRechazadasNoQuedanPendientes() throws Exception {
+        DiarioVentas diario = new DiarioVentas(fichero);
+        DiarioVentas.Entrada confirmada = anota(diario, "P1", 1);
+        DiarioVentas.Entrada rechazada = anota(diario, "P1", 4);
+        DiarioVentas.Entrada pendiente = anota(diario, "P1", 2);
+
+        diario.confirmar(Collections.singletonList(confirmada.id), 1000);
+        diario.rechazar(rechazada.id, "Sin existencias");
+        assertEquals(2, diario.getUnidadesPendientes("P1"));
+
+        DiarioVentas reabierto = new DiarioVentas(fichero);
+        assertEquals(Arrays.asList(pendiente.id), ids(reabierto.getPendientes(10)));
+        assertEquals(2, reabierto.getUnidadesPendientes("P1"));
+    }
+
+    @Test
+    public void rechazadaSeCopiaCompletaAlFicheroDeRechazadas() throws Exception {
+        DiarioVentas diario = new DiarioVentas(fichero);
+        DiarioVentas.Entrada rechazada = anota(diario, "P7", 5);
+        diario.rechazar(rechazada.id, "Sin existencias");
+
+        List<String> lineas = Files.readAllLines(fichero.resolveSibling("diario.log.rechazadas"),
+                                                StandardCharsets.UTF_8);
+        assertEquals(1, lineas.size());
+        String linea = lineas.get(0);
+        assertTrue(linea, linea.contains("\"id\":\"" + rechazada.id + "\""));
+        assertTrue(linea, linea.contains("\"codigo\":\"P7\""));
+        assertTrue(linea, linea.contains("\"cantidad\":5"));
+        assertTrue(linea, linea.contains("\"motivo\":\"Sin existencias\""));
+        assertEquals(1, diario.getRechazadas());
+    }
+
+    @Test
+    public void seVaciaCuandoNoQuedanPendientes() throws Exception {
+        DiarioVentas diario = new DiarioVentas(fichero);
+        DiarioVentas.Entrada primera = anota(diario, "P1", 1);
+        DiarioVentas.Entrada segunda = anota(diario, "P2", 1);
+
+        diario.confirmar(Collections.singletonList(primera.id), 1000);
+        assertTrue(Files.size(fichero) > 0);
+        diario.confirmar(Collections.singletonList(segunda.id), 1000);
+
+        assertEquals(0, Files.size(fichero));
+        assertEquals(0, new DiarioVentas(fichero).getProfundidad());
+        assertEquals(2, diario.getReproducidas());
+    }
+
+    @Test
+    public void getPendientesRespetaElMaximoYElOrden() throws Exception {
+        DiarioVentas diario = new DiarioVentas(fichero);
+        ArrayList<String> anotadas = new ArrayList<>();
+        for(int i = 0; i < 5; i++) {
+            anotadas.add(anota(diario, "P" + i, 1).id);
+        }
+
+        assertEquals(anotadas.subList(0, 3), ids(diario.getPendientes(3)));
+        assertEquals(anotadas, ids(diario.getPendientes(10)));
+    }
+
+    private static DiarioVentas.Entrada anota(DiarioVentas diario, String codigo, int cantidad) throws Exception {
+        return diario.anotar(FECHA, EMPLEADO, Collections.singletonList(codigo), Collections.singletonList(cantidad));
+    }
+
+    private static ArrayList<String> ids(List<DiarioVentas.Entrada> entradas) {
+        ArrayList<String> ids = new ArrayList<>();
+        for(DiarioVentas.Entrada entrada : entradas) {
+            ids.add(entrada.id);
+        }
+        return ids;
+    }
+
+}
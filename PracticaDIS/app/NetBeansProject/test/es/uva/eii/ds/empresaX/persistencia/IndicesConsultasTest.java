@@ -0,0 +1,272 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import es.uva.eii.ds.empresaX.negocio.modelos.ColumnaFacturas;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.CursorFacturas;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.HashSet;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Comprueba que las consultas frecuentes de las fachadas usan los índices de
+ * las migraciones (003, 004, 005 y 009). Se ejecutan con las estadísticas de
+ * ejecución de Derby activadas (SYSCS_SET_RUNTIMESTATISTICS) en la conexión
+ * del pool, y los planes se guardan en las tablas XPLAIN del esquema PLANES.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class IndicesConsultasTest {
+
+    private static final String ESQUEMA_PLANES = "PLANES";
+    private static final String[] TABLAS_PLANES = {
+        "SYSXPLAIN_SCAN_PROPS", "SYSXPLAIN_SORT_PROPS", "SYSXPLAIN_RESULTSET_TIMINGS",
+        "SYSXPLAIN_RESULTSETS", "SYSXPLAIN_STATEMENT_TIMINGS", "SYSXPLAIN_STATEMENTS"
+    };
+    private static final String QUERY_RECORRIDOS =
+            "SELECT SP.SCAN_OBJECT_TYPE, SP.SCAN_OBJECT_NAME FROM " + ESQUEMA_PLANES + ".SYSXPLAIN_RESULTSETS R "
+            + "INNER JOIN " + ESQUEMA_PLANES + ".SYSXPLAIN_SCAN_PROPS SP ON R.SCAN_RS_ID = SP.SCAN_RS_ID";
+    private static final String QUERY_FILAS_LEIDAS =
+            "SELECT COALESCE(SUM(SP.NO_VISITED_ROWS), 0) FROM " + ESQUEMA_PLANES + ".SYSXPLAIN_RESULTSETS R "
+            + "INNER JOIN " + ESQUEMA_PLANES + ".SYSXPLAIN_SCAN_PROPS SP ON R.SCAN_RS_ID = SP.SCAN_RS_ID "
+            + "WHERE SP.SCAN_OBJECT_NAME = ?";
+
+    // Volumen suficiente para que al optimizador le compense usar los índices
+    private static final int PEDIDOS_HORNO = 6000;
+    private static final int FACTURAS = 6000;
+    private static final int PROVEEDORES = 2000;
+    private static final int PRODUCTOS_HORNO = 400;
+    private static final int CLIENTES = 200;
+    private static final LocalDate PRIMERA_FECHA = LocalDate.of(2018, 1, 1);
+    private static final String DEPENDIENTE = "12345678Z";
+
+    @BeforeClass
+    public static void preparaBD() throws Exception {
+        BDPruebas.crea();
+        try (Connection c = BDPruebas.conecta()) {
+            c.setAutoCommit(false);
+            cargaProductos(c);
+            cargaPedidosHorno(c);
+            cargaFacturas(c);
+            c.commit();
+            c.setAutoCommit(true);
+            actualizaEstadisticas(c);
+        }
+
+        // Las pruebas no comparten el pool: todas las consultas van por esta conexión
+        try (ConexionBD conn = ConexionBD.obtenerConexion(); Statement st = conn.getConnection().createStatement()) {
+            st.execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(1)");
+            st.execute("CALL SYSCS_UTIL.SYSCS_SET_XPLAIN_SCHEMA('" + ESQUEMA_PLANES + "')");
+        }
+    }
+
+    @Before
+    public void borraPlanes() throws Exception {
+        try (Connection c = BDPruebas.conecta(); Statement st = c.createStatement()) {
+            for(String tabla : TABLAS_PLANES) {
+                st.executeUpdate("DELETE FROM " + ESQUEMA_PLANES + "." + tabla);
+            }
+        }
+    }
+
+    @Test
+    public void pedidosPendientesUsanIndices() throws Exception {
+        FachadaPersistenciaEmpleadoHorno.getPedidosPendientes(PRIMERA_FECHA.plusDays(60), PRIMERA_FECHA.plusDays(70));
+
+        HashSet<String> recorridos = getRecorridos();
+        assertUsaIndice(recorridos, "IDX_PEDIDOHORNO_ESTADO_FECHA");
+        assertUsaIndice(recorridos, "IDX_OPERACION_PEDIDO_TIPO");
+        assertUsaIndice(recorridos, "IDX_LINEAPEDIDOHORNO_PEDIDO");
+        assertNoRecorreTabla(recorridos, "PEDIDODEHORNO");
+        assertNoRecorreTabla(recorridos, "OPERACIONSOBREPEDIDODEHORNO");
+        assertNoRecorreTabla(recorridos, "LINEADEPEDIDODEHORNO");
+    }
+
+    @Test
+    public void paginaDeFacturasRecorreIndiceFechaId() throws Exception {
+        FachadaPersistenciaEncargado.getPaginaFacturasPendientes(null, null, null, ColumnaFacturas.Emision, true,
+                new CursorFacturas(PRIMERA_FECHA.plusDays(200), 0), 20);
+
+        HashSet<String> recorridos = getRecorridos();
+        assertUsaIndice(recorridos, "IDX_FACTURA_FECHA_ID");
+        assertNoRecorreTabla(recorridos, "FACTURA");
+        assertNoRecorreTabla(recorridos, "PROVEEDOR");
+        // Se detiene al llenar la página en lugar de leer todas las siguientes
+        int leidas = getFilasLeidas("IDX_FACTURA_FECHA_ID");
+        assertTrue("Filas leídas del índice: " + leidas, leidas < 100);
+    }
+
+    @Test
+    public void busquedaDeProveedorUsaIndices() throws Exception {
+        assertTrue(FachadaPersistenciaEncargado.existeProveedor("proveedor 1500"));
+        assertTrue(FachadaPersistenciaEncargado.existeProveedor("b00000042"));
+
+        HashSet<String> recorridos = getRecorridos();
+        assertUsaIndice(recorridos, "IDX_PROVEEDOR_NOMBRE_MAY");
+        assertUsaIndice(recorridos, "IDX_PROVEEDOR_CIF_MAY");
+        assertNoRecorreTabla(recorridos, "PROVEEDOR");
+    }
+
+
+    /*****     PLANES     *****/
+
+    /**
+     * Devuelve los objetos recorridos por las consultas desde el último
+     * borrado de los planes, como "I:índice", "C:restricción" o "T:tabla".
+     */
+    private static HashSet<String> getRecorridos() throws Exception {
+        HashSet<String> recorridos = new HashSet<>();
+        try (Connection c = BDPruebas.conecta(); Statement st = c.createStatement()) {
+            ResultSet rs = st.executeQuery(QUERY_RECORRIDOS);
+            while(rs.next()) {
+                recorridos.add(rs.getString(1).trim() + ":" + rs.getString(2));
+            }
+        }
+        return recorridos;
+    }
+
+    /**
+     * Devuelve las filas que han leído las consultas del índice o la tabla
+     * desde el último borrado de los planes.
+     */
+    private static int getFilasLeidas(String objeto) throws Exception {
+        try (Connection c = BDPruebas.conecta();
+             PreparedStatement pst = c.prepareStatement(QUERY_FILAS_LEIDAS)) {
+            pst.setString(1, objeto);
+            ResultSet rs = pst.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void assertUsaIndice(HashSet<String> recorridos, String indice) {
+        assertTrue("No usa " + indice + ": " + recorridos, recorridos.contains("I:" + indice));
+    }
+
+    private static void assertNoRecorreTabla(HashSet<String> recorridos, String tabla) {
+        assertFalse("Recorre entera la tabla " + tabla + ": " + recorridos, recorridos.contains("T:" + tabla));
+    }
+
+
+    /*****     DATOS     *****/
+
+    private static String codigoHorno(int i) {
+        return String.format("H%04d", i);
+    }
+
+    private static void cargaProductos(Connection c) throws Exception {
+        try (PreparedStatement pst = c.prepareStatement(
+                "INSERT INTO PRODUCTO VALUES(?, ?, 'descripcion', 100, 10, ?, 1.5, 5, NULL)")) {
+            for(int i = 0; i < PRODUCTOS_HORNO; i++) {
+                pst.setString(1, codigoHorno(i));
+                pst.setString(2, "horno " + i);
+                pst.setString(3, "ProductoDeHorno");
+                pst.addBatch();
+            }
+            pst.executeBatch();
+        }
+    }
+
+    private static void cargaPedidosHorno(Connection c) throws Exception {
+        try (PreparedStatement pst = c.prepareStatement("INSERT INTO CLIENTE VALUES(?, 'Cliente', 'Apellidos', 600000000, NULL)")) {
+            for(int i = 0; i < CLIENTES; i++) {
+                pst.setString(1, String.format("C%08d", i));
+                pst.addBatch();
+            }
+            pst.executeBatch();
+        }
+
+        try (PreparedStatement pedido = c.prepareStatement(
+                     "INSERT INTO PEDIDODEHORNO (NumeroDePedido, FechaEnLaQueSeQuiere, Cliente, Dependiente) "
+                     + "VALUES(?, ?, ?, ?)");
+             PreparedStatement linea = c.prepareStatement("INSERT INTO LINEADEPEDIDODEHORNO VALUES(?, ?, ?)");
+             PreparedStatement operacion = c.prepareStatement(
+                     "INSERT INTO OPERACIONSOBREPEDIDODEHORNO (Momento, Tipo, Empleado, PedidoDeHorno) VALUES(?, ?, ?, ?)")) {
+            for(int i = 0; i < PEDIDOS_HORNO; i++) {
+                int numero = 1000 + i;
+                LocalDate fecha = PRIMERA_FECHA.plusDays(i % 600);
+                pedido.setInt(1, numero);
+                pedido.setDate(2, Date.valueOf(fecha));
+                pedido.setString(3, String.format("C%08d", i % CLIENTES));
+                pedido.setString(4, DEPENDIENTE);
+                pedido.addBatch();
+
+                for(int j = 0; j < 2; j++) {
+                    linea.setInt(1, j + 1);
+                    linea.setInt(2, numero);
+                    linea.setString(3, codigoHorno((i + j) % PRODUCTOS_HORNO));
+                    linea.addBatch();
+                }
+
+                // Un tercio sigue registrado; el resto ya se está preparando
+                int estados = i % 3 == 0 ? 1 : 2;
+                for(int tipo = 1; tipo <= estados; tipo++) {
+                    operacion.setTimestamp(1, Timestamp.valueOf(fecha.minusDays(3 - tipo).atTime(9, 0)));
+                    operacion.setInt(2, tipo);
+                    operacion.setString(3, DEPENDIENTE);
+                    operacion.setInt(4, numero);
+                    operacion.addBatch();
+                }
+            }
+            pedido.executeBatch();
+            linea.executeBatch();
+            operacion.executeBatch();
+        }
+    }
+
+    private static void cargaFacturas(Connection c) throws Exception {
+        try (PreparedStatement proveedor = c.prepareStatement("INSERT INTO PROVEEDOR (Cif, Nombre, Telefono, Email) "
+                                                              + "VALUES(?, ?, '900000000', 'proveedor@correo.es')");
+             PreparedStatement pedido = c.prepareStatement("INSERT INTO PEDIDOAPROVEEDOR VALUES(?, ?, 'N', ?)")) {
+            for(int i = 0; i < PROVEEDORES; i++) {
+                String cif = String.format("B%08d", i);
+                proveedor.setString(1, cif);
+                proveedor.setString(2, "Proveedor " + i);
+                proveedor.addBatch();
+
+                pedido.setInt(1, 1000 + i);
+                pedido.setDate(2, Date.valueOf(PRIMERA_FECHA.plusDays(i % 600)));
+                pedido.setString(3, cif);
+                pedido.addBatch();
+            }
+            proveedor.executeBatch();
+            pedido.executeBatch();
+        }
+
+        try (PreparedStatement pst = c.prepareStatement("INSERT INTO FACTURA VALUES(?, ?, 10.5, 'ES-...', ?, ?)")) {
+            for(int i = 0; i < FACTURAS; i++) {
+                pst.setInt(1, 1000 + i);
+                pst.setDate(2, Date.valueOf(PRIMERA_FECHA.plusDays(i % 600)));
+                pst.setInt(3, 1000 + i % PROVEEDORES);
+                if(i % 10 == 0) {
+                    pst.setInt(4, 1);
+                } else {
+                    pst.setNull(4, java.sql.Types.INTEGER);
+                }
+                pst.addBatch();
+            }
+            pst.executeBatch();
+        }
+    }
+
+    private static void actualizaEstadisticas(Connection c) throws Exception {
+        try (Statement st = c.createStatement()) {
+            for(String tabla : new String[]{ "PRODUCTO", "USOENPASOSDERECETA", "CLIENTE", "PEDIDODEHORNO",
+                                             "LINEADEPEDIDODEHORNO", "OPERACIONSOBREPEDIDODEHORNO", "PROVEEDOR",
+                                             "PEDIDOAPROVEEDOR", "FACTURA" }) {
+                st.execute("CALL SYSCS_UTIL.SYSCS_UPDATE_STATISTICS('TEMP', '" + tabla + "', NULL)");
+            }
+        }
+    }
+
+}
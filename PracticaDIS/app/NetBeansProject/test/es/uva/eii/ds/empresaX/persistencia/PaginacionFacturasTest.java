@@ -0,0 +1,228 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import es.uva.eii.ds.empresaX.negocio.modelos.ColumnaFacturas;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.CursorFacturas;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosConsultaFacturas;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosFactura;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosPaginaFacturas;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Límites de la paginación por clave (fecha de emisión, ID) de las facturas
+ * pendientes: varias facturas con la misma fecha a ambos lados del corte,
+ * páginas que terminan justo en la última factura y filtros por fechas.
+ * También la paginación ordenada por otras columnas, en ambos sentidos.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class PaginacionFacturasTest {
+
+    // Facturas de prueba {día de enero de 2030, ID, en transferencia (1) o pendiente (0)},
+    // insertadas sin orden. El importe de cada una es su ID, para identificarla.
+    private static final int[][] FACTURAS = {
+        {2, 215, 0}, {1, 230, 0}, {2, 205, 0}, {1, 210, 0}, {3, 240, 1},
+        {2, 220, 0}, {1, 201, 0}, {3, 225, 0}, {4, 250, 0}, {2, 211, 1}
+    };
+    // IDs de las pendientes, en orden de (fecha, ID)
+    private static final List<Integer> PENDIENTES = Arrays.asList(201, 210, 230, 205, 215, 220, 225, 250);
+
+    private static final LocalDate INICIO = LocalDate.of(2030, 1, 1);
+    private static final LocalDate FIN = LocalDate.of(2030, 1, 31);
+    private static final ColumnaFacturas POR_EMISION = ColumnaFacturas.Emision;
+    // Antes de cualquier factura de prueba (y después de las de createTables.sql)
+    private static final CursorFacturas ANTES = new CursorFacturas(INICIO.minusDays(1), 0);
+
+    @BeforeClass
+    public static void preparaBD() throws Exception {
+        BDPruebas.crea();
+        try (Connection c = BDPruebas.conecta();
+             PreparedStatement pst = c.prepareStatement("INSERT INTO FACTURA VALUES(?, ?, ?, 'ES-...', 1, ?)")) {
+            for(int[] f : FACTURAS) {
+                pst.setInt(1, f[1]);
+                pst.setDate(2, Date.valueOf(INICIO.plusDays(f[0] - 1)));
+                pst.setDouble(3, f[1]);
+                if(f[2] == 1) {
+                    pst.setInt(4, 1);
+                } else {
+                    pst.setNull(4, java.sql.Types.INTEGER);
+                }
+                pst.executeUpdate();
+            }
+        }
+    }
+
+    @Test
+    public void paginasSeguidasNoRepitenNiSaltanFacturas() throws Exception {
+        // Con cada tamaño los cortes caen en sitios distintos, también entre
+        // dos facturas de la misma fecha
+        for(int tam = 1; tam <= PENDIENTES.size() + 1; tam++) {
+            ArrayList<Integer> leidas = new ArrayList<>();
+            CursorFacturas desde = ANTES;
+            int paginas = 0;
+            while(desde != null) {
+                DatosPaginaFacturas pagina = FachadaPersistenciaEncargado.getPaginaFacturasPendientes(null, null, null, POR_EMISION, true, desde, tam);
+                assertTrue("Página demasiado grande", pagina.getFacturas().size() <= tam);
+                leidas.addAll(ids(pagina.getFacturas()));
+                desde = pagina.getSiguiente();
+                paginas++;
+            }
+
+            assertEquals("Páginas de " + tam, PENDIENTES, leidas);
+            assertEquals("Páginas de " + tam, (PENDIENTES.size() + tam - 1) / tam, paginas);
+        }
+    }
+
+    @Test
+    public void siguienteEsLaUltimaFacturaDeLaPagina() throws Exception {
+        DatosPaginaFacturas pagina = FachadaPersistenciaEncargado.getPaginaFacturasPendientes(null, null, null, POR_EMISION, true, ANTES, 3);
+
+        CursorFacturas siguiente = pagina.getSiguiente();
+        assertNotNull(siguiente);
+        assertEquals(INICIO, siguiente.getValor());
+        assertEquals(230, siguiente.getId());
+    }
+
+    @Test
+    public void paginaQueTerminaEnLaUltimaFacturaNoTieneSiguiente() throws Exception {
+        // Quedan justo 2 (225 y 250): no hay página siguiente aunque la fila de más no exista
+        CursorFacturas tras220 = new CursorFacturas(INICIO.plusDays(1), 220);
+        DatosPaginaFacturas pagina = FachadaPersistenciaEncargado.getPaginaFacturasPendientes(null, null, null, POR_EMISION, true, tras220, 2);
+
+        assertEquals(Arrays.asList(225, 250), ids(pagina.getFacturas()));
+        assertNull(pagina.getSiguiente());
+    }
+
+    @Test
+    public void desdeLaUltimaFacturaNoQuedaNinguna() throws Exception {
+        CursorFacturas tras250 = new CursorFacturas(INICIO.plusDays(3), 250);
+        DatosPaginaFacturas pagina = FachadaPersistenciaEncargado.getPaginaFacturasPendientes(null, null, null, POR_EMISION, true, tras250, 5);
+
+        assertTrue(pagina.getFacturas().isEmpty());
+        assertNull(pagina.getSiguiente());
+    }
+
+    @Test
+    public void elIdDelCursorSoloCuentaEnSuFecha() throws Exception {
+        // Tras (día 1, 220): quedan la 230 del día 1 y todas las de días
+        // siguientes, aunque su ID sea menor que 220
+        CursorFacturas desde = new CursorFacturas(INICIO, 220);
+        DatosPaginaFacturas pagina = FachadaPersistenciaEncargado.getPaginaFacturasPendientes(null, null, null, POR_EMISION, true, desde, 10);
+
+        assertEquals(Arrays.asList(230, 205, 215, 220, 225, 250), ids(pagina.getFacturas()));
+        assertNull(pagina.getSiguiente());
+    }
+
+    @Test
+    public void filtroDeFechasIncluyeAmbosExtremos() throws Exception {
+        LocalDate dia2 = INICIO.plusDays(1);
+        LocalDate dia3 = INICIO.plusDays(2);
+        DatosPaginaFacturas primera = FachadaPersistenciaEncargado.getPaginaFacturasPendientes(dia2, dia3, null, POR_EMISION, true, ANTES, 2);
+        DatosPaginaFacturas segunda = FachadaPersistenciaEncargado.getPaginaFacturasPendientes(dia2, dia3, null, POR_EMISION, true,
+                                                                                              primera.getSiguiente(), 2);
+
+        assertEquals(Arrays.asList(205, 215), ids(primera.getFacturas()));
+        assertEquals(Arrays.asList(220, 225), ids(segunda.getFacturas()));
+        assertNull(segunda.getSiguiente());
+    }
+
+    @Test
+    public void primeraPaginaYSiguientesEnlazan() throws Exception {
+        DatosConsultaFacturas consulta = FachadaPersistenciaEncargado.consultarFacturasPendientes(INICIO, FIN, null, 3);
+        DatosPaginaFacturas resto = FachadaPersistenciaEncargado.getPaginaFacturasPendientes(INICIO, FIN, null, POR_EMISION, true,
+                                                                                            consulta.getSiguiente(), 10);
+
+        ArrayList<Integer> leidas = ids(consulta.getFacturas());
+        leidas.addAll(ids(resto.getFacturas()));
+        assertEquals(PENDIENTES, leidas);
+    }
+
+    @Test
+    public void paginasDeUnProveedor() throws Exception {
+        DatosPaginaFacturas pagina = FachadaPersistenciaEncargado.getPaginaFacturasPendientes(INICIO, FIN, "panusa", POR_EMISION, true,
+                                                                                             new CursorFacturas(INICIO, 230), 4);
+
+        assertEquals(Arrays.asList(205, 215, 220, 225), ids(pagina.getFacturas()));
+        assertEquals(225, pagina.getSiguiente().getId());
+    }
+
+    @Test
+    public void paginasOrdenadasPorImporteDescendente() throws Exception {
+        // El importe es el ID: el orden descendente es el inverso por ID
+        ArrayList<Integer> esperadas = new ArrayList<>(PENDIENTES);
+        esperadas.sort(Collections.reverseOrder());
+
+        assertEquals(esperadas, leeTodas(ColumnaFacturas.Importe, false, 3));
+    }
+
+    @Test
+    public void paginasOrdenadasConEmpatesDesempatanPorId() throws Exception {
+        // Todas son del mismo pedido y proveedor: cada página sigue por ID
+        ArrayList<Integer> porId = new ArrayList<>(PENDIENTES);
+        Collections.sort(porId);
+        ArrayList<Integer> porIdDesc = new ArrayList<>(porId);
+        Collections.reverse(porIdDesc);
+
+        for(ColumnaFacturas columna : new ColumnaFacturas[] {ColumnaFacturas.Proveedor, ColumnaFacturas.Pedido,
+                                                             ColumnaFacturas.Realizacion}) {
+            assertEquals(columna.toString(), porId, leeTodas(columna, true, 3));
+            assertEquals(columna.toString(), porIdDesc, leeTodas(columna, false, 3));
+        }
+    }
+
+    @Test
+    public void paginasPorEmisionDescendente() throws Exception {
+        ArrayList<Integer> esperadas = new ArrayList<>(PENDIENTES);
+        Collections.reverse(esperadas);
+
+        assertEquals(esperadas, leeTodas(POR_EMISION, false, 3));
+    }
+
+    @Test
+    public void sinCursorEmpiezaPorLaPrimera() throws Exception {
+        DatosPaginaFacturas pagina = FachadaPersistenciaEncargado.getPaginaFacturasPendientes(INICIO, FIN, null,
+                                                                         ColumnaFacturas.Importe, true, null, 2);
+
+        assertEquals(Arrays.asList(201, 205), ids(pagina.getFacturas()));
+        assertEquals(205.0, pagina.getSiguiente().getValor());
+    }
+
+    /**
+     * Lee todas las pendientes de enero de 2030 página a página en un orden.
+     */
+    private static ArrayList<Integer> leeTodas(ColumnaFacturas columna, boolean ascendente, int tam) throws Exception {
+        ArrayList<Integer> leidas = new ArrayList<>();
+        CursorFacturas desde = null;
+        do {
+            DatosPaginaFacturas pagina = FachadaPersistenciaEncargado.getPaginaFacturasPendientes(INICIO, FIN, null,
+                                                                             columna, ascendente, desde, tam);
+            assertTrue("Página demasiado grande", pagina.getFacturas().size() <= tam);
+            leidas.addAll(ids(pagina.getFacturas()));
+            desde = pagina.getSiguiente();
+        } while(desde != null);
+        return leidas;
+    }
+
+    private static ArrayList<Integer> ids(List<DatosFactura> facturas) {
+        ArrayList<Integer> ids = new ArrayList<>();
+        for(DatosFactura factura : facturas) {
+            ids.add((int) factura.getImporte());
+        }
+        return ids;
+    }
+
+}
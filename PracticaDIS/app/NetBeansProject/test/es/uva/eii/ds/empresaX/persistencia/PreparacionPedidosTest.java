@@ -0,0 +1,102 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Paso de pedidos de horno a 'Preparando': el estado actual se cambia con un
+ * UPDATE condicionado a que siga 'Registrado' y la operación solo se anota si
+ * se ha cambiado el de todos los pedidos.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class PreparacionPedidosTest {
+
+    private static final String EMPLEADO = "12345678Z";
+    private static final LocalDateTime MOMENTO = LocalDateTime.of(2030, 1, 1, 10, 0);
+    private static final int REGISTRADO = 1;
+    private static final int PREPARANDO = 2;
+
+    @BeforeClass
+    public static void preparaBD() throws Exception {
+        BDPruebas.crea();
+        BDPruebas.ejecuta("INSERT INTO CLIENTE VALUES('C00000001', 'Cliente', 'Apellidos', 600000000, NULL)");
+        for(int numero = 501; numero <= 505; numero++) {
+            BDPruebas.ejecuta(
+                    "INSERT INTO PEDIDODEHORNO (NumeroDePedido, FechaEnLaQueSeQuiere, Cliente, Dependiente) "
+                    + "VALUES(" + numero + ", '2030-01-02', 'C00000001', '" + EMPLEADO + "')",
+                    operacion(numero, REGISTRADO));
+        }
+        // El 503 ya lo ha cogido otro empleado
+        BDPruebas.ejecuta(operacion(503, PREPARANDO));
+    }
+
+    @Test
+    public void preparaTodosLosPedidos() throws Exception {
+        FachadaPersistenciaEmpleadoHorno.cambiarEstadoPedidosAPreparando(MOMENTO, EMPLEADO, Arrays.asList(501, 502));
+
+        assertEquals(PREPARANDO, getEstadoActual(501));
+        assertEquals(PREPARANDO, getEstadoActual(502));
+        assertEquals(1, cuentaPreparando(501));
+        assertEquals(1, cuentaPreparando(502));
+    }
+
+    @Test
+    public void siUnoYaNoEstaRegistradoNoPreparaNinguno() throws Exception {
+        try {
+            FachadaPersistenciaEmpleadoHorno.cambiarEstadoPedidosAPreparando(MOMENTO, EMPLEADO, Arrays.asList(504, 503));
+            fail("El 503 ya no está registrado");
+        } catch(MessageException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("503"));
+        }
+
+        assertEquals(REGISTRADO, getEstadoActual(504));
+        assertEquals(0, cuentaPreparando(504));
+        assertEquals(1, cuentaPreparando(503));
+    }
+
+    @Test
+    public void unPedidoSoloSePreparaUnaVez() throws Exception {
+        assertTrue(FachadaPersistenciaEmpleadoHorno.cambiarEstadoPedidoAPreparando(MOMENTO, EMPLEADO, 505));
+        assertFalse(FachadaPersistenciaEmpleadoHorno.cambiarEstadoPedidoAPreparando(MOMENTO, EMPLEADO, 505));
+
+        assertEquals(1, cuentaPreparando(505));
+    }
+
+    private static String operacion(int numero, int tipo) {
+        return "INSERT INTO OPERACIONSOBREPEDIDODEHORNO (Momento, Tipo, Empleado, PedidoDeHorno) "
+               + "VALUES('2030-01-01 0" + tipo + ":00:00', " + tipo + ", '" + EMPLEADO + "', " + numero + ")";
+    }
+
+    private static int getEstadoActual(int numero) throws Exception {
+        return consultaEntero("SELECT ESTADOACTUAL FROM PEDIDODEHORNO WHERE NUMERODEPEDIDO = ?", numero);
+    }
+
+    private static int cuentaPreparando(int numero) throws Exception {
+        return consultaEntero("SELECT COUNT(*) FROM OPERACIONSOBREPEDIDODEHORNO WHERE PEDIDODEHORNO = ? AND TIPO = "
+                              + PREPARANDO, numero);
+    }
+
+    private static int consultaEntero(String sql, int numero) throws Exception {
+        try (Connection c = BDPruebas.conecta(); PreparedStatement pst = c.prepareStatement(sql)) {
+            pst.setInt(1, numero);
+            try (ResultSet rs = pst.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+}
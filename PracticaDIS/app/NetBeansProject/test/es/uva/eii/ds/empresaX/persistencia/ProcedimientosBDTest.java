@@ -0,0 +1,139 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import es.uva.eii.ds.empresaX.negocio.modelos.Empleado;
+import es.uva.eii.ds.empresaX.negocio.modelos.LineaDeVenta;
+import es.uva.eii.ds.empresaX.negocio.modelos.ProductoVendible;
+import es.uva.eii.ds.empresaX.negocio.modelos.Venta;
+import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosEmpleado;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Procedimiento REGISTRAR_VENTA en la BD embebida (sus clases están en el
+ * classpath de las pruebas, así que no hace falta instalar el jar): registra
+ * la venta completa o, si falta alguna existencia, falla con 38V01 sin dejar
+ * nada a medias.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class ProcedimientosBDTest {
+
+    private static final String EMPLEADO = "12345678Z";
+
+    @BeforeClass
+    public static void preparaBD() throws Exception {
+        BDPruebas.crea();
+        BDPruebas.ejecuta(
+                "INSERT INTO PRODUCTO VALUES('PROC-A', 'a', 'descripcion', 10, 1, 'ProductoDeHorno', 1.0, 5, null)",
+                "INSERT INTO PRODUCTO VALUES('PROC-B', 'b', 'descripcion', 2, 1, 'ProductoDeHorno', 1.0, 5, null)",
+                "INSERT INTO PRODUCTO VALUES('PROC-C', 'c', 'descripcion', 5, 1, 'ProductoDeHorno', 1.0, 5, null)");
+    }
+
+    @AfterClass
+    public static void restauraModo() {
+        FachadaPersistenciaDependiente.setRegistroConProcedimiento(false);
+    }
+
+    @Test
+    public void registraLaVentaCompleta() throws Exception {
+        String lineas = ProcedimientosBD.empaquetaLineas(Arrays.asList("PROC-A", "PROC-A"), Arrays.asList(3, 1));
+        llama(800001, lineas);
+
+        assertEquals(6, getExistencias("PROC-A"));
+        assertEquals(1, cuenta("SELECT COUNT(*) FROM VENTA WHERE IDDEVENTA = 800001"));
+        assertEquals(2, cuenta("SELECT COUNT(*) FROM LINEADEVENTA WHERE VENTA = 800001"));
+    }
+
+    @Test
+    public void sinExistenciasFallaCon38V01YNoDejaNada() throws Exception {
+        // El primer producto se descuenta antes de ver que del segundo no hay
+        String lineas = ProcedimientosBD.empaquetaLineas(Arrays.asList("PROC-C", "PROC-B"), Arrays.asList(1, 3));
+        try {
+            llama(800002, lineas);
+            fail("Debería faltar PROC-B");
+        } catch(SQLException ex) {
+            assertEquals(ProcedimientosBD.ESTADO_SIN_EXISTENCIAS, ex.getSQLState());
+            assertEquals("PROC-B", ProcedimientosBD.getCodigoSinExistencias(ex));
+        }
+
+        assertEquals(5, getExistencias("PROC-C"));
+        assertEquals(2, getExistencias("PROC-B"));
+        assertEquals(0, cuenta("SELECT COUNT(*) FROM VENTA WHERE IDDEVENTA = 800002"));
+        assertEquals(0, cuenta("SELECT COUNT(*) FROM LINEADEVENTA WHERE VENTA = 800002"));
+    }
+
+    @Test
+    public void otrosErroresNoSonFaltaDeExistencias() throws Exception {
+        // Dependiente inexistente: falla la clave ajena de VENTA
+        try (Connection c = BDPruebas.conecta();
+             CallableStatement cst = c.prepareCall("CALL REGISTRAR_VENTA(?,?,?,?)")) {
+            cst.setInt(1, 800003);
+            cst.setDate(2, Date.valueOf(LocalDate.now()));
+            cst.setString(3, "00000000X");
+            cst.setString(4, "1:PROC-A");
+            cst.execute();
+            fail("El dependiente no existe");
+        } catch(SQLException ex) {
+            assertNull(ProcedimientosBD.getCodigoSinExistencias(ex));
+        }
+    }
+
+    @Test
+    public void laFachadaDevuelveElProductoSinExistencias() throws Exception {
+        FachadaPersistenciaDependiente.setRegistroConProcedimiento(true);
+        Venta venta = new Venta(EMPLEADO);
+        venta.getLineas().add(new LineaDeVenta(5, new ProductoVendible("PROC-B", "b", "descripcion", 2, 1, 1.0)));
+        Empleado empleado = new Empleado(new DatosEmpleado(EMPLEADO, "Hermenegildo Manuel", "Ruipérez Núñez",
+                                                           LocalDate.of(2014, 2, 25)));
+        try {
+            FachadaPersistenciaDependiente.confirmarVentaBD(venta, empleado);
+            fail("Debería faltar PROC-B");
+        } catch(MessageException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().endsWith("PROC-B"));
+        }
+
+        assertEquals(2, getExistencias("PROC-B"));
+        assertEquals(-1, venta.getIdDeVenta());
+    }
+
+    private static void llama(int idVenta, String lineas) throws SQLException {
+        try (Connection c = BDPruebas.conecta();
+             CallableStatement cst = c.prepareCall("CALL REGISTRAR_VENTA(?,?,?,?)")) {
+            cst.setInt(1, idVenta);
+            cst.setDate(2, Date.valueOf(LocalDate.now()));
+            cst.setString(3, EMPLEADO);
+            cst.setString(4, lineas);
+            cst.execute();
+        }
+    }
+
+    private static int getExistencias(String codigo) throws SQLException {
+        return cuenta("SELECT EXISTENCIAS FROM PRODUCTO WHERE CODIGO = '" + codigo + "'");
+    }
+
+    private static int cuenta(String sql) throws SQLException {
+        try (Connection c = BDPruebas.conecta();
+             PreparedStatement pst = c.prepareStatement(sql);
+             ResultSet rs = pst.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+}
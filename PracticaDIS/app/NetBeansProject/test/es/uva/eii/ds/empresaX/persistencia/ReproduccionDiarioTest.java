@@ -0,0 +1,174 @@
+package es.uva.eii.ds.empresaX.persistencia;
+
+import es.uva.eii.ds.empresaX.negocio.modelos.Empleado;
+import es.uva.eii.ds.empresaX.negocio.modelos.LineaDeVenta;
+import es.uva.eii.ds.empresaX.negocio.modelos.ProductoVendible;
+import es.uva.eii.ds.empresaX.negocio.modelos.Venta;
+import es.uva.eii.ds.empresaX.servicioscomunes.MessageException;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosEmpleado;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.Collections;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Reproducción del diario de ventas en la BD: lotes con una venta que la BD
+ * no admite (se repiten de una en una), ventas forzadas sin existencias y
+ * ventas que ya estaban registradas antes de una caída. También las ventas
+ * de caja: guardan su ID de diario y, si faltan existencias, no se anotan.
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class ReproduccionDiarioTest {
+
+    private static final LocalDate FECHA = LocalDate.of(2030, 1, 1);
+    private static final String EMPLEADO = "12345678Z";
+
+    @BeforeClass
+    public static void preparaBD() throws Exception {
+        // Antes de cargar la fachada, que lee la ruta del diario al iniciarse
+        File diario = File.createTempFile("diarioVentas", ".jsonl");
+        diario.deleteOnExit();
+        new File(diario.getPath() + ".rechazadas").deleteOnExit();
+        System.setProperty("empresaX.diarioVentas", diario.getPath());
+
+        BDPruebas.crea();
+        BDPruebas.ejecuta(
+                "INSERT INTO PRODUCTO VALUES('LOTE', 'lote', 'descripcion', 100, 1, 'ProductoDeHorno', 1.0, 5, null)",
+                "INSERT INTO PRODUCTO VALUES('ESCASO', 'escaso', 'descripcion', 1, 1, 'ProductoDeHorno', 1.0, 5, null)",
+                "INSERT INTO PRODUCTO VALUES('REPETIDA', 'repetida', 'descripcion', 10, 1, 'ProductoDeHorno', 1.0, 5, null)",
+                "INSERT INTO PRODUCTO VALUES('CAJA', 'caja', 'descripcion', 3, 1, 'ProductoDeHorno', 1.0, 5, null)");
+    }
+
+    @Test
+    public void loteConUnaVentaNoAdmitidaSeRepiteDeUnaEnUna() throws Exception {
+        DiarioVentas diario = FachadaPersistenciaDependiente.getDiario();
+        long rechazadasAntes = diario.getRechazadas();
+        DiarioVentas.Entrada primera = anota(diario, "LOTE", 1);
+        DiarioVentas.Entrada noAdmitida = anota(diario, "NOEXISTE", 1);
+        DiarioVentas.Entrada tercera = anota(diario, "LOTE", 2);
+
+        assertEquals(2, FachadaPersistenciaDependiente.reproducirDiario());
+
+        assertEquals(0, diario.getProfundidad());
+        assertEquals(rechazadasAntes + 1, diario.getRechazadas());
+        assertEquals(97, getExistencias("LOTE"));
+        assertEquals(1, cuentaEnDiarioBD(primera.id));
+        assertEquals(1, cuentaEnDiarioBD(tercera.id));
+        assertEquals(0, cuentaEnDiarioBD(noAdmitida.id));
+    }
+
+    @Test
+    public void ventaForzadaSinExistenciasDejaElDescuadre() throws Exception {
+        DiarioVentas diario = FachadaPersistenciaDependiente.getDiario();
+        DiarioVentas.Entrada entrada = anota(diario, "ESCASO", 3);
+
+        assertEquals(1, FachadaPersistenciaDependiente.reproducirDiario());
+
+        assertEquals(1, cuentaEnDiarioBD(entrada.id));
+        assertEquals(0, getExistencias("ESCASO"));
+        try (Connection c = BDPruebas.conecta();
+             PreparedStatement pst = c.prepareStatement(
+                     "SELECT COUNT(*), SUM(UNIDADES) FROM DESCUADREEXISTENCIAS WHERE PRODUCTO = 'ESCASO'");
+             ResultSet rs = pst.executeQuery()) {
+            rs.next();
+            assertEquals(1, rs.getInt(1));
+            assertEquals(2, rs.getInt(2));
+        }
+    }
+
+    @Test
+    public void ventaYaRegistradaAntesDeUnaCaidaNoSeDuplica() throws Exception {
+        DiarioVentas diario = FachadaPersistenciaDependiente.getDiario();
+        DiarioVentas.Entrada entrada = anota(diario, "REPETIDA", 4);
+        // Se registró, pero el programa se cayó antes de anotar la C
+        BDPruebas.ejecuta(
+                "INSERT INTO VENTA VALUES(900001, '2030-01-01', '" + EMPLEADO + "')",
+                "INSERT INTO LINEADEVENTA VALUES(4, 900001, 'REPETIDA')",
+                "UPDATE PRODUCTO SET EXISTENCIAS = 6 WHERE CODIGO = 'REPETIDA'",
+                "INSERT INTO VENTADIARIO VALUES('" + entrada.id + "', 900001)");
+
+        FachadaPersistenciaDependiente.reproducirDiario();
+
+        assertEquals(0, diario.getProfundidad());
+        assertEquals(1, cuentaEnDiarioBD(entrada.id));
+        assertEquals(6, getExistencias("REPETIDA"));
+    }
+
+    @Test
+    public void ventaDeCajaGuardaSuIdDeDiario() throws Exception {
+        Venta venta = ventaDeCaja("CAJA", 1);
+        FachadaPersistenciaDependiente.confirmarVentaBD(venta, getEmpleado());
+
+        assertEquals(2, getExistencias("CAJA"));
+        try (Connection c = BDPruebas.conecta();
+             PreparedStatement pst = c.prepareStatement("SELECT COUNT(*) FROM VENTADIARIO WHERE VENTA = ?")) {
+            pst.setInt(1, venta.getIdDeVenta());
+            try (ResultSet rs = pst.executeQuery()) {
+                rs.next();
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    public void ventaDeCajaSinExistenciasNoSeAnota() throws Exception {
+        DiarioVentas diario = FachadaPersistenciaDependiente.getDiario();
+        long anotadasAntes = diario.getAnotadas();
+        try {
+            FachadaPersistenciaDependiente.confirmarVentaBD(ventaDeCaja("CAJA", 50), getEmpleado());
+            fail("Faltan existencias");
+        } catch(MessageException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().endsWith("CAJA"));
+        }
+
+        assertEquals(anotadasAntes, diario.getAnotadas());
+        assertEquals(0, diario.getUnidadesPendientes("CAJA"));
+    }
+
+    private static Venta ventaDeCaja(String codigo, int cantidad) {
+        Venta venta = new Venta(EMPLEADO);
+        venta.getLineas().add(new LineaDeVenta(cantidad, new ProductoVendible(codigo, codigo, "descripcion", 0, 1, 1.0)));
+        return venta;
+    }
+
+    private static Empleado getEmpleado() {
+        return new Empleado(new DatosEmpleado(EMPLEADO, "Hermenegildo Manuel", "Ruipérez Núñez", LocalDate.of(2014, 2, 25)));
+    }
+
+    private static DiarioVentas.Entrada anota(DiarioVentas diario, String codigo, int cantidad) throws Exception {
+        return diario.anotar(FECHA, EMPLEADO, Collections.singletonList(codigo), Collections.singletonList(cantidad));
+    }
+
+    private static int getExistencias(String codigo) throws Exception {
+        try (Connection c = BDPruebas.conecta();
+             PreparedStatement pst = c.prepareStatement("SELECT EXISTENCIAS FROM PRODUCTO WHERE CODIGO = ?")) {
+            pst.setString(1, codigo);
+            try (ResultSet rs = pst.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private static int cuentaEnDiarioBD(String idDiario) throws Exception {
+        try (Connection c = BDPruebas.conecta();
+             PreparedStatement pst = c.prepareStatement("SELECT COUNT(*) FROM VENTADIARIO WHERE IDDIARIO = ?")) {
+            pst.setString(1, idDiario);
+            try (ResultSet rs = pst.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+}
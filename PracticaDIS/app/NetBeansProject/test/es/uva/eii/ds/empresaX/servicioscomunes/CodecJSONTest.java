@@ -0,0 +1,256 @@
+package es.uva.eii.ds.empresaX.servicioscomunes;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosCliente;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosEmpleado;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosHistorico;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosLineaPedido;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosOperacion;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosPedidoHorno;
+import es.uva.eii.ds.empresaX.servicioscomunes.dto.DatosProducto;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Pruebas de CodecJSON y comparación de su rendimiento con la lectura
+ * anterior (árbol de Gson y un toString()/fromJson() por cada objeto anidado).
+ *
+ * @author Abel Herrero Gómez         (abeherr)
+ * @author Daniel De Vicente Garrote  (dandevi)
+ * @author Roberto García Antoranz    (robegar)
+ */
+public class CodecJSONTest {
+
+    private static final int PEDIDOS = 1000;
+    private static final int LINEAS_POR_PEDIDO = 5;
+    private static final int OPERACIONES_POR_PEDIDO = 3;
+    private static final int REPETICIONES = 5;
+
+    private final CodecJSON codec = CodecJSON.getInstancia();
+
+    @Test
+    public void leePedidosPendientesSinPerderDatos() {
+        JsonObject original = getPedidosPendientes(50);
+
+        List<DatosPedidoHorno> leidos = codec.leerPedidosPendientes(original.toString());
+
+        assertEquals(original, aJson(leidos));
+    }
+
+    @Test
+    public void mismoResultadoQueLaLecturaConGson() {
+        String json = getPedidosPendientes(PEDIDOS).toString();
+
+        assertEquals(aJson(leePedidosConGson(json)), aJson(codec.leerPedidosPendientes(json)));
+    }
+
+    @Test
+    public void campoObligatorioQueFaltaEsJsonNoValido() {
+        JsonObject cliente = getCliente(1).aJson();
+        cliente.remove(JSONHelper.JSON_EMAIL);
+
+        try {
+            codec.leerCliente(cliente.toString());
+            fail("Falta el email");
+        } catch(IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains(JSONHelper.JSON_EMAIL));
+        }
+    }
+
+    @Test
+    public void campoObligatorioAnidadoQueFaltaEsJsonNoValido() {
+        JsonObject pedidos = getPedidosPendientes(3);
+        JsonObject pedido = pedidos.getAsJsonArray(JSONHelper.JSON_PEDIDOS_PENDIENTES).get(2).getAsJsonObject();
+        pedido.getAsJsonArray(JSONHelper.JSON_OPERACIONES).get(0).getAsJsonObject().remove(JSONHelper.JSON_EMPLEADO);
+
+        try {
+            codec.leerPedidosPendientes(pedidos.toString());
+            fail("Falta el empleado de una operación");
+        } catch(IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains(JSONHelper.JSON_EMPLEADO));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void jsonNullEsNoValido() {
+        codec.leerProveedor(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void jsonMalFormadoEsNoValido() {
+        codec.leerProveedor("{\"nombre\": ");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fechaNoValidaEsJsonNoValido() {
+        JsonObject empleado = getEmpleado(1).aJson();
+        empleado.addProperty(JSONHelper.JSON_FECHA_INICIO, "2018-13-45");
+        codec.leerEmpleado(empleado.toString());
+    }
+
+    /**
+     * Rendimiento con 1.000 pedidos pendientes: lectura anterior con Gson
+     * frente a CodecJSON. Se calienta antes cada una y se comprueba que el
+     * resultado es el mismo.
+     */
+    @Test
+    public void rendimientoCon1000Pedidos() {
+        String json = getPedidosPendientes(PEDIDOS).toString();
+
+        for(int i = 0; i < REPETICIONES; i++) {
+            leePedidosConGson(json);
+            codec.leerPedidosPendientes(json);
+        }
+
+        long inicio = System.nanoTime();
+        List<DatosPedidoHorno> conGson = null;
+        for(int i = 0; i < REPETICIONES; i++) {
+            conGson = leePedidosConGson(json);
+        }
+        long nsGson = (System.nanoTime() - inicio) / REPETICIONES;
+
+        inicio = System.nanoTime();
+        List<DatosPedidoHorno> conCodec = null;
+        for(int i = 0; i < REPETICIONES; i++) {
+            conCodec = codec.leerPedidosPendientes(json);
+        }
+        long nsCodec = (System.nanoTime() - inicio) / REPETICIONES;
+
+        System.out.printf("%d pedidos (%d KB): Gson %.2f ms, CodecJSON %.2f ms (x%.1f)%n", PEDIDOS,
+                          json.length() / 1024, nsGson / 1e6, nsCodec / 1e6, (double) nsGson / nsCodec);
+        assertEquals(PEDIDOS, conCodec.size());
+        assertEquals(aJson(conGson), aJson(conCodec));
+    }
+
+
+    /*****     DATOS     *****/
+
+    private static JsonObject getPedidosPendientes(int n) {
+        JsonArray pedidos = new JsonArray();
+        for(int i = 1; i <= n; i++) {
+            DatosPedidoHorno pedido = new DatosPedidoHorno(i, LocalDate.of(2019, 1, 1).plusDays(i % 60), getCliente(i));
+            pedido.setDependiente(getEmpleado(i % 7));
+            for(int j = 0; j < LINEAS_POR_PEDIDO; j++) {
+                pedido.addLinea(new DatosLineaPedido(j + 1, new DatosProducto("P" + (i * 7 + j) % 40, "Producto " + j,
+                        "Descripción del producto " + j, 100 + j, j % 2 == 0 ? "TARTA" : null, 10)));
+            }
+            for(int j = 0; j < OPERACIONES_POR_PEDIDO; j++) {
+                pedido.addOperacion(new DatosOperacion(LocalDateTime.of(2019, 1, 1, 9, 0).plusMinutes(i * 10 + j),
+                                                       "Registrado", getEmpleado(j)));
+            }
+            pedidos.add(pedido.aJson());
+        }
+
+        JsonObject json = new JsonObject();
+        json.add(JSONHelper.JSON_PEDIDOS_PENDIENTES, pedidos);
+        return json;
+    }
+
+    private static DatosCliente getCliente(int i) {
+        return new DatosCliente(String.format("%08dC", i), "Cliente " + i, "Apellidos " + i, 600000000 + i,
+                                "cliente" + i + "@correo.es");
+    }
+
+    private static DatosEmpleado getEmpleado(int i) {
+        DatosEmpleado empleado = new DatosEmpleado(String.format("%08dE", i), "Empleado " + i, "Apellidos " + i,
+                                                   LocalDate.of(2015, 3, 1));
+        empleado.addRol(new DatosHistorico(LocalDate.of(2015, 3, 1), null, "Dependiente"));
+        empleado.addVinculacion(new DatosHistorico(LocalDate.of(2015, 3, 1), LocalDate.of(2020, 3, 1), "Contratado"));
+        empleado.addDisponibilidad(new DatosHistorico(LocalDate.of(2015, 3, 1), null, "Trabajando"));
+        return empleado;
+    }
+
+    private static JsonObject aJson(List<DatosPedidoHorno> pedidos) {
+        JsonArray array = new JsonArray();
+        for(DatosPedidoHorno pedido : pedidos) {
+            array.add(pedido.aJson());
+        }
+        JsonObject json = new JsonObject();
+        json.add(JSONHelper.JSON_PEDIDOS_PENDIENTES, array);
+        return json;
+    }
+
+
+    /*****     LECTURA ANTERIOR     *****/
+
+    // Como lo hacían los constructores de los modelos antes de CodecJSON: cada
+    // objeto anidado se vuelve a serializar y a interpretar por separado
+
+    private static List<DatosPedidoHorno> leePedidosConGson(String json) {
+        JsonObject jo = new Gson().fromJson(json, JsonObject.class);
+        ArrayList<DatosPedidoHorno> pedidos = new ArrayList<>();
+        for(JsonElement jp : jo.getAsJsonArray(JSONHelper.JSON_PEDIDOS_PENDIENTES)) {
+            pedidos.add(leePedidoConGson(jp.toString()));
+        }
+        return pedidos;
+    }
+
+    private static DatosPedidoHorno leePedidoConGson(String json) {
+        JsonObject jo = new Gson().fromJson(json, JsonObject.class);
+        DatosPedidoHorno pedido = new DatosPedidoHorno(jo.get(JSONHelper.JSON_NUM_PEDIDO).getAsInt(),
+                LocalDate.parse(jo.get(JSONHelper.JSON_FECHA_DESEADA).getAsString()),
+                leeClienteConGson(jo.get(JSONHelper.JSON_CLIENTE).toString()));
+        pedido.setDependiente(leeEmpleadoConGson(jo.get(JSONHelper.JSON_DEPENDIENTE).toString()));
+        for(JsonElement jl : jo.getAsJsonArray(JSONHelper.JSON_LINEAS)) {
+            JsonObject linea = new Gson().fromJson(jl.toString(), JsonObject.class);
+            JsonObject pro = new Gson().fromJson(linea.get(JSONHelper.JSON_PRODUCTO).toString(), JsonObject.class);
+            JsonElement subtipo = pro.get(JSONHelper.JSON_SUBTIPO);
+            pedido.addLinea(new DatosLineaPedido(linea.get(JSONHelper.JSON_CANTIDAD).getAsInt(), new DatosProducto(
+                    pro.get(JSONHelper.JSON_CODIGO).getAsString(), pro.get(JSONHelper.JSON_NOMBRE).getAsString(),
+                    pro.get(JSONHelper.JSON_DESCRIPCION).getAsString(), pro.get(JSONHelper.JSON_EXISTENCIAS).getAsInt(),
+                    subtipo == null || subtipo.isJsonNull() ? null : subtipo.getAsString(),
+                    pro.get(JSONHelper.JSON_CANTIDAD_MIN_STOCK).getAsInt())));
+        }
+        for(JsonElement jop : jo.getAsJsonArray(JSONHelper.JSON_OPERACIONES)) {
+            JsonObject op = new Gson().fromJson(jop.toString(), JsonObject.class);
+            pedido.addOperacion(new DatosOperacion(
+                    Timestamp.valueOf(op.get(JSONHelper.JSON_MOMENTO).getAsString()).toLocalDateTime(),
+                    op.get(JSONHelper.JSON_ESTADO).getAsString(),
+                    leeEmpleadoConGson(op.get(JSONHelper.JSON_EMPLEADO).toString())));
+        }
+        return pedido;
+    }
+
+    private static DatosCliente leeClienteConGson(String json) {
+        JsonObject jo = new Gson().fromJson(json, JsonObject.class);
+        return new DatosCliente(jo.get(JSONHelper.JSON_DNI).getAsString(), jo.get(JSONHelper.JSON_NOMBRE).getAsString(),
+                jo.get(JSONHelper.JSON_APELLIDOS).getAsString(), jo.get(JSONHelper.JSON_TELEFONO).getAsInt(),
+                jo.get(JSONHelper.JSON_EMAIL).getAsString());
+    }
+
+    private static DatosEmpleado leeEmpleadoConGson(String json) {
+        JsonObject jo = new Gson().fromJson(json, JsonObject.class);
+        DatosEmpleado empleado = new DatosEmpleado(jo.get(JSONHelper.JSON_DNI).getAsString(),
+                jo.get(JSONHelper.JSON_NOMBRE).getAsString(), jo.get(JSONHelper.JSON_APELLIDOS).getAsString(),
+                LocalDate.parse(jo.get(JSONHelper.JSON_FECHA_INICIO).getAsString()));
+        for(JsonElement jr : jo.getAsJsonArray(JSONHelper.JSON_ROLES)) {
+            empleado.addRol(leeHistoricoConGson(jr.toString(), JSONHelper.JSON_ROL));
+        }
+        for(JsonElement jv : jo.getAsJsonArray(JSONHelper.JSON_VINCULACIONES)) {
+            empleado.addVinculacion(leeHistoricoConGson(jv.toString(), JSONHelper.JSON_VINCULACION));
+        }
+        for(JsonElement jd : jo.getAsJsonArray(JSONHelper.JSON_DISPONIBILIDADES)) {
+            empleado.addDisponibilidad(leeHistoricoConGson(jd.toString(), JSONHelper.JSON_DISPONIBILIDAD));
+        }
+        return empleado;
+    }
+
+    private static DatosHistorico leeHistoricoConGson(String json, String claveTipo) {
+        JsonObject jo = new Gson().fromJson(json, JsonObject.class);
+        JsonElement fin = jo.get(JSONHelper.JSON_FINAL_PREVISTO);
+        return new DatosHistorico(LocalDate.parse(jo.get(JSONHelper.JSON_COMIENZO).getAsString()),
+                                  fin == null ? null : LocalDate.parse(fin.getAsString()),
+                                  jo.get(claveTipo).getAsString());
+    }
+
+}
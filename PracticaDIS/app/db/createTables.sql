@@ -1,5 +1,9 @@
 --Derby does not support DROP TABLE IF EXISTS VENTA
 
+DROP TABLE VERSIONESQUEMA;
+DROP PROCEDURE REGISTRAR_VENTA;
+DROP SEQUENCE SEQ_VENTA RESTRICT;
+
 DROP TABLE OPERACIONSOBREPEDIDODEHORNO;
 DROP TABLE ESTADODEPEDIDODEHORNO;
 DROP TABLE LINEAVENTAPARAPEDIDO;
@@ -7,6 +11,8 @@ DROP TABLE LINEADEPEDIDODEHORNO;
 DROP TABLE PEDIDODEHORNO;
 DROP TABLE CLIENTE;
 
+DROP TABLE VENTADIARIO;
+DROP TABLE DESCUADREEXISTENCIAS;
 DROP TABLE LINEADEVENTA;
 DROP TABLE VENTA;
 
@@ -144,6 +150,9 @@ create table PROVEEDOR
     Nombre VARCHAR(50) not null,
     Telefono VARCHAR(15) not null,
     Email VARCHAR(50) not null,
+    -- Para buscar sin distinguir mayúsculas
+    NombreMayusculas VARCHAR(50) GENERATED ALWAYS AS (UPPER(Nombre)),
+    CifMayusculas VARCHAR(9) GENERATED ALWAYS AS (UPPER(Cif)),
         PRIMARY KEY(Cif)
 );
 
@@ -205,6 +214,17 @@ create table VENTA
 
 );
 
+-- Unidades vendidas sin existencias suficientes (ventas del diario forzadas)
+create table DESCUADREEXISTENCIAS
+(
+    Id INTEGER not null GENERATED ALWAYS AS IDENTITY,
+    Producto VARCHAR(20) not null,
+    Unidades INTEGER not null,
+    Momento TIMESTAMP not null,
+        PRIMARY KEY(Id),
+        FOREIGN KEY(Producto) REFERENCES PRODUCTO(Codigo)
+);
+
 -- Entity
 create table LINEADEVENTA
 (
@@ -215,6 +235,16 @@ create table LINEADEVENTA
         FOREIGN KEY(Producto) REFERENCES PRODUCTO(Codigo)
 );
 
+-- ID de diario de cada venta (las del diario local y las de caja), para no
+-- registrarlas dos veces al reproducir el diario
+create table VENTADIARIO
+(
+    IdDiario CHAR(36) not null,
+    Venta INTEGER not null,
+        PRIMARY KEY(IdDiario),
+        FOREIGN KEY(Venta) REFERENCES VENTA(IdDeVenta)
+);
+
 -- Entity
 create table CLIENTE 
 (
@@ -233,11 +263,17 @@ create table PEDIDODEHORNO
     FechaEnLaQueSeQuiere DATE not null,
     Cliente VARCHAR(9) not null,
     Dependiente VARCHAR(9) not null,
+    -- Último estado y su momento (copia de OPERACIONSOBREPEDIDODEHORNO, lo mantiene un trigger)
+    EstadoActual SMALLINT,
+    MomentoEstadoActual TIMESTAMP,
         PRIMARY KEY(NumeroDePedido),
         FOREIGN KEY(Cliente) REFERENCES CLIENTE(Nif),
         FOREIGN KEY(Dependiente) REFERENCES EMPLEADO(Nif)
 );
 
+-- Pedidos en un estado para un rango de fechas
+CREATE INDEX IDX_PEDIDOHORNO_ESTADO_FECHA ON PEDIDODEHORNO(EstadoActual, FechaEnLaQueSeQuiere, NumeroDePedido, Cliente, Dependiente);
+
 -- Entity
 create table LINEADEPEDIDODEHORNO
 (
@@ -275,16 +311,68 @@ VALUES  (1,'Registrado'),
 -- Entity
 create table OPERACIONSOBREPEDIDODEHORNO 
 (
+    IdOperacion INTEGER not null GENERATED ALWAYS AS IDENTITY (START WITH 1, INCREMENT BY 1),
     Momento TIMESTAMP not null,
     Tipo SMALLINT not null,
     Empleado VARCHAR(9) not null,
     PedidoDeHorno INTEGER not null,
-        PRIMARY KEY(Momento),
+        PRIMARY KEY(IdOperacion),
         FOREIGN KEY(Tipo) REFERENCES ESTADODEPEDIDODEHORNO(IdTipo),
         FOREIGN KEY(Empleado) REFERENCES EMPLEADO(Nif),
         FOREIGN KEY(PedidoDeHorno) REFERENCES PEDIDODEHORNO(NumeroDePedido)
 );
 
+-- Cada operación actualiza el estado actual del pedido en la misma sentencia.
+-- Los estados solo avanzan: una operación de un estado anterior no lo cambia.
+CREATE TRIGGER ACTUALIZA_ESTADO_PEDIDOHORNO
+    AFTER INSERT ON OPERACIONSOBREPEDIDODEHORNO
+    REFERENCING NEW AS OP
+    FOR EACH ROW
+    UPDATE PEDIDODEHORNO SET EstadoActual = OP.Tipo, MomentoEstadoActual = OP.Momento
+        WHERE NumeroDePedido = OP.PedidoDeHorno
+          AND (EstadoActual IS NULL OR EstadoActual <= OP.Tipo);
+
+
+-- IDs de venta, reservados por bloques de 20 (ver GeneradorIds)
+CREATE SEQUENCE SEQ_VENTA AS INTEGER START WITH 1 INCREMENT BY 20;
+
+-- Registro de una venta completa en una sola llamada (ver ProcedimientosBD).
+-- Su clase se instala aparte, en el servidor: ver instalarProcedimientos.sql
+CREATE PROCEDURE REGISTRAR_VENTA(IN IdDeVenta INTEGER, IN Fecha DATE, IN Dependiente VARCHAR(9), IN Lineas VARCHAR(32672))
+    LANGUAGE JAVA PARAMETER STYLE JAVA MODIFIES SQL DATA
+    EXTERNAL NAME 'es.uva.eii.ds.empresaX.persistencia.ProcedimientosBD.registrarVenta';
+
+
+-- Índices (Derby ya crea uno por cada clave primaria y ajena)
+CREATE INDEX IDX_FACTURA_FECHA_ID ON FACTURA(FechaDeEmision, Id);
+CREATE INDEX IDX_OPERACION_PEDIDO_TIPO ON OPERACIONSOBREPEDIDODEHORNO(PedidoDeHorno, Tipo, Momento, Empleado);
+CREATE INDEX IDX_LINEAPEDIDOHORNO_PEDIDO ON LINEADEPEDIDODEHORNO(Pedido, Producto, Cantidad);
+CREATE INDEX IDX_LINEAVENTA_VENTA ON LINEADEVENTA(Venta, Producto, Cantidad);
+CREATE INDEX IDX_USORECETA_PRODUCTO ON USOENPASOSDERECETA(ProductoDeHorno, MateriaPrima, Cantidad);
+CREATE INDEX IDX_PROVEEDOR_NOMBRE_MAY ON PROVEEDOR(NombreMayusculas);
+CREATE INDEX IDX_PROVEEDOR_CIF_MAY ON PROVEEDOR(CifMayusculas);
+
+-- Migraciones ya incluidas en este script (ver persistencia/migraciones)
+create table VERSIONESQUEMA
+(
+    Version INTEGER not null,
+    Script VARCHAR(100) not null,
+    Aplicada TIMESTAMP not null,
+        PRIMARY KEY(Version)
+);
+
+INSERT INTO VERSIONESQUEMA
+VALUES  (1, '001_clave_operaciones_pedido_horno.sql', CURRENT_TIMESTAMP),
+        (2, '002_estado_actual_pedido_horno.sql', CURRENT_TIMESTAMP),
+        (3, '003_indices.sql', CURRENT_TIMESTAMP),
+        (4, '004_busqueda_proveedor.sql', CURRENT_TIMESTAMP),
+        (5, '005_indice_facturas_fecha_id.sql', CURRENT_TIMESTAMP),
+        (6, '006_ventas_diario.sql', CURRENT_TIMESTAMP),
+        (7, '007_procedimiento_registrar_venta.sql', CURRENT_TIMESTAMP),
+        (8, '008_secuencia_ventas.sql', CURRENT_TIMESTAMP),
+        (9, '009_indices_cubrientes_pedidos_horno.sql', CURRENT_TIMESTAMP),
+        (10, '010_descuadres_existencias.sql', CURRENT_TIMESTAMP);
+
 
 
 
@@ -342,7 +430,7 @@ VALUES ('2014-02-25', NULL,         '12345678Z', 3),
 
        ('2019-05-28', NULL, '12345679J', 3);
 
-INSERT INTO PROVEEDOR
+INSERT INTO PROVEEDOR (Cif, Nombre, Telefono, Email)
 VALUES  ('15264859N', 'Panusa', '942335708', 'comercial@panusa.es'),
         ('35246857R', 'Ogiberri', '943721983', 'comercial@ogiberri.es'),
         ('56468656T', 'ReposteriaPrueba', '946888666', 'comercial@reposteriaprueba.es');
@@ -380,7 +468,8 @@ INSERT INTO CLIENTE VALUES('75264259Q','Juan Jose','Martinez Martinez',971252152
                           ('89264210Y','Carlos','Medrán Solo',981252352,'carlosMedrán@cliente.es');
 
 
-INSERT INTO PEDIDODEHORNO VALUES(1,'2019-05-27','75264259Q','12345678Z'),
+INSERT INTO PEDIDODEHORNO (NumeroDePedido, FechaEnLaQueSeQuiere, Cliente, Dependiente)
+                          VALUES(1,'2019-05-27','75264259Q','12345678Z'),
                                 (2,'2019-05-28','65264100S','12345678Z'),
                                 (3,'2019-05-28','65264100S','12345678Z'),
                                 (4,'2019-05-29','75264259Q','98765432E'),
@@ -398,7 +487,8 @@ INSERT INTO LINEADEPEDIDODEHORNO VALUES(2,1,'85584985'),
                                     /*   (7,6,'85584985');
 */
 
-INSERT INTO OPERACIONSOBREPEDIDODEHORNO VALUES ('2019-05-27 14:55:38', 1, '12345678Z', 1),
+INSERT INTO OPERACIONSOBREPEDIDODEHORNO (Momento, Tipo, Empleado, PedidoDeHorno)
+                                VALUES ('2019-05-27 14:55:38', 1, '12345678Z', 1),
                                        ('2019-05-27 14:55:40', 2, '12345678Z', 2),
                                        ('2019-05-27 14:55:42', 1, '12345678Z', 3),
                                        ('2019-05-27 14:55:44', 1, '98765432E', 4),
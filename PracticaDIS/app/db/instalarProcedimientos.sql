@@ -0,0 +1,18 @@
+-- Instala en la BD la clase de los procedimientos almacenados (REGISTRAR_VENTA).
+--
+-- Derby abre el jar en la máquina del SERVIDOR, así que este script se ejecuta
+-- allí (con ij, conectado como el usuario de la aplicación) después de copiar
+-- el jar que genera el build (NetBeansProject/dist/procedimientosBD.jar).
+-- Sustituir la ruta por la del jar en el servidor.
+--
+-- Primera instalación:
+
+CALL SQLJ.INSTALL_JAR('file:/ruta/en/el/servidor/procedimientosBD.jar', CURRENT SCHEMA || '.PROCEDIMIENTOS', 0);
+CALL SYSCS_UTIL.SYSCS_SET_DATABASE_PROPERTY('derby.database.classpath', CURRENT SCHEMA || '.PROCEDIMIENTOS');
+
+-- Tras cambiar ProcedimientosBD, en lugar de lo anterior:
+-- CALL SQLJ.REPLACE_JAR('file:/ruta/en/el/servidor/procedimientosBD.jar', CURRENT SCHEMA || '.PROCEDIMIENTOS');
+--
+-- Para quitarla (antes de borrar el esquema con createTables.sql):
+-- CALL SYSCS_UTIL.SYSCS_SET_DATABASE_PROPERTY('derby.database.classpath', NULL);
+-- CALL SQLJ.REMOVE_JAR(CURRENT SCHEMA || '.PROCEDIMIENTOS', 0);